@@ -0,0 +1,255 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.api.query;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary columnar encoding of in memory query results, exchanged with media type {@link #MEDIA_TYPE}.
+ * <p></p>
+ * Layout: magic, version and number of columns, followed by row groups, terminated by a row group of zero rows. A row
+ * group has its row count and byte length, followed by a vector per column. A vector has its encoding, a null bitmap
+ * if any of its values is null, and the non null values. String vectors with repeating values are dictionary encoded.
+ * Values of other types, or of mixed types within a vector, are sent as their string form.
+ *
+ * @see ColumnarResultRows
+ */
+public final class ColumnarResultFormat {
+
+  /** Media type of the encoding */
+  public static final String MEDIA_TYPE = "application/x-lens-columnar-result";
+
+  /** Default number of rows in a row group */
+  public static final int DEFAULT_ROW_GROUP_SIZE = 4096;
+
+  static final int MAGIC = 0x4C4E5343;
+  static final byte VERSION = 1;
+  static final Charset UTF8 = Charset.forName("UTF-8");
+
+  // vector encodings
+  static final byte ALL_NULLS = 0;
+  static final byte BOOLEAN = 1;
+  static final byte BYTE = 2;
+  static final byte SHORT = 3;
+  static final byte INT = 4;
+  static final byte LONG = 5;
+  static final byte FLOAT = 6;
+  static final byte DOUBLE = 7;
+  static final byte STRING = 8;
+  static final byte DICTIONARY = 9;
+
+  private ColumnarResultFormat() {
+  }
+
+  /**
+   * Writes the rows to the stream, a row group at a time.
+   *
+   * @param rows         rows to write
+   * @param out          stream to write to, not closed
+   * @param rowGroupSize maximum number of rows in a row group
+   * @throws IOException
+   */
+  public static void write(List<ResultRow> rows, OutputStream out, int rowGroupSize) throws IOException {
+    int numColumns = 0;
+    for (ResultRow row : rows) {
+      numColumns = Math.max(numColumns, row.getValues().size());
+    }
+    DataOutputStream dataOut = new DataOutputStream(out);
+    dataOut.writeInt(MAGIC);
+    dataOut.writeByte(VERSION);
+    dataOut.writeInt(numColumns);
+    ByteArrayOutputStream group = new ByteArrayOutputStream();
+    DataOutputStream groupOut = new DataOutputStream(group);
+    for (int start = 0; start < rows.size(); start += rowGroupSize) {
+      List<ResultRow> groupRows = rows.subList(start, Math.min(rows.size(), start + rowGroupSize));
+      group.reset();
+      for (int col = 0; col < numColumns; col++) {
+        writeVector(groupRows, col, groupOut);
+      }
+      groupOut.flush();
+      dataOut.writeInt(groupRows.size());
+      dataOut.writeInt(group.size());
+      group.writeTo(dataOut);
+    }
+    dataOut.writeInt(0);
+    dataOut.flush();
+  }
+
+  private static Object valueAt(ResultRow row, int col) {
+    return col < row.getValues().size() ? row.getValues().get(col) : null;
+  }
+
+  private static void writeVector(List<ResultRow> rows, int col, DataOutputStream out) throws IOException {
+    int numRows = rows.size();
+    byte[] nulls = new byte[(numRows + 7) / 8];
+    boolean hasNulls = false;
+    int nonNulls = 0;
+    Class<?> valueClass = null;
+    boolean mixed = false;
+    for (int i = 0; i < numRows; i++) {
+      Object value = valueAt(rows.get(i), col);
+      if (value == null) {
+        nulls[i / 8] |= 1 << (i % 8);
+        hasNulls = true;
+      } else {
+        nonNulls++;
+        if (valueClass == null) {
+          valueClass = value.getClass();
+        } else if (valueClass != value.getClass()) {
+          mixed = true;
+        }
+      }
+    }
+    if (nonNulls == 0) {
+      out.writeByte(ALL_NULLS);
+      return;
+    }
+    byte encoding = mixed ? STRING : encodingOf(valueClass);
+    Map<String, Integer> dictionary = null;
+    if (encoding == STRING) {
+      dictionary = buildDictionary(rows, col, nonNulls);
+      if (dictionary != null) {
+        encoding = DICTIONARY;
+      }
+    }
+    out.writeByte(encoding);
+    out.writeBoolean(hasNulls);
+    if (hasNulls) {
+      out.write(nulls);
+    }
+    if (encoding == BOOLEAN) {
+      byte[] bits = new byte[(nonNulls + 7) / 8];
+      int index = 0;
+      for (ResultRow row : rows) {
+        Object value = valueAt(row, col);
+        if (value != null) {
+          if ((Boolean) value) {
+            bits[index / 8] |= 1 << (index % 8);
+          }
+          index++;
+        }
+      }
+      out.write(bits);
+      return;
+    }
+    if (encoding == DICTIONARY) {
+      String[] words = new String[dictionary.size()];
+      for (Map.Entry<String, Integer> entry : dictionary.entrySet()) {
+        words[entry.getValue()] = entry.getKey();
+      }
+      out.writeInt(words.length);
+      for (String word : words) {
+        writeString(word, out);
+      }
+    }
+    for (ResultRow row : rows) {
+      Object value = valueAt(row, col);
+      if (value == null) {
+        continue;
+      }
+      switch (encoding) {
+      case BYTE:
+        out.writeByte((Byte) value);
+        break;
+      case SHORT:
+        out.writeShort((Short) value);
+        break;
+      case INT:
+        out.writeInt((Integer) value);
+        break;
+      case LONG:
+        out.writeLong((Long) value);
+        break;
+      case FLOAT:
+        out.writeFloat((Float) value);
+        break;
+      case DOUBLE:
+        out.writeDouble((Double) value);
+        break;
+      case DICTIONARY:
+        writeDictionaryIndex(dictionary.get(String.valueOf(value)), dictionary.size(), out);
+        break;
+      default:
+        writeString(String.valueOf(value), out);
+        break;
+      }
+    }
+  }
+
+  private static byte encodingOf(Class<?> valueClass) {
+    if (valueClass == Boolean.class) {
+      return BOOLEAN;
+    } else if (valueClass == Byte.class) {
+      return BYTE;
+    } else if (valueClass == Short.class) {
+      return SHORT;
+    } else if (valueClass == Integer.class) {
+      return INT;
+    } else if (valueClass == Long.class) {
+      return LONG;
+    } else if (valueClass == Float.class) {
+      return FLOAT;
+    } else if (valueClass == Double.class) {
+      return DOUBLE;
+    }
+    return STRING;
+  }
+
+  /** dictionary of the string values, if they repeat enough for dictionary encoding to pay off. null otherwise */
+  private static Map<String, Integer> buildDictionary(List<ResultRow> rows, int col, int nonNulls) {
+    int maxSize = nonNulls / 2;
+    Map<String, Integer> dictionary = new HashMap<>();
+    for (ResultRow row : rows) {
+      Object value = valueAt(row, col);
+      if (value != null) {
+        String word = String.valueOf(value);
+        if (!dictionary.containsKey(word)) {
+          if (dictionary.size() == maxSize) {
+            return null;
+          }
+          dictionary.put(word, dictionary.size());
+        }
+      }
+    }
+    return dictionary;
+  }
+
+  private static void writeDictionaryIndex(int index, int dictionarySize, DataOutputStream out) throws IOException {
+    if (dictionarySize <= 1 << 8) {
+      out.writeByte(index);
+    } else if (dictionarySize <= 1 << 16) {
+      out.writeShort(index);
+    } else {
+      out.writeInt(index);
+    }
+  }
+
+  private static void writeString(String value, DataOutputStream out) throws IOException {
+    byte[] bytes = value.getBytes(UTF8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+}
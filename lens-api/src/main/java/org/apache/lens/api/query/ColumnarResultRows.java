@@ -0,0 +1,364 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.api.query;
+
+import static org.apache.lens.api.query.ColumnarResultFormat.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rows of a result in {@link ColumnarResultFormat}, decoded lazily. Only row group boundaries are read upfront, a row
+ * group gets decoded into primitive column vectors when one of its rows is accessed, and values are boxed only when
+ * read through {@link ResultRow#getValues()}. Typed getters of {@link Row} read the vectors directly.
+ */
+public class ColumnarResultRows extends AbstractList<ResultRow> {
+
+  private final ByteBuffer buffer;
+  private final int numColumns;
+  // offset of column data of each row group in the buffer
+  private final List<Integer> groupOffsets = new ArrayList<>();
+  // index of first row of each row group, followed by the total number of rows
+  private final List<Integer> groupStarts = new ArrayList<>();
+  // last decoded row group, rows are mostly accessed in order
+  private RowGroup current;
+
+  /**
+   * Reads a result from the stream. The stream is consumed but not closed.
+   *
+   * @param in stream having the result
+   * @throws IOException if the stream doesn't have a valid result
+   */
+  public ColumnarResultRows(InputStream in) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] chunk = new byte[8192];
+    int read;
+    while ((read = in.read(chunk)) != -1) {
+      bytes.write(chunk, 0, read);
+    }
+    buffer = ByteBuffer.wrap(bytes.toByteArray());
+    try {
+      if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+        throw new IOException("Not a columnar result of version " + VERSION);
+      }
+      numColumns = buffer.getInt();
+      int rows = 0;
+      int groupRows;
+      while ((groupRows = buffer.getInt()) > 0) {
+        int length = buffer.getInt();
+        groupStarts.add(rows);
+        groupOffsets.add(buffer.position());
+        rows += groupRows;
+        buffer.position(buffer.position() + length);
+      }
+      groupStarts.add(rows);
+    } catch (RuntimeException e) {
+      throw new IOException("Truncated or corrupt columnar result", e);
+    }
+  }
+
+  public int getNumColumns() {
+    return numColumns;
+  }
+
+  @Override
+  public int size() {
+    return groupStarts.get(groupStarts.size() - 1);
+  }
+
+  @Override
+  public Row get(int index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("Row " + index + " of " + size());
+    }
+    if (current == null || index < current.start || index >= current.start + current.numRows) {
+      int group = Collections.binarySearch(groupStarts, index);
+      if (group < 0) {
+        group = -group - 2;
+      }
+      current = new RowGroup(groupStarts.get(group), groupStarts.get(group + 1) - groupStarts.get(group),
+        groupOffsets.get(group));
+    }
+    return new Row(current, index - current.start);
+  }
+
+  /** A row group decoded into column vectors. Values of null rows are left as defaults in the vectors. */
+  private class RowGroup {
+    private final int start;
+    private final int numRows;
+    private final byte[] encodings = new byte[numColumns];
+    private final byte[][] nulls = new byte[numColumns][];
+    // boolean[], byte[], short[], int[], long[], float[], double[] or String[] per column, by encoding
+    private final Object[] vectors = new Object[numColumns];
+
+    RowGroup(int start, int numRows, int offset) {
+      this.start = start;
+      this.numRows = numRows;
+      ByteBuffer in = buffer.duplicate();
+      in.position(offset);
+      for (int col = 0; col < numColumns; col++) {
+        readVector(col, in);
+      }
+    }
+
+    private void readVector(int col, ByteBuffer in) {
+      byte encoding = in.get();
+      encodings[col] = encoding;
+      if (encoding == ALL_NULLS) {
+        return;
+      }
+      if (in.get() != 0) {
+        nulls[col] = new byte[(numRows + 7) / 8];
+        in.get(nulls[col]);
+      }
+      String[] dictionary = null;
+      if (encoding == DICTIONARY) {
+        dictionary = new String[in.getInt()];
+        for (int i = 0; i < dictionary.length; i++) {
+          dictionary[i] = readString(in);
+        }
+      }
+      switch (encoding) {
+      case BOOLEAN:
+        boolean[] booleans = new boolean[numRows];
+        byte[] bits = new byte[(countNonNulls(col) + 7) / 8];
+        in.get(bits);
+        for (int row = 0, index = 0; row < numRows; row++) {
+          if (!isNull(col, row)) {
+            booleans[row] = (bits[index / 8] & (1 << (index % 8))) != 0;
+            index++;
+          }
+        }
+        vectors[col] = booleans;
+        break;
+      case BYTE:
+        byte[] bytes = new byte[numRows];
+        for (int row = 0; row < numRows; row++) {
+          if (!isNull(col, row)) {
+            bytes[row] = in.get();
+          }
+        }
+        vectors[col] = bytes;
+        break;
+      case SHORT:
+        short[] shorts = new short[numRows];
+        for (int row = 0; row < numRows; row++) {
+          if (!isNull(col, row)) {
+            shorts[row] = in.getShort();
+          }
+        }
+        vectors[col] = shorts;
+        break;
+      case INT:
+        int[] ints = new int[numRows];
+        for (int row = 0; row < numRows; row++) {
+          if (!isNull(col, row)) {
+            ints[row] = in.getInt();
+          }
+        }
+        vectors[col] = ints;
+        break;
+      case LONG:
+        long[] longs = new long[numRows];
+        for (int row = 0; row < numRows; row++) {
+          if (!isNull(col, row)) {
+            longs[row] = in.getLong();
+          }
+        }
+        vectors[col] = longs;
+        break;
+      case FLOAT:
+        float[] floats = new float[numRows];
+        for (int row = 0; row < numRows; row++) {
+          if (!isNull(col, row)) {
+            floats[row] = in.getFloat();
+          }
+        }
+        vectors[col] = floats;
+        break;
+      case DOUBLE:
+        double[] doubles = new double[numRows];
+        for (int row = 0; row < numRows; row++) {
+          if (!isNull(col, row)) {
+            doubles[row] = in.getDouble();
+          }
+        }
+        vectors[col] = doubles;
+        break;
+      case STRING:
+      case DICTIONARY:
+        String[] strings = new String[numRows];
+        for (int row = 0; row < numRows; row++) {
+          if (!isNull(col, row)) {
+            strings[row] = dictionary == null ? readString(in) : dictionary[readDictionaryIndex(dictionary.length, in)];
+          }
+        }
+        vectors[col] = strings;
+        break;
+      default:
+        throw new IllegalStateException("Unknown encoding " + encoding + " of column " + col);
+      }
+    }
+
+    private int countNonNulls(int col) {
+      int count = 0;
+      for (int row = 0; row < numRows; row++) {
+        if (!isNull(col, row)) {
+          count++;
+        }
+      }
+      return count;
+    }
+
+    boolean isNull(int col, int row) {
+      return encodings[col] == ALL_NULLS || (nulls[col] != null && (nulls[col][row / 8] & (1 << (row % 8))) != 0);
+    }
+
+    Object getValue(int col, int row) {
+      if (isNull(col, row)) {
+        return null;
+      }
+      switch (encodings[col]) {
+      case BOOLEAN:
+        return ((boolean[]) vectors[col])[row];
+      case BYTE:
+        return ((byte[]) vectors[col])[row];
+      case SHORT:
+        return ((short[]) vectors[col])[row];
+      case INT:
+        return ((int[]) vectors[col])[row];
+      case LONG:
+        return ((long[]) vectors[col])[row];
+      case FLOAT:
+        return ((float[]) vectors[col])[row];
+      case DOUBLE:
+        return ((double[]) vectors[col])[row];
+      default:
+        return ((String[]) vectors[col])[row];
+      }
+    }
+
+    boolean isNumeric(int col) {
+      return encodings[col] >= BYTE && encodings[col] <= DOUBLE;
+    }
+
+    boolean isIntegral(int col) {
+      return encodings[col] >= BYTE && encodings[col] <= LONG;
+    }
+
+    long getLong(int col, int row) {
+      switch (encodings[col]) {
+      case BYTE:
+        return ((byte[]) vectors[col])[row];
+      case SHORT:
+        return ((short[]) vectors[col])[row];
+      case INT:
+        return ((int[]) vectors[col])[row];
+      case LONG:
+        return ((long[]) vectors[col])[row];
+      case FLOAT:
+        return (long) ((float[]) vectors[col])[row];
+      case DOUBLE:
+        return (long) ((double[]) vectors[col])[row];
+      default:
+        throw new IllegalStateException("Column " + col + " is not numeric");
+      }
+    }
+
+    double getDouble(int col, int row) {
+      switch (encodings[col]) {
+      case FLOAT:
+        return ((float[]) vectors[col])[row];
+      case DOUBLE:
+        return ((double[]) vectors[col])[row];
+      default:
+        return getLong(col, row);
+      }
+    }
+  }
+
+  private static String readString(ByteBuffer in) {
+    byte[] bytes = new byte[in.getInt()];
+    in.get(bytes);
+    return new String(bytes, UTF8);
+  }
+
+  private static int readDictionaryIndex(int dictionarySize, ByteBuffer in) {
+    if (dictionarySize <= 1 << 8) {
+      return in.get() & 0xFF;
+    } else if (dictionarySize <= 1 << 16) {
+      return in.getShort() & 0xFFFF;
+    } else {
+      return in.getInt();
+    }
+  }
+
+  /**
+   * A row of a columnar result. Values are boxed on access through {@link #getValues()}, typed getters avoid it for
+   * numeric columns.
+   */
+  public static final class Row extends ResultRow {
+    private final RowGroup group;
+    private final int row;
+
+    private Row(final RowGroup group, final int row) {
+      super(new AbstractList<Object>() {
+        @Override
+        public Object get(int col) {
+          return group.getValue(col, row);
+        }
+
+        @Override
+        public int size() {
+          return group.encodings.length;
+        }
+      });
+      this.group = group;
+      this.row = row;
+    }
+
+    public boolean isNull(int col) {
+      return group.isNull(col, row);
+    }
+
+    /** whether the column is encoded as a numeric vector, so that {@link #getLong} and {@link #getDouble} apply */
+    public boolean isNumeric(int col) {
+      return group.isNumeric(col);
+    }
+
+    /** whether the column is encoded as a vector of byte, short, int or long values */
+    public boolean isIntegral(int col) {
+      return group.isIntegral(col);
+    }
+
+    /** value of a numeric column as long. 0 for null */
+    public long getLong(int col) {
+      return isNull(col) ? 0 : group.getLong(col, row);
+    }
+
+    /** value of a numeric column as double. 0 for null */
+    public double getDouble(int col) {
+      return isNull(col) ? 0 : group.getDouble(col, row);
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.api.query;
+
+import static org.testng.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class ColumnarResultFormatTest {
+
+  private ColumnarResultRows roundTrip(List<ResultRow> rows, int rowGroupSize) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ColumnarResultFormat.write(rows, out, rowGroupSize);
+    return new ColumnarResultRows(new ByteArrayInputStream(out.toByteArray()));
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    List<ResultRow> rows = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      rows.add(new ResultRow(Arrays.<Object>asList(
+        i % 7 == 0 ? null : i,
+        (long) i * Integer.MAX_VALUE,
+        i / 3.0,
+        (float) i,
+        (short) i,
+        (byte) i,
+        i % 2 == 0,
+        "category" + (i % 3),
+        i % 5 == 0 ? null : "name" + i,
+        null,
+        // mixed types and types without vector encoding are sent as strings
+        i % 2 == 0 ? (Object) i : "odd",
+        new BigDecimal(i))));
+    }
+    ColumnarResultRows decoded = roundTrip(rows, 16);
+    assertEquals(decoded.size(), rows.size());
+    assertEquals(decoded.getNumColumns(), 12);
+    for (int i = 0; i < rows.size(); i++) {
+      List<Object> expected = new ArrayList<>(rows.get(i).getValues());
+      expected.set(10, String.valueOf(expected.get(10)));
+      expected.set(11, String.valueOf(expected.get(11)));
+      assertEquals(decoded.get(i).getValues(), expected, "Row " + i);
+    }
+  }
+
+  @Test
+  public void testTypedGetters() throws IOException {
+    List<ResultRow> rows = new ArrayList<>();
+    rows.add(new ResultRow(Arrays.<Object>asList(1, 2.5d, "a")));
+    rows.add(new ResultRow(Arrays.<Object>asList(null, null, null)));
+    ColumnarResultRows decoded = roundTrip(rows, ColumnarResultFormat.DEFAULT_ROW_GROUP_SIZE);
+    ColumnarResultRows.Row row = decoded.get(0);
+    assertTrue(row.isIntegral(0));
+    assertEquals(row.getLong(0), 1L);
+    assertEquals(row.getDouble(0), 1.0d);
+    assertFalse(row.isIntegral(1));
+    assertTrue(row.isNumeric(1));
+    assertEquals(row.getDouble(1), 2.5d);
+    assertFalse(row.isNumeric(2));
+    row = decoded.get(1);
+    assertTrue(row.isNull(0));
+    assertEquals(row.getLong(0), 0L);
+    assertTrue(row.isNull(1));
+    assertTrue(row.isNull(2));
+  }
+
+  @Test
+  public void testRandomAccessAcrossRowGroups() throws IOException {
+    List<ResultRow> rows = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      rows.add(new ResultRow(Arrays.<Object>asList(i, "v" + (i % 2))));
+    }
+    ColumnarResultRows decoded = roundTrip(rows, 7);
+    for (int i : new int[]{49, 0, 7, 6, 48, 21}) {
+      assertEquals(decoded.get(i).getValues(), rows.get(i).getValues());
+    }
+  }
+
+  @Test
+  public void testEmptyResult() throws IOException {
+    ColumnarResultRows decoded = roundTrip(new ArrayList<ResultRow>(), 10);
+    assertTrue(decoded.isEmpty());
+    assertEquals(decoded.getNumColumns(), 0);
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void testTruncatedResult() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ColumnarResultFormat.write(Arrays.asList(new ResultRow(Arrays.<Object>asList(1, "a"))), out, 10);
+    byte[] bytes = Arrays.copyOf(out.toByteArray(), out.size() - 6);
+    new ColumnarResultRows(new ByteArrayInputStream(bytes));
+  }
+}
@@ -18,6 +18,8 @@
  */
 package org.apache.lens.client;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -187,6 +189,10 @@ public class LensClient {
     return statement.getHttpResultSet(statement.getQuery(q));
   }
 
+  public long downloadHttpResults(QueryHandle q, OutputStream sink) throws IOException {
+    return statement.downloadHttpResultSet(statement.getQuery(q), sink);
+  }
+
   public LensStatement getLensStatement(QueryHandle query) {
     return this.statementMap.get(query);
   }
@@ -51,6 +51,24 @@ public class LensClientConfig extends Configuration {
   /** The Constant DEFAULT_QUERY_POLL_INTERVAL. */
   private static final long DEFAULT_QUERY_POLL_INTERVAL = 10L;
 
+  /** Whether in memory results should be fetched in compact binary columnar encoding. */
+  public static final String QUERY_RESULT_COLUMNAR = CLIENT_PFX + "query.result.columnar";
+
+  /** The Constant DEFAULT_QUERY_RESULT_COLUMNAR. */
+  public static final boolean DEFAULT_QUERY_RESULT_COLUMNAR = false;
+
+  /** Number of rows fetched from the server in each page of an in memory result. */
+  public static final String QUERY_RESULT_FETCH_SIZE = CLIENT_PFX + "query.result.fetch.size";
+
+  /** The Constant DEFAULT_QUERY_RESULT_FETCH_SIZE. */
+  public static final int DEFAULT_QUERY_RESULT_FETCH_SIZE = 1000;
+
+  /** Number of result pages fetched ahead of the page being consumed. */
+  public static final String QUERY_RESULT_PREFETCH_PAGES = CLIENT_PFX + "query.result.prefetch.pages";
+
+  /** The Constant DEFAULT_QUERY_RESULT_PREFETCH_PAGES. */
+  public static final int DEFAULT_QUERY_RESULT_PREFETCH_PAGES = 2;
+
   /** The Constant USER_NAME. */
   private static final String USER_NAME = CLIENT_PFX + "user.name";
 
@@ -144,6 +162,18 @@ public class LensClientConfig extends Configuration {
     return this.getLong(QUERY_POLL_INTERVAL_KEY, DEFAULT_QUERY_POLL_INTERVAL);
   }
 
+  public boolean isColumnarResultEnabled() {
+    return this.getBoolean(QUERY_RESULT_COLUMNAR, DEFAULT_QUERY_RESULT_COLUMNAR);
+  }
+
+  public int getResultFetchSize() {
+    return this.getInt(QUERY_RESULT_FETCH_SIZE, DEFAULT_QUERY_RESULT_FETCH_SIZE);
+  }
+
+  public int getResultPrefetchPages() {
+    return this.getInt(QUERY_RESULT_PREFETCH_PAGES, DEFAULT_QUERY_RESULT_PREFETCH_PAGES);
+  }
+
   public String getMetastoreResourcePath() {
     return DEFAULT_METASTORE_RESOURCE_PATH;
   }
@@ -0,0 +1,204 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.client;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lens.api.query.InMemoryQueryResult;
+import org.apache.lens.api.query.LensQuery;
+import org.apache.lens.api.query.QueryResult;
+import org.apache.lens.api.query.ResultRow;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Forward only cursor over the rows of a query result, pulled from the server a page at a time. Pages are fetched in
+ * background, up to a configured number of pages ahead of the page being iterated, so that transfer of the next pages
+ * overlaps consumption of the current one. The server may serve fewer rows than the fetch size in a page; iteration
+ * ends at the first empty page. Persistent results have no rows to iterate.
+ */
+@Slf4j
+public class LensResultSetCursor implements Iterator<ResultRow>, Closeable {
+
+  /** Pool of page fetchers, shared by all cursors. Threads are daemons and exit when idle. */
+  private static final ExecutorService FETCHER_POOL = Executors.newCachedThreadPool(new ThreadFactory() {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "lens-result-fetcher-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  /** A fetched page, or the failure that ended fetching. */
+  private static class Page {
+    private final List<ResultRow> rows;
+    private final Exception failure;
+
+    Page(List<ResultRow> rows, Exception failure) {
+      this.rows = rows;
+      this.failure = failure;
+    }
+  }
+
+  /** Pages fetched and not yet iterated. */
+  private final BlockingQueue<Page> pages;
+
+  /** The page fetcher. */
+  private final Future<?> fetcher;
+
+  /** Rows fetched in a page, applies from the next page fetched. */
+  private volatile int fetchSize;
+
+  /** Rows of the page being iterated. */
+  private Iterator<ResultRow> current = Collections.<ResultRow>emptyList().iterator();
+
+  /** Whether all pages have been taken. */
+  private boolean exhausted;
+
+  /** The closed. */
+  private volatile boolean closed;
+
+  /**
+   * Instantiates a new cursor and starts fetching pages.
+   *
+   * @param statement     statement to fetch pages with
+   * @param query         the query, which should have succeeded
+   * @param fetchSize     rows to fetch in each page, non positive for as many as the server serves in a page
+   * @param prefetchPages number of pages to fetch ahead
+   */
+  LensResultSetCursor(LensStatement statement, LensQuery query, int fetchSize, int prefetchPages) {
+    this(statement, query, 0, fetchSize, prefetchPages);
+  }
+
+  /**
+   * Instantiates a new cursor over the rows from an index on, and starts fetching pages.
+   *
+   * @param statement     statement to fetch pages with
+   * @param query         the query, which should have succeeded
+   * @param startIndex    index of the first row to fetch
+   * @param fetchSize     rows to fetch in each page, non positive for as many as the server serves in a page
+   * @param prefetchPages number of pages to fetch ahead
+   */
+  LensResultSetCursor(final LensStatement statement, final LensQuery query, final long startIndex, int fetchSize,
+    int prefetchPages) {
+    this.fetchSize = fetchSize;
+    this.pages = new ArrayBlockingQueue<Page>(Math.max(1, prefetchPages));
+    this.fetcher = FETCHER_POOL.submit(new Runnable() {
+      @Override
+      public void run() {
+        long fromIndex = startIndex;
+        try {
+          while (!closed) {
+            QueryResult result = statement.getResultSet(query, fromIndex, LensResultSetCursor.this.fetchSize);
+            List<ResultRow> rows = result instanceof InMemoryQueryResult
+              ? ((InMemoryQueryResult) result).getRows() : Collections.<ResultRow>emptyList();
+            pages.put(new Page(rows, null));
+            if (rows.isEmpty()) {
+              return;
+            }
+            fromIndex += rows.size();
+          }
+        } catch (InterruptedException e) {
+          log.debug("Fetching results of {} stopped", query.getQueryHandle());
+        } catch (Exception e) {
+          try {
+            pages.put(new Page(null, e));
+          } catch (InterruptedException ie) {
+            log.debug("Fetching results of {} stopped", query.getQueryHandle());
+          }
+        }
+      }
+    });
+  }
+
+  public int getFetchSize() {
+    return fetchSize;
+  }
+
+  /**
+   * Sets the number of rows to fetch in pages not yet requested from the server.
+   *
+   * @param fetchSize rows in a page, non positive for as many as the server serves in a page
+   */
+  public void setFetchSize(int fetchSize) {
+    this.fetchSize = fetchSize;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p></p>
+   * Blocks till the next page arrives, when rows of the current page are exhausted.
+   *
+   * @throws IllegalStateException if fetching a page failed
+   */
+  @Override
+  public boolean hasNext() {
+    while (!current.hasNext()) {
+      if (exhausted || closed) {
+        return false;
+      }
+      Page page;
+      try {
+        page = pages.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for results", e);
+      }
+      if (page.failure != null) {
+        exhausted = true;
+        throw new IllegalStateException(page.failure.getMessage(), page.failure);
+      }
+      exhausted = page.rows.isEmpty();
+      current = page.rows.iterator();
+    }
+    return true;
+  }
+
+  @Override
+  public ResultRow next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return current.next();
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException("Results are read only");
+  }
+
+  /**
+   * Stops fetching pages and discards the pages fetched.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    fetcher.cancel(true);
+    pages.clear();
+  }
+}
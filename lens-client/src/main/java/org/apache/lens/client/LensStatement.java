@@ -18,6 +18,10 @@
  */
 package org.apache.lens.client;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.ws.rs.client.Client;
@@ -449,26 +453,93 @@ public class LensStatement {
   }
 
   /**
-   * Gets the result set.
+   * Gets the result set. In memory results are pulled page by page, with pages of
+   * {@link LensClientConfig#QUERY_RESULT_FETCH_SIZE} rows prefetched in background as by
+   * {@link #getResultSetCursor()}, and returned together.
    *
    * @param query the query
    * @return the result set
    */
   public QueryResult getResultSet(LensQuery query) {
+    int fetchSize = connection.getLensConnectionParams().getConf().getResultFetchSize();
+    QueryResult firstPage = getResultSet(query, 0, fetchSize);
+    if (fetchSize <= 0 || !(firstPage instanceof InMemoryQueryResult)) {
+      return firstPage;
+    }
+    List<ResultRow> firstRows = ((InMemoryQueryResult) firstPage).getRows();
+    if (firstRows.isEmpty()) {
+      return firstPage;
+    }
+    List<ResultRow> rows = new ArrayList<ResultRow>(firstRows);
+    LensResultSetCursor cursor = new LensResultSetCursor(this, query, firstRows.size(), fetchSize,
+      connection.getLensConnectionParams().getConf().getResultPrefetchPages());
+    try {
+      while (cursor.hasNext()) {
+        rows.add(cursor.next());
+      }
+    } finally {
+      cursor.close();
+    }
+    return new InMemoryQueryResult(rows);
+  }
+
+  /**
+   * Gets a page of the result set. The server may return fewer rows than asked for, and returns no rows past the end
+   * of the result.
+   *
+   * @param query     the query
+   * @param fromIndex index of the first row of the page
+   * @param fetchSize rows in the page, non positive for as many as the server serves in a page
+   * @return the page of the result set
+   */
+  public QueryResult getResultSet(LensQuery query, long fromIndex, int fetchSize) {
     if (query.getStatus().getStatus() != QueryStatus.Status.SUCCESSFUL) {
       throw new IllegalArgumentException("Result set metadata " + "can be only queries for successful queries");
     }
     Client client = connection.buildClient();
 
     try {
-      WebTarget target = getQueryWebTarget(client);
-      return target.path(query.getQueryHandle().toString()).path("resultset")
-        .queryParam("sessionid", connection.getSessionHandle()).request().get(QueryResult.class);
+      WebTarget target = getQueryWebTarget(client).path(query.getQueryHandle().toString()).path("resultset")
+        .queryParam("sessionid", connection.getSessionHandle());
+      if (fromIndex > 0 || fetchSize > 0) {
+        target = target.queryParam("fromindex", fromIndex).queryParam("fetchsize", fetchSize);
+      }
+      if (connection.getLensConnectionParams().getConf().isColumnarResultEnabled()) {
+        Response response = target.request(ColumnarResultFormat.MEDIA_TYPE).get();
+        if (response.getStatus() == Response.Status.OK.getStatusCode()) {
+          try (InputStream in = response.readEntity(InputStream.class)) {
+            return new InMemoryQueryResult(new ColumnarResultRows(in));
+          }
+        }
+        // persistent result or a server not supporting it, fall back
+        response.close();
+      }
+      return target.request().get(QueryResult.class);
     } catch (Exception e) {
       throw new IllegalStateException("Failed to get resultset, cause:" + e.getMessage());
     }
   }
 
+  public LensResultSetCursor getResultSetCursor() {
+    return this.getResultSetCursor(this.query, connection.getLensConnectionParams().getConf().getResultFetchSize());
+  }
+
+  /**
+   * Gets a cursor pulling the result set from the server page by page, with pages prefetched in background as
+   * configured by {@link LensClientConfig#QUERY_RESULT_PREFETCH_PAGES}. The cursor should be closed once done.
+   *
+   * @param query     the query
+   * @param fetchSize rows to fetch in a page, non positive for as many as the server serves in a page
+   * @return the result set cursor
+   */
+  public LensResultSetCursor getResultSetCursor(LensQuery query, int fetchSize) {
+    if (query.getStatus().getStatus() != QueryStatus.Status.SUCCESSFUL) {
+      throw new IllegalArgumentException("Result set metadata " + "can be only queries for successful queries");
+    }
+    return new LensResultSetCursor(this, query, fetchSize,
+      connection.getLensConnectionParams().getConf().getResultPrefetchPages());
+  }
+
   /**
    * Gets the http result set.
    *
@@ -490,6 +561,36 @@ public class LensStatement {
     }
   }
 
+  /**
+   * Downloads the http result set into the sink, as it is received, without buffering it whole in memory.
+   *
+   * @param query the query
+   * @param sink  stream to write the result to, not closed
+   * @return number of bytes written
+   * @throws IOException if the download or writing to the sink fails
+   */
+  public long downloadHttpResultSet(LensQuery query, OutputStream sink) throws IOException {
+    Response response = getHttpResultSet(query);
+    try {
+      if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+        throw new IOException("Failed to download resultset, status:" + response.getStatus());
+      }
+      long bytes = 0;
+      byte[] buffer = new byte[64 * 1024];
+      try (InputStream in = response.readEntity(InputStream.class)) {
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          sink.write(buffer, 0, read);
+          bytes += read;
+        }
+      }
+      sink.flush();
+      return bytes;
+    } finally {
+      response.close();
+    }
+  }
+
   /**
    * Kill.
    *
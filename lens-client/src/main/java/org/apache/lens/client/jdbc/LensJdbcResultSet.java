@@ -26,6 +26,7 @@ import java.sql.Date;
 import java.util.*;
 
 import org.apache.lens.api.query.*;
+import org.apache.lens.client.LensResultSetCursor;
 
 /**
  * The Class LensJdbcResultSet.
@@ -38,6 +39,9 @@ public class LensJdbcResultSet implements ResultSet {
   /** The iterators. */
   private final Iterator<ResultRow> iterators;
 
+  /** The cursor streaming the rows, when rows are not fetched upfront. */
+  private final LensResultSetCursor cursor;
+
   /** The current row. */
   private ResultRow currentRow;
 
@@ -68,6 +72,7 @@ public class LensJdbcResultSet implements ResultSet {
    */
   public LensJdbcResultSet(QueryResult result, QueryResultSetMetadata metadata, LensJdbcStatement statement) {
     this.result = result;
+    this.cursor = null;
     this.metadata = metadata;
     this.statement = statement;
     colNames = new ArrayList<String>();
@@ -83,6 +88,27 @@ public class LensJdbcResultSet implements ResultSet {
     }
   }
 
+  /**
+   * Instantiates a new lens jdbc result set, iterating rows as the cursor pulls them from the server.
+   *
+   * @param cursor    the cursor
+   * @param metadata  the metadata
+   * @param statement the statement
+   */
+  public LensJdbcResultSet(LensResultSetCursor cursor, QueryResultSetMetadata metadata, LensJdbcStatement statement) {
+    this.result = null;
+    this.cursor = cursor;
+    this.iterators = cursor;
+    this.metadata = metadata;
+    this.statement = statement;
+    colNames = new ArrayList<String>();
+    colTypes = new ArrayList<ResultColumnType>();
+    for (ResultColumn col : metadata.getColumns()) {
+      colNames.add(col.getName());
+      colTypes.add(col.getType());
+    }
+  }
+
   /*
    * (non-Javadoc)
    *
@@ -94,9 +120,13 @@ public class LensJdbcResultSet implements ResultSet {
       throw new SQLException("You cannot iterate after resultset is closed");
     }
 
-    if (iterators != null && iterators.hasNext()) {
-      currentRow = iterators.next();
-      return true;
+    try {
+      if (iterators != null && iterators.hasNext()) {
+        currentRow = iterators.next();
+        return true;
+      }
+    } catch (IllegalStateException e) {
+      throw new SQLException(e.getMessage(), e);
     }
     return false;
   }
@@ -109,6 +139,9 @@ public class LensJdbcResultSet implements ResultSet {
   @Override
   public void close() throws SQLException {
     closed = true;
+    if (cursor != null) {
+      cursor.close();
+    }
     statement.closeResultSet();
     statement.close();
   }
@@ -206,6 +239,11 @@ public class LensJdbcResultSet implements ResultSet {
    */
   @Override
   public short getShort(int i) throws SQLException {
+    ColumnarResultRows.Row row = getColumnarRow(i);
+    if (row != null && row.isIntegral(toZeroIndex(i))) {
+      wasnull |= row.isNull(toZeroIndex(i));
+      return (short) row.getLong(toZeroIndex(i));
+    }
     try {
       Object obj = getObject(i);
       if (Number.class.isInstance(obj)) {
@@ -238,6 +276,11 @@ public class LensJdbcResultSet implements ResultSet {
    */
   @Override
   public int getInt(int i) throws SQLException {
+    ColumnarResultRows.Row row = getColumnarRow(i);
+    if (row != null && row.isIntegral(toZeroIndex(i))) {
+      wasnull |= row.isNull(toZeroIndex(i));
+      return (int) row.getLong(toZeroIndex(i));
+    }
     try {
       Object obj = getObject(i);
       if (Number.class.isInstance(obj)) {
@@ -270,6 +313,11 @@ public class LensJdbcResultSet implements ResultSet {
    */
   @Override
   public long getLong(int i) throws SQLException {
+    ColumnarResultRows.Row row = getColumnarRow(i);
+    if (row != null && row.isIntegral(toZeroIndex(i))) {
+      wasnull |= row.isNull(toZeroIndex(i));
+      return row.getLong(toZeroIndex(i));
+    }
     try {
       Object obj = getObject(i);
       if (Number.class.isInstance(obj)) {
@@ -302,6 +350,11 @@ public class LensJdbcResultSet implements ResultSet {
    */
   @Override
   public float getFloat(int i) throws SQLException {
+    ColumnarResultRows.Row row = getColumnarRow(i);
+    if (row != null && row.isNumeric(toZeroIndex(i))) {
+      wasnull |= row.isNull(toZeroIndex(i));
+      return (float) row.getDouble(toZeroIndex(i));
+    }
     try {
       Object obj = getObject(i);
       if (Number.class.isInstance(obj)) {
@@ -334,6 +387,11 @@ public class LensJdbcResultSet implements ResultSet {
    */
   @Override
   public double getDouble(int i) throws SQLException {
+    ColumnarResultRows.Row row = getColumnarRow(i);
+    if (row != null && row.isNumeric(toZeroIndex(i))) {
+      wasnull |= row.isNull(toZeroIndex(i));
+      return row.getDouble(toZeroIndex(i));
+    }
     try {
       Object obj = getObject(i);
       if (Number.class.isInstance(obj)) {
@@ -482,6 +540,16 @@ public class LensJdbcResultSet implements ResultSet {
     return obj;
   }
 
+  /**
+   * Current row if it is of a columnar result, whose numeric values can be read without boxing. null otherwise.
+   */
+  private ColumnarResultRows.Row getColumnarRow(int index) throws SQLException {
+    if (closed || !(currentRow instanceof ColumnarResultRows.Row) || index > currentRow.getValues().size()) {
+      return null;
+    }
+    return (ColumnarResultRows.Row) currentRow;
+  }
+
   /*
    * (non-Javadoc)
    *
@@ -812,12 +880,17 @@ public class LensJdbcResultSet implements ResultSet {
 
   @Override
   public int getFetchSize() throws SQLException {
-    throw new SQLException("Operation not supported");
+    return cursor == null ? 0 : cursor.getFetchSize();
   }
 
   @Override
   public void setFetchSize(int i) throws SQLException {
-    throw new SQLException("Operation not supported");
+    if (i < 0) {
+      throw new SQLException("Fetch size cannot be negative: " + i);
+    }
+    if (cursor != null) {
+      cursor.setFetchSize(i);
+    }
   }
 
   /*
@@ -20,6 +20,8 @@ package org.apache.lens.client.jdbc;
 
 import java.sql.*;
 
+import org.apache.lens.api.query.QueryResultSetMetadata;
+import org.apache.lens.client.LensResultSetCursor;
 import org.apache.lens.client.LensStatement;
 import org.apache.lens.client.exceptions.LensAPIException;
 
@@ -40,6 +42,9 @@ public class LensJdbcStatement implements Statement {
   /** The closed. */
   private boolean closed;
 
+  /** Rows fetched in a page of results, 0 for the client default. */
+  private int fetchSize;
+
   /**
    * Instantiates a new lens jdbc statement.
    *
@@ -62,7 +67,20 @@ public class LensJdbcStatement implements Statement {
     } catch (LensAPIException e) {
       log.error("Execution Failed for Statement:{}", s, e);
     }
-    return new LensJdbcResultSet(statement.getResultSet(), statement.getResultSetMetaData(), this);
+    return createResultSet();
+  }
+
+  /**
+   * Creates a result set streaming the rows of the query from the server, a page of {@link #getFetchSize()} rows at
+   * a time.
+   *
+   * @return the result set
+   */
+  private LensJdbcResultSet createResultSet() {
+    QueryResultSetMetadata metadata = statement.getResultSetMetaData();
+    LensResultSetCursor cursor = fetchSize > 0
+      ? statement.getResultSetCursor(statement.getQuery(), fetchSize) : statement.getResultSetCursor();
+    return new LensJdbcResultSet(cursor, metadata, this);
   }
 
   /*
@@ -127,7 +145,7 @@ public class LensJdbcStatement implements Statement {
     if (closed) {
       throw new SQLException("Cannot get resultset for closed statements");
     }
-    return new LensJdbcResultSet(statement.getResultSet(), statement.getResultSetMetaData(), this);
+    return createResultSet();
   }
 
   @Override
@@ -220,13 +238,15 @@ public class LensJdbcStatement implements Statement {
 
   @Override
   public void setFetchSize(int i) throws SQLException {
-    throw new SQLException("Operation not supported!!!!");
-
+    if (i < 0) {
+      throw new SQLException("Fetch size cannot be negative: " + i);
+    }
+    this.fetchSize = i;
   }
 
   @Override
   public int getFetchSize() throws SQLException {
-    throw new SQLException("Operation not supported!!!!");
+    return fetchSize;
   }
 
   /*
@@ -0,0 +1,227 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.client;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lens.api.query.*;
+import org.apache.lens.client.jdbc.LensJdbcResultSet;
+import org.apache.lens.client.jdbc.LensJdbcStatement;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.Test;
+
+public class TestLensResultSetCursor {
+
+  /** Time to wait for the fetcher to reach a steady state. */
+  private static final long SETTLE_MILLIS = 200;
+
+  /**
+   * Serves pages of a result of consecutive integers, recording the pages asked for, and failing pages from an
+   * index on when asked to.
+   */
+  private static class PageServer implements Answer<QueryResult> {
+    private final int totalRows;
+    private final long failFrom;
+    private final List<long[]> requests = Collections.synchronizedList(new ArrayList<long[]>());
+
+    PageServer(int totalRows) {
+      this(totalRows, Long.MAX_VALUE);
+    }
+
+    PageServer(int totalRows, long failFrom) {
+      this.totalRows = totalRows;
+      this.failFrom = failFrom;
+    }
+
+    @Override
+    public QueryResult answer(InvocationOnMock invocation) {
+      long fromIndex = (Long) invocation.getArguments()[1];
+      int fetchSize = (Integer) invocation.getArguments()[2];
+      requests.add(new long[]{fromIndex, fetchSize});
+      if (fromIndex >= failFrom) {
+        throw new IllegalStateException("Failed to get resultset, cause:server down");
+      }
+      List<ResultRow> rows = new ArrayList<ResultRow>();
+      for (long i = fromIndex; i < totalRows && (fetchSize <= 0 || i < fromIndex + fetchSize); i++) {
+        rows.add(new ResultRow(Collections.<Object>singletonList(i)));
+      }
+      return new InMemoryQueryResult(rows);
+    }
+
+    int getRequestCount() {
+      return requests.size();
+    }
+
+    long[] getRequest(int i) {
+      return requests.get(i);
+    }
+
+    /** Waits till the fetcher stops asking for pages. */
+    int awaitSettled() throws InterruptedException {
+      int count;
+      do {
+        count = getRequestCount();
+        Thread.sleep(SETTLE_MILLIS);
+      } while (count != getRequestCount());
+      return count;
+    }
+  }
+
+  private LensStatement mockStatement(PageServer server) {
+    LensStatement statement = mock(LensStatement.class);
+    when(statement.getResultSet(any(LensQuery.class), anyLong(), anyInt())).thenAnswer(server);
+    return statement;
+  }
+
+  private LensResultSetCursor newCursor(PageServer server, int fetchSize, int prefetchPages) {
+    return new LensResultSetCursor(mockStatement(server), mock(LensQuery.class), fetchSize, prefetchPages);
+  }
+
+  private static long valueOf(ResultRow row) {
+    return (Long) row.getValues().get(0);
+  }
+
+  @Test
+  public void testMultiPageIteration() throws Exception {
+    PageServer server = new PageServer(10);
+    LensResultSetCursor cursor = newCursor(server, 3, 2);
+    for (long i = 0; i < 10; i++) {
+      assertTrue(cursor.hasNext());
+      assertEquals(valueOf(cursor.next()), i);
+    }
+    assertFalse(cursor.hasNext());
+    cursor.close();
+
+    // pages of 3 rows, and the empty page past the end
+    assertEquals(server.awaitSettled(), 5);
+    for (int i = 0; i < 5; i++) {
+      assertEquals(server.getRequest(i)[0], Math.min(3 * i, 10));
+      assertEquals(server.getRequest(i)[1], 3);
+    }
+  }
+
+  @Test
+  public void testPrefetchHandOff() throws Exception {
+    PageServer server = new PageServer(100);
+    LensResultSetCursor cursor = newCursor(server, 1, 2);
+    try {
+      // two pages queued, and the fetcher blocked handing off the third
+      assertEquals(server.awaitSettled(), 3);
+      assertEquals(valueOf(cursor.next()), 0);
+      // taking a page lets the third in and the fetcher block on the fourth
+      assertEquals(server.awaitSettled(), 4);
+      assertEquals(valueOf(cursor.next()), 1);
+      assertEquals(valueOf(cursor.next()), 2);
+      assertEquals(server.awaitSettled(), 6);
+    } finally {
+      cursor.close();
+    }
+  }
+
+  @Test
+  public void testCloseMidPrefetch() throws Exception {
+    PageServer server = new PageServer(100);
+    LensResultSetCursor cursor = newCursor(server, 1, 1);
+    assertEquals(valueOf(cursor.next()), 0);
+    int fetched = server.awaitSettled();
+    cursor.close();
+    assertFalse(cursor.hasNext());
+    // the blocked fetcher is stopped, instead of fetching the pages left
+    assertEquals(server.awaitSettled(), fetched);
+  }
+
+  @Test
+  public void testFetchFailure() throws Exception {
+    PageServer server = new PageServer(100, 4);
+    LensResultSetCursor cursor = newCursor(server, 2, 2);
+    try {
+      for (long i = 0; i < 4; i++) {
+        assertEquals(valueOf(cursor.next()), i);
+      }
+      try {
+        cursor.hasNext();
+        fail("Expected failure of the fetcher to surface");
+      } catch (IllegalStateException e) {
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertTrue(e.getMessage().contains("server down"));
+      }
+      assertFalse(cursor.hasNext());
+    } finally {
+      cursor.close();
+    }
+  }
+
+  @Test
+  public void testJdbcFetchSize() throws Exception {
+    PageServer server = new PageServer(20);
+    LensResultSetCursor cursor = newCursor(server, 2, 1);
+    QueryResultSetMetadata metadata =
+      new QueryResultSetMetadata(Collections.singletonList(new ResultColumn("value", ResultColumnType.BIGINT)));
+    LensJdbcResultSet resultSet = new LensJdbcResultSet(cursor, metadata, mock(LensJdbcStatement.class));
+    assertEquals(resultSet.getFetchSize(), 2);
+    try {
+      resultSet.setFetchSize(-1);
+      fail("Expected negative fetch size to be rejected");
+    } catch (SQLException e) {
+      assertEquals(resultSet.getFetchSize(), 2);
+    }
+
+    assertTrue(resultSet.next());
+    assertEquals(resultSet.getLong(1), 0);
+    resultSet.setFetchSize(5);
+    assertEquals(resultSet.getFetchSize(), 5);
+    for (long i = 1; i < 20; i++) {
+      assertTrue(resultSet.next());
+      assertEquals(resultSet.getLong(1), i);
+    }
+    assertFalse(resultSet.next());
+    resultSet.close();
+
+    // pages fetched ahead keep the old size, later pages are of the new size
+    int requests = server.awaitSettled();
+    boolean resized = false;
+    for (int i = 0; i < requests; i++) {
+      long[] request = server.getRequest(i);
+      if (resized) {
+        assertEquals(request[1], 5);
+      }
+      resized = request[1] == 5;
+      if (i > 0) {
+        long[] previous = server.getRequest(i - 1);
+        assertEquals(request[0], Math.min(previous[0] + previous[1], 20));
+      }
+    }
+    assertTrue(resized);
+  }
+}
@@ -23,7 +23,10 @@ import static org.apache.lens.cube.metadata.MetastoreUtil.getFactOrDimtableStora
 
 import java.text.ParseException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.lens.cube.metadata.Storage.LatestInfo;
 import org.apache.lens.cube.metadata.Storage.LatestPartColumnInfo;
@@ -36,14 +39,19 @@ import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.metastore.TableType;
 import org.apache.hadoop.hive.metastore.api.FieldSchema;
 import org.apache.hadoop.hive.metastore.api.InvalidOperationException;
+import org.apache.hadoop.hive.metastore.api.hive_metastoreConstants;
 import org.apache.hadoop.hive.ql.io.HiveFileFormatUtils;
 import org.apache.hadoop.hive.ql.metadata.*;
 import org.apache.hadoop.hive.ql.session.SessionState;
+import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.hive.serde2.MetadataTypedColumnsetSerDe;
+import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
 import org.apache.thrift.TException;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -53,11 +61,28 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class CubeMetastoreClient {
   private final HiveConf config;
+  private final String dbName;
   private final boolean enableCaching;
-
-  private CubeMetastoreClient(HiveConf conf) {
+  private final int bulkFetchBatchSize;
+  // pool fetching batches of tables from the metastore. Threads are started on first bulk fetch and kept, along with
+  // their metastore connections
+  private final ExecutorService bulkFetchPool;
+  // warms up caches and reloads tables changed in the metastore, if enabled
+  private ScheduledExecutorService cacheRefresher;
+  // Held for write while the cache refresh replaces changed tables and evicts what is built from them, and for read
+  // while loading into the caches. Always taken before any other lock of this client.
+  private final ReadWriteLock cacheLock = new ReentrantReadWriteLock();
+
+  private CubeMetastoreClient(HiveConf conf, String dbName) {
     this.config = new HiveConf(conf);
+    this.dbName = dbName;
     this.enableCaching = conf.getBoolean(MetastoreConstants.METASTORE_ENABLE_CACHING, true);
+    this.bulkFetchBatchSize = conf.getInt(MetastoreConstants.METASTORE_BULK_FETCH_BATCH_SIZE,
+      MetastoreConstants.DEFAULT_METASTORE_BULK_FETCH_BATCH_SIZE);
+    int bulkFetchThreads = conf.getInt(MetastoreConstants.METASTORE_BULK_FETCH_THREADS,
+      MetastoreConstants.DEFAULT_METASTORE_BULK_FETCH_THREADS);
+    this.bulkFetchPool = Executors.newFixedThreadPool(bulkFetchThreads,
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("CubeMetastoreBulkFetch-" + dbName + "-%d").build());
   }
 
   // map from table name to Table
@@ -80,11 +105,52 @@ public class CubeMetastoreClient {
   private volatile boolean allStoragesPopulated = false;
   // Partition cache. Inner class since it logically belongs here
   PartitionTimelineCache partitionTimelineCache = new PartitionTimelineCache();
+  // Partition statistics cache, kept along with the partition cache
+  PartitionStatsCache partitionStatsCache = new PartitionStatsCache();
+  // Held while loading either partition cache, as both are loaded from the same scan of all partitions
+  private final Object partitionCacheLoadLock = new Object();
   // dbname to client mapping
-  private static final Map<String, CubeMetastoreClient> CLIENT_MAPPING = Maps.newConcurrentMap();
+  private static final ConcurrentMap<String, CubeMetastoreClient> CLIENT_MAPPING = Maps.newConcurrentMap();
   private SchemaGraph schemaGraph;
   // Set of all storage table names for which latest partitions exist
   private final Set<String> latestLookupCache = Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  // Incremented on every change done through this client to tables or partitions
+  private final AtomicLong version = new AtomicLong();
+  // Version of the last change to each table, by table name
+  private final Map<String, Long> tableVersions = Maps.newConcurrentMap();
+  // Version of the last change which can affect any table
+  private volatile long allTablesVersion;
+
+  /**
+   * Version of the metastore as seen by this client. The version changes whenever tables or partitions are created,
+   * altered or dropped through this client, or the table cache is cleared.
+   *
+   * @return the current version
+   */
+  public long getVersion() {
+    return version.get();
+  }
+
+  /**
+   * Version of the last change to the table or its partitions done through this client. Creating tables or clearing
+   * the table cache counts as a change to every table. Anything derived from a set of tables can be cached with the
+   * {@link #getVersion()} read before deriving it, and treated as stale once any of the tables has a later version.
+   *
+   * @param tableName the hive table name
+   * @return version of the last change to the table
+   */
+  public long getVersion(String tableName) {
+    Long tableVersion = tableVersions.get(tableName.trim().toLowerCase());
+    return tableVersion == null ? allTablesVersion : Math.max(tableVersion, allTablesVersion);
+  }
+
+  private void metastoreChanged() {
+    allTablesVersion = version.incrementAndGet();
+  }
+
+  private void tableChanged(String tableName) {
+    tableVersions.put(tableName.trim().toLowerCase(), version.incrementAndGet());
+  }
 
   /** extract storage name from fact and storage table name. String operation */
   private String extractStorageName(CubeFactTable fact, String storageTableName) throws LensException {
@@ -133,6 +199,7 @@ public class CubeMetastoreClient {
   /** clear hive table cache */
   public void clearHiveTableCache() {
     allHiveTables.clear();
+    metastoreChanged();
   }
 
   public List<PartitionTimeline> getTimelines(String factName, String storage, String updatePeriodStr,
@@ -184,6 +251,7 @@ public class CubeMetastoreClient {
     partitionsToAlter.addAll(partitions);
     partitionsToAlter.addAll(getAllLatestPartsEquivalentTo(factOrDimtableName, storageName, partitions));
     getStorage(storageName).updatePartitions(getClient(), factOrDimtableName, partitionsToAlter);
+    tableChanged(getFactOrDimtableStorageTableName(factOrDimtableName, storageName));
   }
 
   private List<Partition> getAllLatestPartsEquivalentTo(String factOrDimtableName, String storageName,
@@ -284,23 +352,28 @@ public class CubeMetastoreClient {
       // SUSPEND CHECKSTYLE CHECK DoubleCheckedLockingCheck
       String storageTableName = MetastoreUtil.getStorageTableName(fact, Storage.getPrefix(storage));
       if (get(storageTableName) == null) {
-        synchronized (this) {
-          if (get(storageTableName) == null) {
-            Table storageTable = getTable(storageTableName);
-            if ("true".equalsIgnoreCase(storageTable.getParameters().get(
-              MetastoreUtil.getPartitionTimelineCachePresenceKey()))) {
-              try {
-                loadTimelinesFromTableProperties(fact, storage);
-              } catch (Exception e) {
-                // Ideally this should never come. But since we have another source,
-                // let's piggyback on that for loading timeline
-                log.error("Error while loading timelines from table properties.", e);
+        cacheLock.readLock().lock();
+        try {
+          synchronized (partitionCacheLoadLock) {
+            if (get(storageTableName) == null) {
+              Table storageTable = getTable(storageTableName);
+              if ("true".equalsIgnoreCase(storageTable.getParameters().get(
+                MetastoreUtil.getPartitionTimelineCachePresenceKey()))) {
+                try {
+                  loadTimelinesFromTableProperties(fact, storage);
+                } catch (Exception e) {
+                  // Ideally this should never come. But since we have another source,
+                  // let's piggyback on that for loading timeline
+                  log.error("Error while loading timelines from table properties.", e);
+                  loadTimelinesFromAllPartitions(fact, storage);
+                }
+              } else {
                 loadTimelinesFromAllPartitions(fact, storage);
               }
-            } else {
-              loadTimelinesFromAllPartitions(fact, storage);
             }
           }
+        } finally {
+          cacheLock.readLock().unlock();
         }
         log.info("timeline for {} is: {}", storageTableName, get(storageTableName));
       }
@@ -311,6 +384,7 @@ public class CubeMetastoreClient {
 
     private void loadTimelinesFromAllPartitions(String fact, String storage) throws HiveException, LensException {
       // Not found in table properties either, compute from all partitions of the fact-storage table.
+      // Partition statistics not loaded yet are computed from the same partitions.
       // First make sure all combinations of update period and partition column have an entry even
       // if no partitions exist
       String storageTableName = MetastoreUtil.getStorageTableName(fact, Storage.getPrefix(storage));
@@ -327,7 +401,11 @@ public class CubeMetastoreClient {
       // Then add all existing partitions for batch addition in respective timelines.
       List<String> timeParts = getTimePartColNamesOfTable(storageTable);
       List<FieldSchema> partCols = storageTable.getPartCols();
-      for (Partition partition : getPartitionsByFilter(storageTableName, null)) {
+      List<Partition> partitions = getPartitionsByFilter(storageTableName, null);
+      if (partitionStatsCache.get(storageTableName) == null) {
+        partitionStatsCache.put(storageTableName, partitionStatsCache.loadStats(storageTableName, partitions));
+      }
+      for (Partition partition : partitions) {
         UpdatePeriod period = deduceUpdatePeriod(partition);
         List<String> values = partition.getValues();
         if (values.contains(StorageConstants.LATEST_PARTITION_VALUE)) {
@@ -343,7 +421,7 @@ public class CubeMetastoreClient {
         }
       }
       // commit all batch addition for the storage table,
-      // which will in-turn commit all batch additions in all it's timelines.
+      // which will in-turn commit all batch additions in all it's timelines, and store them with the statistics.
       commitAllBatchAdditions(storageTableName);
     }
 
@@ -428,6 +506,13 @@ public class CubeMetastoreClient {
         period, partSpec));
     }
 
+    /** ranges of existing partitions within the given range in the appropriate timeline. empty if it doesn't exist */
+    public TimePartitionRangeList existingRanges(String name, String storage, UpdatePeriod period, String partCol,
+      TimePartitionRange within) throws HiveException, LensException {
+      PartitionTimeline timeline = get(name, storage, period, partCol);
+      return timeline == null ? new TimePartitionRangeList() : timeline.existingRanges(within);
+    }
+
     /**
      * returns the timeline corresponding to fact-storage table, updatePeriod, partCol. null if doesn't exist, which
      * would only happen if the combination is not valid/supported
@@ -465,9 +550,136 @@ public class CubeMetastoreClient {
     }
   }
 
+  /**
+   * In-memory {@link PartitionStats} of each storage table and update period, loaded lazily for each storage table.
+   * Also stored in properties of the storage table along with the partition timelines, so that they are computed
+   * from all partitions of a storage table only once.
+   */
+  class PartitionStatsCache extends CaseInsensitiveStringHashMap<// storage table
+    Map<UpdatePeriod, PartitionStats>> {
+
+    /**
+     * get statistics of all update periods of the fact storage table. If not already loaded in memory, they are loaded
+     * from table properties. If not found there, they are computed from all partitions along with partition timelines
+     * not loaded yet, and written back to table properties.
+     *
+     * @param fact
+     * @param storage
+     * @return
+     * @throws HiveException
+     * @throws LensException
+     */
+    public Map<UpdatePeriod, PartitionStats> getStats(String fact, String storage)
+      throws HiveException, LensException {
+      // SUSPEND CHECKSTYLE CHECK DoubleCheckedLockingCheck
+      String storageTableName = MetastoreUtil.getStorageTableName(fact, Storage.getPrefix(storage));
+      if (get(storageTableName) == null) {
+        cacheLock.readLock().lock();
+        try {
+          synchronized (partitionCacheLoadLock) {
+            if (get(storageTableName) == null) {
+              Table storageTable = getTable(storageTableName);
+              if ("true".equalsIgnoreCase(storageTable.getParameters().get(
+                MetastoreUtil.getPartitionStatsPresenceKey()))) {
+                put(storageTableName, loadStatsFromTableProperties(storageTable));
+              } else {
+                // loading timelines from all partitions loads statistics as well
+                partitionTimelineCache.get(fact, storage);
+              }
+            }
+            if (get(storageTableName) == null) {
+              // timelines were loaded without going through partitions
+              put(storageTableName, loadStats(storageTableName, getPartitionsByFilter(storageTableName, null)));
+              Table storageTable = getTable(storageTableName);
+              try {
+                updateTableParams(storageTableName, storageTable.getParameters());
+                alterHiveTable(storageTableName, storageTable);
+              } catch (HiveException e) {
+                log.warn("Could not store partition statistics of {} in table properties", storageTableName, e);
+              }
+            }
+          }
+        } finally {
+          cacheLock.readLock().unlock();
+        }
+      }
+      return get(storageTableName);
+      // RESUME CHECKSTYLE CHECK DoubleCheckedLockingCheck
+    }
+
+    private Map<UpdatePeriod, PartitionStats> loadStatsFromTableProperties(Table storageTable) {
+      Map<UpdatePeriod, PartitionStats> stats = new ConcurrentHashMap<UpdatePeriod, PartitionStats>();
+      for (UpdatePeriod updatePeriod : UpdatePeriod.values()) {
+        PartitionStats periodStats = PartitionStats.parse(storageTable.getParameters().get(
+          MetastoreUtil.getPartitionStatsKey(updatePeriod)));
+        if (periodStats != null) {
+          stats.put(updatePeriod, periodStats);
+        }
+      }
+      return stats;
+    }
+
+    /** compute statistics of the storage table from all its partitions */
+    private Map<UpdatePeriod, PartitionStats> loadStats(String storageTableName, List<Partition> partitions) {
+      log.info("loading partition statistics from all partitions: {}", storageTableName);
+      Map<UpdatePeriod, PartitionStats> stats = new ConcurrentHashMap<UpdatePeriod, PartitionStats>();
+      for (Partition partition : partitions) {
+        if (partition.getParameters().get(MetastoreConstants.PARTITION_UPDATE_PERIOD) != null
+          && !partition.getValues().contains(StorageConstants.LATEST_PARTITION_VALUE)) {
+          ensureEntry(stats, deduceUpdatePeriod(partition)).add(partition);
+        }
+      }
+      return stats;
+    }
+
+    private PartitionStats ensureEntry(Map<UpdatePeriod, PartitionStats> stats, UpdatePeriod updatePeriod) {
+      synchronized (stats) {
+        if (stats.get(updatePeriod) == null) {
+          stats.put(updatePeriod, new PartitionStats());
+        }
+        return stats.get(updatePeriod);
+      }
+    }
+
+    /** put statistics of the storage table in the given table params, if they are loaded */
+    public void updateTableParams(String storageTableName, Map<String, String> params) {
+      Map<UpdatePeriod, PartitionStats> stats = get(storageTableName);
+      if (stats != null) {
+        for (Map.Entry<UpdatePeriod, PartitionStats> entry : stats.entrySet()) {
+          params.put(MetastoreUtil.getPartitionStatsKey(entry.getKey()), entry.getValue().toString());
+        }
+        params.put(MetastoreUtil.getPartitionStatsPresenceKey(), "true");
+      }
+    }
+
+    /** update statistics for addition of partitions */
+    public void updateForAddition(String fact, String storage, UpdatePeriod updatePeriod, List<Partition> partitions)
+      throws HiveException, LensException {
+      PartitionStats stats = ensureEntry(getStats(fact, storage), updatePeriod);
+      for (Partition partition : partitions) {
+        stats.add(partition);
+      }
+    }
+
+    /** update statistics for deletion of a partition, returns true if the partition had statistics */
+    public boolean updateForDeletion(String fact, String storage, UpdatePeriod updatePeriod, Partition partition)
+      throws HiveException, LensException {
+      PartitionStats stats = getStats(fact, storage).get(updatePeriod);
+      return stats != null && stats.remove(partition);
+    }
+
+    /** average size in bytes of a partition of the storage table and update period, -1 if not known */
+    public long getAverageSize(String fact, String storage, UpdatePeriod updatePeriod)
+      throws HiveException, LensException {
+      PartitionStats stats = getStats(fact, storage).get(updatePeriod);
+      return stats == null ? -1 : stats.getAverageSize();
+    }
+  }
+
 
   /**
-   * Get the instance of {@link CubeMetastoreClient} corresponding to {@link HiveConf}
+   * Get the instance of {@link CubeMetastoreClient} corresponding to {@link HiveConf}. The first instance of a
+   * database warms up its caches in background, if enabled.
    *
    * @param conf
    * @return CubeMetastoreClient
@@ -475,10 +687,212 @@ public class CubeMetastoreClient {
    */
   public static CubeMetastoreClient getInstance(HiveConf conf) throws HiveException {
     String currentdb = SessionState.get().getCurrentDatabase();
-    if (CLIENT_MAPPING.get(currentdb) == null) {
-      CLIENT_MAPPING.put(currentdb, new CubeMetastoreClient(conf));
+    CubeMetastoreClient client = CLIENT_MAPPING.get(currentdb);
+    if (client == null) {
+      CubeMetastoreClient newClient = new CubeMetastoreClient(conf, currentdb);
+      client = CLIENT_MAPPING.putIfAbsent(currentdb, newClient);
+      if (client == null) {
+        client = newClient;
+        client.startCacheRefresher(conf.getBoolean(MetastoreConstants.METASTORE_ENABLE_WARMUP,
+          MetastoreConstants.DEFAULT_METASTORE_ENABLE_WARMUP));
+      } else {
+        newClient.bulkFetchPool.shutdown();
+      }
+    }
+    return client;
+  }
+
+  /**
+   * Loads all tables of the database in bulk and builds the caches of all cube entities from them, so that first
+   * queries don't pay a metastore round trip per table. Does nothing if caching is disabled. Failures are only
+   * logged, caches get populated lazily in that case.
+   */
+  public void warmUp() {
+    if (!enableCaching) {
+      return;
+    }
+    long startTime = System.currentTimeMillis();
+    try {
+      getAllHiveTables();
+      getAllStorages();
+      getAllCubes();
+      getAllDimensions();
+      getAllDimensionTables();
+      getAllFacts();
+      log.info("Warmed up metastore caches of {} with {} tables in {} millis", dbName, allHiveTables.size(),
+        System.currentTimeMillis() - startTime);
+    } catch (HiveException | RuntimeException e) {
+      log.warn("Could not warm up metastore caches of {}", dbName, e);
+    }
+  }
+
+  /**
+   * Reloads the cached tables changed in the metastore since they were cached, detected by their last DDL time, and
+   * evicts the cube entities built from them. Tables created or dropped bypassing this client are picked up as well.
+   *
+   * @throws HiveException
+   */
+  public void refreshChangedTables() throws HiveException {
+    if (!allTablesPopulated) {
+      // tables are fetched from the metastore anyway on next access
+      return;
+    }
+    // tables cached after this may be missing in the fetched tables
+    Set<String> cachedBefore = new HashSet<>(allHiveTables.keySet());
+    Map<String, Table> fetched = new HashMap<>();
+    for (Table tbl : getHiveTables(getClient().getAllTables(dbName))) {
+      fetched.put(tbl.getTableName().toLowerCase(), tbl);
+    }
+    Set<String> changed = new HashSet<>();
+    cacheLock.writeLock().lock();
+    try {
+      for (Map.Entry<String, Table> entry : fetched.entrySet()) {
+        Table cached = allHiveTables.get(entry.getKey());
+        if (cached == null || getLastDdlTime(entry.getValue()) > getLastDdlTime(cached)) {
+          changed.add(entry.getKey());
+        }
+      }
+      for (String tableName : cachedBefore) {
+        if (!fetched.containsKey(tableName)) {
+          changed.add(tableName);
+        }
+      }
+      if (changed.isEmpty()) {
+        return;
+      }
+      boolean cubeChanged = false;
+      boolean tablesAddedOrDropped = false;
+      for (String tableName : changed) {
+        Table tbl = fetched.get(tableName);
+        if (tbl == null) {
+          allHiveTables.remove(tableName);
+        } else {
+          tablesAddedOrDropped |= allHiveTables.put(tableName, tbl) == null;
+        }
+        tablesAddedOrDropped |= tbl == null;
+        tableChanged(tableName);
+        cubeChanged |= allCubes.containsKey(tableName) || (tbl != null && isCube(tbl));
+        allStorages.remove(tableName);
+        allCubes.remove(tableName);
+        allDims.remove(tableName);
+        allDimTables.remove(tableName);
+        allFactTables.remove(tableName);
+        // partition timelines and statistics of storage tables are kept in table properties, reloaded on next access
+        partitionTimelineCache.remove(tableName);
+        partitionStatsCache.remove(tableName);
+        latestLookupCache.remove(tableName);
+      }
+      if (cubeChanged) {
+        // derived cubes hold their parent cube
+        allCubes.clear();
+      }
+      allStoragesPopulated = false;
+      allCubesPopulated = false;
+      allDimensionsPopulated = false;
+      allDimTablesPopulated = false;
+      allFactTablesPopulated = false;
+      if (tablesAddedOrDropped) {
+        // a new or dropped table can change what is derived from other tables, like candidate facts of a cube
+        metastoreChanged();
+      }
+    } finally {
+      cacheLock.writeLock().unlock();
+    }
+    log.info("Reloaded tables changed in metastore for {}: {}", dbName, changed);
+  }
+
+  private static long getLastDdlTime(Table tbl) {
+    String ddlTime = tbl.getParameters().get(hive_metastoreConstants.DDL_TIME);
+    return StringUtils.isNumeric(ddlTime) && !ddlTime.isEmpty() ? Long.parseLong(ddlTime) : 0;
+  }
+
+  /** warms up the caches and schedules their refresh in background, as enabled */
+  private void startCacheRefresher(boolean warmUp) {
+    long interval = config.getLong(MetastoreConstants.METASTORE_CACHE_REFRESH_INTERVAL_SECS,
+      MetastoreConstants.DEFAULT_METASTORE_CACHE_REFRESH_INTERVAL_SECS);
+    if (!enableCaching || (!warmUp && interval <= 0)) {
+      return;
+    }
+    cacheRefresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true)
+      .setNameFormat("CubeMetastoreRefresher-" + dbName + "-%d").build());
+    if (warmUp) {
+      cacheRefresher.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            warmUp();
+          } finally {
+            Hive.closeCurrent();
+          }
+        }
+      });
+    }
+    if (interval > 0) {
+      cacheRefresher.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            refreshChangedTables();
+          } catch (Exception e) {
+            log.warn("Could not refresh metastore caches of {}", dbName, e);
+          } finally {
+            Hive.closeCurrent();
+          }
+        }
+      }, interval, interval, TimeUnit.SECONDS);
+      log.info("Scheduled refresh of metastore caches of {} every {} seconds", dbName, interval);
+    }
+  }
+
+  /**
+   * Fetches the given tables of the database in batches, fetched in parallel on the bulk fetch pool through the
+   * metastore client of each pool thread. Tables dropped meanwhile are left out.
+   */
+  private List<Table> getHiveTables(List<String> tableNames) throws HiveException {
+    List<Future<List<Table>>> batches = new ArrayList<>();
+    for (final List<String> batch : Lists.partition(tableNames, bulkFetchBatchSize)) {
+      batches.add(bulkFetchPool.submit(new Callable<List<Table>>() {
+        @Override
+        public List<Table> call() throws Exception {
+          List<Table> tables = new ArrayList<>(batch.size());
+          for (org.apache.hadoop.hive.metastore.api.Table tTable
+            : getClient().getMSC().getTableObjectsByName(dbName, batch)) {
+            tables.add(toTable(tTable));
+          }
+          return tables;
+        }
+      }));
     }
-    return CLIENT_MAPPING.get(currentdb);
+    List<Table> tables = new ArrayList<>(tableNames.size());
+    try {
+      for (Future<List<Table>> batch : batches) {
+        tables.addAll(batch.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new HiveException("Interrupted while fetching tables of " + dbName, e);
+    } catch (ExecutionException e) {
+      throw new HiveException("Could not fetch tables of " + dbName, e.getCause());
+    }
+    return tables;
+  }
+
+  /** Wraps a metastore table the way {@link Hive#getTable(String)} does */
+  private static Table toTable(org.apache.hadoop.hive.metastore.api.Table tTable) {
+    if (!TableType.VIRTUAL_VIEW.toString().equals(tTable.getTableType())) {
+      // Fix the non-printable chars
+      Map<String, String> parameters = tTable.getSd().getParameters();
+      String sf = parameters == null ? null : parameters.get(serdeConstants.SERIALIZATION_FORMAT);
+      if (sf != null && sf.length() == 1 && sf.charAt(0) < 10) {
+        parameters.put(serdeConstants.SERIALIZATION_FORMAT, Integer.toString(sf.charAt(0)));
+      }
+      // Use LazySimpleSerDe for MetadataTypedColumnsetSerDe.
+      if (MetadataTypedColumnsetSerDe.class.getName().equals(tTable.getSd().getSerdeInfo().getSerializationLib())
+        && tTable.getSd().getColsSize() > 0 && tTable.getSd().getCols().get(0).getType().indexOf('<') == -1) {
+        tTable.getSd().getSerdeInfo().setSerializationLib(LazySimpleSerDe.class.getName());
+      }
+    }
+    return new Table(tTable);
   }
 
   private Hive getClient() throws HiveException {
@@ -510,6 +924,7 @@ public class CubeMetastoreClient {
         alterHiveTable(tbl.getTableName(), tbl);
       } else {
         getClient().createTable(tbl);
+        metastoreChanged();
         // do get to update cache
         getTable(tbl.getTableName());
       }
@@ -525,6 +940,7 @@ public class CubeMetastoreClient {
       tbl.getTTable().getSd().setCols(table.getColumns());
       tbl.getTTable().getParameters().putAll(table.getProperties());
       getClient().createTable(tbl);
+      metastoreChanged();
       // do get to update cache
       getTable(tbl.getTableName());
       return tbl;
@@ -796,8 +1212,13 @@ public class CubeMetastoreClient {
     for (Map.Entry<String, Map<UpdatePeriod, List<StoragePartitionDesc>>> group : groupPartitionDescs(
       storagePartitionDescs).entrySet()) {
       String factOrDimtable = group.getKey();
-      for (Map.Entry<UpdatePeriod, List<StoragePartitionDesc>> entry : group.getValue().entrySet()) {
-        partsAdded.addAll(addPartitions(factOrDimtable, storageName, entry.getKey(), entry.getValue()));
+      try {
+        for (Map.Entry<UpdatePeriod, List<StoragePartitionDesc>> entry : group.getValue().entrySet()) {
+          partsAdded.addAll(addPartitions(factOrDimtable, storageName, entry.getKey(), entry.getValue()));
+        }
+      } finally {
+        // after the change, so that anything derived while adding is treated as stale
+        tableChanged(getFactOrDimtableStorageTableName(factOrDimtable, storageName));
       }
     }
     return partsAdded;
@@ -830,9 +1251,12 @@ public class CubeMetastoreClient {
       // first update in memory, then add to hive table's partitions. delete is reverse.
       partitionTimelineCache.updateForAddition(factOrDimTable, storageName, updatePeriod,
         getTimePartSpecs(storagePartitionDescs));
+      // statistics are loaded before partitions are added, so that the added ones are not counted twice
+      partitionStatsCache.getStats(factOrDimTable, storageName);
       // Adding partition in fact table.
       List<Partition> partsAdded =
         getStorage(storageName).addPartitions(getClient(), factOrDimTable, updatePeriod, storagePartitionDescs, null);
+      partitionStatsCache.updateForAddition(factOrDimTable, storageName, updatePeriod, partsAdded);
       // update hive table
       alterTablePartitionCache(MetastoreUtil.getStorageTableName(factOrDimTable, Storage.getPrefix(storageName)));
       return partsAdded;
@@ -884,6 +1308,7 @@ public class CubeMetastoreClient {
           entry.getValue().updateTableParams(table);
         }
       }
+      partitionStatsCache.updateTableParams(storageTableName, params);
       params.put(MetastoreUtil.getPartitionTimelineCachePresenceKey(), "true");
       alterHiveTable(storageTableName, table);
     }
@@ -1026,6 +1451,16 @@ public class CubeMetastoreClient {
     Map<String, String> nonTimePartSpec, UpdatePeriod updatePeriod) throws HiveException, LensException {
     String storageTableName = MetastoreUtil.getStorageTableName(cubeTableName.trim(),
       Storage.getPrefix(storageName.trim())).toLowerCase();
+    try {
+      dropPartition(storageTableName, cubeTableName, storageName, timePartSpec, nonTimePartSpec, updatePeriod);
+    } finally {
+      tableChanged(storageTableName);
+    }
+  }
+
+  private void dropPartition(String storageTableName, String cubeTableName, String storageName,
+    Map<String, Date> timePartSpec, Map<String, String> nonTimePartSpec, UpdatePeriod updatePeriod)
+    throws HiveException, LensException {
     Table hiveTable = getHiveTable(storageTableName);
     List<FieldSchema> partCols = hiveTable.getPartCols();
     List<String> partColNames = new ArrayList<String>(partCols.size());
@@ -1093,8 +1528,17 @@ public class CubeMetastoreClient {
       }
     } else {
       // dropping fact partition
+      Map<String, String> partSpec = new HashMap<String, String>();
+      for (int i = 0; i < partColNames.size(); i++) {
+        partSpec.put(partColNames.get(i), partVals.get(i));
+      }
+      Partition dropped = getClient().getPartition(hiveTable, partSpec, false);
+      partitionStatsCache.getStats(cubeTableName, storageName);
       getStorage(storageName).dropPartition(getClient(), storageTableName, partVals, null, null);
-      if (partitionTimelineCache.updateForDeletion(cubeTableName, storageName, updatePeriod, timePartSpec)) {
+      boolean statsUpdated = dropped != null
+        && partitionStatsCache.updateForDeletion(cubeTableName, storageName, updatePeriod, dropped);
+      if (partitionTimelineCache.updateForDeletion(cubeTableName, storageName, updatePeriod, timePartSpec)
+        || statsUpdated) {
         this.alterTablePartitionCache(storageTableName);
       }
     }
@@ -1117,6 +1561,31 @@ public class CubeMetastoreClient {
     }
   }
 
+  /** extract storage name and look up ranges of existing partitions within the given range in timeline cache */
+  public TimePartitionRangeList getFactPartitionRanges(CubeFactTable fact, String storageTableName, String partCol,
+    TimePartitionRange within) throws HiveException, LensException {
+    String storage = extractStorageName(fact, storageTableName);
+    return partitionTimelineCache.existingRanges(fact.getName(), storage, within.getBegin().getUpdatePeriod(), partCol,
+      within);
+  }
+
+  /**
+   * Estimated size of a partition of the storage table for the update period, from statistics of partitions of the
+   * storage table for the update period.
+   *
+   * @param fact             fact of the storage table
+   * @param storageTableName storage table
+   * @param updatePeriod     update period of the partition
+   * @return estimated size in bytes, -1 if no partition of the storage table and update period has statistics
+   * @throws HiveException
+   * @throws LensException
+   */
+  public long getEstimatedPartitionSize(CubeFactTable fact, String storageTableName, UpdatePeriod updatePeriod)
+    throws HiveException, LensException {
+    return partitionStatsCache.getAverageSize(fact.getName(), extractStorageName(fact, storageTableName),
+      updatePeriod);
+  }
+
   /** extract storage name and check in timeline cache for existance */
   public boolean factPartitionExists(CubeFactTable fact, FactPartition part, String storageTableName)
     throws HiveException, LensException {
@@ -1270,15 +1739,20 @@ public class CubeMetastoreClient {
       tableName = tableName.trim().toLowerCase();
       tbl = allHiveTables.get(tableName);
       if (tbl == null) {
-        synchronized (allHiveTables) {
-          if (!allHiveTables.containsKey(tableName)) {
-            tbl = getClient().getTable(tableName);
-            if (enableCaching) {
-              allHiveTables.put(tableName, tbl);
+        cacheLock.readLock().lock();
+        try {
+          synchronized (allHiveTables) {
+            if (!allHiveTables.containsKey(tableName)) {
+              tbl = getClient().getTable(tableName);
+              if (enableCaching) {
+                allHiveTables.put(tableName, tbl);
+              }
+            } else {
+              tbl = allHiveTables.get(tableName);
             }
-          } else {
-            tbl = allHiveTables.get(tableName);
           }
+        } finally {
+          cacheLock.readLock().unlock();
         }
       }
     } catch (HiveException e) {
@@ -1293,6 +1767,7 @@ public class CubeMetastoreClient {
       tableName = tableName.trim().toLowerCase();
       tbl = getClient().getTable(tableName);
       allHiveTables.put(tableName, tbl);
+      tableChanged(tableName);
     } catch (HiveException e) {
       throw new HiveException("Could not get table: " + tableName, e);
     }
@@ -1302,6 +1777,7 @@ public class CubeMetastoreClient {
   public void dropHiveTable(String table) throws HiveException {
     getClient().dropTable(table);
     allHiveTables.remove(table.trim().toLowerCase());
+    tableChanged(table);
   }
 
   /**
@@ -1455,34 +1931,44 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public CubeDimensionTable getDimensionTable(String tableName) throws HiveException {
+    return getDimensionTable(tableName, null);
+  }
+
+  /** cached dimension table of the given name, built from hiveTable if given or from the table fetched by name */
+  private CubeDimensionTable getDimensionTable(String tableName, Table hiveTable) throws HiveException {
     tableName = tableName.trim().toLowerCase();
     CubeDimensionTable dimTable = allDimTables.get(tableName);
     if (dimTable == null) {
-      synchronized (allDimTables) {
-        if (!allDimTables.containsKey(tableName)) {
-          Table tbl = getTable(tableName);
-          if (isDimensionTable(tbl)) {
-            dimTable = getDimensionTable(tbl);
-            if (enableCaching && dimTable != null) {
-              allDimTables.put(tableName, dimTable);
-              // update latest partition cache for all storages
-              if (dimTable.getStorages() != null && !dimTable.getStorages().isEmpty()) {
-                for (String storageName : dimTable.getStorages()) {
-                  if (dimTable.hasStorageSnapshots(storageName)) {
-                    String storageTableName = getFactOrDimtableStorageTableName(dimTable.getName(),
-                      storageName);
-                    if (dimLatestPartitionExists(storageTableName,
-                      getDimension(dimTable.getDimName()).getTimedDimension())) {
-                      latestLookupCache.add(storageTableName.trim().toLowerCase());
+      cacheLock.readLock().lock();
+      try {
+        synchronized (allDimTables) {
+          if (!allDimTables.containsKey(tableName)) {
+            Table tbl = hiveTable == null ? getTable(tableName) : hiveTable;
+            if (isDimensionTable(tbl)) {
+              dimTable = getDimensionTable(tbl);
+              if (enableCaching && dimTable != null) {
+                allDimTables.put(tableName, dimTable);
+                // update latest partition cache for all storages
+                if (dimTable.getStorages() != null && !dimTable.getStorages().isEmpty()) {
+                  for (String storageName : dimTable.getStorages()) {
+                    if (dimTable.hasStorageSnapshots(storageName)) {
+                      String storageTableName = getFactOrDimtableStorageTableName(dimTable.getName(),
+                        storageName);
+                      if (dimLatestPartitionExists(storageTableName,
+                        getDimension(dimTable.getDimName()).getTimedDimension())) {
+                        latestLookupCache.add(storageTableName.trim().toLowerCase());
+                      }
                     }
                   }
                 }
               }
             }
+          } else {
+            dimTable = allDimTables.get(tableName);
           }
-        } else {
-          dimTable = allDimTables.get(tableName);
         }
+      } finally {
+        cacheLock.readLock().unlock();
       }
     }
     return dimTable;
@@ -1500,21 +1986,31 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public Storage getStorage(String storageName) throws HiveException {
+    return getStorage(storageName, null);
+  }
+
+  /** cached storage of the given name, built from hiveTable if given or from the table fetched by name */
+  private Storage getStorage(String storageName, Table hiveTable) throws HiveException {
     storageName = storageName.trim().toLowerCase();
     Storage storage = allStorages.get(storageName);
     if (storage == null) {
-      synchronized (allStorages) {
-        if (!allStorages.containsKey(storageName)) {
-          Table tbl = getTable(storageName);
-          if (isStorage(tbl)) {
-            storage = getStorage(tbl);
-            if (enableCaching) {
-              allStorages.put(storageName, storage);
+      cacheLock.readLock().lock();
+      try {
+        synchronized (allStorages) {
+          if (!allStorages.containsKey(storageName)) {
+            Table tbl = hiveTable == null ? getTable(storageName) : hiveTable;
+            if (isStorage(tbl)) {
+              storage = getStorage(tbl);
+              if (enableCaching) {
+                allStorages.put(storageName, storage);
+              }
             }
+          } else {
+            storage = allStorages.get(storageName);
           }
-        } else {
-          storage = allStorages.get(storageName);
         }
+      } finally {
+        cacheLock.readLock().unlock();
       }
     }
     return storage;
@@ -1535,21 +2031,31 @@ public class CubeMetastoreClient {
     if (tableName == null) {
       return null;
     }
+    return getCube(tableName, null);
+  }
+
+  /** cached cube of the given name, built from hiveTable if given or from the table fetched by name */
+  private CubeInterface getCube(String tableName, Table hiveTable) throws HiveException {
     tableName = tableName.trim().toLowerCase();
     CubeInterface cube = allCubes.get(tableName);
     if (cube == null) {
-      synchronized (allCubes) {
-        if (!allCubes.containsKey(tableName)) {
-          Table tbl = getTable(tableName);
-          if (isCube(tbl)) {
-            cube = getCube(tbl);
-            if (enableCaching) {
-              allCubes.put(tableName, cube);
+      cacheLock.readLock().lock();
+      try {
+        synchronized (allCubes) {
+          if (!allCubes.containsKey(tableName)) {
+            Table tbl = hiveTable == null ? getTable(tableName) : hiveTable;
+            if (isCube(tbl)) {
+              cube = getCube(tbl);
+              if (enableCaching) {
+                allCubes.put(tableName, cube);
+              }
             }
+          } else {
+            cube = allCubes.get(tableName);
           }
-        } else {
-          cube = allCubes.get(tableName);
         }
+      } finally {
+        cacheLock.readLock().unlock();
       }
     }
     return cube;
@@ -1566,21 +2072,31 @@ public class CubeMetastoreClient {
     if (tableName == null) {
       return null;
     }
+    return getDimension(tableName, null);
+  }
+
+  /** cached dimension of the given name, built from hiveTable if given or from the table fetched by name */
+  private Dimension getDimension(String tableName, Table hiveTable) throws HiveException {
     tableName = tableName.trim().toLowerCase();
     Dimension dim = allDims.get(tableName);
     if (dim == null) {
-      synchronized (allDims) {
-        if (!allDims.containsKey(tableName)) {
-          Table tbl = getTable(tableName);
-          if (isDimension(tbl)) {
-            dim = getDimension(tbl);
-            if (enableCaching) {
-              allDims.put(tableName, dim);
+      cacheLock.readLock().lock();
+      try {
+        synchronized (allDims) {
+          if (!allDims.containsKey(tableName)) {
+            Table tbl = hiveTable == null ? getTable(tableName) : hiveTable;
+            if (isDimension(tbl)) {
+              dim = getDimension(tbl);
+              if (enableCaching) {
+                allDims.put(tableName, dim);
+              }
             }
+          } else {
+            dim = allDims.get(tableName);
           }
-        } else {
-          dim = allDims.get(tableName);
         }
+      } finally {
+        cacheLock.readLock().unlock();
       }
     }
     return dim;
@@ -1594,18 +2110,28 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public CubeFactTable getCubeFact(String tableName) throws HiveException {
+    return getCubeFact(tableName, null);
+  }
+
+  /** cached fact table of the given name, built from hiveTable if given or from the table fetched by name */
+  private CubeFactTable getCubeFact(String tableName, Table hiveTable) throws HiveException {
     tableName = tableName.trim().toLowerCase();
     CubeFactTable fact = allFactTables.get(tableName);
     if (fact == null) {
-      synchronized (allFactTables) {
-        if (!allFactTables.containsKey(tableName)) {
-          fact = getFactTable(tableName);
-          if (enableCaching && fact != null) {
-            allFactTables.put(tableName, fact);
+      cacheLock.readLock().lock();
+      try {
+        synchronized (allFactTables) {
+          if (!allFactTables.containsKey(tableName)) {
+            fact = getFactTable(hiveTable == null ? getTable(tableName) : hiveTable);
+            if (enableCaching && fact != null) {
+              allFactTables.put(tableName, fact);
+            }
+          } else {
+            fact = allFactTables.get(tableName);
           }
-        } else {
-          fact = allFactTables.get(tableName);
         }
+      } finally {
+        cacheLock.readLock().unlock();
       }
     }
     return fact;
@@ -1631,22 +2157,27 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public Collection<CubeDimensionTable> getAllDimensionTables() throws HiveException {
-    if (!allDimTablesPopulated) {
-      List<CubeDimensionTable> dimTables = new ArrayList<CubeDimensionTable>();
-      try {
-        for (String table : getAllHiveTableNames()) {
-          CubeDimensionTable dim = getDimensionTable(table);
-          if (dim != null) {
-            dimTables.add(dim);
+    cacheLock.readLock().lock();
+    try {
+      if (!allDimTablesPopulated) {
+        List<CubeDimensionTable> dimTables = new ArrayList<CubeDimensionTable>();
+        try {
+          for (Table table : getAllHiveTables()) {
+            CubeDimensionTable dim = getDimensionTable(table.getTableName(), table);
+            if (dim != null) {
+              dimTables.add(dim);
+            }
           }
+        } catch (HiveException e) {
+          throw new HiveException("Could not get all dimension tables", e);
         }
-      } catch (HiveException e) {
-        throw new HiveException("Could not get all dimension tables", e);
+        allDimTablesPopulated = enableCaching;
+        return dimTables;
+      } else {
+        return allDimTables.values();
       }
-      allDimTablesPopulated = enableCaching;
-      return dimTables;
-    } else {
-      return allDimTables.values();
+    } finally {
+      cacheLock.readLock().unlock();
     }
   }
 
@@ -1657,22 +2188,27 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public Collection<Storage> getAllStorages() throws HiveException {
-    if (!allStoragesPopulated) {
-      List<Storage> storages = new ArrayList<Storage>();
-      try {
-        for (String table : getAllHiveTableNames()) {
-          Storage storage = getStorage(table);
-          if (storage != null) {
-            storages.add(storage);
+    cacheLock.readLock().lock();
+    try {
+      if (!allStoragesPopulated) {
+        List<Storage> storages = new ArrayList<Storage>();
+        try {
+          for (Table table : getAllHiveTables()) {
+            Storage storage = getStorage(table.getTableName(), table);
+            if (storage != null) {
+              storages.add(storage);
+            }
           }
+        } catch (HiveException e) {
+          throw new HiveException("Could not get all storages", e);
         }
-      } catch (HiveException e) {
-        throw new HiveException("Could not get all storages", e);
+        allStoragesPopulated = enableCaching;
+        return storages;
+      } else {
+        return allStorages.values();
       }
-      allStoragesPopulated = enableCaching;
-      return storages;
-    } else {
-      return allStorages.values();
+    } finally {
+      cacheLock.readLock().unlock();
     }
   }
 
@@ -1683,22 +2219,27 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public Collection<CubeInterface> getAllCubes() throws HiveException {
-    if (!allCubesPopulated) {
-      List<CubeInterface> cubes = new ArrayList<CubeInterface>();
-      try {
-        for (String table : getAllHiveTableNames()) {
-          CubeInterface cube = getCube(table);
-          if (cube != null) {
-            cubes.add(cube);
+    cacheLock.readLock().lock();
+    try {
+      if (!allCubesPopulated) {
+        List<CubeInterface> cubes = new ArrayList<CubeInterface>();
+        try {
+          for (Table table : getAllHiveTables()) {
+            CubeInterface cube = getCube(table.getTableName(), table);
+            if (cube != null) {
+              cubes.add(cube);
+            }
           }
+        } catch (HiveException e) {
+          throw new HiveException("Could not get all cubes", e);
         }
-      } catch (HiveException e) {
-        throw new HiveException("Could not get all cubes", e);
+        allCubesPopulated = enableCaching;
+        return cubes;
+      } else {
+        return allCubes.values();
       }
-      allCubesPopulated = enableCaching;
-      return cubes;
-    } else {
-      return allCubes.values();
+    } finally {
+      cacheLock.readLock().unlock();
     }
   }
 
@@ -1709,22 +2250,27 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public Collection<Dimension> getAllDimensions() throws HiveException {
-    if (!allDimensionsPopulated) {
-      List<Dimension> dims = new ArrayList<Dimension>();
-      try {
-        for (String table : getAllHiveTableNames()) {
-          Dimension dim = getDimension(table);
-          if (dim != null) {
-            dims.add(dim);
+    cacheLock.readLock().lock();
+    try {
+      if (!allDimensionsPopulated) {
+        List<Dimension> dims = new ArrayList<Dimension>();
+        try {
+          for (Table table : getAllHiveTables()) {
+            Dimension dim = getDimension(table.getTableName(), table);
+            if (dim != null) {
+              dims.add(dim);
+            }
           }
+        } catch (HiveException e) {
+          throw new HiveException("Could not get all dimensions", e);
         }
-      } catch (HiveException e) {
-        throw new HiveException("Could not get all dimensions", e);
+        allDimensionsPopulated = enableCaching;
+        return dims;
+      } else {
+        return allDims.values();
       }
-      allDimensionsPopulated = enableCaching;
-      return dims;
-    } else {
-      return allDims.values();
+    } finally {
+      cacheLock.readLock().unlock();
     }
   }
 
@@ -1735,36 +2281,47 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public Collection<CubeFactTable> getAllFacts() throws HiveException {
-    if (!allFactTablesPopulated) {
-      List<CubeFactTable> facts = new ArrayList<CubeFactTable>();
-      try {
-        for (String table : getAllHiveTableNames()) {
-          CubeFactTable fact = getCubeFact(table);
-          if (fact != null) {
-            facts.add(fact);
+    cacheLock.readLock().lock();
+    try {
+      if (!allFactTablesPopulated) {
+        List<CubeFactTable> facts = new ArrayList<CubeFactTable>();
+        try {
+          for (Table table : getAllHiveTables()) {
+            CubeFactTable fact = getCubeFact(table.getTableName(), table);
+            if (fact != null) {
+              facts.add(fact);
+            }
           }
+        } catch (HiveException e) {
+          throw new HiveException("Could not get all fact tables", e);
         }
-      } catch (HiveException e) {
-        throw new HiveException("Could not get all fact tables", e);
+        allFactTablesPopulated = enableCaching;
+        return facts;
+      } else {
+        return allFactTables.values();
       }
-      allFactTablesPopulated = enableCaching;
-      return facts;
-    } else {
-      return allFactTables.values();
+    } finally {
+      cacheLock.readLock().unlock();
     }
   }
 
-  private Collection<String> getAllHiveTableNames() throws HiveException {
-    if (!allTablesPopulated) {
-      List<String> allTables = getClient().getAllTables();
-      for (String tblName : allTables) {
-        // getTable call here would add the table to allHiveTables
-        getTable(tblName);
+  private Collection<Table> getAllHiveTables() throws HiveException {
+    cacheLock.readLock().lock();
+    try {
+      if (!allTablesPopulated) {
+        List<Table> allTables = getHiveTables(getClient().getAllTables(dbName));
+        if (enableCaching) {
+          for (Table tbl : allTables) {
+            allHiveTables.put(tbl.getTableName().toLowerCase(), tbl);
+          }
+        }
+        allTablesPopulated = enableCaching;
+        return allTables;
+      } else {
+        return allHiveTables.values();
       }
-      allTablesPopulated = enableCaching;
-      return allTables;
-    } else {
-      return allHiveTables.keySet();
+    } finally {
+      cacheLock.readLock().unlock();
     }
   }
 
@@ -1922,6 +2479,8 @@ public class CubeMetastoreClient {
     if (enableCaching) {
       // refresh the table in cache
       refreshTable(table);
+    } else {
+      tableChanged(table);
     }
   }
 
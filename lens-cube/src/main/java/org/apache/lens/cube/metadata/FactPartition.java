@@ -29,7 +29,7 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 
-@EqualsAndHashCode
+@EqualsAndHashCode(exclude = "estimatedSize")
 public class FactPartition implements Comparable<FactPartition> {
   @Getter
   private final String partCol;
@@ -47,6 +47,10 @@ public class FactPartition implements Comparable<FactPartition> {
   @Getter
   @Setter
   private boolean found = false;
+  /** Estimated size in bytes, from partition statistics of its storage tables. -1 if not known. */
+  @Getter
+  @Setter
+  private long estimatedSize = -1;
 
   public FactPartition(String partCol, Date partSpec, UpdatePeriod period,
     FactPartition containingPart, DateFormat partFormat) {
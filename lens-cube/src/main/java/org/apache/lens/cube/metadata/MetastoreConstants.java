@@ -96,6 +96,14 @@ public final class MetastoreConstants {
   public static final String HIERARCHY_SFX = ".hierarchy.";
   public static final String CLASS_SFX = ".class";
   public static final String METASTORE_ENABLE_CACHING = "cube.metastore.enable.cache";
+  public static final String METASTORE_ENABLE_WARMUP = "cube.metastore.enable.warmup";
+  public static final boolean DEFAULT_METASTORE_ENABLE_WARMUP = true;
+  public static final String METASTORE_BULK_FETCH_BATCH_SIZE = "cube.metastore.bulk.fetch.batch.size";
+  public static final int DEFAULT_METASTORE_BULK_FETCH_BATCH_SIZE = 100;
+  public static final String METASTORE_BULK_FETCH_THREADS = "cube.metastore.bulk.fetch.threads";
+  public static final int DEFAULT_METASTORE_BULK_FETCH_THREADS = 4;
+  public static final String METASTORE_CACHE_REFRESH_INTERVAL_SECS = "cube.metastore.cache.refresh.interval.secs";
+  public static final long DEFAULT_METASTORE_CACHE_REFRESH_INTERVAL_SECS = 0;
 
   // join chain constants
   public static final String JOIN_CHAIN_KEY = "joinchain.";
@@ -106,6 +114,7 @@ public final class MetastoreConstants {
   public static final String STORAGE_ENTITY_PFX = "storage.";
   public static final String STORAGE_PFX = "cube.storagetable.";
   public static final String PARTITION_TIMELINE_CACHE = "partition.timeline.cache.";
+  public static final String PARTITION_STATS = "partition.stats.";
   public static final String STORAGE_CLASS = "storage.class";
   public static final String TIME_PART_COLUMNS = "cube.storagetable.time.partcols";
   public static final String LATEST_PART_TIMESTAMP_SFX = ".latest.part.timestamp";
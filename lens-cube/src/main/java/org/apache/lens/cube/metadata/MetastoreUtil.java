@@ -486,6 +486,14 @@ public class MetastoreUtil {
     return STORAGE_PFX + PARTITION_TIMELINE_CACHE + "present";
   }
 
+  public static String getPartitionStatsKey(UpdatePeriod updatePeriod) {
+    return STORAGE_PFX + PARTITION_STATS + updatePeriod.getName();
+  }
+
+  public static String getPartitionStatsPresenceKey() {
+    return STORAGE_PFX + PARTITION_STATS + "present";
+  }
+
   public static List<Partition> filterPartitionsByNonTimeParts(List<Partition> partitions,
     Map<String, String> nonTimePartSpec,
     String latestPartCol) {
@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.cube.metadata;
+
+import java.util.*;
+
+import org.apache.lens.server.api.error.LensException;
+
+import lombok.Data;
+
+/**
+ * Coverage of a range of time partitions by the existing partitions of storage tables. The range is cut into
+ * consecutive segments, each covered by the same storage tables throughout, or a hole covered by none. Segments are
+ * computed from the ranges of existing partitions of each storage table, without enumerating partitions.
+ */
+public class PartitionCoverage implements Iterable<PartitionCoverage.Segment> {
+
+  /**
+   * A maximal range of partitions existing in the same storage tables, a hole if they exist in none.
+   */
+  @Data
+  public static class Segment {
+    private final TimePartitionRange range;
+    private final Set<String> storageTables;
+
+    public boolean isHole() {
+      return storageTables.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+      return range + "=" + storageTables;
+    }
+  }
+
+  private final List<Segment> segments = new ArrayList<>();
+
+  /**
+   * Instantiates coverage of a range.
+   *
+   * @param within         the range to cover
+   * @param existingRanges ranges of existing partitions in each storage table, in increasing order and not
+   *                       overlapping. Ranges can extend beyond the range covered.
+   * @throws LensException
+   */
+  public PartitionCoverage(TimePartitionRange within, Map<String, TimePartitionRangeList> existingRanges)
+    throws LensException {
+    if (!within.isValidAndNonEmpty()) {
+      return;
+    }
+    // segments begin and end where a range of any storage table does
+    TreeSet<TimePartition> boundaries = new TreeSet<>();
+    boundaries.add(within.getBegin());
+    boundaries.add(within.getEnd());
+    for (TimePartitionRangeList ranges : existingRanges.values()) {
+      for (TimePartitionRange range : ranges) {
+        TimePartition begin = TimePartition.max(range.getBegin(), within.getBegin());
+        TimePartition end = TimePartition.min(range.getEnd(), within.getEnd());
+        if (begin.before(end)) {
+          boundaries.add(begin);
+          boundaries.add(end);
+        }
+      }
+    }
+    List<String> storageTables = new ArrayList<>(existingRanges.keySet());
+    int[] positions = new int[storageTables.size()];
+    Iterator<TimePartition> it = boundaries.iterator();
+    TimePartition begin = it.next();
+    while (it.hasNext()) {
+      TimePartition end = it.next();
+      Set<String> covering = new LinkedHashSet<>();
+      for (int i = 0; i < storageTables.size(); i++) {
+        TimePartitionRangeList ranges = existingRanges.get(storageTables.get(i));
+        while (positions[i] < ranges.size() && !ranges.get(positions[i]).getEnd().after(begin)) {
+          positions[i]++;
+        }
+        if (positions[i] < ranges.size() && !ranges.get(positions[i]).getBegin().after(begin)) {
+          covering.add(storageTables.get(i));
+        }
+      }
+      Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+      if (last != null && last.getStorageTables().equals(covering)) {
+        segments.set(segments.size() - 1, new Segment(last.getRange().getBegin().rangeUpto(end), covering));
+      } else {
+        segments.add(new Segment(begin.rangeUpto(end), covering));
+      }
+      begin = end;
+    }
+  }
+
+  @Override
+  public Iterator<Segment> iterator() {
+    return Collections.unmodifiableList(segments).iterator();
+  }
+
+  /**
+   * @return ranges of partitions existing in none of the storage tables
+   */
+  public TimePartitionRangeList getHoles() {
+    TimePartitionRangeList holes = new TimePartitionRangeList();
+    for (Segment segment : segments) {
+      if (segment.isHole()) {
+        holes.add(segment.getRange());
+      }
+    }
+    return holes;
+  }
+
+  @Override
+  public String toString() {
+    return segments.toString();
+  }
+}
@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.cube.metadata;
+
+import java.util.Map;
+
+import org.apache.hadoop.hive.common.StatsSetupConst;
+import org.apache.hadoop.hive.ql.metadata.Partition;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Size and row count of the partitions of a storage table for one update period, kept as totals so that it takes
+ * constant space however many partitions there are. Partitions are counted only if hive has statistics for them.
+ * Estimates for a partition are the averages over the partitions counted.
+ */
+@Slf4j
+public class PartitionStats {
+  @Getter
+  private long numPartitions;
+  @Getter
+  private long totalSize;
+  @Getter
+  private long numRows;
+
+  /**
+   * Adds the statistics of the partition, if hive has them.
+   *
+   * @param partition the partition
+   * @return true if the partition had statistics
+   */
+  public synchronized boolean add(Partition partition) {
+    long size = getStat(partition, StatsSetupConst.TOTAL_SIZE);
+    if (size < 0) {
+      return false;
+    }
+    numPartitions++;
+    totalSize += size;
+    numRows += Math.max(0, getStat(partition, StatsSetupConst.ROW_COUNT));
+    return true;
+  }
+
+  /**
+   * Removes the statistics of the partition, if hive has them.
+   *
+   * @param partition the partition
+   * @return true if the partition had statistics
+   */
+  public synchronized boolean remove(Partition partition) {
+    long size = getStat(partition, StatsSetupConst.TOTAL_SIZE);
+    if (size < 0 || numPartitions == 0) {
+      return false;
+    }
+    numPartitions--;
+    totalSize = Math.max(0, totalSize - size);
+    numRows = Math.max(0, numRows - Math.max(0, getStat(partition, StatsSetupConst.ROW_COUNT)));
+    return true;
+  }
+
+  /**
+   * @return average size of a partition in bytes, -1 if no partition has statistics
+   */
+  public synchronized long getAverageSize() {
+    return numPartitions == 0 ? -1 : totalSize / numPartitions;
+  }
+
+  /**
+   * @return average row count of a partition, -1 if no partition has statistics
+   */
+  public synchronized long getAverageRows() {
+    return numPartitions == 0 ? -1 : numRows / numPartitions;
+  }
+
+  private static long getStat(Partition partition, String key) {
+    Map<String, String> params = partition.getParameters();
+    String value = params == null ? null : params.get(key);
+    if (value == null) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      log.debug("Invalid {} in partition {}: {}", key, partition.getValues(), value);
+      return -1;
+    }
+  }
+
+  /**
+   * @return the statistics in the form stored in storage table properties
+   */
+  @Override
+  public synchronized String toString() {
+    return numPartitions + "," + totalSize + "," + numRows;
+  }
+
+  /**
+   * Parses statistics stored in storage table properties.
+   *
+   * @param str the statistics, as returned by {@link #toString()}
+   * @return the statistics, null if str is not valid
+   */
+  public static PartitionStats parse(String str) {
+    String[] parts = str == null ? new String[0] : str.split(",");
+    if (parts.length != 3) {
+      return null;
+    }
+    PartitionStats stats = new PartitionStats();
+    try {
+      stats.numPartitions = Long.parseLong(parts[0].trim());
+      stats.totalSize = Long.parseLong(parts[1].trim());
+      stats.numRows = Long.parseLong(parts[2].trim());
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    return stats;
+  }
+}
@@ -23,6 +23,8 @@ import java.util.*;
 
 import org.apache.lens.cube.metadata.MetastoreUtil;
 import org.apache.lens.cube.metadata.TimePartition;
+import org.apache.lens.cube.metadata.TimePartitionRange;
+import org.apache.lens.cube.metadata.TimePartitionRangeList;
 import org.apache.lens.cube.metadata.UpdatePeriod;
 import org.apache.lens.cube.parse.TimeRange;
 import org.apache.lens.server.api.error.LensException;
@@ -183,6 +185,29 @@ public class EndsAndHolesPartitionTimeline extends PartitionTimeline {
     return !isEmpty() && !toCheck.before(first) && !toCheck.after(latest) && !holes.contains(toCheck);
   }
 
+  @Override
+  public TimePartitionRangeList existingRanges(TimePartitionRange within) throws LensException {
+    TimePartitionRangeList ret = new TimePartitionRangeList();
+    if (isEmpty()) {
+      return ret;
+    }
+    TimePartition begin = TimePartition.max(first, within.getBegin());
+    TimePartition end = TimePartition.min(latest.next(), within.getEnd());
+    if (!begin.before(end)) {
+      return ret;
+    }
+    for (TimePartition hole : holes.subSet(begin, true, end, false)) {
+      if (begin.before(hole)) {
+        ret.add(begin.rangeUpto(hole));
+      }
+      begin = hole.next();
+    }
+    if (begin.before(end)) {
+      ret.add(begin.rangeUpto(end));
+    }
+    return ret;
+  }
+
   @Override
   public Iterator<TimePartition> iterator() {
 
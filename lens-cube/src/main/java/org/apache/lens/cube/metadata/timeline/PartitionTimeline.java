@@ -24,6 +24,7 @@ import java.util.*;
 import org.apache.lens.cube.metadata.MetastoreUtil;
 import org.apache.lens.cube.metadata.TimePartition;
 import org.apache.lens.cube.metadata.TimePartitionRange;
+import org.apache.lens.cube.metadata.TimePartitionRangeList;
 import org.apache.lens.cube.metadata.UpdatePeriod;
 import org.apache.lens.server.api.error.LensException;
 
@@ -220,4 +221,32 @@ public abstract class PartitionTimeline implements Iterable<TimePartition> {
    * @return
    */
   public abstract boolean exists(TimePartition partition);
+
+  /**
+   * Ranges of existing partitions within the given range. Returned ranges are sorted, non-empty and separated by at
+   * least one missing partition, so everything in <code>within</code> not covered by them is a hole. Default
+   * implementation checks existence of each partition belonging to the given range. Implementing classes can override.
+   *
+   * @param within range of partitions to look at. Should have the same update period as the timeline.
+   * @return ranges of existing partitions
+   * @throws LensException
+   */
+  public TimePartitionRangeList existingRanges(TimePartitionRange within) throws LensException {
+    TimePartitionRangeList ret = new TimePartitionRangeList();
+    TimePartition begin = null;
+    for (TimePartition part : within) {
+      if (exists(part)) {
+        if (begin == null) {
+          begin = part;
+        }
+      } else if (begin != null) {
+        ret.add(begin.rangeUpto(part));
+        begin = null;
+      }
+    }
+    if (begin != null) {
+      ret.add(begin.rangeUpto(within.getEnd()));
+    }
+    return ret;
+  }
 }
@@ -233,6 +233,21 @@ public class RangesPartitionTimeline extends PartitionTimeline {
     return false;
   }
 
+  @Override
+  public TimePartitionRangeList existingRanges(TimePartitionRange within) throws LensException {
+    TimePartitionRangeList ret = new TimePartitionRangeList();
+    // first range that can intersect is the one containing or following within.begin
+    int ind = Math.max(getStrictlyAfterIndex(within.getBegin()) - 1, 0);
+    for (; ind < ranges.size() && ranges.get(ind).getBegin().before(within.getEnd()); ind++) {
+      TimePartition begin = TimePartition.max(ranges.get(ind).getBegin(), within.getBegin());
+      TimePartition end = TimePartition.min(ranges.get(ind).getEnd(), within.getEnd());
+      if (begin.before(end)) {
+        ret.add(begin.rangeUpto(end));
+      }
+    }
+    return ret;
+  }
+
   @Override
   public Iterator<TimePartition> iterator() {
 
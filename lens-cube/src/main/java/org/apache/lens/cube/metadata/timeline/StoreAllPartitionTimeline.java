@@ -22,6 +22,8 @@ import java.util.*;
 
 import org.apache.lens.cube.metadata.MetastoreUtil;
 import org.apache.lens.cube.metadata.TimePartition;
+import org.apache.lens.cube.metadata.TimePartitionRange;
+import org.apache.lens.cube.metadata.TimePartitionRangeList;
 import org.apache.lens.cube.metadata.UpdatePeriod;
 import org.apache.lens.server.api.error.LensException;
 
@@ -105,6 +107,26 @@ public class StoreAllPartitionTimeline extends PartitionTimeline {
     return allPartitions.contains(partition);
   }
 
+  @Override
+  public TimePartitionRangeList existingRanges(TimePartitionRange within) throws LensException {
+    TimePartitionRangeList ret = new TimePartitionRangeList();
+    TimePartition begin = null;
+    TimePartition end = null;
+    for (TimePartition partition : allPartitions.subSet(within.getBegin(), true, within.getEnd(), false)) {
+      if (!partition.equals(end)) {
+        if (begin != null) {
+          ret.add(begin.rangeUpto(end));
+        }
+        begin = partition;
+      }
+      end = partition.next();
+    }
+    if (begin != null) {
+      ret.add(begin.rangeUpto(end));
+    }
+    return ret;
+  }
+
   @Override
   public Iterator<TimePartition> iterator() {
     return getAllPartitions().iterator();
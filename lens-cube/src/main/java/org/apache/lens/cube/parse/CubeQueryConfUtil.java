@@ -102,6 +102,8 @@ public final class CubeQueryConfUtil {
   public static final boolean DEFAULT_DISABLE_AGGREGATE_RESOLVER = true;
   public static final String LIGHTEST_FACT_FIRST = "lens.cube.query.pick.lightest.fact.first";
   public static final boolean DEFAULT_LIGHTEST_FACT_FIRST = false;
+  public static final String PICK_FACT_BY_BYTES_SCANNED = "lens.cube.query.pick.fact.by.bytes.scanned";
+  public static final boolean DEFAULT_PICK_FACT_BY_BYTES_SCANNED = false;
   public static final String TIME_RANGE_WRITER_CLASS = "lens.cube.query.time.range.writer.class";
   public static final Class<? extends TimeRangeWriter> DEFAULT_TIME_RANGE_WRITER = ORTimeRangeWriter.class
     .asSubclass(TimeRangeWriter.class);
@@ -20,6 +20,7 @@ package org.apache.lens.cube.parse;
 
 import java.util.*;
 
+import org.apache.lens.cube.metadata.FactPartition;
 import org.apache.lens.cube.parse.CandidateTablePruneCause.CandidateTablePruneCode;
 import org.apache.lens.server.api.error.LensException;
 
@@ -28,33 +29,46 @@ import org.apache.hadoop.conf.Configuration;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Prune candidate fact sets which require more partitions than minimum parts.
+ * Prune candidate fact sets which require more partitions than minimum parts. When
+ * {@link CubeQueryConfUtil#PICK_FACT_BY_BYTES_SCANNED} is set and sizes of all partitions queried are estimated from
+ * partition statistics, fact sets which require more bytes to be scanned than the minimum are pruned instead.
  */
 @Slf4j
 class LeastPartitionResolver implements ContextRewriter {
+  private final boolean pickByBytesScanned;
+
   public LeastPartitionResolver(Configuration conf) {
+    this.pickByBytesScanned = conf.getBoolean(CubeQueryConfUtil.PICK_FACT_BY_BYTES_SCANNED,
+      CubeQueryConfUtil.DEFAULT_PICK_FACT_BY_BYTES_SCANNED);
   }
 
   @Override
   public void rewriteContext(CubeQueryContext cubeql) throws LensException {
     if (cubeql.getCube() != null && !cubeql.getCandidateFactSets().isEmpty()) {
-      Map<Set<CandidateFact>, Integer> factPartCount = new HashMap<Set<CandidateFact>, Integer>();
-
-      //The number of partitions being calculated is not the actual number of partitions,
-      // they are number of time values now instead of partitions.
-      // This seems fine, as the less number of time values actually represent the rollups on time. And with
-      // MaxCoveringFactResolver facts with less partitions which are not covering the range would be removed.
-      for (Set<CandidateFact> facts : cubeql.getCandidateFactSets()) {
-        factPartCount.put(facts, getPartCount(facts));
+      Map<Set<CandidateFact>, Long> factPartCount = null;
+      if (pickByBytesScanned) {
+        factPartCount = getBytesScanned(cubeql.getCandidateFactSets());
+      }
+      String measure = "bytes";
+      if (factPartCount == null) {
+        measure = "partitions";
+        factPartCount = new HashMap<Set<CandidateFact>, Long>();
+        //The number of partitions being calculated is not the actual number of partitions,
+        // they are number of time values now instead of partitions.
+        // This seems fine, as the less number of time values actually represent the rollups on time. And with
+        // MaxCoveringFactResolver facts with less partitions which are not covering the range would be removed.
+        for (Set<CandidateFact> facts : cubeql.getCandidateFactSets()) {
+          factPartCount.put(facts, (long) getPartCount(facts));
+        }
       }
 
-      double minPartitions = Collections.min(factPartCount.values());
+      long minPartitions = Collections.min(factPartCount.values());
 
       for (Iterator<Set<CandidateFact>> i = cubeql.getCandidateFactSets().iterator(); i.hasNext();) {
         Set<CandidateFact> facts = i.next();
         if (factPartCount.get(facts) > minPartitions) {
-          log.info("Not considering facts:{} from candidate fact tables as it requires more partitions to be"
-            + " queried:{} minimum:{}", facts, factPartCount.get(facts), minPartitions);
+          log.info("Not considering facts:{} from candidate fact tables as it requires more {} to be"
+            + " queried:{} minimum:{}", facts, measure, factPartCount.get(facts), minPartitions);
           i.remove();
         }
       }
@@ -70,4 +84,29 @@ class LeastPartitionResolver implements ContextRewriter {
     return parts;
   }
 
+  /**
+   * Estimated bytes scanned by each fact set, null if size of any partition queried is not known, as fact sets
+   * can't be compared then.
+   */
+  private Map<Set<CandidateFact>, Long> getBytesScanned(Collection<Set<CandidateFact>> factSets) {
+    Map<Set<CandidateFact>, Long> bytesScanned = new HashMap<Set<CandidateFact>, Long>();
+    for (Set<CandidateFact> facts : factSets) {
+      long bytes = 0;
+      for (CandidateFact f : facts) {
+        for (FactPartition part : f.getPartsQueried()) {
+          if (!part.isFound()) {
+            // missing partitions scan nothing
+            continue;
+          }
+          if (part.getEstimatedSize() < 0) {
+            return null;
+          }
+          bytes += part.getEstimatedSize();
+        }
+      }
+      bytesScanned.put(facts, bytes);
+    }
+    return bytesScanned;
+  }
+
 }
@@ -24,6 +24,7 @@ import java.util.Set;
 
 import org.apache.lens.cube.metadata.FactPartition;
 import org.apache.lens.cube.metadata.TimePartition;
+import org.apache.lens.cube.metadata.TimePartitionRange;
 import org.apache.lens.cube.metadata.UpdatePeriod;
 import org.apache.lens.cube.metadata.timeline.RangesPartitionTimeline;
 import org.apache.lens.server.api.error.LensException;
@@ -41,6 +42,14 @@ public class PartitionRangesForPartitionColumns extends HashMap<String, RangesPa
       .rangeUpto(partition.next().withUpdatePeriod(UpdatePeriod.values()[0])));
   }
 
+  public void add(String partCol, TimePartitionRange range) throws LensException {
+    if (get(partCol) == null) {
+      put(partCol, new RangesPartitionTimeline("", UpdatePeriod.values()[0], partCol));
+    }
+    get(partCol).add(range.getBegin().withUpdatePeriod(UpdatePeriod.values()[0])
+      .rangeUpto(range.getEnd().withUpdatePeriod(UpdatePeriod.values()[0])));
+  }
+
   public Set<String> toSet(Set<String> partColsQueried) {
     Set<String> ret = Sets.newHashSet();
     for (Map.Entry<String, RangesPartitionTimeline> entry : entrySet()) {
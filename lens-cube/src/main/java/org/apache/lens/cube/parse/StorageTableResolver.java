@@ -64,6 +64,7 @@ class StorageTableResolver implements ContextRewriter {
   private final boolean allStoragesSupported;
   CubeMetastoreClient client;
   private final boolean failOnPartialData;
+  private final boolean estimatePartitionSizes;
   private final List<String> validDimTables;
   private final Map<CubeFactTable, Map<UpdatePeriod, Set<String>>> validStorageMap = new HashMap<>();
   private String processTimePartCol = null;
@@ -95,6 +96,8 @@ class StorageTableResolver implements ContextRewriter {
     this.supportedStorages = getSupportedStorages(conf);
     this.allStoragesSupported = (supportedStorages == null);
     this.failOnPartialData = conf.getBoolean(CubeQueryConfUtil.FAIL_QUERY_ON_PARTIAL_DATA, false);
+    this.estimatePartitionSizes = conf.getBoolean(CubeQueryConfUtil.PICK_FACT_BY_BYTES_SCANNED,
+      CubeQueryConfUtil.DEFAULT_PICK_FACT_BY_BYTES_SCANNED);
     String str = conf.get(CubeQueryConfUtil.VALID_STORAGE_DIM_TABLES);
     validDimTables = StringUtils.isBlank(str) ? null : Arrays.asList(StringUtils.split(str.toLowerCase(), ","));
     this.processTimePartCol = conf.get(CubeQueryConfUtil.PROCESS_TIME_PART_COL);
@@ -431,6 +434,9 @@ class StorageTableResolver implements ContextRewriter {
           }
         }
         cfact.getRangeToStoragePartMap().put(range, tablePartMap);
+        if (estimatePartitionSizes) {
+          estimateSizes(cfact.fact, rangeParts);
+        }
         cfact.incrementPartsQueried(rangeParts.size());
         answeringParts.addAll(rangeParts);
         cfact.getPartsQueried().addAll(rangeParts);
@@ -591,16 +597,58 @@ class StorageTableResolver implements ContextRewriter {
 
     int lookAheadNumParts =
       conf.getInt(CubeQueryConfUtil.getLookAheadPTPartsKey(interval), CubeQueryConfUtil.DEFAULT_LOOK_AHEAD_PT_PARTS);
+    TreeSet<UpdatePeriod> finerPeriods = new TreeSet<UpdatePeriod>(updatePeriods);
+    finerPeriods.remove(interval);
+    // Existing partitions of every storage table are looked up once as ranges from the timelines, and merged into
+    // segments covered by the same storage tables, and holes. Partitions are enumerated only where the range
+    // writers need them, holes with no finer update period to fall back to are resolved whole.
+    Iterator<PartitionCoverage.Segment> segments = Collections.<PartitionCoverage.Segment>emptyList().iterator();
+    if (ceilFromDate.before(floorToDate)) {
+      TimePartitionRange within = TimePartitionRange.between(ceilFromDate, floorToDate, interval);
+      Map<String, TimePartitionRangeList> existingRanges = new LinkedHashMap<>();
+      for (String storageTableName : storageTbls) {
+        existingRanges.put(storageTableName, client.getFactPartitionRanges(fact, storageTableName, partCol, within));
+      }
+      PartitionCoverage coverage = new PartitionCoverage(within, existingRanges);
+      log.debug("Partitions between {} and {} in {}: {}", ceilFromDate, floorToDate, storageTbls, coverage);
+      segments = coverage.iterator();
+    }
 
+    PartitionCoverage.Segment segment = null;
     TimeRange.Iterable.Iterator iter = TimeRange.iterable(ceilFromDate, floorToDate, interval, 1)
       .iterator();
     // add partitions from ceilFrom to floorTo
     while (iter.hasNext()) {
       Date dt = iter.next();
       Date nextDt = iter.peekNext();
+      if (segment == null || !segment.getRange().getEnd().getDate().after(dt)) {
+        segment = segments.next();
+      }
+      if (segment.isHole() && finerPeriods.isEmpty()) {
+        TimePartitionRange hole = TimePartition.of(interval, dt).rangeUpto(segment.getRange().getEnd());
+        log.info("Partitions {} of {} do not exist in any storage table", hole, partCol);
+        if (!addNonExistingParts) {
+          log.info("No finer granual partitions exist for {}", hole);
+          return false;
+        }
+        missingPartitions.add(partCol, hole);
+        if (!failOnPartialData) {
+          for (TimePartition missing : hole) {
+            partitions.add(new FactPartition(partCol, missing.getDate(), interval, null, partWhereClauseFormat,
+              storageTbls));
+          }
+        }
+        while (iter.hasNext() && iter.peekNext().before(hole.getEnd().getDate())) {
+          iter.next();
+        }
+        continue;
+      }
       FactPartition part = new FactPartition(partCol, dt, interval, null, partWhereClauseFormat);
       log.debug("candidate storage tables for searching partitions: {}", storageTbls);
-      updateFactPartitionStorageTablesFrom(fact, part, storageTbls);
+      if (!segment.isHole()) {
+        part.getStorageTables().addAll(segment.getStorageTables());
+        part.setFound(true);
+      }
       log.debug("Storage tables containing Partition {} are: {}", part, part.getStorageTables());
       if (part.isFound()) {
         log.debug("Adding existing partition {}", part);
@@ -664,11 +712,8 @@ class StorageTableResolver implements ContextRewriter {
         }
       } else {
         log.info("Partition:{} does not exist in any storage table", part);
-        TreeSet<UpdatePeriod> newset = new TreeSet<UpdatePeriod>();
-        newset.addAll(updatePeriods);
-        newset.remove(interval);
-        if (!getPartitions(fact, dt, nextDt, partCol, partitions, newset, false, failOnPartialData, skipStorageCauses,
-          missingPartitions)) {
+        if (!getPartitions(fact, dt, nextDt, partCol, partitions, finerPeriods, false, failOnPartialData,
+          skipStorageCauses, missingPartitions)) {
 
           log.debug("Adding non existing partition {}", part);
           if (addNonExistingParts) {
@@ -720,6 +765,35 @@ class StorageTableResolver implements ContextRewriter {
     return true;
   }
 
+  /**
+   * Sets estimated size of found partitions, as the average over their storage tables of the average size of a
+   * partition of the storage table for the update period. Size stays unknown if none of the storage tables has
+   * statistics.
+   */
+  private void estimateSizes(CubeFactTable fact, Set<FactPartition> parts) throws LensException {
+    try {
+      for (FactPartition part : parts) {
+        if (!part.isFound() || part.getStorageTables().isEmpty()) {
+          continue;
+        }
+        long totalSize = 0;
+        int tablesWithStats = 0;
+        for (String storageTableName : part.getStorageTables()) {
+          long size = client.getEstimatedPartitionSize(fact, storageTableName, part.getPeriod());
+          if (size >= 0) {
+            totalSize += size;
+            tablesWithStats++;
+          }
+        }
+        if (tablesWithStats > 0) {
+          part.setEstimatedSize(totalSize / tablesWithStats);
+        }
+      }
+    } catch (HiveException e) {
+      throw new LensException(e);
+    }
+  }
+
   private void updateFactPartitionStorageTablesFrom(CubeFactTable fact,
     FactPartition part, Set<String> storageTableNames) throws LensException, HiveException, ParseException {
     for (String storageTableName : storageTableNames) {
@@ -37,6 +37,13 @@ public class FactPartitionBasedQueryCostCalculator implements QueryCostCalculato
 
   public static final String UPDATE_PERIOD_WEIGHT_PREFIX = "update.period.weight.";
 
+  /**
+   * Bytes of a partition, as estimated from partition statistics, adding a unit to its cost. Sizes are not considered
+   * if this is not positive.
+   */
+  public static final String PARTITION_BYTES_PER_UNIT_COST = "lens.driver.cost.partition.bytes.per.unit";
+  public static final long DEFAULT_PARTITION_BYTES_PER_UNIT_COST = 0;
+
   /**
    * Calculates total cost based on weights of selected tables and their selected partitions
    *
@@ -47,9 +54,11 @@ public class FactPartitionBasedQueryCostCalculator implements QueryCostCalculato
    */
 
   @SuppressWarnings("unchecked") // required for (Set<FactPartition>) casting
-  private double getTotalPartitionCost(final AbstractQueryContext queryContext, LensDriver driver)
+  protected double getTotalPartitionCost(final AbstractQueryContext queryContext, LensDriver driver)
     throws LensException {
     double cost = 0;
+    long bytesPerUnitCost = driver.getConf().getLong(PARTITION_BYTES_PER_UNIT_COST,
+      DEFAULT_PARTITION_BYTES_PER_UNIT_COST);
     for (Map.Entry<String, Set<?>> entry : getAllPartitions(queryContext, driver).entrySet()) {
       // Have to do instanceof check, since it can't be handled by polymorphism.
       // The '?' is either a FactPartition or a String. When we decide to write a
@@ -63,6 +72,9 @@ public class FactPartitionBasedQueryCostCalculator implements QueryCostCalculato
             allTableWeights = 1;
           }
           cost += allTableWeights * getNormalizedUpdatePeriodCost(partition.getPeriod(), driver);
+          if (bytesPerUnitCost > 0 && partition.getEstimatedSize() > 0) {
+            cost += allTableWeights * partition.getEstimatedSize() / bytesPerUnitCost;
+          }
         }
       }
     }
@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.cube.query.cost;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.lens.cube.metadata.FactPartition;
+import org.apache.lens.server.api.driver.LensDriver;
+import org.apache.lens.server.api.error.LensException;
+import org.apache.lens.server.api.query.AbstractQueryContext;
+import org.apache.lens.server.api.query.cost.HistoryBasedQueryCost;
+import org.apache.lens.server.api.query.cost.QueryCost;
+import org.apache.lens.server.api.query.cost.QueryExecTimeModel;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Cost calculator which, along with the fact partition based cost, predicts execution time of the query from the
+ * execution time of queries finished earlier on the driver. The prediction is made by a {@link QueryExecTimeModel}
+ * per driver, from the partition cost, the number of fact partitions, the number of storage tables read and the
+ * bytes scanned, which are known if partition sizes are estimated while rewriting. The model learns as queries
+ * finish, so costs carry no predicted time till
+ * {@link #COST_MODEL_MIN_OBSERVATIONS} queries have finished on the driver after it started.
+ */
+public class HistoryBasedQueryCostCalculator extends FactPartitionBasedQueryCostCalculator {
+
+  /** Weight of previous observations relative to a new one, closer to 1 remembers longer. */
+  public static final String COST_MODEL_FORGETTING_FACTOR = "lens.driver.cost.model.forgetting.factor";
+  public static final double DEFAULT_COST_MODEL_FORGETTING_FACTOR = 0.999;
+
+  /** Number of finished queries the model learns from before it predicts. */
+  public static final String COST_MODEL_MIN_OBSERVATIONS = "lens.driver.cost.model.min.observations";
+  public static final int DEFAULT_COST_MODEL_MIN_OBSERVATIONS = 20;
+
+  /** Number of features: partition cost, fact partitions, storage tables and bytes scanned. */
+  private static final int NUM_FEATURES = 4;
+
+  /** The models, by driver. */
+  private final ConcurrentMap<LensDriver, QueryExecTimeModel> models =
+    new ConcurrentHashMap<LensDriver, QueryExecTimeModel>();
+
+  @Override
+  public QueryCost calculateCost(final AbstractQueryContext queryContext, LensDriver driver) throws LensException {
+    double partitionCost = getTotalPartitionCost(queryContext, driver);
+    int factPartitions = 0;
+    int storageTables = 0;
+    double bytesScanned = 0;
+    for (Map.Entry<String, Set<?>> entry : getAllPartitions(queryContext, driver).entrySet()) {
+      if (!entry.getValue().isEmpty() && entry.getValue().iterator().next() instanceof FactPartition) {
+        factPartitions += entry.getValue().size();
+        storageTables++;
+        for (Object partition : entry.getValue()) {
+          // unknown sizes count as nothing scanned
+          bytesScanned += Math.max(0, ((FactPartition) partition).getEstimatedSize());
+        }
+      }
+    }
+    return new HistoryBasedQueryCost(partitionCost,
+      new double[]{partitionCost, factPartitions, storageTables, bytesScanned}, getModel(driver));
+  }
+
+  private QueryExecTimeModel getModel(LensDriver driver) {
+    QueryExecTimeModel model = models.get(driver);
+    if (model == null) {
+      Configuration conf = driver.getConf();
+      model = new QueryExecTimeModel(driver.getClass().getSimpleName(), NUM_FEATURES,
+        conf.getDouble(COST_MODEL_FORGETTING_FACTOR, DEFAULT_COST_MODEL_FORGETTING_FACTOR),
+        conf.getInt(COST_MODEL_MIN_OBSERVATIONS, DEFAULT_COST_MODEL_MIN_OBSERVATIONS));
+      QueryExecTimeModel existing = models.putIfAbsent(driver, model);
+      if (existing != null) {
+        model = existing;
+      }
+    }
+    return model;
+  }
+}
@@ -20,6 +20,8 @@ package org.apache.lens.driver.cube;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.lens.cube.metadata.FactPartition;
@@ -44,6 +46,41 @@ public final class RewriterPlan extends DriverQueryPlan {
     extractPlan(cubeQueries);
   }
 
+  private RewriterPlan() {
+  }
+
+  /**
+   * Combines plans of the cube queries of a user query into one plan, same as the plan of all their cube query
+   * contexts. The given plans are not modified, so they can be shared, for example by a cache of rewrites.
+   *
+   * @param cubeQueryPlans plans of each cube query
+   * @return the combined plan
+   */
+  @SuppressWarnings("unchecked") // required for (Set<FactPartition>) casting
+  public static RewriterPlan combine(List<RewriterPlan> cubeQueryPlans) {
+    RewriterPlan plan = new RewriterPlan();
+    for (RewriterPlan cubeQueryPlan : cubeQueryPlans) {
+      plan.addTablesQueried(cubeQueryPlan.getTablesQueried());
+      for (Map.Entry<String, Set<?>> entry : cubeQueryPlan.getPartitions().entrySet()) {
+        Set<?> parts = plan.partitions.get(entry.getKey());
+        if (parts == null || parts.isEmpty()) {
+          plan.partitions.put(entry.getKey(), new HashSet<Object>(entry.getValue()));
+        } else if (!entry.getValue().isEmpty() && entry.getValue().iterator().next() instanceof FactPartition) {
+          // fact partitions add up, dimension tables keep the first latest part
+          ((Set<Object>) parts).addAll(entry.getValue());
+        }
+      }
+      for (Map.Entry<String, Double> entry : cubeQueryPlan.getTableWeights().entrySet()) {
+        if (!plan.tableWeights.containsKey(entry.getKey())) {
+          plan.tableWeights.put(entry.getKey(), entry.getValue());
+        }
+      }
+      plan.setHasSubQuery(plan.hasSubQuery() || cubeQueryPlan.hasSubQuery());
+    }
+    plan.setHasSubQuery(plan.hasSubQuery() || cubeQueryPlans.size() > 1);
+    return plan;
+  }
+
   @SuppressWarnings("unchecked") // required for (Set<FactPartition>) casting
   void extractPlan(Collection<CubeQueryContext> cubeQueries) {
 
@@ -32,7 +32,9 @@ import org.apache.lens.cube.metadata.timeline.TestPartitionTimelines;
 import org.apache.lens.cube.parse.TimeRange;
 import org.apache.lens.server.api.error.LensException;
 
+import org.apache.hadoop.hive.common.StatsSetupConst;
 import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.metastore.TableType;
 import org.apache.hadoop.hive.metastore.api.AlreadyExistsException;
 import org.apache.hadoop.hive.metastore.api.Database;
 import org.apache.hadoop.hive.metastore.api.FieldSchema;
@@ -51,6 +53,7 @@ import org.testng.annotations.Test;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 public class TestCubeMetastoreClient {
 
@@ -1095,6 +1098,93 @@ public class TestCubeMetastoreClient {
     Assert.assertFalse(client.latestPartitionExists(cubeFact.getName(), c1, testDtPart.getName()));
   }
 
+  private static StoragePartitionDesc partitionWithStats(String factName, Date date, long size) {
+    Map<String, Date> timeParts = new HashMap<String, Date>();
+    timeParts.put(getDatePartitionKey(), date);
+    StoragePartitionDesc partSpec = new StoragePartitionDesc(factName, timeParts, null, UpdatePeriod.HOURLY);
+    Map<String, String> partParams = new HashMap<String, String>();
+    // hive keeps size statistics given along with the file count
+    partParams.put(StatsSetupConst.NUM_FILES, "1");
+    partParams.put(StatsSetupConst.TOTAL_SIZE, String.valueOf(size));
+    partParams.put(StatsSetupConst.ROW_COUNT, String.valueOf(size / 10));
+    partSpec.setPartParams(partParams);
+    return partSpec;
+  }
+
+  @Test(priority = 2)
+  public void testPartitionStats() throws Exception {
+    String factName = "testFactPartitionStats";
+    List<FieldSchema> factColumns = new ArrayList<FieldSchema>(cubeMeasures.size());
+    for (CubeMeasure measure : cubeMeasures) {
+      factColumns.add(measure.getColumn());
+    }
+    Map<String, Set<UpdatePeriod>> updatePeriods = new HashMap<String, Set<UpdatePeriod>>();
+    updatePeriods.put(c1, Sets.newHashSet(UpdatePeriod.HOURLY));
+    StorageTableDesc s1 = new StorageTableDesc();
+    s1.setInputFormat(TextInputFormat.class.getCanonicalName());
+    s1.setOutputFormat(HiveIgnoreKeyTextOutputFormat.class.getCanonicalName());
+    s1.setPartCols(Lists.newArrayList(getDatePartition()));
+    s1.setTimePartCols(Lists.newArrayList(getDatePartitionKey()));
+    Map<String, StorageTableDesc> storageTables = new HashMap<String, StorageTableDesc>();
+    storageTables.put(c1, s1);
+    client.createCubeFactTable(CUBE_NAME_WITH_PROPS, factName, factColumns, updatePeriods, 0L, null, storageTables);
+    CubeFactTable fact = client.getCubeFact(factName);
+    String storageTableName = MetastoreUtil.getFactOrDimtableStorageTableName(factName, c1);
+    assertEquals(client.getEstimatedPartitionSize(fact, storageTableName, UpdatePeriod.HOURLY), -1);
+
+    Calendar cal = new GregorianCalendar();
+    cal.setTime(now);
+    cal.add(Calendar.HOUR, -2);
+    Date first = cal.getTime();
+    cal.add(Calendar.HOUR, 1);
+    Date second = cal.getTime();
+
+    // updated incrementally as partitions are added
+    client.addPartition(partitionWithStats(factName, first, 100), c1);
+    assertEquals(client.getEstimatedPartitionSize(fact, storageTableName, UpdatePeriod.HOURLY), 100);
+    client.addPartition(partitionWithStats(factName, second, 300), c1);
+    assertEquals(client.getEstimatedPartitionSize(fact, storageTableName, UpdatePeriod.HOURLY), 200);
+    assertEquals(client.getEstimatedPartitionSize(fact, storageTableName, UpdatePeriod.DAILY), -1);
+
+    // and written back to table properties
+    Table storageTable = Hive.get(conf).getTable(storageTableName);
+    assertEquals(storageTable.getParameters().get(MetastoreUtil.getPartitionStatsPresenceKey()), "true");
+    PartitionStats stored = PartitionStats.parse(storageTable.getParameters().get(
+      MetastoreUtil.getPartitionStatsKey(UpdatePeriod.HOURLY)));
+    assertEquals(stored.getNumPartitions(), 2);
+    assertEquals(stored.getTotalSize(), 400);
+    assertEquals(stored.getNumRows(), 40);
+
+    // loaded lazily from table properties
+    client.partitionStatsCache.remove(storageTableName);
+    assertEquals(client.getEstimatedPartitionSize(fact, storageTableName, UpdatePeriod.HOURLY), 200);
+
+    // computed from all partitions when not in table properties, along with the partition timelines
+    storageTable = client.getTable(storageTableName);
+    storageTable.getParameters().remove(MetastoreUtil.getPartitionStatsPresenceKey());
+    storageTable.getParameters().remove(MetastoreUtil.getPartitionTimelineCachePresenceKey());
+    Hive.get(conf).alterTable(storageTableName, storageTable);
+    client.partitionStatsCache.remove(storageTableName);
+    client.partitionTimelineCache.remove(storageTableName);
+    assertEquals(client.getEstimatedPartitionSize(fact, storageTableName, UpdatePeriod.HOURLY), 200);
+    Assert.assertNotNull(client.partitionTimelineCache.get(storageTableName));
+    Assert.assertTrue(client.partitionTimelineCache.partitionTimeExists(factName, c1, UpdatePeriod.HOURLY,
+      getDatePartitionKey(), first));
+    storageTable = Hive.get(conf).getTable(storageTableName);
+    assertEquals(storageTable.getParameters().get(MetastoreUtil.getPartitionStatsPresenceKey()), "true");
+    assertEquals(storageTable.getParameters().get(MetastoreUtil.getPartitionTimelineCachePresenceKey()), "true");
+
+    // updated incrementally as partitions are dropped
+    Map<String, Date> timeParts = new HashMap<String, Date>();
+    timeParts.put(getDatePartitionKey(), first);
+    client.dropPartition(factName, c1, timeParts, null, UpdatePeriod.HOURLY);
+    assertEquals(client.getEstimatedPartitionSize(fact, storageTableName, UpdatePeriod.HOURLY), 300);
+    timeParts.put(getDatePartitionKey(), second);
+    client.dropPartition(factName, c1, timeParts, null, UpdatePeriod.HOURLY);
+    assertEquals(client.getEstimatedPartitionSize(fact, storageTableName, UpdatePeriod.HOURLY), -1);
+    client.dropFact(factName, true);
+  }
+
   @Test(priority = 2)
   public void testCubeFactWithThreeTimedParts() throws Exception {
     String factName = "testMetastoreFact3TimedParts";
@@ -1824,9 +1914,14 @@ public class TestCubeMetastoreClient {
     // test partition
     StoragePartitionDesc sPartSpec =
       new StoragePartitionDesc(cubeFactWithTwoStorages.getName(), timeParts, partSpec, UpdatePeriod.HOURLY);
+    long version = client.getVersion();
     client.addPartition(sPartSpec, c1);
     Assert.assertTrue(client.factPartitionExists(cubeFactWithTwoStorages.getName(), c1, UpdatePeriod.HOURLY, timeParts,
       partSpec));
+    // only the storage table to which partitions are added changes
+    Assert.assertTrue(client.getVersion(MetastoreUtil.getFactOrDimtableStorageTableName(factName, c1)) > version);
+    Assert.assertTrue(client.getVersion(MetastoreUtil.getFactOrDimtableStorageTableName(factName, c2)) <= version);
+    Assert.assertTrue(client.getVersion(CUBE_NAME) <= version);
     Assert.assertTrue(client.latestPartitionExists(cubeFactWithTwoStorages.getName(), c1,
       TestCubeMetastoreClient.getDatePartitionKey()));
     String storageTableName = MetastoreUtil.getFactOrDimtableStorageTableName(cubeFactWithTwoStorages.getName(), c1);
@@ -1846,9 +1941,12 @@ public class TestCubeMetastoreClient {
 
     assertNoPartitionNamedLatest(storageTableName2, "dt");
 
+    version = client.getVersion();
     client.dropPartition(cubeFactWithTwoStorages.getName(), c1, timeParts, partSpec, UpdatePeriod.HOURLY);
     Assert.assertFalse(client.factPartitionExists(cubeFactWithTwoStorages.getName(), c1, UpdatePeriod.HOURLY,
       timeParts, partSpec));
+    Assert.assertTrue(client.getVersion(storageTableName) > version);
+    Assert.assertTrue(client.getVersion(storageTableName2) <= version);
     Assert.assertFalse(client.latestPartitionExists(cubeFactWithTwoStorages.getName(), c1,
       TestCubeMetastoreClient.getDatePartitionKey()));
     assertEquals(client.getAllParts(storageTableName).size(), 0);
@@ -2578,4 +2676,47 @@ public class TestCubeMetastoreClient {
     conf.setBoolean(MetastoreConstants.METASTORE_ENABLE_CACHING, true);
     client = CubeMetastoreClient.getInstance(conf);
   }
+
+  @Test(priority = 4)
+  public void testRefreshChangedTables() throws Exception {
+    client = CubeMetastoreClient.getInstance(conf);
+    assertEquals(13, client.getAllCubes().size());
+
+    // create a cube bypassing the client
+    Cube refreshCube = new Cube("testrefresh", cubeMeasures, cubeDimensions);
+    Table tbl = Hive.get(conf).newTable(refreshCube.getName());
+    tbl.setTableType(TableType.MANAGED_TABLE);
+    tbl.getTTable().getSd().setCols(refreshCube.getColumns());
+    tbl.getTTable().getParameters().putAll(refreshCube.getProperties());
+    Hive.get(conf).createTable(tbl);
+    assertEquals(13, client.getAllCubes().size());
+    client.refreshChangedTables();
+    assertEquals(14, client.getAllCubes().size());
+    Assert.assertNotNull(client.getCube("testrefresh"));
+
+    // drop a cube bypassing the client
+    Hive.get(conf).dropTable("derived4");
+    assertEquals(14, client.getAllCubes().size());
+    client.refreshChangedTables();
+    assertEquals(13, client.getAllCubes().size());
+    Assert.assertNull(client.getCube("derived4"));
+
+    // nothing changed
+    long version = client.getVersion();
+    client.refreshChangedTables();
+    assertEquals(client.getVersion(), version);
+
+    // alter a storage table bypassing the client, its partition timelines are reloaded from table properties
+    String storageTableName = MetastoreUtil.getFactOrDimtableStorageTableName("testMetastoreFactTimedParts", c1);
+    Assert.assertNotNull(client.partitionTimelineCache.get("testMetastoreFactTimedParts", c1));
+    // last DDL times are in seconds
+    Thread.sleep(1000);
+    Table storageTable = Hive.get(conf).getTable(storageTableName);
+    storageTable.getParameters().put("testrefresh", "true");
+    Hive.get(conf).alterTable(storageTableName, storageTable);
+    client.refreshChangedTables();
+    Assert.assertNull(client.partitionTimelineCache.get(storageTableName));
+    Assert.assertNotNull(client.partitionTimelineCache.get("testMetastoreFactTimedParts", c1));
+    assertEquals(client.getTable(storageTableName).getParameters().get("testrefresh"), "true");
+  }
 }
@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.cube.metadata;
+
+import static org.testng.Assert.*;
+
+import java.util.*;
+
+import org.apache.lens.server.api.error.LensException;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class TestPartitionCoverage {
+
+  private static TimePartitionRange range(String from, String to) throws LensException {
+    return TimePartitionRange.parseFrom(UpdatePeriod.DAILY, from, to);
+  }
+
+  private static TimePartitionRangeList ranges(TimePartitionRange... ranges) {
+    TimePartitionRangeList list = new TimePartitionRangeList();
+    list.addAll(Arrays.asList(ranges));
+    return list;
+  }
+
+  private static PartitionCoverage.Segment segment(String from, String to, String... storageTables)
+    throws LensException {
+    return new PartitionCoverage.Segment(range(from, to), Sets.newLinkedHashSet(Arrays.asList(storageTables)));
+  }
+
+  @Test
+  public void testSegmentsAcrossStorageTables() throws LensException {
+    Map<String, TimePartitionRangeList> existing = new LinkedHashMap<>();
+    existing.put("c1", ranges(range("2014-12-30", "2015-01-03"), range("2015-01-05", "2015-01-07")));
+    existing.put("c2", ranges(range("2015-01-02", "2015-01-06"), range("2015-01-09", "2015-01-20")));
+    PartitionCoverage coverage = new PartitionCoverage(range("2015-01-01", "2015-01-11"), existing);
+
+    assertEquals(Lists.newArrayList(coverage), Lists.newArrayList(
+      segment("2015-01-01", "2015-01-02", "c1"),
+      segment("2015-01-02", "2015-01-03", "c1", "c2"),
+      segment("2015-01-03", "2015-01-05", "c2"),
+      segment("2015-01-05", "2015-01-06", "c1", "c2"),
+      segment("2015-01-06", "2015-01-07", "c1"),
+      segment("2015-01-07", "2015-01-09"),
+      segment("2015-01-09", "2015-01-11", "c2")));
+    assertEquals(coverage.getHoles(), ranges(range("2015-01-07", "2015-01-09")));
+  }
+
+  @Test
+  public void testAdjacentRangesMerged() throws LensException {
+    Map<String, TimePartitionRangeList> existing = new LinkedHashMap<>();
+    existing.put("c1", ranges(range("2015-01-01", "2015-01-03"), range("2015-01-03", "2015-01-05")));
+    existing.put("c2", ranges(range("2014-12-01", "2015-02-01")));
+    PartitionCoverage coverage = new PartitionCoverage(range("2015-01-01", "2015-01-05"), existing);
+
+    assertEquals(Lists.newArrayList(coverage),
+      Lists.newArrayList(segment("2015-01-01", "2015-01-05", "c1", "c2")));
+    assertTrue(coverage.getHoles().isEmpty());
+  }
+
+  @Test
+  public void testNoExistingPartitions() throws LensException {
+    Map<String, TimePartitionRangeList> existing = new LinkedHashMap<>();
+    existing.put("c1", ranges());
+    existing.put("c2", ranges(range("2015-02-01", "2015-02-05")));
+    PartitionCoverage coverage = new PartitionCoverage(range("2015-01-01", "2015-01-10"), existing);
+
+    assertEquals(Lists.newArrayList(coverage), Lists.newArrayList(segment("2015-01-01", "2015-01-10")));
+    assertEquals(coverage.getHoles(), ranges(range("2015-01-01", "2015-01-10")));
+
+    assertFalse(new PartitionCoverage(range("2015-01-01", "2015-01-01"), existing).iterator().hasNext());
+  }
+}
@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.cube.metadata;
+
+import static org.testng.Assert.*;
+
+import java.util.Map;
+
+import org.apache.hadoop.hive.common.StatsSetupConst;
+import org.apache.hadoop.hive.ql.metadata.Partition;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Maps;
+
+public class TestPartitionStats {
+
+  private static Partition partition(String size, String rows) {
+    Map<String, String> params = Maps.newHashMap();
+    if (size != null) {
+      params.put(StatsSetupConst.TOTAL_SIZE, size);
+    }
+    if (rows != null) {
+      params.put(StatsSetupConst.ROW_COUNT, rows);
+    }
+    org.apache.hadoop.hive.metastore.api.Partition tPartition = new org.apache.hadoop.hive.metastore.api.Partition();
+    tPartition.setParameters(params);
+    Partition partition = new Partition();
+    partition.setTPartition(tPartition);
+    return partition;
+  }
+
+  @Test
+  public void testAddRemove() {
+    PartitionStats stats = new PartitionStats();
+    assertEquals(stats.getAverageSize(), -1);
+    assertEquals(stats.getAverageRows(), -1);
+
+    assertTrue(stats.add(partition("100", "10")));
+    assertTrue(stats.add(partition("300", "30")));
+    // partitions without statistics are not counted
+    assertFalse(stats.add(partition(null, "10")));
+    assertFalse(stats.add(partition("invalid", null)));
+    assertEquals(stats.getNumPartitions(), 2);
+    assertEquals(stats.getAverageSize(), 200);
+    assertEquals(stats.getAverageRows(), 20);
+
+    assertTrue(stats.remove(partition("100", "10")));
+    assertFalse(stats.remove(partition(null, null)));
+    assertEquals(stats.getAverageSize(), 300);
+    assertEquals(stats.getAverageRows(), 30);
+    assertTrue(stats.remove(partition("300", "30")));
+    assertEquals(stats.getAverageSize(), -1);
+    assertFalse(stats.remove(partition("300", "30")));
+  }
+
+  @Test
+  public void testParse() {
+    PartitionStats stats = new PartitionStats();
+    stats.add(partition("1024", "5"));
+    stats.add(partition("2048", null));
+    assertEquals(stats.toString(), "2,3072,5");
+
+    PartitionStats parsed = PartitionStats.parse(stats.toString());
+    assertNotNull(parsed);
+    assertEquals(parsed.getNumPartitions(), 2);
+    assertEquals(parsed.getTotalSize(), 3072);
+    assertEquals(parsed.getNumRows(), 5);
+    assertEquals(parsed.getAverageSize(), 1536);
+
+    assertNull(PartitionStats.parse(null));
+    assertNull(PartitionStats.parse("1,2"));
+    assertNull(PartitionStats.parse("a,b,c"));
+  }
+}
@@ -25,6 +25,8 @@ import java.util.*;
 
 import org.apache.lens.cube.metadata.TestTimePartition;
 import org.apache.lens.cube.metadata.TimePartition;
+import org.apache.lens.cube.metadata.TimePartitionRange;
+import org.apache.lens.cube.metadata.TimePartitionRangeList;
 import org.apache.lens.cube.metadata.UpdatePeriod;
 import org.apache.lens.cube.metadata.UpdatePeriodTest;
 import org.apache.lens.server.api.error.LensException;
@@ -107,6 +109,36 @@ public class TestPartitionTimelines {
     }
   }
 
+  @Test(dataProvider = "update-periods-and-timeline-classes")
+  public <T extends PartitionTimeline> void testExistingRanges(UpdatePeriod period, Class<T> clz) throws
+    LensException, InvocationTargetException, NoSuchMethodException, InstantiationException, IllegalAccessException {
+    T timeline = getInstance(clz, period);
+    TimePartitionRange within = TimePartition.of(period, TestTimePartition.timeAtDiff(TestTimePartition.NOW, period,
+      -10)).rangeUpto(TimePartition.of(period, TestTimePartition.timeAtDiff(TestTimePartition.NOW, period, 10)));
+    assertTrue(timeline.existingRanges(within).isEmpty());
+    final Random randomGenerator = new Random();
+    for (int i = 0; i < 20; i++) {
+      timeline.add(TimePartition.of(period, TestTimePartition.timeAtDiff(TestTimePartition.NOW, period,
+        randomGenerator.nextInt(30) - 15)));
+      TimePartitionRangeList ranges = timeline.existingRanges(within);
+      // ranges should be sorted, non empty and separated by at least one missing partition
+      for (int j = 0; j < ranges.size(); j++) {
+        assertTrue(ranges.get(j).getBegin().before(ranges.get(j).getEnd()));
+        if (j > 0) {
+          assertTrue(ranges.get(j - 1).getEnd().before(ranges.get(j).getBegin()));
+        }
+      }
+      // and should cover exactly the existing partitions within the range
+      for (TimePartition part : within) {
+        boolean covered = false;
+        for (TimePartitionRange range : ranges) {
+          covered |= range.contains(part);
+        }
+        assertEquals(covered, timeline.exists(part), "Mismatch for " + part + " in " + ranges);
+      }
+    }
+  }
+
   public static void assertSameTimelines(List<PartitionTimeline> timelines) {
     List<Iterator<TimePartition>> iterators = Lists.newArrayList();
     for (PartitionTimeline timeline : timelines) {
@@ -153,6 +153,45 @@ public class TestCubeRewriter extends TestQueryRewrite {
     assertNotNull(rewrittenQuery.getNonExistingParts());
   }
 
+  @Test
+  public void testEstimatePartitionSizes() throws Exception {
+    Configuration conf = getConfWithStorages("C2");
+    CubeQueryContext ctx = rewriteCtx("cube select SUM(msr2) from testCube where " + TWO_DAYS_RANGE, conf);
+    for (CandidateFact cfact : ctx.getCandidateFacts()) {
+      for (FactPartition part : cfact.getPartsQueried()) {
+        // not estimated unless facts are picked by bytes scanned
+        assertEquals(part.getEstimatedSize(), -1);
+      }
+    }
+
+    conf.setBoolean(CubeQueryConfUtil.PICK_FACT_BY_BYTES_SCANNED, true);
+    ctx = rewriteCtx("cube select SUM(msr2) from testCube where " + TWO_DAYS_RANGE, conf);
+    CubeMetastoreClient client = CubeMetastoreClient.getInstance(new HiveConf(conf, HiveConf.class));
+    assertFalse(ctx.getCandidateFacts().isEmpty());
+    for (CandidateFact cfact : ctx.getCandidateFacts()) {
+      assertFalse(cfact.getPartsQueried().isEmpty());
+      for (FactPartition part : cfact.getPartsQueried()) {
+        if (!part.isFound()) {
+          assertEquals(part.getEstimatedSize(), -1);
+          continue;
+        }
+        // average of the estimates of the storage tables having statistics
+        long totalSize = 0;
+        int tablesWithStats = 0;
+        for (String storageTable : part.getStorageTables()) {
+          long size = client.getEstimatedPartitionSize(cfact.fact, storageTable, part.getPeriod());
+          if (size >= 0) {
+            totalSize += size;
+            tablesWithStats++;
+          }
+        }
+        assertEquals(part.getEstimatedSize(), tablesWithStats == 0 ? -1 : totalSize / tablesWithStats);
+      }
+    }
+    compareQueries(ctx.toHQL(), getExpectedQuery(cubeName, "select sum(testcube.msr2) FROM ", null, null,
+      getWhereForDailyAndHourly2days(cubeName, "C2_testfact")));
+  }
+
   @Test
   public void testMaxCoveringFact() throws Exception {
     Configuration conf = getConf();
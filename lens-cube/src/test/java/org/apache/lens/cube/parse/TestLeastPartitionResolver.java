@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.cube.parse;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+import java.util.*;
+
+import org.apache.lens.cube.metadata.CubeFactTable;
+import org.apache.lens.cube.metadata.CubeInterface;
+import org.apache.lens.cube.metadata.FactPartition;
+import org.apache.lens.cube.metadata.UpdatePeriod;
+
+import org.apache.hadoop.conf.Configuration;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Sets;
+
+public class TestLeastPartitionResolver {
+
+  private static final long HOUR_MILLIS = 3600 * 1000L;
+
+  /**
+   * Candidate fact querying a partition of each size given, -1 for a partition of unknown size, and null for a
+   * missing partition.
+   */
+  private static CandidateFact candidateFact(String name, Long... sizes) {
+    CubeFactTable fact = mock(CubeFactTable.class);
+    when(fact.getName()).thenReturn(name);
+    CandidateFact cfact = new CandidateFact(fact, mock(CubeInterface.class));
+    for (int i = 0; i < sizes.length; i++) {
+      FactPartition part = new FactPartition("dt", new Date(i * HOUR_MILLIS), UpdatePeriod.HOURLY, null, null);
+      if (sizes[i] != null) {
+        part.setFound(true);
+        part.setEstimatedSize(sizes[i]);
+      }
+      cfact.getPartsQueried().add(part);
+    }
+    cfact.incrementPartsQueried(sizes.length);
+    return cfact;
+  }
+
+  private static Set<Set<CandidateFact>> resolve(boolean pickByBytesScanned, CandidateFact... facts)
+    throws Exception {
+    Set<Set<CandidateFact>> factSets = new HashSet<Set<CandidateFact>>();
+    for (CandidateFact fact : facts) {
+      factSets.add(Sets.newHashSet(fact));
+    }
+    CubeQueryContext cubeql = mock(CubeQueryContext.class);
+    CubeInterface cube = mock(CubeInterface.class);
+    when(cubeql.getCube()).thenReturn(cube);
+    when(cubeql.getCandidateFactSets()).thenReturn(factSets);
+    Configuration conf = new Configuration(false);
+    conf.setBoolean(CubeQueryConfUtil.PICK_FACT_BY_BYTES_SCANNED, pickByBytesScanned);
+    new LeastPartitionResolver(conf).rewriteContext(cubeql);
+    return factSets;
+  }
+
+  private static Set<Set<CandidateFact>> setsOf(CandidateFact fact) {
+    Set<Set<CandidateFact>> factSets = new HashSet<Set<CandidateFact>>();
+    factSets.add(Sets.newHashSet(fact));
+    return factSets;
+  }
+
+  @Test
+  public void testPickByBytesScanned() throws Exception {
+    CandidateFact moreParts = candidateFact("moreParts", 10L, 10L, 10L);
+    CandidateFact moreBytes = candidateFact("moreBytes", 100L);
+    assertEquals(resolve(true, moreParts, moreBytes), setsOf(moreParts));
+    assertEquals(resolve(false, moreParts, moreBytes), setsOf(moreBytes));
+  }
+
+  @Test
+  public void testUnknownSizeFallsBackToPartitions() throws Exception {
+    CandidateFact moreParts = candidateFact("moreParts", 10L, -1L, 10L);
+    CandidateFact moreBytes = candidateFact("moreBytes", 100L);
+    assertEquals(resolve(true, moreParts, moreBytes), setsOf(moreBytes));
+  }
+
+  @Test
+  public void testMissingPartitionsScanNothing() throws Exception {
+    CandidateFact moreParts = candidateFact("moreParts", 10L, null, 10L);
+    CandidateFact moreBytes = candidateFact("moreBytes", 100L);
+    assertEquals(resolve(true, moreParts, moreBytes), setsOf(moreParts));
+  }
+}
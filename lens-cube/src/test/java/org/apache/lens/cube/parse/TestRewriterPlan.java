@@ -107,6 +107,32 @@ public class TestRewriterPlan extends TestQueryRewrite {
     Assert.assertEquals(plan.getPartitions().get("citytable").size(), 1);
   }
 
+  @Test
+  public void testCombinedPlan() throws Exception {
+    Configuration conf = getConfWithStorages("C1,C2");
+    CubeQueryContext ctx1 = rewriteCtx("cube select SUM(msr2) from testCube where " + TWO_DAYS_RANGE, conf);
+    ctx1.toHQL();
+    CubeQueryContext ctx2 = rewriteCtx("cube select citydim.name, SUM(msr2) from testCube where citydim.name != \"XYZ\""
+      + " and " + TWO_DAYS_RANGE + " having sum(msr2) > 1000 order by citydim.name limit 50", conf);
+    ctx2.toHQL();
+    RewriterPlan plan1 = new RewriterPlan(Collections.singleton(ctx1));
+    RewriterPlan plan2 = new RewriterPlan(Collections.singleton(ctx2));
+    int plan1Tables = plan1.getTablesQueried().size();
+    RewriterPlan expected = new RewriterPlan(Arrays.asList(ctx1, ctx2));
+    RewriterPlan plan = RewriterPlan.combine(Arrays.asList(plan1, plan2));
+    Assert.assertEquals(plan.getTablesQueried(), expected.getTablesQueried());
+    Assert.assertEquals(plan.getTableWeights(), expected.getTableWeights());
+    Assert.assertEquals(plan.getPartitions(), expected.getPartitions());
+    Assert.assertTrue(plan.hasSubQuery());
+    // combined plans are left as they are
+    Assert.assertEquals(plan1.getTablesQueried().size(), plan1Tables);
+    Assert.assertFalse(plan1.hasSubQuery());
+
+    RewriterPlan single = RewriterPlan.combine(Collections.singletonList(plan1));
+    Assert.assertEquals(single.getPartitions(), plan1.getPartitions());
+    Assert.assertFalse(single.hasSubQuery());
+  }
+
   @Test
   public void testUnimplemented() throws ParseException, LensException, HiveException {
     CubeQueryContext ctx = rewriteCtx("cube select SUM(msr2) from testCube where " + TWO_DAYS_RANGE, conf);
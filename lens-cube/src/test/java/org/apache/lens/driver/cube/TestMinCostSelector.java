@@ -19,6 +19,8 @@
 package org.apache.lens.driver.cube;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +32,7 @@ import org.apache.lens.server.api.driver.MockDriver;
 import org.apache.lens.server.api.driver.MockFailDriver;
 import org.apache.lens.server.api.error.LensException;
 import org.apache.lens.server.api.query.MockQueryContext;
+import org.apache.lens.server.api.query.cost.FactPartitionBasedQueryCost;
 
 import org.apache.hadoop.conf.Configuration;
 
@@ -41,6 +44,26 @@ import org.testng.annotations.Test;
  */
 public class TestMinCostSelector {
 
+  /**
+   * Partition cost predicting execution time, or not predicting it when the time is negative.
+   */
+  private static class PredictedCost extends FactPartitionBasedQueryCost {
+    private final long execTimeMillis;
+
+    PredictedCost(double partitionCost, long execTimeMillis) {
+      super(partitionCost);
+      this.execTimeMillis = execTimeMillis;
+    }
+
+    @Override
+    public long getEstimatedExecTimeMillis() {
+      if (execTimeMillis < 0) {
+        throw new UnsupportedOperationException("Estimated time is not available");
+      }
+      return execTimeMillis;
+    }
+  }
+
   private MockQueryContext createMockContext(String query, Configuration conf, LensConf lensConf,
     Map<LensDriver, String> driverQueries) throws LensException {
     MockQueryContext ctx = new MockQueryContext(query, lensConf, conf, driverQueries.keySet());
@@ -113,4 +136,96 @@ public class TestMinCostSelector {
     selected = selector.select(ctx, conf);
     Assert.assertEquals(d1, selected);
   }
+
+  @Test
+  public void testCanSelectEarly() throws LensException {
+    MinQueryCostSelector selector = new MinQueryCostSelector();
+    Map<LensDriver, String> driverQueries = new HashMap<LensDriver, String>();
+    Configuration conf = new Configuration();
+
+    MockDriver d1 = new MockDriver();
+    d1.configure(conf);
+    MockDriver d2 = new MockDriver();
+    d2.configure(conf);
+    MockFailDriver fd1 = new MockFailDriver();
+    fd1.configure(conf);
+    String query = "test query";
+    driverQueries.put(d1, query);
+    driverQueries.put(d2, query);
+    driverQueries.put(fd1, query);
+
+    MockQueryContext ctx = createMockContext(query, conf, new LensConf(), driverQueries);
+    List<LensDriver> drivers = new ArrayList<LensDriver>(ctx.getDriverContext().getDrivers());
+    LensDriver first = drivers.indexOf(d1) < drivers.indexOf(d2) ? d1 : d2;
+    LensDriver second = first == d1 ? d2 : d1;
+    // zero cost can not be beaten by any driver
+    Assert.assertTrue(selector.canSelectEarly(ctx, first, Arrays.<LensDriver>asList(second, fd1), conf));
+    Assert.assertTrue(selector.canSelectEarly(ctx, second, Collections.<LensDriver>emptyList(), conf));
+    // a driver of equal cost before it is pending
+    Assert.assertFalse(selector.canSelectEarly(ctx, second, Arrays.<LensDriver>asList(first), conf));
+    // no cost known
+    Assert.assertFalse(selector.canSelectEarly(ctx, fd1, Collections.<LensDriver>emptyList(), conf));
+    Assert.assertEquals(selector.select(ctx, conf), first);
+  }
+
+  @Test
+  public void testSelectByPredictedExecTime() throws LensException {
+    MinQueryCostSelector selector = new MinQueryCostSelector();
+    Map<LensDriver, String> driverQueries = new HashMap<LensDriver, String>();
+    Configuration conf = new Configuration();
+    MockDriver d1 = new MockDriver();
+    d1.configure(conf);
+    MockDriver d2 = new MockDriver();
+    d2.configure(conf);
+    MockDriver d3 = new MockDriver();
+    d3.configure(conf);
+    String query = "test query";
+    driverQueries.put(d1, query);
+    driverQueries.put(d2, query);
+    driverQueries.put(d3, query);
+    MockQueryContext ctx = createMockContext(query, conf, new LensConf(), driverQueries);
+
+    // by partition cost d1 < d2 < d3, and by predicted time d3 < d1, which mixed would not be a total order
+    ctx.getDriverContext().setDriverCost(d1, new PredictedCost(1, 100));
+    ctx.getDriverContext().setDriverCost(d2, new PredictedCost(2, -1));
+    ctx.getDriverContext().setDriverCost(d3, new PredictedCost(3, 10));
+    Assert.assertEquals(selector.select(ctx, conf), d1);
+
+    // predicted times are compared only when every driver predicts
+    ctx.getDriverContext().setDriverCost(d2, new PredictedCost(2, 50));
+    Assert.assertEquals(selector.select(ctx, conf), d3);
+  }
+
+  @Test
+  public void testCanSelectEarlyByPredictedExecTime() throws LensException {
+    MinQueryCostSelector selector = new MinQueryCostSelector();
+    Map<LensDriver, String> driverQueries = new HashMap<LensDriver, String>();
+    Configuration conf = new Configuration();
+    MockDriver d1 = new MockDriver();
+    d1.configure(conf);
+    MockDriver d2 = new MockDriver();
+    d2.configure(conf);
+    String query = "test query";
+    driverQueries.put(d1, query);
+    driverQueries.put(d2, query);
+    MockQueryContext ctx = createMockContext(query, conf, new LensConf(), driverQueries);
+    List<LensDriver> none = Collections.emptyList();
+
+    // no partition cost, but predicted to take time which another driver may beat
+    ctx.getDriverContext().setDriverCost(d1, new PredictedCost(0, 100));
+    ctx.getDriverContext().setDriverCost(d2, new PredictedCost(5, 10));
+    Assert.assertFalse(selector.canSelectEarly(ctx, d1, none, conf));
+    Assert.assertEquals(selector.select(ctx, conf), d2);
+
+    // predicted to take no time
+    ctx.getDriverContext().setDriverCost(d1, new PredictedCost(0, 0));
+    Assert.assertTrue(selector.canSelectEarly(ctx, d1, none, conf));
+    Assert.assertEquals(selector.select(ctx, conf), d1);
+
+    // a driver not predicting time leaves partition costs to compare
+    ctx.getDriverContext().setDriverCost(d1, new PredictedCost(0, 100));
+    ctx.getDriverContext().setDriverCost(d2, new PredictedCost(5, -1));
+    Assert.assertTrue(selector.canSelectEarly(ctx, d1, none, conf));
+    Assert.assertEquals(selector.select(ctx, conf), d1);
+  }
 }
@@ -85,6 +85,10 @@ public class ESDriver implements LensDriver {
   private final Map<String, ESQuery> rewrittenQueriesCache = Maps.newConcurrentMap();
   private final Map<QueryHandle, Future<LensResultSet>> resultSetMap = Maps.newConcurrentMap();
   private final Map<QueryHandle, QueryCompletionListener> handleListenerMap = Maps.newConcurrentMap();
+  /**
+   * Result sets of async queries, kept till the result set is closed so that scrolls held by them can be released
+   */
+  private final Map<QueryHandle, ESResultSet> openResultSets = Maps.newConcurrentMap();
 
   @Override
   public Configuration getConf() {
@@ -198,6 +202,7 @@ public class ESDriver implements LensDriver {
     } catch (NullPointerException e) {
       throw new LensException("The query does not exist or was already purged", e);
     }
+    releaseResultSet(handle);
   }
 
   @Override
@@ -210,6 +215,15 @@ public class ESDriver implements LensDriver {
       return cancelled;
     } catch (NullPointerException e) {
       throw new LensException("The query does not exist or was already purged", e);
+    } finally {
+      releaseResultSet(handle);
+    }
+  }
+
+  private void releaseResultSet(QueryHandle handle) throws LensException {
+    final ESResultSet resultSet = openResultSets.remove(handle);
+    if (resultSet != null) {
+      resultSet.close();
     }
   }
 
@@ -229,6 +243,14 @@ public class ESDriver implements LensDriver {
         log.error("Error while closing query {}", handle.getHandleIdString(), e);
       }
     }
+    for (QueryHandle handle : openResultSets.keySet()) {
+      try {
+        releaseResultSet(handle);
+      } catch (LensException e) {
+        log.error("Error while releasing result set of query {}", handle.getHandleIdString(), e);
+      }
+    }
+    esClient.close();
   }
 
   @Override
@@ -236,6 +258,11 @@ public class ESDriver implements LensDriver {
 
   }
 
+  @Override
+  public boolean isStatusPushSupported() {
+    return false;
+  }
+
   @Override
   public ImmutableSet<QueryLaunchingConstraint> getQueryConstraints() {
     return ImmutableSet.copyOf(Sets.<QueryLaunchingConstraint>newHashSet());
@@ -382,7 +409,9 @@ public class ESDriver implements LensDriver {
     @Override
     public LensResultSet call() throws Exception {
       SessionState.setCurrentSessionState(sessionState);
-      return execute(queryContext);
+      final ESResultSet resultSet = (ESResultSet) execute(queryContext);
+      openResultSets.put(queryContext.getQueryHandle(), resultSet);
+      return resultSet;
     }
   }
 
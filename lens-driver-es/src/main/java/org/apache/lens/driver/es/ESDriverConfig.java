@@ -34,6 +34,7 @@ public final class ESDriverConfig {
   public static final String TERM_FETCH_SIZE_KEY = "lens.driver.es.term.fetch.size";
   public static final String AGGR_BUCKET_SIZE_LENS_KEY = "lens.driver.es.aggr.bucket.size";
   public static final String QUERY_TIME_OUT_LENS_KEY = "lens.driver.es.query.timeout.millis";
+  public static final String SCROLL_KEEP_ALIVE_KEY = "lens.driver.es.scroll.keep.alive";
 
   public static final String AGGS = "aggs";
   public static final String MATCH_ALL = "match_all";
@@ -57,6 +58,7 @@ public final class ESDriverConfig {
   private static final int QUERY_TIME_OUT_MS_DEFAULT = 10000;
 
   private static final int TERM_FETCH_SIZE_DEFAULT = 5000;
+  private static final String SCROLL_KEEP_ALIVE_DEFAULT = "1m";
 
   static {
     final ImmutableMap.Builder<ASTVisitor.OrderBy, String> orderByBuilder = ImmutableMap.builder();
@@ -72,6 +74,8 @@ public final class ESDriverConfig {
   @Getter
   private final int queryTimeOutMs;
   private final int termFetchSize;
+  @Getter
+  private final String scrollKeepAlive;
 
   public int getTermFetchSize() {
     return termFetchSize;
@@ -82,6 +86,7 @@ public final class ESDriverConfig {
     aggrBucketSize = conf.getInt(AGGR_BUCKET_SIZE_LENS_KEY, AGGR_BUCKET_SIZE_DEFAULT);
     queryTimeOutMs = conf.getInt(QUERY_TIME_OUT_LENS_KEY, QUERY_TIME_OUT_MS_DEFAULT);
     termFetchSize = conf.getInt(TERM_FETCH_SIZE_KEY, TERM_FETCH_SIZE_DEFAULT);
+    scrollKeepAlive = conf.get(SCROLL_KEEP_ALIVE_KEY, SCROLL_KEEP_ALIVE_DEFAULT);
   }
 
 
@@ -20,6 +20,8 @@ package org.apache.lens.driver.es.client;
 
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lens.api.query.ResultRow;
 import org.apache.lens.driver.es.ESDriverConfig;
@@ -28,16 +30,30 @@ import org.apache.lens.driver.es.exceptions.ESClientException;
 
 import org.apache.hadoop.conf.Configuration;
 
-import com.google.common.collect.ImmutableList;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
 
+@Slf4j
 public abstract class ESClient {
 
+  private static final AtomicInteger THID = new AtomicInteger();
+
   @NonNull
   protected final ESDriverConfig esDriverConfig;
 
+  /**
+   * Pool reading the next page of open scrolls in background
+   */
+  private final ExecutorService scrollPrefetchPool = Executors.newCachedThreadPool(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread th = new Thread(runnable);
+      th.setName("lens-driver-es-scroll-" + THID.incrementAndGet());
+      th.setDaemon(true);
+      return th;
+    }
+  });
+
   private ExecutionMode getExecutionModeFor(ESQuery esQuery) {
     return esQuery.getQueryType().equals(ESQuery.QueryType.AGGR)
       ?
@@ -48,6 +64,36 @@ public abstract class ESClient {
 
   protected abstract ESResultSet executeImpl(ESQuery esQuery) throws ESClientException;
 
+  /**
+   * Executes the query opening a scroll over its results
+   *
+   * @param esQuery   the query
+   * @param keepAlive time for which the scroll is kept open between two page reads, like 1m
+   * @return the first page of results
+   * @throws ESClientException
+   */
+  protected abstract ESScrollPage openScrollImpl(ESQuery esQuery, String keepAlive) throws ESClientException;
+
+  /**
+   * Reads the next page of an open scroll
+   *
+   * @param esQuery   the query, for which the scroll was opened
+   * @param scrollId  id of the scroll, as given by the previous page
+   * @param keepAlive time for which the scroll is kept open between two page reads, like 1m
+   * @return the next page of results
+   * @throws ESClientException
+   */
+  protected abstract ESScrollPage nextScrollPageImpl(ESQuery esQuery, String scrollId, String keepAlive)
+    throws ESClientException;
+
+  /**
+   * Releases an open scroll
+   *
+   * @param scrollId id of the scroll, as given by the last page
+   * @throws ESClientException
+   */
+  protected abstract void clearScrollImpl(String scrollId) throws ESClientException;
+
   private abstract static class ExecutionMode {
 
     @NonNull
@@ -61,86 +107,156 @@ public abstract class ESClient {
 
   }
 
+  /**
+   * Reads results of document look up queries page by page from a scroll, reading the next page in background while
+   * the current page is iterated. Elastic search keeps the position of the scroll, so that reading a page does not
+   * skip over the documents already read.
+   */
   private class ScrollingExecutionMode extends ExecutionMode {
 
-    @NonNull
-    final JsonObject jsonQuery;
-
     ScrollingExecutionMode(ESQuery query) {
       super(query);
-      jsonQuery = (JsonObject) new JsonParser().parse(query.getQuery());
     }
 
-    ESQuery modify(int offset, int limit) {
-      jsonQuery.addProperty(ESDriverConfig.FROM, offset);
-      jsonQuery.addProperty(ESDriverConfig.SIZE, limit);
-      return new ESQuery(
-        esQuery.getIndex(),
-        esQuery.getType(),
-        jsonQuery.toString(),
-        ImmutableList.copyOf(esQuery.getSchema()),
-        ImmutableList.copyOf(esQuery.getColumns()),
-        esQuery.getQueryType(),
-        esQuery.getLimit()
-      );
+    @Override
+    ESResultSet executeInternal() throws ESClientException {
+      final Scroll scroll = new Scroll(esQuery, openScrollImpl(esQuery, esDriverConfig.getScrollKeepAlive()));
+      return new ESResultSet(esQuery.getLimit(), scroll, scroll.batch.getMetadata()) {
+        @Override
+        public void close() throws ESClientException {
+          scroll.close();
+        }
+      };
     }
+  }
 
+  /**
+   * An open scroll, iterated once. The scroll is released once all the results or the limit are read, or when it is
+   * closed.
+   */
+  private class Scroll implements Iterable<ResultRow> {
 
-    @Override
-    ESResultSet executeInternal() throws ESClientException{
-      final ESResultSet resultSet = executeImpl(esQuery);
-      final int fetchSize = esDriverConfig.getTermFetchSize();
-      final int limit = esQuery.getLimit();
-      return new ESResultSet(
-        limit,
-        new Iterable<ResultRow>() {
-          ESResultSet batch = resultSet;
-          int processed = 0;
-
-          final ESResultSet getNextBatch() throws ESClientException {
-            final int toProcess = limit - processed;
-            final int newFetchSize = limit == -1 || fetchSize < toProcess
-              ?
-              fetchSize
-              :
-              toProcess;
-            batch = executeImpl(modify(processed, newFetchSize));
-            return batch;
-          }
+    private final ESQuery esQuery;
+    private final int limit;
+    private String scrollId;
+    private ESResultSet batch;
+    private Future<ESScrollPage> nextPage;
+    private int processed = 0;
+    private boolean closed = false;
+
+    Scroll(ESQuery esQuery, ESScrollPage firstPage) throws ESClientException {
+      this.esQuery = esQuery;
+      this.limit = esQuery.getLimit();
+      setPage(firstPage);
+    }
+
+    private void setPage(ESScrollPage page) throws ESClientException {
+      scrollId = page.getScrollId();
+      batch = page.getResultSet();
+      if (batch.size == 0 || isLimitReached(batch.size)) {
+        close();
+      } else {
+        prefetch();
+      }
+    }
 
+    private boolean isLimitReached(int toProcess) {
+      return limit != -1 && processed + toProcess >= limit;
+    }
 
+    private void prefetch() {
+      final String currentScrollId = scrollId;
+      try {
+        nextPage = scrollPrefetchPool.submit(new Callable<ESScrollPage>() {
           @Override
-          public Iterator<ResultRow> iterator() {
-            return new Iterator<ResultRow>() {
-              @Override
-              public boolean hasNext() {
-                try {
-                  return processed < limit
-                    && (batch.hasNext() || getNextBatch().size > 0);
-                } catch (ESClientException e) {
-                  throw new RuntimeException("Encountered a runtime issue during execution", e);
-                }
-              }
-
-              @Override
-              public ResultRow next() {
-                if (!hasNext()) {
-                  throw new NoSuchElementException("Processed : " + processed + ", Limit : " + limit);
-                }
-                final ResultRow nextRow = batch.next();
-                processed++;
-                return nextRow;
-              }
-
-              @Override
-              public void remove() {
-                throw new UnsupportedOperationException("Cannot remove from es resultset!");
-              }
-            };
+          public ESScrollPage call() throws ESClientException {
+            return nextScrollPageImpl(esQuery, currentScrollId, esDriverConfig.getScrollKeepAlive());
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        log.warn("Prefetch pool rejected reading scroll {}, reading on demand", currentScrollId);
+      }
+    }
+
+    private ESScrollPage takeNextPage() throws ESClientException {
+      if (nextPage == null) {
+        return nextScrollPageImpl(esQuery, scrollId, esDriverConfig.getScrollKeepAlive());
+      }
+      final Future<ESScrollPage> page = nextPage;
+      nextPage = null;
+      try {
+        return page.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ESClientException("Interrupted while reading scroll " + scrollId, e);
+      } catch (ExecutionException e) {
+        throw new ESClientException("Error reading scroll " + scrollId, e.getCause());
+      }
+    }
+
+    synchronized boolean hasNext() throws ESClientException {
+      if (limit != -1 && processed >= limit) {
+        return false;
+      }
+      if (batch.hasNext()) {
+        return true;
+      }
+      if (closed) {
+        return false;
+      }
+      setPage(takeNextPage());
+      return batch.hasNext();
+    }
+
+    synchronized ResultRow next() {
+      processed++;
+      return batch.next();
+    }
+
+    synchronized void close() throws ESClientException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      if (nextPage != null) {
+        // wait for the page being read, which may give a new scroll id
+        try {
+          scrollId = nextPage.get().getScrollId();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+          log.warn("Error reading scroll {} before releasing it", scrollId, e.getCause());
+        }
+        nextPage = null;
+      }
+      clearScrollImpl(scrollId);
+    }
+
+    @Override
+    public Iterator<ResultRow> iterator() {
+      return new Iterator<ResultRow>() {
+        @Override
+        public boolean hasNext() {
+          try {
+            return Scroll.this.hasNext();
+          } catch (ESClientException e) {
+            throw new RuntimeException("Encountered a runtime issue during execution", e);
           }
-        },
-        resultSet.getMetadata()
-      );
+        }
+
+        @Override
+        public ResultRow next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException("Processed : " + processed + ", Limit : " + limit);
+          }
+          return Scroll.this.next();
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException("Cannot remove from es resultset!");
+        }
+      };
     }
   }
 
@@ -166,4 +282,11 @@ public abstract class ESClient {
   }
 
   public abstract String explain(ESQuery esQuery) throws ESClientException;
+
+  /**
+   * Stops reading scrolls in background
+   */
+  public void close() {
+    scrollPrefetchPool.shutdownNow();
+  }
 }
@@ -21,6 +21,7 @@ package org.apache.lens.driver.es.client;
 import java.util.Iterator;
 
 import org.apache.lens.api.query.ResultRow;
+import org.apache.lens.driver.es.exceptions.ESClientException;
 import org.apache.lens.server.api.driver.InMemoryResultSet;
 import org.apache.lens.server.api.driver.LensResultSetMetadata;
 import org.apache.lens.server.api.error.LensException;
@@ -73,4 +74,13 @@ public class ESResultSet extends InMemoryResultSet {
   public boolean seekToStart() throws LensException {
     return false;
   }
+
+  /**
+   * Releases resources held at elastic search for this result set, like an open scroll. Does nothing by default.
+   *
+   * @throws ESClientException
+   */
+  public void close() throws ESClientException {
+
+  }
 }
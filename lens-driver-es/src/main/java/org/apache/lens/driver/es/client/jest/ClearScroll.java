@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.driver.es.client.jest;
+
+import io.searchbox.action.AbstractAction;
+import io.searchbox.action.GenericResultAbstractAction;
+
+/**
+ * Jest action releasing an open scroll, with DELETE /_search/scroll/{scroll_id}
+ */
+public class ClearScroll extends GenericResultAbstractAction {
+
+  private final String scrollId;
+
+  protected ClearScroll(Builder builder) {
+    super(builder);
+    this.scrollId = builder.scrollId;
+    setURI(buildURI());
+  }
+
+  @Override
+  public String getRestMethodName() {
+    return "DELETE";
+  }
+
+  @Override
+  protected String buildURI() {
+    return super.buildURI() + "/_search/scroll/" + scrollId;
+  }
+
+  public static class Builder extends AbstractAction.Builder<ClearScroll, Builder> {
+
+    private final String scrollId;
+
+    public Builder(String scrollId) {
+      this.scrollId = scrollId;
+    }
+
+    @Override
+    public ClearScroll build() {
+      return new ClearScroll(this);
+    }
+  }
+}
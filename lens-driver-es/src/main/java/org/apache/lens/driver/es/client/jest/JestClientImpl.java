@@ -22,17 +22,22 @@ import org.apache.lens.driver.es.ESDriverConfig;
 import org.apache.lens.driver.es.ESQuery;
 import org.apache.lens.driver.es.client.ESClient;
 import org.apache.lens.driver.es.client.ESResultSet;
+import org.apache.lens.driver.es.client.ESScrollPage;
 import org.apache.lens.driver.es.exceptions.ESClientException;
 
 import org.apache.commons.lang3.Validate;
 import org.apache.hadoop.conf.Configuration;
 
+import com.google.gson.JsonObject;
 import io.searchbox.client.JestClient;
 import io.searchbox.client.JestClientFactory;
+import io.searchbox.client.JestResult;
 import io.searchbox.client.config.HttpClientConfig;
 import io.searchbox.core.Explain;
 import io.searchbox.core.Search;
 import io.searchbox.core.SearchResult;
+import io.searchbox.core.SearchScroll;
+import io.searchbox.params.Parameters;
 import lombok.NonNull;
 
 /**
@@ -45,6 +50,7 @@ public class JestClientImpl extends ESClient {
   private static final String IS_MULTITHREADED = "lens.driver.es.jest.is.multi.threaded";
   private static final String MAX_TOTAL_CONN = "lens.driver.es.jest.max.conn";
   private static final String ES_SERVERS = "lens.driver.es.jest.servers";
+  private static final String SCROLL_ID_KEY = "_scroll_id";
 
   @NonNull
   private final JestClient client;
@@ -79,6 +85,52 @@ public class JestClientImpl extends ESClient {
     }
   }
 
+  @Override
+  protected ESScrollPage openScrollImpl(ESQuery esQuery, String keepAlive) throws ESClientException {
+    try {
+      final Search search = new Search.Builder(esQuery.getQuery())
+        .addIndex(esQuery.getIndex())
+        .addType(esQuery.getType())
+        .setParameter(Parameters.SCROLL, keepAlive)
+        .build();
+      return toScrollPage(client.execute(search), esQuery);
+    } catch (Exception e) {
+      throw new ESClientException("Execution failed, ", e);
+    }
+  }
+
+  @Override
+  protected ESScrollPage nextScrollPageImpl(ESQuery esQuery, String scrollId, String keepAlive)
+    throws ESClientException {
+    try {
+      return toScrollPage(client.execute(new SearchScroll.Builder(scrollId, keepAlive).build()), esQuery);
+    } catch (Exception e) {
+      throw new ESClientException("Reading scroll failed, ", e);
+    }
+  }
+
+  @Override
+  protected void clearScrollImpl(String scrollId) throws ESClientException {
+    try {
+      client.execute(new ClearScroll.Builder(scrollId).build());
+    } catch (Exception e) {
+      throw new ESClientException("Releasing scroll failed, ", e);
+    }
+  }
+
+  private static ESScrollPage toScrollPage(JestResult result, ESQuery esQuery) {
+    if (result == null) {
+      throw new NullPointerException("Got null result from client for " + esQuery);
+    }
+    final JsonObject jsonResult = result.getJsonObject();
+    if (!result.isSucceeded() || jsonResult.get(SCROLL_ID_KEY) == null) {
+      throw new IllegalStateException("Scroll failed for " + esQuery + ": " + result.getErrorMessage());
+    }
+    return new ESScrollPage(
+      jsonResult.get(SCROLL_ID_KEY).getAsString(),
+      JestResultSetTransformer.transformFrom(jsonResult, esQuery.getSchema(), esQuery.getColumns()));
+  }
+
   public String explain(ESQuery esQuery) throws ESClientException {
     try {
       return client
@@ -19,10 +19,12 @@
 package org.apache.lens.driver.es;
 
 import java.util.List;
+import java.util.Set;
 
 import org.apache.lens.api.query.ResultRow;
 import org.apache.lens.driver.es.client.ESClient;
 import org.apache.lens.driver.es.client.ESResultSet;
+import org.apache.lens.driver.es.client.ESScrollPage;
 import org.apache.lens.server.api.driver.LensResultSetMetadata;
 
 import org.apache.hadoop.conf.Configuration;
@@ -32,10 +34,17 @@ import org.apache.hive.service.cli.TypeDescriptor;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 class MockClientES extends ESClient {
 
   private static final ImmutableMap<String, ResultSetProvider> QUERY_RESULTS_MAP;
+  private static final String SCROLL_ID_PREFIX = "scroll-";
+
+  /**
+   * Ids of the scrolls released, the id of a scroll is the offset of its next page
+   */
+  final Set<String> clearedScrollIds = Sets.newConcurrentHashSet();
 
   private interface ResultSetProvider {
     ESResultSet getResultSet();
@@ -134,6 +143,27 @@ class MockClientES extends ESClient {
     return QUERY_RESULTS_MAP.get(esQuery.getQuery()).getResultSet();
   }
 
+  /**
+   * Pages of a scroll are the results of the query with increasing offsets, with the offset of the next page as the
+   * scroll id
+   */
+  @Override
+  protected ESScrollPage openScrollImpl(ESQuery esQuery, String keepAlive) {
+    return new ESScrollPage(SCROLL_ID_PREFIX + 1, executeImpl(esQuery));
+  }
+
+  @Override
+  protected ESScrollPage nextScrollPageImpl(ESQuery esQuery, String scrollId, String keepAlive) {
+    final int offset = Integer.parseInt(scrollId.substring(SCROLL_ID_PREFIX.length()));
+    final String query = esQuery.getQuery().replace("\"from\":0", "\"from\":" + offset);
+    return new ESScrollPage(SCROLL_ID_PREFIX + (offset + 1), QUERY_RESULTS_MAP.get(query).getResultSet());
+  }
+
+  @Override
+  protected void clearScrollImpl(String scrollId) {
+    clearedScrollIds.add(scrollId);
+  }
+
   @Override
   public String explain(ESQuery esQuery) {
     return QUERY_RESULTS_MAP.containsKey(esQuery.getQuery())
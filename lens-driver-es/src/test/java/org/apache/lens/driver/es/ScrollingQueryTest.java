@@ -90,4 +90,27 @@ public class ScrollingQueryTest extends ESDriverTest{
     Assert.assertEquals(rows.size(), 3, "Streaming failed!!!");
   }
 
+  @Test
+  protected void testScrollReleasedWhenExhausted() throws LensException {
+    mockClientES.clearedScrollIds.clear();
+    ESResultSet resultSet =
+      mockClientES.execute(ESVisitor.rewrite(esDriverConfig, "select col1 from index.type limit 5"));
+    while (resultSet.hasNext()) {
+      resultSet.next();
+    }
+    Assert.assertTrue(mockClientES.clearedScrollIds.contains("scroll-4"), "Scroll was not released");
+  }
+
+  @Test
+  protected void testScrollReleasedOnClose() throws LensException {
+    mockClientES.clearedScrollIds.clear();
+    ESResultSet resultSet =
+      mockClientES.execute(ESVisitor.rewrite(esDriverConfig, "select col1 from index.type limit 6"));
+    Assert.assertTrue(resultSet.hasNext());
+    resultSet.next();
+    resultSet.close();
+    Assert.assertTrue(mockClientES.clearedScrollIds.contains("scroll-2"), "Scroll was not released");
+    Assert.assertFalse(resultSet.hasNext());
+  }
+
 }
@@ -32,6 +32,8 @@ import org.apache.lens.api.LensSessionHandle;
 import org.apache.lens.api.query.QueryHandle;
 import org.apache.lens.api.query.QueryPrepareHandle;
 import org.apache.lens.cube.query.cost.FactPartitionBasedQueryCostCalculator;
+import org.apache.lens.driver.hive.ThriftConnectionPool.ClientCall;
+import org.apache.lens.driver.hive.ThriftConnectionPool.ClientCaller;
 import org.apache.lens.server.api.LensConfConstants;
 import org.apache.lens.server.api.driver.*;
 import org.apache.lens.server.api.driver.DriverQueryStatus.DriverQueryState;
@@ -82,6 +84,16 @@ public class HiveDriver implements LensDriver {
   /** The Constant HS2_CONNECTION_EXPIRY_DELAY. */
   public static final String HS2_CONNECTION_EXPIRY_DELAY = "lens.driver.hive.hs2.connection.expiry.delay";
 
+  /** The maximum number of connections of a user to HiveServer2, shared by all threads. */
+  public static final String HS2_CONNECTION_POOL_MAX_PER_USER = "lens.driver.hive.hs2.connection.pool.max.per.user";
+
+  /** The number of idle connections of a user to HiveServer2 kept open. */
+  public static final String HS2_CONNECTION_POOL_MIN_IDLE_PER_USER =
+    "lens.driver.hive.hs2.connection.pool.min.idle.per.user";
+
+  /** The maximum time in millis to wait for a connection to HiveServer2, when all connections of a user are in use. */
+  public static final String HS2_CONNECTION_POOL_MAX_WAIT = "lens.driver.hive.hs2.connection.pool.max.wait";
+
   public static final String HS2_CALCULATE_PRIORITY = "lens.driver.hive.calculate.priority";
   public static final String HS2_COST_CALCULATOR = "lens.driver.hive.cost.calculator.class";
 
@@ -90,8 +102,23 @@ public class HiveDriver implements LensDriver {
    */
   public static final String HS2_PRIORITY_RANGES = "lens.driver.hive.priority.ranges";
 
+  /** Whether in memory result sets prefetch the next batch of rows in background. */
+  public static final String HS2_RESULT_PREFETCH = "lens.driver.hive.inmemory.resultset.prefetch";
+
+  /** The maximum number of cells (rows times columns) in a batch prefetched by an in memory result set. */
+  public static final String HS2_RESULT_PREFETCH_MAX_CELLS = "lens.driver.hive.inmemory.resultset.prefetch.max.cells";
+
+  /** The number of threads polling HiveServer2 for completion of queries registered for completion notification. */
+  public static final String HS2_COMPLETION_POLLER_THREADS = "lens.driver.hive.completion.poller.threads";
+
   // Default values of conf params
   public static final long DEFAULT_EXPIRY_DELAY = 600 * 1000;
+  public static final int DEFAULT_CONNECTION_POOL_MAX_PER_USER = 8;
+  public static final int DEFAULT_CONNECTION_POOL_MIN_IDLE_PER_USER = 1;
+  public static final long DEFAULT_CONNECTION_POOL_MAX_WAIT = 30 * 1000;
+  public static final boolean DEFAULT_RESULT_PREFETCH = false;
+  public static final int DEFAULT_RESULT_PREFETCH_MAX_CELLS = 100000;
+  public static final int DEFAULT_COMPLETION_POLLER_THREADS = 4;
   public static final String HS2_PRIORITY_DEFAULT_RANGES = "VERY_HIGH,7.0,HIGH,30.0,NORMAL,90,LOW";
   public static final String SESSION_KEY_DELIMITER = ".";
 
@@ -101,6 +128,12 @@ public class HiveDriver implements LensDriver {
   private static final String WAITING_QUERIES_SELECTION_POLICY_FACTORIES_KEY
     = "lens.driver.hive.waiting.queries.selection.policy.factories";
 
+  /** Interval of the first status check of a query executed synchronously, doubled for each next check. */
+  private static final long MIN_EXECUTE_POLL_INTERVAL_MILLIS = 10;
+
+  /** Maximum interval between status checks of a query executed synchronously. */
+  private static final long MAX_EXECUTE_POLL_INTERVAL_MILLIS = 1000;
+
   /** The driver conf- which will merged with query conf */
   private Configuration driverConf;
 
@@ -113,16 +146,9 @@ public class HiveDriver implements LensDriver {
   /** The session lock. */
   private final Lock sessionLock;
 
-  // connections need to be separate for each user and each thread
-  /** The thread connections. */
-  private final Map<String, ExpirableConnection> threadConnections =
-    new ConcurrentHashMap<String, ExpirableConnection>();
-
-  /** The thrift conn expiry queue. */
-  private final DelayQueue<ExpirableConnection> thriftConnExpiryQueue = new DelayQueue<ExpirableConnection>();
-
-  /** The connection expiry thread. */
-  private final Thread connectionExpiryThread = new Thread(new ConnectionExpiryRunnable());
+  // remote connections are shared by all threads, a connection is borrowed from the pool for each call
+  /** The pool of remote connections. */
+  private ThriftConnectionPool connectionPool;
 
   // assigned only in case of embedded connection
   /** The embedded connection. */
@@ -174,117 +200,11 @@ public class HiveDriver implements LensDriver {
     resourcesAddedForSession.put(hiveSession, Boolean.TRUE);
   }
 
-  /**
-   * The Class ConnectionExpiryRunnable.
-   */
-  class ConnectionExpiryRunnable implements Runnable {
-
-    /*
-     * (non-Javadoc)
-     *
-     * @see java.lang.Runnable#run()
-     */
-    @Override
-    public void run() {
-      try {
-        while (true) {
-          ExpirableConnection expired = thriftConnExpiryQueue.take();
-          expired.setExpired();
-          ThriftConnection thConn = expired.getConnection();
-
-          if (thConn != null) {
-            try {
-              log.info("Closed connection: {}", expired.getConnId());
-              thConn.close();
-            } catch (IOException e) {
-              log.error("Error closing connection", e);
-            }
-          }
-        }
-      } catch (InterruptedException intr) {
-        log.warn("Connection expiry thread interrupted", intr);
-        return;
-      }
-    }
-  }
-
-  /** The Constant CONNECTION_COUNTER. */
-  private static final AtomicInteger CONNECTION_COUNTER = new AtomicInteger();
-
-  /**
-   * The Class ExpirableConnection.
-   */
-  static class ExpirableConnection implements Delayed {
-
-    /** The access time. */
-    long accessTime;
-
-    /** The conn. */
-    private final ThriftConnection conn;
-
-    /** The timeout. */
-    private final long timeout;
-
-    /** The expired. */
-    private volatile boolean expired;
-
-    /** The conn id. */
-    private final int connId;
-
-    /**
-     * Instantiates a new expirable connection.
-     *
-     * @param conn    the conn
-     * @param timeout the timeout
-     */
-    public ExpirableConnection(ThriftConnection conn, long timeout) {
-      this.conn = conn;
-      this.timeout = timeout;
-      connId = CONNECTION_COUNTER.incrementAndGet();
-      accessTime = System.currentTimeMillis();
-    }
-
-    private ThriftConnection getConnection() {
-      accessTime = System.currentTimeMillis();
-      return conn;
-    }
-
-    private boolean isExpired() {
-      return expired;
-    }
-
-    /**
-     * Sets the expired.
-     */
-    private void setExpired() {
-      expired = true;
-    }
-
-    private int getConnId() {
-      return connId;
-    }
-
-    /*
-     * (non-Javadoc)
-     *
-     * @see java.lang.Comparable#compareTo(java.lang.Object)
-     */
-    @Override
-    public int compareTo(Delayed other) {
-      return (int) (this.getDelay(TimeUnit.MILLISECONDS) - other.getDelay(TimeUnit.MILLISECONDS));
-    }
+  /** The Constant DRIVER_COUNTER, numbers drivers for naming their connection pools. */
+  private static final AtomicInteger DRIVER_COUNTER = new AtomicInteger();
 
-    /*
-     * (non-Javadoc)
-     *
-     * @see java.util.concurrent.Delayed#getDelay(java.util.concurrent.TimeUnit)
-     */
-    @Override
-    public long getDelay(TimeUnit unit) {
-      long age = System.currentTimeMillis() - accessTime;
-      return unit.convert(timeout - age, TimeUnit.MILLISECONDS);
-    }
-  }
+  /** The driver id. */
+  private final int driverId = DRIVER_COUNTER.incrementAndGet();
 
   /**
    * Open connections.
@@ -292,7 +212,7 @@ public class HiveDriver implements LensDriver {
    * @return the int
    */
   int openConnections() {
-    return thriftConnExpiryQueue.size();
+    return connectionPool == null ? 0 : connectionPool.getOpenCount();
   }
 
   /** The connection class. */
@@ -304,6 +224,15 @@ public class HiveDriver implements LensDriver {
   /** The connection expiry timeout. */
   private long connectionExpiryTimeout;
 
+  /** The pool prefetching rows of in memory result sets, null when prefetch is disabled. */
+  private ExecutorService resultPrefetchPool;
+
+  /** The maximum number of cells in a prefetched batch. */
+  private int resultPrefetchMaxCells;
+
+  /** The poller notifying completion of queries, shared by all queries of the driver. */
+  private QueryCompletionPoller completionPoller;
+
   /**
    * Instantiates a new hive driver.
    *
@@ -313,9 +242,6 @@ public class HiveDriver implements LensDriver {
     this.sessionLock = new ReentrantLock();
     lensToHiveSession = new HashMap<String, SessionHandle>();
     resourcesAddedForSession = new HashMap<SessionHandle, Boolean>();
-    connectionExpiryThread.setDaemon(true);
-    connectionExpiryThread.setName("HiveDriver-ConnectionExpiryThread");
-    connectionExpiryThread.start();
     driverListeners = new ArrayList<LensEventListener<DriverEvent>>();
     log.info("Hive driver inited");
   }
@@ -346,6 +272,20 @@ public class HiveDriver implements LensDriver {
       ThriftConnection.class);
     isEmbedded = (connectionClass.getName().equals(EmbeddedThriftConnection.class.getName()));
     connectionExpiryTimeout = this.driverConf.getLong(HS2_CONNECTION_EXPIRY_DELAY, DEFAULT_EXPIRY_DELAY);
+    if (!isEmbedded) {
+      if (connectionPool != null) {
+        connectionPool.close();
+      }
+      connectionPool = new ThriftConnectionPool("HiveDriver-" + driverId, connectionClass, hiveConf,
+        driverConf.getInt(HS2_CONNECTION_POOL_MAX_PER_USER, DEFAULT_CONNECTION_POOL_MAX_PER_USER),
+        driverConf.getInt(HS2_CONNECTION_POOL_MIN_IDLE_PER_USER, DEFAULT_CONNECTION_POOL_MIN_IDLE_PER_USER),
+        driverConf.getLong(HS2_CONNECTION_POOL_MAX_WAIT, DEFAULT_CONNECTION_POOL_MAX_WAIT), connectionExpiryTimeout);
+    }
+    if (completionPoller != null) {
+      completionPoller.close();
+    }
+    completionPoller = new QueryCompletionPoller("HiveDriver-" + driverId,
+      driverConf.getInt(HS2_COMPLETION_POLLER_THREADS, DEFAULT_COMPLETION_POLLER_THREADS));
     whetherCalculatePriority = this.driverConf.getBoolean(HS2_CALCULATE_PRIORITY, true);
     Class<? extends QueryCostCalculator> queryCostCalculatorClass = this.driverConf.getClass(HS2_COST_CALCULATOR,
       FactPartitionBasedQueryCostCalculator.class, QueryCostCalculator.class);
@@ -366,6 +306,20 @@ public class HiveDriver implements LensDriver {
     }
     queryConstraints = getImplementations(QUERY_LAUNCHIG_CONSTRAINT_FACTORIES_KEY, driverConf);
     selectionPolicies = getImplementations(WAITING_QUERIES_SELECTION_POLICY_FACTORIES_KEY, driverConf);
+    if (driverConf.getBoolean(HS2_RESULT_PREFETCH, DEFAULT_RESULT_PREFETCH) && resultPrefetchPool == null) {
+      resultPrefetchMaxCells = driverConf.getInt(HS2_RESULT_PREFETCH_MAX_CELLS, DEFAULT_RESULT_PREFETCH_MAX_CELLS);
+      resultPrefetchPool = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread th = new Thread(runnable);
+          th.setName("HiveDriver-ResultPrefetch-" + threadCount.incrementAndGet());
+          th.setDaemon(true);
+          return th;
+        }
+      });
+    }
   }
 
   private QueryCost calculateQueryCost(AbstractQueryContext qctx) throws LensException {
@@ -488,18 +442,37 @@ public class HiveDriver implements LensDriver {
   public LensResultSet execute(QueryContext ctx) throws LensException {
     try {
       addPersistentPath(ctx);
-      Configuration qdconf = ctx.getDriverConf(this);
+      final Configuration qdconf = ctx.getDriverConf(this);
       qdconf.set("mapred.job.name", ctx.getQueryHandle().toString());
-      OperationHandle op = getClient().executeStatement(getSession(ctx), ctx.getSelectedDriverQuery(),
-        qdconf.getValByRegex(".*"));
+      final SessionHandle session = getSession(ctx);
+      final String query = ctx.getSelectedDriverQuery();
+      // executed asynchronously and waited for, so that a connection is not held for the whole query
+      final OperationHandle op = callHive(new ClientCall<OperationHandle>() {
+        @Override
+        public OperationHandle call(CLIServiceClient client) throws HiveSQLException {
+          return client.executeStatementAsync(session, query, qdconf.getValByRegex(".*"));
+        }
+      });
       log.info("The hive operation handle: {}", op);
       ctx.setDriverOpHandle(op.toString());
       hiveHandles.put(ctx.getQueryHandle(), op);
+      OperationStatus status;
+      try {
+        status = waitForCompletion(op);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        cancelAndCloseQuery(ctx.getQueryHandle());
+        throw new LensException("Interrupted while waiting for query " + ctx.getQueryHandle(), e);
+      }
       updateStatus(ctx);
-      OperationStatus status = getClient().getOperationStatus(op);
 
-      if (status.getState() == OperationState.ERROR) {
-        throw new LensException("Unknown error while running query " + ctx.getUserQuery());
+      if (status.getState() != OperationState.FINISHED) {
+        closeQuery(ctx.getQueryHandle());
+        if (status.getState() == OperationState.ERROR && status.getOperationException() != null) {
+          throw status.getOperationException();
+        }
+        throw new LensException("Query " + ctx.getQueryHandle() + " ended in state " + status.getState()
+          + " while running " + ctx.getUserQuery());
       }
       LensResultSet result = createResultSet(ctx, true);
       // close the query immediately if the result is not inmemory result set
@@ -526,7 +499,7 @@ public class HiveDriver implements LensDriver {
   public void executeAsync(QueryContext ctx) throws LensException {
     try {
       addPersistentPath(ctx);
-      Configuration qdconf = ctx.getDriverConf(this);
+      final Configuration qdconf = ctx.getDriverConf(this);
       qdconf.set("mapred.job.name", ctx.getQueryHandle().toString());
       //Query is already explained.
       log.info("whetherCalculatePriority: {}", whetherCalculatePriority);
@@ -545,8 +518,14 @@ public class HiveDriver implements LensDriver {
         }
       }
       queryHook.preLaunch(ctx);
-      OperationHandle op = getClient().executeStatementAsync(getSession(ctx), ctx.getSelectedDriverQuery(),
-        qdconf.getValByRegex(".*"));
+      final SessionHandle session = getSession(ctx);
+      final String query = ctx.getSelectedDriverQuery();
+      OperationHandle op = callHive(new ClientCall<OperationHandle>() {
+        @Override
+        public OperationHandle call(CLIServiceClient client) throws HiveSQLException {
+          return client.executeStatementAsync(session, query, qdconf.getValByRegex(".*"));
+        }
+      });
       ctx.setDriverOpHandle(op.toString());
       log.info("QueryHandle: {} HiveHandle:{}", ctx.getQueryHandle(), op);
       hiveHandles.put(ctx.getQueryHandle(), op);
@@ -574,7 +553,7 @@ public class HiveDriver implements LensDriver {
     try {
       // Get operation status from hive server
       log.debug("GetStatus hiveHandle: {}", hiveHandle);
-      OperationStatus opStatus = getClient().getOperationStatus(hiveHandle);
+      OperationStatus opStatus = getOperationStatus(hiveHandle);
       log.debug("GetStatus on hiveHandle: {} returned state:", hiveHandle, opStatus.getState().name());
 
       switch (opStatus.getState()) {
@@ -713,11 +692,17 @@ public class HiveDriver implements LensDriver {
       return;
     }
     log.info("CloseQuery: {}", handle);
-    OperationHandle opHandle = hiveHandles.remove(handle);
+    final OperationHandle opHandle = hiveHandles.remove(handle);
     if (opHandle != null) {
       log.info("CloseQuery hiveHandle: {}", opHandle);
       try {
-        getClient().closeOperation(opHandle);
+        callHive(new ClientCall<Void>() {
+          @Override
+          public Void call(CLIServiceClient client) throws HiveSQLException {
+            client.closeOperation(opHandle);
+            return null;
+          }
+        });
       } catch (HiveSQLException e) {
         checkInvalidOperation(handle, e);
         throw new LensException("Unable to close query", e);
@@ -733,10 +718,16 @@ public class HiveDriver implements LensDriver {
   @Override
   public boolean cancelQuery(QueryHandle handle) throws LensException {
     log.info("CancelQuery: {}", handle);
-    OperationHandle hiveHandle = getHiveHandle(handle);
+    final OperationHandle hiveHandle = getHiveHandle(handle);
     try {
       log.info("CancelQuery hiveHandle: {}", hiveHandle);
-      getClient().cancelOperation(hiveHandle);
+      callHive(new ClientCall<Void>() {
+        @Override
+        public Void call(CLIServiceClient client) throws HiveSQLException {
+          client.cancelOperation(hiveHandle);
+          return null;
+        }
+      });
       return true;
     } catch (HiveSQLException e) {
       checkInvalidOperation(handle, e);
@@ -757,7 +748,7 @@ public class HiveDriver implements LensDriver {
     try {
       for (String lensSessionDbKey : lensToHiveSession.keySet()) {
         try {
-          getClient().closeSession(lensToHiveSession.get(lensSessionDbKey));
+          closeHiveSession(lensToHiveSession.get(lensSessionDbKey));
         } catch (Exception e) {
           checkInvalidSession(e);
           log.warn("Error closing session for lens session: {}, hive session: ", lensSessionDbKey,
@@ -768,6 +759,15 @@ public class HiveDriver implements LensDriver {
     } finally {
       sessionLock.unlock();
     }
+    if (resultPrefetchPool != null) {
+      resultPrefetchPool.shutdownNow();
+    }
+    if (connectionPool != null) {
+      connectionPool.close();
+    }
+    if (completionPoller != null) {
+      completionPoller.close();
+    }
   }
 
   /**
@@ -780,12 +780,120 @@ public class HiveDriver implements LensDriver {
     driverListeners.add(driverEventListener);
   }
 
+  /**
+   * Hive server does not notify status changes of an operation, so the status of hive queries is polled.
+   *
+   * @return false
+   */
+  @Override
+  public boolean isStatusPushSupported() {
+    return false;
+  }
+
   @Override
   public ImmutableSet<WaitingQueriesSelectionPolicy> getWaitingQuerySelectionPolicies() {
     return selectionPolicies;
   }
 
-  protected CLIServiceClient getClient() throws LensException {
+  /**
+   * Makes the call to HiveServer2 as the user of the current thread.
+   *
+   * @param call the call
+   * @return the result of the call
+   * @throws LensException    if no connection to HiveServer2 could be had
+   * @throws HiveSQLException if the call failed
+   */
+  protected <T> T callHive(ClientCall<T> call) throws LensException, HiveSQLException {
+    return getClientCaller(getClientUser()).execute(call);
+  }
+
+  /**
+   * Waits for the hive operation to end. Its status is checked at increasing intervals, borrowing a connection for
+   * each check only.
+   *
+   * @param hiveHandle the hive operation handle
+   * @return the final status of the operation
+   * @throws LensException        if no connection to HiveServer2 could be had
+   * @throws HiveSQLException     if the status could not be had
+   * @throws InterruptedException if interrupted while waiting, leaving the operation running
+   */
+  private OperationStatus waitForCompletion(OperationHandle hiveHandle)
+    throws LensException, HiveSQLException, InterruptedException {
+    long interval = MIN_EXECUTE_POLL_INTERVAL_MILLIS;
+    while (true) {
+      OperationStatus status = getOperationStatus(hiveHandle);
+      switch (status.getState()) {
+      case FINISHED:
+      case ERROR:
+      case CANCELED:
+      case CLOSED:
+      case UNKNOWN:
+        return status;
+      default:
+        Thread.sleep(interval);
+        interval = Math.min(interval * 2, MAX_EXECUTE_POLL_INTERVAL_MILLIS);
+      }
+    }
+  }
+
+  /**
+   * Cancels the hive operation of the query and closes it, so that it does not keep running in HiveServer2. Failures
+   * are logged only.
+   *
+   * @param handle the query handle
+   */
+  private void cancelAndCloseQuery(QueryHandle handle) {
+    try {
+      cancelQuery(handle);
+    } catch (LensException e) {
+      log.warn("Could not cancel query {}", handle, e);
+    }
+    try {
+      closeQuery(handle);
+    } catch (LensException e) {
+      log.warn("Could not close query {}", handle, e);
+    }
+  }
+
+  private OperationStatus getOperationStatus(final OperationHandle hiveHandle) throws LensException, HiveSQLException {
+    return callHive(new ClientCall<OperationStatus>() {
+      @Override
+      public OperationStatus call(CLIServiceClient client) throws HiveSQLException {
+        return client.getOperationStatus(hiveHandle);
+      }
+    });
+  }
+
+  private void closeHiveSession(final SessionHandle hiveSession) throws LensException, HiveSQLException {
+    callHive(new ClientCall<Void>() {
+      @Override
+      public Void call(CLIServiceClient client) throws HiveSQLException {
+        client.closeSession(hiveSession);
+        return null;
+      }
+    });
+  }
+
+  /**
+   * User of the connection used by the current thread, the user of hive session state if there is one.
+   */
+  private String getClientUser() {
+    String user = hiveConf.getVar(HiveConf.ConfVars.HIVE_SERVER2_THRIFT_CLIENT_USER);
+    if (SessionState.get() != null && SessionState.get().getUserName() != null) {
+      user = SessionState.get().getUserName();
+    }
+    return user;
+  }
+
+  /**
+   * Gets the caller making calls to HiveServer2 as the given user. Remote calls are made over connections borrowed
+   * from the connection pool for the duration of each call.
+   *
+   * @param user the user
+   * @return the caller
+   * @throws LensException the lens exception
+   */
+  private ClientCaller getClientCaller(String user) throws LensException {
     if (isEmbedded) {
       if (embeddedConnection == null) {
         try {
@@ -796,34 +904,15 @@ public class HiveDriver implements LensDriver {
         }
         log.info("New thrift connection {}", connectionClass);
       }
-      return embeddedConnection.getClient();
-    } else {
-      String user = hiveConf.getVar(HiveConf.ConfVars.HIVE_SERVER2_THRIFT_CLIENT_USER);
-      if (SessionState.get() != null && SessionState.get().getUserName() != null) {
-        user = SessionState.get().getUserName();
-      }
-
-      String connectionKey = user.toLowerCase() + Thread.currentThread().getId();
-      ExpirableConnection connection = threadConnections.get(connectionKey);
-      if (connection == null || connection.isExpired()) {
-        try {
-          ThriftConnection tconn = connectionClass.newInstance();
-          tconn.init(hiveConf, user);
-          connection = new ExpirableConnection(tconn, connectionExpiryTimeout);
-          thriftConnExpiryQueue.offer(connection);
-          threadConnections.put(connectionKey, connection);
-          log.info("New thrift connection {} for thread: {} for user: {} connection ID={}", connectionClass,
-            Thread.currentThread().getId(), user, connection.getConnId());
-        } catch (Exception e) {
-          throw new LensException(e);
+      final CLIServiceClient client = embeddedConnection.getClient();
+      return new ClientCaller() {
+        @Override
+        public <T> T execute(ClientCall<T> call) throws HiveSQLException {
+          return call.call(client);
         }
-      } else {
-        synchronized (thriftConnExpiryQueue) {
-          thriftConnExpiryQueue.remove(connection);
-          thriftConnExpiryQueue.offer(connection);
-        }
-      }
-      return connection.getConnection().getClient();
+      };
+    } else {
+      return connectionPool.callerFor(user);
     }
   }
 
@@ -839,10 +928,14 @@ public class HiveDriver implements LensDriver {
     OperationHandle op = getHiveHandle(context.getQueryHandle());
     log.info("Creating result set for hiveHandle:{}", op);
     try {
+      // result sets are read by other threads later, they make calls as the user of the current thread
+      ClientCaller caller = getClientCaller(getClientUser());
       if (context.isDriverPersistent()) {
-        return new HivePersistentResultSet(new Path(context.getDriverResultPath()), op, getClient());
+        return new HivePersistentResultSet(new Path(context.getDriverResultPath()), op, caller);
+      } else if (op.hasResultSet() && resultPrefetchPool != null) {
+        return new HiveInMemoryResultSet(op, caller, closeAfterFetch, resultPrefetchPool, resultPrefetchMaxCells);
       } else if (op.hasResultSet()) {
-        return new HiveInMemoryResultSet(op, getClient(), closeAfterFetch);
+        return new HiveInMemoryResultSet(op, caller, closeAfterFetch);
       } else {
         // queries that do not have result
         return null;
@@ -912,7 +1005,13 @@ public class HiveDriver implements LensDriver {
       SessionHandle hiveSession;
       if (!lensToHiveSession.containsKey(sessionDbKey)) {
         try {
-          hiveSession = getClient().openSession(ctx.getClusterUser(), "");
+          final String clusterUser = ctx.getClusterUser();
+          hiveSession = callHive(new ClientCall<SessionHandle>() {
+            @Override
+            public SessionHandle call(CLIServiceClient client) throws HiveSQLException {
+              return client.openSession(clusterUser, "");
+            }
+          });
           lensToHiveSession.put(sessionDbKey, hiveSession);
           log.info("New hive session for user: {} , lens session: {} hive session handle: {}", ctx.getClusterUser(),
             sessionDbKey, hiveSession.getHandleIdentifier());
@@ -952,93 +1051,21 @@ public class HiveDriver implements LensDriver {
   }
 
   /**
-   * The Class QueryCompletionNotifier.
+   * Checks if the hive operation of the query is finished.
+   *
+   * @param handle the query handle
+   * @return true, if is finished
+   * @throws LensException if the query is not launched yet or its status could not be fetched
    */
-  private class QueryCompletionNotifier implements Runnable {
-
-    /** The poll interval. */
-    long pollInterval;
-
-    /** The hive handle. */
-    OperationHandle hiveHandle;
-
-    /** The timeout millis. */
-    long timeoutMillis;
-
-    /** The listener. */
-    QueryCompletionListener listener;
-
-    /** The handle. */
-    QueryHandle handle;
-
-    /**
-     * Instantiates a new query completion notifier.
-     *
-     * @param handle        the handle
-     * @param timeoutMillis the timeout millis
-     * @param listener      the listener
-     * @throws LensException the lens exception
-     */
-    QueryCompletionNotifier(QueryHandle handle, long timeoutMillis, QueryCompletionListener listener)
-      throws LensException {
-      this.handle = handle;
-      this.timeoutMillis = timeoutMillis;
-      this.listener = listener;
-      this.pollInterval = timeoutMillis / 10;
-    }
-
-    /*
-     * (non-Javadoc)
-     *
-     * @see java.lang.Runnable#run()
-     */
-    @Override
-    public void run() {
-      // till query is complete or timeout has reached
-      long timeSpent = 0;
-      String error;
-      try {
-        while (timeSpent <= timeoutMillis) {
-          try {
-            hiveHandle = getHiveHandle(handle);
-            if (isFinished(hiveHandle)) {
-              listener.onCompletion(handle);
-              return;
-            }
-          } catch (LensException e) {
-            log.debug("query handle: {} Not yet launched on driver", handle);
-          }
-          Thread.sleep(pollInterval);
-          timeSpent += pollInterval;
-        }
-        error = "timedout";
-      } catch (Exception e) {
-        log.warn("Error while polling for status", e);
-        error = "error polling";
-      }
-      listener.onError(handle, error);
-    }
-
-    /**
-     * Checks if is finished.
-     *
-     * @param hiveHandle the hive handle
-     * @return true, if is finished
-     * @throws LensException the lens exception
-     */
-    private boolean isFinished(OperationHandle hiveHandle) throws LensException {
-      OperationState state;
-      try {
-        state = getClient().getOperationStatus(hiveHandle).getState();
-      } catch (HiveSQLException e) {
-        throw new LensException("Could not get Status", e);
-      }
-      if (state.equals(OperationState.FINISHED) || state.equals(OperationState.CANCELED)
-        || state.equals(OperationState.ERROR) || state.equals(OperationState.CLOSED)) {
-        return true;
-      }
-      return false;
+  private boolean isFinished(QueryHandle handle) throws LensException {
+    OperationState state;
+    try {
+      state = getOperationStatus(getHiveHandle(handle)).getState();
+    } catch (HiveSQLException e) {
+      throw new LensException("Could not get Status", e);
     }
+    return state.equals(OperationState.FINISHED) || state.equals(OperationState.CANCELED)
+      || state.equals(OperationState.ERROR) || state.equals(OperationState.CLOSED);
   }
 
   /*
@@ -1052,8 +1079,12 @@ public class HiveDriver implements LensDriver {
   public void registerForCompletionNotification(
     QueryHandle handle, long timeoutMillis, QueryCompletionListener listener)
     throws LensException {
-    Thread th = new Thread(new QueryCompletionNotifier(handle, timeoutMillis, listener));
-    th.start();
+    completionPoller.watch(handle, new QueryCompletionPoller.StatusCheck() {
+      @Override
+      public boolean isFinished(QueryHandle handle) throws LensException {
+        return HiveDriver.this.isFinished(handle);
+      }
+    }, timeoutMillis / 10, timeoutMillis, listener);
   }
 
   /*
@@ -1236,7 +1267,7 @@ public class HiveDriver implements LensDriver {
           SessionHandle hiveSession = lensToHiveSession.remove(sessionDbKey);
           if (hiveSession != null) {
             try {
-              getClient().closeSession(hiveSession);
+              closeHiveSession(hiveSession);
               log.info("Closed Hive session {} for lens session {}", hiveSession.getHandleIdentifier(),
                 sessionDbKey);
             } catch (Exception e) {
@@ -1256,15 +1287,8 @@ public class HiveDriver implements LensDriver {
    * Close all connections.
    */
   private void closeAllConnections() {
-    synchronized (thriftConnExpiryQueue) {
-      for (ExpirableConnection connection : threadConnections.values()) {
-        try {
-          connection.getConnection().close();
-        } catch (Exception ce) {
-          log.warn("Error closing connection to hive server");
-        }
-      }
-      threadConnections.clear();
+    if (connectionPool != null) {
+      connectionPool.closeIdleConnections();
     }
   }
 
@@ -18,12 +18,13 @@
  */
 package org.apache.lens.driver.hive;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
+import java.util.concurrent.*;
 
 import org.apache.lens.api.query.ResultRow;
+import org.apache.lens.driver.hive.ThriftConnectionPool.ClientCall;
+import org.apache.lens.driver.hive.ThriftConnectionPool.ClientCaller;
 import org.apache.lens.server.api.driver.InMemoryResultSet;
 import org.apache.lens.server.api.driver.LensResultSetMetadata;
 import org.apache.lens.server.api.error.LensException;
@@ -34,12 +35,16 @@ import lombok.extern.slf4j.Slf4j;
 
 /**
  * The Class HiveInMemoryResultSet.
+ *
+ * When created with a prefetch pool, the next batch of rows is fetched in the background while the current batch is
+ * drained, so that the consumer and the HiveServer2 round trip overlap. At most one batch is fetched ahead. Batch size
+ * is doubled whenever the consumer has to wait for a prefetched batch, up to a limit derived from the row width.
  */
 @Slf4j
 public class HiveInMemoryResultSet extends InMemoryResultSet {
 
-  /** The client. */
-  private final CLIServiceClient client;
+  /** The caller making calls to hive server. */
+  private final ClientCaller caller;
 
   /** The op handle. */
   private final OperationHandle opHandle;
@@ -66,21 +71,58 @@ public class HiveInMemoryResultSet extends InMemoryResultSet {
   int numColumns;
   private FetchOrientation orientation;
 
+  /** The pool fetching next batch in background, null when batches are fetched only on demand. */
+  private final ExecutorService prefetchPool;
+
+  /** The maximum number of cells in a prefetched batch. */
+  private final int maxPrefetchCells;
+
+  /** The size of next prefetched batch. */
+  private int prefetchSize;
+
+  /** The batch being fetched in background. */
+  private Future<RowSet> prefetchedRowSet;
+
   /**
    * Instantiates a new hive in memory result set.
    *
    * @param hiveHandle      the hive handle
-   * @param client          the client
+   * @param caller          the caller making calls to hive server
    * @param closeAfterFecth the close after fecth
    * @throws HiveSQLException the hive sql exception
+   * @throws LensException    the lens exception
    */
-  public HiveInMemoryResultSet(OperationHandle hiveHandle, CLIServiceClient client, boolean closeAfterFecth)
-    throws HiveSQLException {
-    this.client = client;
+  public HiveInMemoryResultSet(OperationHandle hiveHandle, ClientCaller caller, boolean closeAfterFecth)
+    throws HiveSQLException, LensException {
+    this(hiveHandle, caller, closeAfterFecth, null, 0);
+  }
+
+  /**
+   * Instantiates a new hive in memory result set which prefetches the next batch of rows in background.
+   *
+   * @param hiveHandle       the hive handle
+   * @param caller           the caller making calls to hive server, from any thread
+   * @param closeAfterFecth  the close after fecth
+   * @param prefetchPool     the pool fetching next batch in background, null to fetch only on demand
+   * @param maxPrefetchCells the maximum number of cells (rows times columns) in a prefetched batch
+   * @throws HiveSQLException the hive sql exception
+   * @throws LensException    the lens exception
+   */
+  public HiveInMemoryResultSet(OperationHandle hiveHandle, ClientCaller caller, boolean closeAfterFecth,
+    ExecutorService prefetchPool, int maxPrefetchCells) throws HiveSQLException, LensException {
+    this.caller = caller;
     this.opHandle = hiveHandle;
     this.closeAfterFecth = closeAfterFecth;
-    this.metadata = client.getResultSetMetadata(opHandle);
+    this.prefetchPool = prefetchPool;
+    this.maxPrefetchCells = maxPrefetchCells;
+    this.metadata = caller.execute(new ClientCall<TableSchema>() {
+      @Override
+      public TableSchema call(CLIServiceClient client) throws HiveSQLException {
+        return client.getResultSetMetadata(opHandle);
+      }
+    });
     this.numColumns = metadata.getColumnDescriptors().size();
+    this.prefetchSize = fetchSize;
     this.seekToStart();
   }
 
@@ -105,7 +147,9 @@ public class HiveInMemoryResultSet extends InMemoryResultSet {
 
   @Override
   public boolean seekToStart() {
+    discardPrefetchedRowSet();
     orientation = FetchOrientation.FETCH_FIRST;
+    fetchedRowsItr = null;
     return true;
   }
 
@@ -118,17 +162,25 @@ public class HiveInMemoryResultSet extends InMemoryResultSet {
   public boolean hasNext() throws LensException {
     if (fetchedRowsItr == null || !fetchedRowsItr.hasNext()) {
       try {
-        rowSet = client.fetchResults(opHandle, orientation, fetchSize);
-        orientation = FetchOrientation.FETCH_NEXT;
+        rowSet = nextRowSet();
         noMoreResults = rowSet.numRows() == 0;
         if (noMoreResults) {
           if (closeAfterFecth) {
             log.info("No more results closing the query");
-            client.closeOperation(opHandle);
+            caller.execute(new ClientCall<Void>() {
+              @Override
+              public Void call(CLIServiceClient client) throws HiveSQLException {
+                client.closeOperation(opHandle);
+                return null;
+              }
+            });
           }
           return false;
         }
         fetchedRowsItr = rowSet.iterator();
+        prefetchRowSet();
+      } catch (LensException e) {
+        throw e;
       } catch (Exception e) {
         throw new LensException(e);
       }
@@ -143,16 +195,90 @@ public class HiveInMemoryResultSet extends InMemoryResultSet {
    */
   @Override
   public ResultRow next() throws LensException {
-    List<Object> results = new ArrayList<Object>(numColumns);
+    // row set iterators can reuse the array for every row, so the row is copied once into the list backing the result
     Object[] row = fetchedRowsItr.next();
-    results.addAll(Arrays.asList(row));
-
-    return new ResultRow(results);
+    return new ResultRow(Arrays.asList(Arrays.copyOf(row, row.length)));
   }
 
   @Override
   public void setFetchSize(int size) throws LensException {
     assert size >= 0;
     fetchSize = size == 0 ? Integer.MAX_VALUE : size;
+    prefetchSize = fetchSize;
+  }
+
+  /**
+   * Takes the batch fetched in background if there is one, otherwise fetches the next batch.
+   *
+   * @return the next batch of rows
+   * @throws Exception the exception
+   */
+  private RowSet nextRowSet() throws Exception {
+    if (prefetchedRowSet == null) {
+      return fetchRowSet(fetchSize);
+    }
+    Future<RowSet> fetching = prefetchedRowSet;
+    prefetchedRowSet = null;
+    if (!fetching.isDone()) {
+      // consumer drained the batch faster than the round trip, fetch more rows at a time
+      int maxPrefetchSize = Math.max(fetchSize, maxPrefetchCells / Math.max(numColumns, 1));
+      prefetchSize = (int) Math.min((long) prefetchSize * 2, maxPrefetchSize);
+    }
+    try {
+      return fetching.get();
+    } catch (ExecutionException e) {
+      throw new LensException("Error fetching results in background", e.getCause());
+    }
+  }
+
+  /**
+   * Starts fetching the next batch in background, if the result set has a prefetch pool.
+   */
+  private void prefetchRowSet() {
+    if (prefetchPool == null) {
+      return;
+    }
+    final int size = prefetchSize;
+    try {
+      prefetchedRowSet = prefetchPool.submit(new Callable<RowSet>() {
+        @Override
+        public RowSet call() throws Exception {
+          return fetchRowSet(size);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      log.warn("Prefetch pool rejected fetching results for {}, fetching on demand", opHandle);
+    }
+  }
+
+  private RowSet fetchRowSet(final int size) throws HiveSQLException, LensException {
+    long fetchStartTime = System.currentTimeMillis();
+    final FetchOrientation fetchOrientation = orientation;
+    RowSet rows = caller.execute(new ClientCall<RowSet>() {
+      @Override
+      public RowSet call(CLIServiceClient client) throws HiveSQLException {
+        return client.fetchResults(opHandle, fetchOrientation, size);
+      }
+    });
+    orientation = FetchOrientation.FETCH_NEXT;
+    log.debug("Fetched {} rows for {} in {} millis", rows.numRows(), opHandle,
+      System.currentTimeMillis() - fetchStartTime);
+    return rows;
+  }
+
+  /**
+   * Waits for the batch being fetched in background and drops it, so that no fetch is in progress.
+   */
+  private void discardPrefetchedRowSet() {
+    if (prefetchedRowSet != null) {
+      try {
+        prefetchedRowSet.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        log.warn("Error fetching results in background for {}", opHandle, e.getCause());
+      }
+      prefetchedRowSet = null;
+    }
   }
 }
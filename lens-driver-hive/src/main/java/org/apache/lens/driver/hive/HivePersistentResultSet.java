@@ -18,6 +18,8 @@
  */
 package org.apache.lens.driver.hive;
 
+import org.apache.lens.driver.hive.ThriftConnectionPool.ClientCall;
+import org.apache.lens.driver.hive.ThriftConnectionPool.ClientCaller;
 import org.apache.lens.server.api.driver.LensResultSetMetadata;
 import org.apache.lens.server.api.driver.PersistentResultSet;
 import org.apache.lens.server.api.error.LensException;
@@ -44,13 +46,19 @@ public class HivePersistentResultSet extends PersistentResultSet {
    *
    * @param resultSetPath the result set path
    * @param opHandle      the op handle
-   * @param client        the client
+   * @param caller        the caller making calls to hive server
    * @throws HiveSQLException the hive sql exception
+   * @throws LensException    the lens exception
    */
-  public HivePersistentResultSet(Path resultSetPath, OperationHandle opHandle, CLIServiceClient client)
-    throws HiveSQLException {
+  public HivePersistentResultSet(Path resultSetPath, final OperationHandle opHandle, ClientCaller caller)
+    throws HiveSQLException, LensException {
     this.path = resultSetPath;
-    this.metadata = client.getResultSetMetadata(opHandle);
+    this.metadata = caller.execute(new ClientCall<TableSchema>() {
+      @Override
+      public TableSchema call(CLIServiceClient client) throws HiveSQLException {
+        return client.getResultSetMetadata(opHandle);
+      }
+    });
   }
 
   /*
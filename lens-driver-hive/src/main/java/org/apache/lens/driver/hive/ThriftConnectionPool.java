@@ -0,0 +1,498 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.driver.hive;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lens.server.api.error.LensException;
+import org.apache.lens.server.api.metrics.LensMetricsRegistry;
+
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hive.service.cli.CLIServiceClient;
+import org.apache.hive.service.cli.HiveSQLException;
+import org.apache.thrift.transport.TTransportException;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded pool of thrift connections to HiveServer2, kept per user. A connection is borrowed for the duration of a
+ * call and returned after it, so the connections of a user are shared by all threads making calls as that user.
+ * <p></p>
+ * A borrower waits for at most the configured time when all connections of the user are in use, and fails after it.
+ * Connections whose calls fail with a transport error are discarded instead of being returned. Connections idle for
+ * longer than the idle timeout are closed, except for the configured minimum, which is kept open for every user that
+ * borrowed a connection.
+ */
+@Slf4j
+public class ThriftConnectionPool implements Closeable {
+
+  /**
+   * A call to HiveServer2 made with the client of a borrowed connection.
+   *
+   * @param <T> the result of the call
+   */
+  public interface ClientCall<T> {
+    T call(CLIServiceClient client) throws HiveSQLException;
+  }
+
+  /**
+   * Makes calls to HiveServer2 as a user.
+   */
+  public interface ClientCaller {
+    <T> T execute(ClientCall<T> call) throws LensException, HiveSQLException;
+  }
+
+  /** The Constant CONNECTION_COUNTER. */
+  private static final AtomicInteger CONNECTION_COUNTER = new AtomicInteger();
+
+  /** The connection class. */
+  private final Class<? extends ThriftConnection> connectionClass;
+
+  /** The hive conf connections are initialized with. */
+  private final HiveConf hiveConf;
+
+  /** The maximum connections of a user. */
+  private final int maxPerUser;
+
+  /** The number of idle connections kept open for a user. */
+  private final int minIdlePerUser;
+
+  /** The maximum time in millis a borrower waits for a connection. */
+  private final long maxWaitMillis;
+
+  /** The time in millis after which an idle connection is closed. */
+  private final long idleTimeoutMillis;
+
+  /** The pools of users, by lower cased user name. */
+  private final ConcurrentMap<String, UserPool> userPools = new ConcurrentHashMap<String, UserPool>();
+
+  /** The thread closing idle connections and opening connections up to the minimum idle. */
+  private final ScheduledExecutorService evictor;
+
+  /** The names of registered metrics. */
+  private final List<String> metricNames = new ArrayList<String>();
+
+  /** Time borrowers spend waiting for a connection. */
+  private final Timer waitTimer;
+
+  /** The number of connections currently borrowed. */
+  private final AtomicInteger active = new AtomicInteger();
+
+  /**
+   * Instantiates a new pool.
+   *
+   * @param name              name of the pool, used in metric names
+   * @param connectionClass   the connection class
+   * @param hiveConf          the hive conf connections are initialized with
+   * @param maxPerUser        the maximum connections of a user
+   * @param minIdlePerUser    the number of idle connections kept open for a user
+   * @param maxWaitMillis     the maximum time a borrower waits for a connection
+   * @param idleTimeoutMillis the time after which an idle connection is closed
+   */
+  public ThriftConnectionPool(String name, Class<? extends ThriftConnection> connectionClass, HiveConf hiveConf,
+    int maxPerUser, int minIdlePerUser, long maxWaitMillis, long idleTimeoutMillis) {
+    this.connectionClass = connectionClass;
+    this.hiveConf = hiveConf;
+    this.maxPerUser = Math.max(1, maxPerUser);
+    this.minIdlePerUser = Math.max(0, Math.min(minIdlePerUser, this.maxPerUser));
+    this.maxWaitMillis = Math.max(0, maxWaitMillis);
+    this.idleTimeoutMillis = idleTimeoutMillis;
+
+    MetricRegistry registry = LensMetricsRegistry.getStaticRegistry();
+    String waitTimerName = MetricRegistry.name(ThriftConnectionPool.class, name, "wait");
+    waitTimer = registry.timer(waitTimerName);
+    metricNames.add(waitTimerName);
+    registerGauge(registry, MetricRegistry.name(ThriftConnectionPool.class, name, "active"), new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return getActiveCount();
+      }
+    });
+    registerGauge(registry, MetricRegistry.name(ThriftConnectionPool.class, name, "idle"), new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return getIdleCount();
+      }
+    });
+
+    evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "HiveDriver-ConnectionPoolEvictor");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    long evictionInterval = Math.max(1000, Math.min(60 * 1000, idleTimeoutMillis / 2));
+    evictor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        for (UserPool pool : userPools.values()) {
+          try {
+            pool.evictAndWarm();
+          } catch (Exception e) {
+            log.warn("Error maintaining idle connections of user {}", pool.user, e);
+          }
+        }
+      }
+    }, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+  }
+
+  private void registerGauge(MetricRegistry registry, String metricName, Gauge<Integer> gauge) {
+    // a pool of the same name created again, by a driver re-configured, replaces gauges of the earlier one
+    registry.remove(metricName);
+    registry.register(metricName, gauge);
+    metricNames.add(metricName);
+  }
+
+  /**
+   * Makes the call with a connection of the user, borrowed for the duration of the call.
+   *
+   * @param user the user
+   * @param call the call
+   * @return the result of the call
+   * @throws LensException    if no connection could be borrowed in time, or could not be opened
+   * @throws HiveSQLException if the call failed
+   */
+  public <T> T execute(String user, ClientCall<T> call) throws LensException, HiveSQLException {
+    PooledConnection connection = borrow(user);
+    boolean healthy = false;
+    try {
+      T result = call.call(connection.getClient());
+      healthy = true;
+      return result;
+    } catch (HiveSQLException e) {
+      healthy = !isTransportFailure(e);
+      throw e;
+    } finally {
+      if (healthy) {
+        connection.pool.release(connection);
+      } else {
+        connection.pool.invalidate(connection);
+      }
+    }
+  }
+
+  /**
+   * Gives a caller making calls as the user, with connections of this pool.
+   *
+   * @param user the user
+   * @return the caller
+   */
+  public ClientCaller callerFor(final String user) {
+    return new ClientCaller() {
+      @Override
+      public <T> T execute(ClientCall<T> call) throws LensException, HiveSQLException {
+        return ThriftConnectionPool.this.execute(user, call);
+      }
+    };
+  }
+
+  private static boolean isTransportFailure(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof TTransportException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private PooledConnection borrow(String user) throws LensException {
+    String key = user.toLowerCase();
+    UserPool pool = userPools.get(key);
+    if (pool == null) {
+      userPools.putIfAbsent(key, new UserPool(user));
+      pool = userPools.get(key);
+    }
+    return pool.borrow();
+  }
+
+  public int getActiveCount() {
+    return active.get();
+  }
+
+  public int getIdleCount() {
+    int idle = 0;
+    for (UserPool pool : userPools.values()) {
+      idle += pool.getIdleCount();
+    }
+    return idle;
+  }
+
+  /**
+   * The number of open connections, borrowed or idle.
+   */
+  public int getOpenCount() {
+    int open = 0;
+    for (UserPool pool : userPools.values()) {
+      open += pool.getOpenCount();
+    }
+    return open;
+  }
+
+  public Timer getWaitTimer() {
+    return waitTimer;
+  }
+
+  /**
+   * Closes all idle connections, for connections to be opened afresh, when HiveServer2 has likely been restarted.
+   */
+  public void closeIdleConnections() {
+    for (UserPool pool : userPools.values()) {
+      pool.closeIdle(false);
+    }
+  }
+
+  /**
+   * Closes idle connections and stops maintaining them. Borrowed connections are closed when they are returned.
+   */
+  @Override
+  public void close() {
+    evictor.shutdownNow();
+    for (UserPool pool : userPools.values()) {
+      pool.closeIdle(true);
+    }
+    userPools.clear();
+    MetricRegistry registry = LensMetricsRegistry.getStaticRegistry();
+    for (String metricName : metricNames) {
+      registry.remove(metricName);
+    }
+  }
+
+  /**
+   * A connection of the pool.
+   */
+  private static class PooledConnection {
+
+    /** The connection. */
+    private final ThriftConnection connection;
+
+    /** The pool of the user of the connection. */
+    private final UserPool pool;
+
+    /** The conn id. */
+    private final int connId;
+
+    /** The time the connection was last returned. */
+    private long lastUsedTime;
+
+    PooledConnection(ThriftConnection connection, UserPool pool) {
+      this.connection = connection;
+      this.pool = pool;
+      this.connId = CONNECTION_COUNTER.incrementAndGet();
+      this.lastUsedTime = System.currentTimeMillis();
+    }
+
+    CLIServiceClient getClient() throws LensException {
+      return connection.getClient();
+    }
+
+    void closeQuietly() {
+      try {
+        connection.close();
+        log.info("Closed connection: {} of user: {}", connId, pool.user);
+      } catch (Exception e) {
+        log.warn("Error closing connection {} to hive server", connId, e);
+      }
+    }
+  }
+
+  /**
+   * Connections of a user.
+   */
+  private class UserPool {
+
+    /** The user. */
+    private final String user;
+
+    /** Idle connections, the most recently returned first. */
+    private final Deque<PooledConnection> idle = new ArrayDeque<PooledConnection>();
+
+    /** Connections open or being opened, borrowed or idle. */
+    private int open;
+
+    /** Whether the pool is closed. */
+    private boolean closed;
+
+    UserPool(String user) {
+      this.user = user;
+    }
+
+    PooledConnection borrow() throws LensException {
+      long start = System.nanoTime();
+      long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+      List<PooledConnection> expired = new ArrayList<PooledConnection>();
+      PooledConnection connection = null;
+      try {
+        synchronized (this) {
+          while (connection == null) {
+            if (closed) {
+              throw new LensException("Connection pool of hive driver is closed");
+            }
+            connection = idle.pollFirst();
+            if (connection != null) {
+              if (System.currentTimeMillis() - connection.lastUsedTime > idleTimeoutMillis) {
+                expired.add(connection);
+                open--;
+                connection = null;
+              }
+              continue;
+            }
+            if (open < maxPerUser) {
+              open++;
+              break;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+              throw new LensException("Timed out after " + maxWaitMillis + " millis waiting for a connection to"
+                + " HiveServer2 for user " + user + ", all " + maxPerUser + " connections are in use");
+            }
+            try {
+              TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              throw new LensException("Interrupted while waiting for a connection to HiveServer2", e);
+            }
+          }
+        }
+      } finally {
+        for (PooledConnection conn : expired) {
+          conn.closeQuietly();
+        }
+      }
+      if (connection == null) {
+        connection = openConnection();
+      }
+      waitTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      active.incrementAndGet();
+      return connection;
+    }
+
+    /**
+     * Opens a connection, its slot in {@link #open} should have been taken.
+     */
+    private PooledConnection openConnection() throws LensException {
+      try {
+        ThriftConnection tconn = connectionClass.newInstance();
+        tconn.init(hiveConf, user);
+        PooledConnection connection = new PooledConnection(tconn, this);
+        connection.getClient();
+        log.info("New thrift connection {} for user: {} connection ID={}", connectionClass, user,
+          connection.connId);
+        return connection;
+      } catch (Exception e) {
+        synchronized (this) {
+          open--;
+          notifyAll();
+        }
+        throw e instanceof LensException ? (LensException) e : new LensException(e);
+      }
+    }
+
+    void release(PooledConnection connection) {
+      active.decrementAndGet();
+      connection.lastUsedTime = System.currentTimeMillis();
+      synchronized (this) {
+        if (!closed) {
+          idle.addFirst(connection);
+          notify();
+          return;
+        }
+        open--;
+      }
+      connection.closeQuietly();
+    }
+
+    void invalidate(PooledConnection connection) {
+      active.decrementAndGet();
+      log.warn("Discarding connection {} of user {} after a failed call", connection.connId, user);
+      synchronized (this) {
+        open--;
+        notify();
+      }
+      connection.closeQuietly();
+    }
+
+    /**
+     * Closes connections idle for longer than the idle timeout, keeping the minimum idle, and opens connections to
+     * have the minimum idle.
+     */
+    void evictAndWarm() throws LensException {
+      List<PooledConnection> expired = new ArrayList<PooledConnection>();
+      int toOpen;
+      synchronized (this) {
+        long now = System.currentTimeMillis();
+        // idle connections are ordered by last use, the least recently used last
+        while (idle.size() > minIdlePerUser && now - idle.peekLast().lastUsedTime > idleTimeoutMillis) {
+          expired.add(idle.pollLast());
+          open--;
+        }
+        toOpen = closed ? 0 : Math.max(0, Math.min(minIdlePerUser - idle.size(), maxPerUser - open));
+        open += toOpen;
+      }
+      for (PooledConnection connection : expired) {
+        connection.closeQuietly();
+      }
+      for (int i = 0; i < toOpen; i++) {
+        PooledConnection connection;
+        try {
+          connection = openConnection();
+        } catch (LensException e) {
+          // slots of the connections not opened are to be given up as well
+          synchronized (this) {
+            open -= toOpen - i - 1;
+            notifyAll();
+          }
+          throw e;
+        }
+        active.incrementAndGet();
+        release(connection);
+      }
+    }
+
+    synchronized int getIdleCount() {
+      return idle.size();
+    }
+
+    synchronized int getOpenCount() {
+      return open;
+    }
+
+    void closeIdle(boolean closePool) {
+      List<PooledConnection> toClose;
+      synchronized (this) {
+        closed = closed || closePool;
+        toClose = new ArrayList<PooledConnection>(idle);
+        open -= idle.size();
+        idle.clear();
+        notifyAll();
+      }
+      for (PooledConnection connection : toClose) {
+        connection.closeQuietly();
+      }
+    }
+  }
+}
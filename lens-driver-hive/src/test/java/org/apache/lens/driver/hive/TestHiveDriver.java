@@ -290,6 +290,31 @@ public class TestHiveDriver {
     assertEquals(0, driver.getHiveHandleSize());
   }
 
+  /**
+   * Test in memory results fetched with prefetch in background, one row per batch.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testExecuteQueryWithResultPrefetch() throws Exception {
+    createTestTable("test_execute_prefetch");
+    conf.setBoolean(LensConfConstants.QUERY_PERSISTENT_RESULT_INDRIVER, false);
+    HiveConf prefetchConf = new HiveConf(conf, TestHiveDriver.class);
+    prefetchConf.setBoolean(HiveDriver.HS2_RESULT_PREFETCH, true);
+    HiveDriver prefetchDriver = new HiveDriver();
+    prefetchDriver.configure(prefetchConf);
+    try {
+      prefetchDriver.execute(createContext("USE " + dataBase, conf, prefetchDriver));
+      QueryContext context = createContext("SELECT ID FROM test_execute_prefetch", conf, prefetchDriver);
+      LensResultSet resultSet = prefetchDriver.execute(context);
+      ((HiveInMemoryResultSet) resultSet).setFetchSize(1);
+      validateInMemoryResult(resultSet);
+    } finally {
+      conf.setBoolean(LensConfConstants.QUERY_PERSISTENT_RESULT_INDRIVER, true);
+      prefetchDriver.close();
+    }
+  }
+
   /**
    * Validate in memory result.
    *
@@ -0,0 +1,204 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.driver.hive;
+
+import static org.testng.Assert.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lens.driver.hive.ThriftConnectionPool.ClientCall;
+import org.apache.lens.server.api.error.LensException;
+
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hive.service.cli.CLIServiceClient;
+import org.apache.hive.service.cli.HiveSQLException;
+import org.apache.thrift.transport.TTransportException;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestThriftConnectionPool {
+
+  /** Connections opened, across all pools. */
+  private static final AtomicInteger OPENED = new AtomicInteger();
+
+  /** Connections closed, across all pools. */
+  private static final AtomicInteger CLOSED = new AtomicInteger();
+
+  /**
+   * Connection which doesn't connect anywhere.
+   */
+  public static class MockThriftConnection implements ThriftConnection {
+    @Override
+    public CLIServiceClient getClient() throws LensException {
+      return null;
+    }
+
+    @Override
+    public void init(HiveConf conf, String user) {
+      OPENED.incrementAndGet();
+    }
+
+    @Override
+    public void close() {
+      CLOSED.incrementAndGet();
+    }
+  }
+
+  private ThriftConnectionPool pool;
+  private ExecutorService executor;
+
+  @BeforeMethod
+  public void setUp() {
+    OPENED.set(0);
+    CLOSED.set(0);
+    pool = new ThriftConnectionPool("test", MockThriftConnection.class, new HiveConf(), 2, 0, 200, 60 * 1000);
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    pool.close();
+    executor.shutdownNow();
+  }
+
+  private static final ClientCall<Void> NOOP = new ClientCall<Void>() {
+    @Override
+    public Void call(CLIServiceClient client) {
+      return null;
+    }
+  };
+
+  /** Makes a call as the user in background, which holds its connection till the latch is released. */
+  private Future<Void> blockingCall(final String user, final CountDownLatch started, final CountDownLatch release) {
+    return executor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        return pool.execute(user, new ClientCall<Void>() {
+          @Override
+          public Void call(CLIServiceClient client) {
+            started.countDown();
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            return null;
+          }
+        });
+      }
+    });
+  }
+
+  @Test
+  public void testConnectionsAreShared() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      pool.execute("user1", NOOP);
+    }
+    assertEquals(OPENED.get(), 1);
+    assertEquals(pool.getOpenCount(), 1);
+    assertEquals(pool.getIdleCount(), 1);
+    assertEquals(pool.getActiveCount(), 0);
+    assertEquals(pool.getWaitTimer().getCount(), 10);
+
+    pool.execute("USER1", NOOP);
+    pool.execute("user2", NOOP);
+    assertEquals(OPENED.get(), 2);
+  }
+
+  @Test
+  public void testBorrowWaitsAndFailsFast() throws Exception {
+    CountDownLatch started = new CountDownLatch(2);
+    CountDownLatch release = new CountDownLatch(1);
+    Future<Void> first = blockingCall("user1", started, release);
+    Future<Void> second = blockingCall("user1", started, release);
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    assertEquals(pool.getActiveCount(), 2);
+
+    long start = System.currentTimeMillis();
+    try {
+      pool.execute("user1", NOOP);
+      fail("Borrowing beyond the maximum connections should time out");
+    } catch (LensException e) {
+      assertTrue(System.currentTimeMillis() - start >= 200);
+    }
+    // other users are not affected
+    pool.execute("user2", NOOP);
+
+    // a waiting borrower gets the connection returned
+    Future<Void> waiting = executor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        return pool.execute("user1", NOOP);
+      }
+    });
+    release.countDown();
+    first.get();
+    second.get();
+    waiting.get();
+    assertEquals(pool.getActiveCount(), 0);
+    assertEquals(OPENED.get(), 3);
+  }
+
+  @Test
+  public void testTransportFailureDiscardsConnection() throws Exception {
+    pool.execute("user1", NOOP);
+    try {
+      pool.execute("user1", new ClientCall<Void>() {
+        @Override
+        public Void call(CLIServiceClient client) throws HiveSQLException {
+          throw new HiveSQLException(new TTransportException("broken pipe"));
+        }
+      });
+      fail("Call should have failed");
+    } catch (HiveSQLException e) {
+      // expected
+    }
+    assertEquals(CLOSED.get(), 1);
+    assertEquals(pool.getOpenCount(), 0);
+
+    try {
+      pool.execute("user1", new ClientCall<Void>() {
+        @Override
+        public Void call(CLIServiceClient client) throws HiveSQLException {
+          throw new HiveSQLException("Invalid OperationHandle");
+        }
+      });
+      fail("Call should have failed");
+    } catch (HiveSQLException e) {
+      // expected
+    }
+    // connection is healthy when the call fails on server
+    assertEquals(CLOSED.get(), 1);
+    assertEquals(pool.getIdleCount(), 1);
+  }
+
+  @Test
+  public void testCloseIdleConnections() throws Exception {
+    pool.execute("user1", NOOP);
+    pool.execute("user2", NOOP);
+    pool.closeIdleConnections();
+    assertEquals(CLOSED.get(), 2);
+    assertEquals(pool.getOpenCount(), 0);
+    pool.execute("user1", NOOP);
+    assertEquals(OPENED.get(), 3);
+  }
+}
@@ -33,6 +33,7 @@ import java.io.ObjectOutput;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -103,6 +104,10 @@ public class JDBCDriver implements LensDriver {
   private LogSegregationContext logSegregationContext;
   private DriverQueryHook queryHook;
 
+  /** The driver event listeners. */
+  private final List<LensEventListener<DriverEvent>> driverListeners =
+    new CopyOnWriteArrayList<LensEventListener<DriverEvent>>();
+
   @Getter
   private ImmutableSet<QueryLaunchingConstraint> queryConstraints;
   private ImmutableSet<WaitingQueriesSelectionPolicy> selectionPolicies;
@@ -911,14 +916,23 @@ public class JDBCDriver implements LensDriver {
     JdbcQueryContext jdbcCtx = new JdbcQueryContext(context, logSegregationContext);
     jdbcCtx.setRewrittenQuery(rewrittenQuery);
     queryHook.preLaunch(context);
+    final QueryHandle handle = context.getQueryHandle();
+    FutureTask<QueryResult> future = new FutureTask<QueryResult>(new QueryCallable(jdbcCtx, logSegregationContext)) {
+      @Override
+      protected void done() {
+        notifyStatusChanged(handle);
+      }
+    };
+    jdbcCtx.setResultFuture(future);
+    // context should be visible before the query completes and listeners ask for its status
+    queryContextMap.put(handle, jdbcCtx);
     try {
-      Future<QueryResult> future = asyncQueryPool.submit(new QueryCallable(jdbcCtx, logSegregationContext));
-      jdbcCtx.setResultFuture(future);
+      asyncQueryPool.execute(future);
     } catch (RejectedExecutionException e) {
-      log.error("Query execution rejected: {} reason:{}", context.getQueryHandle(), e.getMessage(), e);
-      throw new LensException("Query execution rejected: " + context.getQueryHandle() + " reason:" + e.getMessage(), e);
+      queryContextMap.remove(handle);
+      log.error("Query execution rejected: {} reason:{}", handle, e.getMessage(), e);
+      throw new LensException("Query execution rejected: " + handle + " reason:" + e.getMessage(), e);
     }
-    queryContextMap.put(context.getQueryHandle(), jdbcCtx);
     log.info("ExecuteAsync: {}", context.getQueryHandle());
   }
 
@@ -1095,7 +1109,33 @@ public class JDBCDriver implements LensDriver {
    */
   @Override
   public void registerDriverEventListener(LensEventListener<DriverEvent> driverEventListener) {
+    driverListeners.add(driverEventListener);
+  }
 
+  /**
+   * Completion of async queries is published as {@link DriverQueryStatusChanged} event.
+   *
+   * @return true
+   */
+  @Override
+  public boolean isStatusPushSupported() {
+    return true;
+  }
+
+  /**
+   * Notify the driver event listeners that status of the query has changed.
+   *
+   * @param handle the query handle
+   */
+  private void notifyStatusChanged(QueryHandle handle) {
+    DriverQueryStatusChanged event = new DriverQueryStatusChanged(System.currentTimeMillis(), this, handle);
+    for (LensEventListener<DriverEvent> listener : driverListeners) {
+      try {
+        listener.onEvent(event);
+      } catch (Exception e) {
+        log.warn("Error while notifying status change of query {}", handle, e);
+      }
+    }
   }
 
   @Override
@@ -90,22 +90,27 @@ public abstract class AbstractFileFormatter extends AbstractOutputFormatter impl
   }
 
   public String getFinalOutputPath() {
-    return finalPath.toString();
+    return finalPath == null ? null : finalPath.toString();
   }
 
   @Override
   public void writeExternal(ObjectOutput out) throws IOException {
-    out.writeUTF(metadata.toJson());
-    out.writeUTF(finalPath.toString());
-    out.writeInt(numRows);
-    out.writeLong(fileSize);
+    // fields are not set if formatting failed before commit, and are written as empty or negative
+    out.writeUTF(metadata == null ? "" : metadata.toJson());
+    out.writeUTF(finalPath == null ? "" : finalPath.toString());
+    out.writeInt(numRows == null ? -1 : numRows);
+    out.writeLong(fileSize == null ? -1 : fileSize);
   }
 
   @Override
   public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-    metadata = LensResultSetMetadata.fromJson(in.readUTF());
-    finalPath = new Path(in.readUTF());
-    numRows = in.readInt();
-    fileSize = in.readLong();
+    String metadataJson = in.readUTF();
+    metadata = metadataJson.isEmpty() ? null : LensResultSetMetadata.fromJson(metadataJson);
+    String path = in.readUTF();
+    finalPath = path.isEmpty() ? null : new Path(path);
+    int rows = in.readInt();
+    numRows = rows < 0 ? null : rows;
+    long size = in.readLong();
+    fileSize = size < 0 ? null : size;
   }
 }
@@ -20,11 +20,18 @@ package org.apache.lens.lib.query;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.text.ParseException;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.apache.lens.server.api.LensConfConstants;
 import org.apache.lens.server.api.driver.LensResultSetMetadata;
 import org.apache.lens.server.api.query.PersistedOutputFormatter;
 import org.apache.lens.server.api.query.QueryContext;
@@ -34,12 +41,18 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.PathFilter;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * File formatter for {@link PersistedOutputFormatter}
  * <p></p>
  * This is a {@link WrappedFileFormatter} which can wrap any {@link FileFormatter}.
+ * <p></p>
+ * Part files are copied as they are when the result is written to a single file in UTF-8 encoding. Otherwise rows
+ * are read from upto {@link LensConfConstants#RESULT_FORMAT_PARALLELISM} part files in parallel, and written in the
+ * order of the part files.
  */
 @Slf4j
 public class FilePersistentFormatter extends WrappedFileFormatter implements PersistedOutputFormatter {
@@ -93,6 +106,94 @@ public class FilePersistentFormatter extends WrappedFileFormatter implements Per
     }
   }
 
+  /**
+   * Number of rows read from a part file, which are handed over to the writer together.
+   */
+  private static final int ROWS_PER_CHUNK = 1000;
+
+  /**
+   * Number of chunks read ahead from a part file, before the writer gets to it.
+   */
+  private static final int CHUNKS_PER_PART_FILE = 4;
+
+  /**
+   * Marks the end of the rows of a part file.
+   */
+  private static final List<String> END_OF_PART_FILE = new ArrayList<String>(0);
+
+  /**
+   * Reads the rows of a part file in chunks, into a bounded queue.
+   */
+  private static class PartFileReader implements Runnable {
+
+    /**
+     * The file system.
+     */
+    private final FileSystem fs;
+
+    /**
+     * The part file.
+     */
+    private final Path path;
+
+    /**
+     * The chunks read, ended by {@link #END_OF_PART_FILE}.
+     */
+    private final BlockingQueue<List<String>> chunks = new ArrayBlockingQueue<List<String>>(CHUNKS_PER_PART_FILE);
+
+    /**
+     * The error, if the part file could not be read.
+     */
+    private volatile IOException error;
+
+    PartFileReader(FileSystem fs, Path path) {
+      this.fs = fs;
+      this.path = path;
+    }
+
+    @Override
+    public void run() {
+      try {
+        BufferedReader in = null;
+        try {
+          // default encoding in hadoop filesystem is utf-8
+          in = new BufferedReader(new InputStreamReader(fs.open(path), "UTF-8"));
+          List<String> chunk = new ArrayList<String>(ROWS_PER_CHUNK);
+          String row = in.readLine();
+          while (row != null) {
+            chunk.add(row);
+            if (chunk.size() == ROWS_PER_CHUNK) {
+              chunks.put(chunk);
+              chunk = new ArrayList<String>(ROWS_PER_CHUNK);
+            }
+            row = in.readLine();
+          }
+          if (!chunk.isEmpty()) {
+            chunks.put(chunk);
+          }
+        } finally {
+          if (in != null) {
+            in.close();
+          }
+        }
+      } catch (IOException e) {
+        error = e;
+      } catch (InterruptedException e) {
+        // the writer has given up on the result
+        Thread.currentThread().interrupt();
+      } catch (Throwable e) {
+        error = new IOException("Could not read " + path, e);
+      } finally {
+        // the writer waits for the end of the part file, even if it could not be read
+        try {
+          chunks.put(END_OF_PART_FILE);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
   /*
    * (non-Javadoc)
    *
@@ -117,26 +218,122 @@ public class FilePersistentFormatter extends WrappedFileFormatter implements Per
       for (FileStatus file : partFiles) {
         partFileMap.put(new PartFile(file.getPath().getName()), file);
       }
+    } catch (ParseException e) {
+      throw new IOException(e);
+    }
+    List<Path> partFilePaths = new ArrayList<Path>(partFileMap.size());
+    for (FileStatus file : partFileMap.values()) {
+      partFilePaths.add(file.getPath());
+    }
 
-      for (Map.Entry<PartFile, FileStatus> entry : partFileMap.entrySet()) {
-        log.info("Processing file:{}", entry.getValue().getPath());
-        BufferedReader in = null;
-        try {
-          // default encoding in hadoop filesystem is utf-8
-          in = new BufferedReader(new InputStreamReader(persistFs.open(entry.getValue().getPath()), "UTF-8"));
-          String row = in.readLine();
-          while (row != null) {
-            writeRow(row);
-            row = in.readLine();
-          }
-        } finally {
-          if (in != null) {
-            in.close();
-          }
+    int parallelism = ctx.getConf().getInt(LensConfConstants.RESULT_FORMAT_PARALLELISM,
+      LensConfConstants.DEFAULT_RESULT_FORMAT_PARALLELISM);
+    // default encoding in hadoop filesystem is utf-8
+    if (canCopyRows("UTF-8")) {
+      copyPartFiles(persistFs, partFilePaths);
+    } else if (parallelism > 1 && partFilePaths.size() > 1) {
+      addRowsInParallel(persistFs, partFilePaths, parallelism);
+    } else {
+      for (Path path : partFilePaths) {
+        addRows(persistFs, path);
+      }
+    }
+  }
+
+  /**
+   * Copy the part files to the result, one after the other.
+   *
+   * @param fs             the file system
+   * @param partFilePaths  the part files, in order
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void copyPartFiles(FileSystem fs, List<Path> partFilePaths) throws IOException {
+    for (Path path : partFilePaths) {
+      log.info("Copying file:{}", path);
+      InputStream in = fs.open(path);
+      try {
+        copyRows(in);
+      } finally {
+        in.close();
+      }
+    }
+  }
+
+  /**
+   * Read the part files in parallel, and write their rows in the order of the part files. Part files are read in
+   * order, so that the part file being written is always being read.
+   *
+   * @param fs            the file system
+   * @param partFilePaths the part files, in order
+   * @param parallelism   number of part files read in parallel
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void addRowsInParallel(FileSystem fs, List<Path> partFilePaths, int parallelism) throws IOException {
+    ExecutorService readers = Executors.newFixedThreadPool(Math.min(parallelism, partFilePaths.size()),
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("PartFileReader-" + ctx.getQueryHandleString() + "-%d")
+        .build());
+    try {
+      List<PartFileReader> partFileReaders = new ArrayList<PartFileReader>(partFilePaths.size());
+      for (Path path : partFilePaths) {
+        PartFileReader reader = new PartFileReader(fs, path);
+        partFileReaders.add(reader);
+        readers.execute(reader);
+      }
+      for (PartFileReader reader : partFileReaders) {
+        log.info("Processing file:{}", reader.path);
+        addRows(reader);
+      }
+    } finally {
+      readers.shutdownNow();
+    }
+  }
+
+  /**
+   * Read and write the rows of a part file.
+   *
+   * @param fs   the file system
+   * @param path the part file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void addRows(FileSystem fs, Path path) throws IOException {
+    log.info("Processing file:{}", path);
+    BufferedReader in = null;
+    try {
+      // default encoding in hadoop filesystem is utf-8
+      in = new BufferedReader(new InputStreamReader(fs.open(path), "UTF-8"));
+      String row = in.readLine();
+      while (row != null) {
+        writeRow(row);
+        row = in.readLine();
+      }
+    } finally {
+      if (in != null) {
+        in.close();
+      }
+    }
+  }
+
+  /**
+   * Write the rows of a part file, as they are read by its reader.
+   *
+   * @param reader reader of the part file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void addRows(PartFileReader reader) throws IOException {
+    try {
+      List<String> chunk = reader.chunks.take();
+      while (chunk != END_OF_PART_FILE) {
+        for (String row : chunk) {
+          writeRow(row);
         }
+        chunk = reader.chunks.take();
       }
-    } catch (ParseException e) {
-      throw new IOException(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading " + reader.path, e);
+    }
+    if (reader.error != null) {
+      throw reader.error;
     }
   }
 }
@@ -19,6 +19,8 @@
 package org.apache.lens.lib.query;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 
 import org.apache.lens.lib.query.LensFileOutputFormat.LensRowWriter;
 
@@ -107,6 +109,27 @@ public class HadoopFileFormatter extends AbstractFileFormatter {
     numRows++;
   }
 
+  /**
+   * Whether rows in the given encoding can be copied to the output as they are.
+   *
+   * @param encoding encoding of the rows
+   * @return true if the output is in the same encoding
+   */
+  public boolean canCopyRows(String encoding) {
+    return Charset.forName(rowWriter.getEncoding()).equals(Charset.forName(encoding));
+  }
+
+  /**
+   * Copy rows separated by new lines to the output, without decoding them. Caller should check
+   * {@link #canCopyRows(String)} first.
+   *
+   * @param in the rows
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public void copyRows(InputStream in) throws IOException {
+    numRows += rowWriter.writeEncodedRows(in);
+  }
+
   /*
    * (non-Javadoc)
    *
@@ -20,6 +20,7 @@ package org.apache.lens.lib.query;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.util.regex.Matcher;
@@ -76,6 +77,11 @@ public class LensFileOutputFormat extends FileOutputFormat<NullWritable, Text> {
      */
     protected OutputStreamWriter out;
 
+    /**
+     * The stream on which encoded rows are written.
+     */
+    private final DataOutputStream encodedOut;
+
     /**
      * The tmp path.
      */
@@ -97,6 +103,7 @@ public class LensFileOutputFormat extends FileOutputFormat<NullWritable, Text> {
     public LensRowWriter(DataOutputStream out, String encoding, Path tmpPath, String extn) {
       this.tmpPath = tmpPath;
       this.extn = extn;
+      this.encodedOut = out;
       try {
         this.out = new OutputStreamWriter(out, encoding);
       } catch (UnsupportedEncodingException uee) {
@@ -126,6 +133,39 @@ public class LensFileOutputFormat extends FileOutputFormat<NullWritable, Text> {
       out.write(NEWLINE);
     }
 
+    /**
+     * Write rows which are already encoded in the encoding of this writer, as they are. Rows are separated by
+     * {@link #NEWLINE}, which is added after the last row if it is missing.
+     *
+     * @param in the encoded rows
+     * @return number of rows written
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public synchronized int writeEncodedRows(InputStream in) throws IOException {
+      out.flush();
+      byte[] buffer = new byte[64 * 1024];
+      int rows = 0;
+      int last = '\n';
+      int read = in.read(buffer);
+      while (read != -1) {
+        for (int i = 0; i < read; i++) {
+          if (buffer[i] == '\n') {
+            rows++;
+          }
+        }
+        if (read > 0) {
+          encodedOut.write(buffer, 0, read);
+          last = buffer[read - 1];
+        }
+        read = in.read(buffer);
+      }
+      if (last != '\n') {
+        encodedOut.write('\n');
+        rows++;
+      }
+      return rows;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -19,6 +19,7 @@
 package org.apache.lens.lib.query;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 
@@ -95,14 +96,36 @@ public abstract class WrappedFileFormatter extends AbstractOutputFormatter {
     formatter.writeRow(row);
   }
 
+  /**
+   * Whether rows in the given encoding can be copied to the result as they are, without being decoded and written
+   * row by row.
+   *
+   * @param encoding encoding of the rows
+   * @return true if rows can be copied
+   */
+  protected boolean canCopyRows(String encoding) {
+    return formatter instanceof HadoopFileFormatter && ((HadoopFileFormatter) formatter).canCopyRows(encoding);
+  }
+
+  /**
+   * Copy rows separated by new lines to the result, as they are. Caller should check {@link #canCopyRows(String)}
+   * first.
+   *
+   * @param in the rows
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  protected void copyRows(InputStream in) throws IOException {
+    ((HadoopFileFormatter) formatter).copyRows(in);
+  }
+
   @Override
   public Integer getNumRows() {
-    return formatter.getNumRows();
+    return formatter == null ? null : formatter.getNumRows();
   }
 
   @Override
   public Long getFileSize() {
-    return formatter.getFileSize();
+    return formatter == null ? null : formatter.getFileSize();
   }
 
   /*
@@ -129,7 +152,7 @@ public abstract class WrappedFileFormatter extends AbstractOutputFormatter {
 
   @Override
   public String getFinalOutputPath() {
-    return formatter.getFinalOutputPath();
+    return formatter == null ? null : formatter.getFinalOutputPath();
   }
 
   public Path getTmpPath() {
@@ -147,7 +170,8 @@ public abstract class WrappedFileFormatter extends AbstractOutputFormatter {
 
   @Override
   public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+    // null if the formatter failed to initialize
     formatter = (AbstractFileFormatter) in.readObject();
-    metadata = formatter.getMetadata();
+    metadata = formatter == null ? null : formatter.getMetadata();
   }
 }
@@ -224,6 +224,53 @@ public abstract class TestAbstractFileFormatter {
     Assert.assertEquals(formatter.getMetadata().toJson(), newFormatter.getMetadata().toJson());
   }
 
+  /**
+   * Test persistence of formatters which failed before commit, and of the query holding them.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void testFailedFormatterPersistence() throws IOException, ClassNotFoundException {
+    Configuration conf = new Configuration();
+    setConf(conf);
+
+    // formatter which failed to initialize
+    WrappedFileFormatter newFormatter = (WrappedFileFormatter) writeAndRead(createFormatter());
+    Assert.assertNull(newFormatter.getFinalOutputPath());
+    Assert.assertNull(newFormatter.getNumRows());
+    Assert.assertNull(newFormatter.getMetadata());
+
+    // formatter which failed while writing rows
+    QueryContext ctx = createContext(conf, null);
+    WrappedFileFormatter failed = createFormatter();
+    failed.init(ctx, getMockedResultSet());
+    failed.close();
+    failed.getTmpPath().getFileSystem(conf).delete(failed.getTmpPath(), true);
+    newFormatter = (WrappedFileFormatter) writeAndRead(failed);
+    Assert.assertEquals(newFormatter.getFinalOutputPath(), failed.getFinalOutputPath());
+    Assert.assertEquals(newFormatter.getNumRows(), failed.getNumRows());
+    Assert.assertNull(newFormatter.getFileSize());
+    Assert.assertEquals(newFormatter.getMetadata().toJson(), failed.getMetadata().toJson());
+
+    ctx.setQueryOutputFormatter(failed);
+    QueryContext newCtx = (QueryContext) writeAndRead(ctx);
+    Assert.assertEquals(newCtx.getQueryHandle(), ctx.getQueryHandle());
+    Assert.assertNull(newCtx.getQueryOutputFormatter().getFileSize());
+  }
+
+  private Object writeAndRead(Object object) throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(outputStream);
+    out.writeObject(object);
+    out.close();
+    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+    try {
+      return in.readObject();
+    } finally {
+      in.close();
+    }
+  }
+
   /**
    * Creates the formatter.
    *
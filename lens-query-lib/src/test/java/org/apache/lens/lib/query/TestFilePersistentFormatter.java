@@ -21,6 +21,7 @@ package org.apache.lens.lib.query;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.ZipEntry;
@@ -31,8 +32,10 @@ import org.apache.lens.server.api.query.PersistedOutputFormatter;
 import org.apache.lens.server.api.query.QueryContext;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
 import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
 
 import org.testng.Assert;
@@ -329,6 +332,116 @@ public class TestFilePersistentFormatter extends TestAbstractFileFormatter {
     zin.close();
   }
 
+  /**
+   * Test csv with zip formatter, reading part files one after the other.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void testCSVWithZipFormatterSequential() throws IOException {
+    Configuration conf = new Configuration();
+    setConf(conf);
+    conf.set(LensConfConstants.QUERY_OUTPUT_HEADER, "");
+    conf.setBoolean(LensConfConstants.RESULT_SPLIT_INTO_MULTIPLE, true);
+    conf.setLong(LensConfConstants.RESULT_SPLIT_MULTIPLE_MAX_ROWS, 2L);
+    conf.setInt(LensConfConstants.RESULT_FORMAT_PARALLELISM, 1);
+    testFormatter(conf, "UTF8", LensConfConstants.RESULT_SET_PARENT_DIR_DEFAULT, ".zip", getMockedResultSet());
+    // validate rows
+    List<String> actual = readZipOutputFile(new Path(formatter.getFinalOutputPath()), conf, "UTF-8");
+    Assert.assertEquals(actual, getExpectedCSVRowsWithMultiple());
+  }
+
+  /**
+   * Test many part files with more rows than a chunk, copied in UTF-8 and read in parallel in UTF-16LE.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void testManyPartFiles() throws IOException {
+    Path manyPartFileDir = new Path("target/partmanyfiles");
+    FileSystem fs = manyPartFileDir.getFileSystem(new Configuration());
+    fs.delete(manyPartFileDir, true);
+    List<String> expected = new ArrayList<String>();
+    expected.add("header");
+    for (int part = 9; part >= 0; part--) {
+      BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+        fs.create(new Path(manyPartFileDir, String.format("%06d_%d", part, 9 - part))), "UTF-8"));
+      for (int row = 0; row < 1500; row++) {
+        writer.write("\u00e9" + part + "," + row);
+        // last row of a part file may not end with a new line
+        if (row < 1499 || part % 2 == 0) {
+          writer.write("\n");
+        }
+      }
+      writer.close();
+    }
+    for (int part = 0; part < 10; part++) {
+      for (int row = 0; row < 1500; row++) {
+        expected.add("\u00e9" + part + "," + row);
+      }
+    }
+    expected.add("Total rows:15000");
+
+    try {
+      for (String encoding : new String[]{"UTF-8", "UTF-16LE"}) {
+        Configuration conf = new Configuration();
+        setConf(conf);
+        conf.set("test.partfile.dir", manyPartFileDir.toString());
+        conf.set(LensConfConstants.QUERY_OUTPUT_HEADER, "header");
+        conf.set(LensConfConstants.QUERY_OUTPUT_FOOTER, "");
+        conf.set(LensConfConstants.QUERY_OUTPUT_CHARSET_ENCODING, encoding);
+        testFormatter(conf, encoding.equals("UTF-8") ? "UTF8" : "UnicodeLittleUnmarked",
+          LensConfConstants.RESULT_SET_PARENT_DIR_DEFAULT, ".csv", getMockedResultSet());
+        Assert.assertEquals(formatter.getNumRows().intValue(), 15000);
+        Assert.assertEquals(readFinalOutputFile(new Path(formatter.getFinalOutputPath()), conf, encoding), expected);
+      }
+    } finally {
+      fs.delete(manyPartFileDir, true);
+    }
+  }
+
+  /**
+   * Local file system under the failing scheme, failing to open files with a runtime exception.
+   */
+  public static class FailingFileSystem extends RawLocalFileSystem {
+    @Override
+    public URI getUri() {
+      return URI.create("failing:///");
+    }
+
+    @Override
+    public FSDataInputStream open(Path path, int bufferSize) throws IOException {
+      throw new IllegalStateException("Cannot open " + path);
+    }
+  }
+
+  /**
+   * Test that failures other than IO errors of part files read in parallel fail the formatting, instead of leaving
+   * the writer waiting for rows.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test(timeOut = 60000)
+  public void testPartFileReadFailure() throws IOException {
+    Configuration conf = new Configuration();
+    setConf(conf);
+    conf.set("fs.failing.impl", FailingFileSystem.class.getName());
+    conf.setBoolean("fs.failing.impl.disable.cache", true);
+    FileSystem fs = partFileDir.getFileSystem(conf);
+    conf.set("test.partfile.dir", "failing://" + partFileDir.makeQualified(fs).toUri().getPath());
+    // not copied as is
+    conf.set(LensConfConstants.QUERY_OUTPUT_CHARSET_ENCODING, "UTF-16LE");
+    try {
+      testFormatter(conf, "UnicodeLittleUnmarked", LensConfConstants.RESULT_SET_PARENT_DIR_DEFAULT, ".csv",
+        getMockedResultSet());
+      Assert.fail("Formatting should fail when part files cannot be read");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getCause() instanceof IllegalStateException, e.toString());
+    } finally {
+      formatter.close();
+    }
+  }
+
   protected List<String> getExpectedCSVRows() {
     return new ArrayList<String>() {
       {
@@ -124,6 +124,38 @@ public final class LensConfConstants {
    */
   public static final String EVENT_SERVICE_THREAD_POOL_SIZE = SERVER_PFX + "event.service.thread.pool.size";
 
+  /**
+   * Maximum number of events queued for each event listener.
+   */
+  public static final String EVENT_LISTENER_QUEUE_SIZE = SERVER_PFX + "event.listener.queue.size";
+
+  /**
+   * The Constant DEFAULT_EVENT_LISTENER_QUEUE_SIZE.
+   */
+  public static final int DEFAULT_EVENT_LISTENER_QUEUE_SIZE = 10000;
+
+  /**
+   * What to do with an event when the queue of a listener is full. One of BLOCK, DROP_OLDEST and COALESCE. Can be
+   * set for a listener by suffixing its class name, like lens.server.event.listener.overflow.policy.[class name].
+   * Listeners implementing {@link org.apache.lens.server.api.events.LosslessEventListener} always block.
+   */
+  public static final String EVENT_LISTENER_OVERFLOW_POLICY = SERVER_PFX + "event.listener.overflow.policy";
+
+  /**
+   * The Constant DEFAULT_EVENT_LISTENER_OVERFLOW_POLICY.
+   */
+  public static final String DEFAULT_EVENT_LISTENER_OVERFLOW_POLICY = "DROP_OLDEST";
+
+  /**
+   * Maximum number of queued events delivered to a listener at once.
+   */
+  public static final String EVENT_LISTENER_BATCH_SIZE = SERVER_PFX + "event.listener.batch.size";
+
+  /**
+   * The Constant DEFAULT_EVENT_LISTENER_BATCH_SIZE.
+   */
+  public static final int DEFAULT_EVENT_LISTENER_BATCH_SIZE = 100;
+
   /**
    * The Constant SERVER_BASE_URL.
    */
@@ -224,6 +256,17 @@ public final class LensConfConstants {
    */
   public static final long DEFAULT_SERVER_SNAPSHOT_INTERVAL = 5 * 60 * 1000;
 
+  /**
+   * Whether query state changes are journaled, instead of saving all queries in server state snapshots, so that they
+   * are recovered on restart.
+   */
+  public static final String SERVER_STATE_JOURNAL_ENABLED = SERVER_PFX + "state.journal.enabled";
+
+  /**
+   * The Constant DEFAULT_SERVER_STATE_JOURNAL_ENABLED.
+   */
+  public static final boolean DEFAULT_SERVER_STATE_JOURNAL_ENABLED = true;
+
   // Email related configurations
   /**
    * The Constant QUERY_MAIL_NOTIFY.
@@ -717,6 +760,16 @@ public final class LensConfConstants {
    */
   public static final long DEFAULT_RESULT_SPLIT_MULTIPLE_MAX_ROWS = 100000;
 
+  /**
+   * The number of part files of a persisted result read in parallel, while formatting the result.
+   */
+  public static final String RESULT_FORMAT_PARALLELISM = QUERY_PFX + "result.format.parallelism";
+
+  /**
+   * The Constant DEFAULT_RESULT_FORMAT_PARALLELISM.
+   */
+  public static final int DEFAULT_RESULT_FORMAT_PARALLELISM = 4;
+
   /**
    * The Constant RESULT_FS_READ_URL.
    */
@@ -783,6 +836,47 @@ public final class LensConfConstants {
    */
   public static final int DEFAULT_PURGE_INTERVAL = 10000;
 
+  /**
+   * Maximum number of finished queries archived to the server DB in one batch.
+   */
+  public static final String PURGE_BATCH_SIZE = SERVER_PFX + "querypurger.batch.size";
+
+  /**
+   * The Constant DEFAULT_PURGE_BATCH_SIZE.
+   */
+  public static final int DEFAULT_PURGE_BATCH_SIZE = 100;
+
+  /**
+   * Maximum interval the purger backs off to, when finished queries could not be archived to the server DB.
+   */
+  public static final String PURGE_MAX_BACKOFF_INTERVAL = SERVER_PFX + "querypurger.max.backoff.interval";
+
+  /**
+   * The Constant DEFAULT_PURGE_MAX_BACKOFF_INTERVAL.
+   */
+  public static final long DEFAULT_PURGE_MAX_BACKOFF_INTERVAL = 5 * 60 * 1000;
+
+  /**
+   * Number of threads formatting results of persistent queries.
+   */
+  public static final String RESULT_FORMATTER_POOL_SIZE = SERVER_PFX + "result.formatter.pool.size";
+
+  /**
+   * The Constant DEFAULT_RESULT_FORMATTER_POOL_SIZE.
+   */
+  public static final int DEFAULT_RESULT_FORMATTER_POOL_SIZE = 4;
+
+  /**
+   * Maximum number of queries waiting for their results to be formatted. Beyond it, the thread delivering the query
+   * executed event waits for a query to be taken for formatting.
+   */
+  public static final String RESULT_FORMATTER_QUEUE_SIZE = SERVER_PFX + "result.formatter.queue.size";
+
+  /**
+   * The Constant DEFAULT_RESULT_FORMATTER_QUEUE_SIZE.
+   */
+  public static final int DEFAULT_RESULT_FORMATTER_QUEUE_SIZE = 1000;
+
   // Server DB configuration
   /**
    * The Constant SERVER_DB_DRIVER_NAME.
@@ -890,13 +984,13 @@ public final class LensConfConstants {
 
 
   /**
-   * Key used to get minimum number of threads in the estimate thread pool
+   * Key used to get minimum number of threads in the estimate thread pool of each driver
    */
   public static final String ESTIMATE_POOL_MIN_THREADS = SERVER_PFX + "estimate.pool.min.threads";
   public static final int DEFAULT_ESTIMATE_POOL_MIN_THREADS = 3;
 
   /**
-   * Key used to get maximum number of threads in the estimate thread pool
+   * Key used to get maximum number of threads in the estimate thread pool of each driver
    */
   public static final String ESTIMATE_POOL_MAX_THREADS = SERVER_PFX + "estimate.pool.max.threads";
   public static final int DEFAULT_ESTIMATE_POOL_MAX_THREADS = 100;
@@ -907,6 +1001,54 @@ public final class LensConfConstants {
   public static final String ESTIMATE_POOL_KEEP_ALIVE_MILLIS = SERVER_PFX + "estimate.pool.keepalive.millis";
   public static final int DEFAULT_ESTIMATE_POOL_KEEP_ALIVE_MILLIS = 60000; // 1 minute
 
+  /**
+   * Key used to get maximum number of estimates waiting for a thread in the estimate thread pool of each driver
+   */
+  public static final String ESTIMATE_POOL_MAX_QUEUE_SIZE = SERVER_PFX + "estimate.pool.max.queue.size";
+  public static final int DEFAULT_ESTIMATE_POOL_MAX_QUEUE_SIZE = 1000;
+
+  /**
+   * Key used to get the number of threads launching queries on a driver
+   */
+  public static final String QUERY_LAUNCHER_THREADS_PER_DRIVER = SERVER_PFX + "query.launcher.threads.per.driver";
+  public static final int DEFAULT_QUERY_LAUNCHER_THREADS_PER_DRIVER = 1;
+
+  /**
+   * Key used to get the interval at which a launched query is polled for status after its status changes
+   */
+  public static final String STATUS_POLL_MIN_INTERVAL_MILLIS = SERVER_PFX + "status.poll.min.interval.millis";
+  public static final long DEFAULT_STATUS_POLL_MIN_INTERVAL_MILLIS = 1000;
+
+  /**
+   * Key used to get the max interval at which a launched query is polled for status
+   */
+  public static final String STATUS_POLL_MAX_INTERVAL_MILLIS = SERVER_PFX + "status.poll.max.interval.millis";
+  public static final long DEFAULT_STATUS_POLL_MAX_INTERVAL_MILLIS = 10000;
+
+  /**
+   * Key used to get the factor by which poll interval of a query grows when its status does not change
+   */
+  public static final String STATUS_POLL_BACKOFF_FACTOR = SERVER_PFX + "status.poll.backoff.factor";
+  public static final float DEFAULT_STATUS_POLL_BACKOFF_FACTOR = 1.5f;
+
+  /**
+   * Key used to get the number of threads polling status of launched queries, per driver
+   */
+  public static final String STATUS_UPDATE_THREADS_PER_DRIVER = SERVER_PFX + "status.update.threads.per.driver";
+  public static final int DEFAULT_STATUS_UPDATE_THREADS_PER_DRIVER = 5;
+
+  /**
+   * Key used to get the maximum number of rewritten cube queries cached. Caching is disabled if it is zero
+   */
+  public static final String QUERY_REWRITE_CACHE_MAX_ENTRIES = SERVER_PFX + "query.rewrite.cache.max.entries";
+  public static final long DEFAULT_QUERY_REWRITE_CACHE_MAX_ENTRIES = 1000;
+
+  /**
+   * Key used to get the time after which a cached rewrite of a cube query expires
+   */
+  public static final String QUERY_REWRITE_CACHE_EXPIRY_MILLIS = SERVER_PFX + "query.rewrite.cache.expiry.millis";
+  public static final long DEFAULT_QUERY_REWRITE_CACHE_EXPIRY_MILLIS = 300000; // 5 minutes
+
   public static final String QUERY_PHASE1_REWRITERS = SERVER_PFX + "query.phase1.rewriters";
 
   /**
@@ -972,6 +1114,16 @@ public final class LensConfConstants {
    */
   public static final String DEFAULT_QUERY_RESULTSET_RETENTION = "1 day";
 
+  /**
+   * The Constant RESULTSET_PAGE_MAX_ROWS.
+   */
+  public static final String RESULTSET_PAGE_MAX_ROWS = SERVER_PFX + "inmemory.resultset.page.max.rows";
+
+  /**
+   * The Constant DEFAULT_RESULTSET_PAGE_MAX_ROWS.
+   */
+  public static final int DEFAULT_RESULTSET_PAGE_MAX_ROWS = 100000;
+
   /**
    * The Constant HDFS_OUTPUT_RETENTION.
    */
@@ -0,0 +1,56 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.driver;
+
+import java.util.UUID;
+
+import org.apache.lens.api.query.QueryHandle;
+
+import lombok.Getter;
+
+/**
+ * Event published by a driver when the status of a launched query changes in the driver. Listeners are expected to
+ * call {@link LensDriver#updateStatus(org.apache.lens.server.api.query.QueryContext)} to pick up the new status.
+ */
+public class DriverQueryStatusChanged extends DriverEvent {
+
+  /**
+   * The event id.
+   */
+  @Getter
+  private final String eventId = UUID.randomUUID().toString();
+
+  /**
+   * The query handle.
+   */
+  @Getter
+  private final QueryHandle queryHandle;
+
+  /**
+   * Instantiates a new driver query status changed event.
+   *
+   * @param eventTime   the event time
+   * @param driver      the driver
+   * @param queryHandle the query handle
+   */
+  public DriverQueryStatusChanged(long eventTime, LensDriver driver, QueryHandle queryHandle) {
+    super(eventTime, driver);
+    this.queryHandle = queryHandle;
+  }
+}
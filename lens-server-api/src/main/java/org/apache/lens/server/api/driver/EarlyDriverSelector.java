@@ -0,0 +1,46 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.driver;
+
+import java.util.Collection;
+
+import org.apache.lens.server.api.query.AbstractQueryContext;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * A {@link DriverSelector} which can select a driver as soon as its query cost is known, without waiting for the
+ * estimates of the other drivers.
+ */
+public interface EarlyDriverSelector extends DriverSelector {
+
+  /**
+   * Whether the driver, whose query cost is known, would be selected whatever the costs of the drivers whose estimates
+   * are pending. If so, the pending estimates are cancelled, and {@link #select(AbstractQueryContext, Configuration)}
+   * is called with the costs known so far.
+   *
+   * @param ctx            the context
+   * @param driver         the driver whose query cost is known
+   * @param pendingDrivers the drivers whose estimates are pending
+   * @param conf           the conf
+   * @return true if the driver can be selected right away
+   */
+  boolean canSelectEarly(AbstractQueryContext ctx, LensDriver driver, Collection<LensDriver> pendingDrivers,
+    Configuration conf);
+}
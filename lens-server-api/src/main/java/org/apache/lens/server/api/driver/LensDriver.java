@@ -185,6 +185,15 @@ public interface LensDriver extends Externalizable {
    */
   void registerDriverEventListener(LensEventListener<DriverEvent> driverEventListener);
 
+  /**
+   * Whether the driver pushes status changes of launched queries as {@link DriverQueryStatusChanged} events to the
+   * registered driver event listeners. Queries of such drivers are polled for status only as a safety net, while
+   * queries of other drivers are polled at an adaptive interval.
+   *
+   * @return true if status changes are pushed, false if the status has to be polled
+   */
+  boolean isStatusPushSupported();
+
   /**
    *
    * @return The {@link QueryLaunchingConstraint}s to be checked before launching a query on driver. If there are no
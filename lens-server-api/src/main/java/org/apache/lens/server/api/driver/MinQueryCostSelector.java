@@ -25,10 +25,12 @@ import org.apache.lens.server.api.query.cost.QueryCost;
 
 import org.apache.hadoop.conf.Configuration;
 
-public class MinQueryCostSelector implements DriverSelector {
+public class MinQueryCostSelector implements EarlyDriverSelector {
 
   /**
-   * Returns the driver that has the minimum query cost.
+   * Returns the driver that has the minimum query cost. Costs are compared by predicted execution time when every
+   * driver predicts it, as predicted times are comparable across drivers unlike driver specific costs. Otherwise they
+   * are compared by their natural ordering. Among drivers of equal cost the first one is selected.
    *
    * @param ctx  the context
    * @param conf the conf
@@ -38,14 +40,78 @@ public class MinQueryCostSelector implements DriverSelector {
   public LensDriver select(final AbstractQueryContext ctx, final Configuration conf) {
 
     final Collection<LensDriver> drivers = ctx.getDriverContext().getDriversWithValidQueryCost();
+    final boolean byExecTime = allPredictExecTime(ctx, drivers);
 
     return Collections.min(drivers, new Comparator<LensDriver>() {
       @Override
       public int compare(LensDriver d1, LensDriver d2) {
         final QueryCost c1 = ctx.getDriverContext().getDriverQueryCost(d1);
         final QueryCost c2 = ctx.getDriverContext().getDriverQueryCost(d2);
+        if (byExecTime) {
+          return Long.compare(c1.getEstimatedExecTimeMillis(), c2.getEstimatedExecTimeMillis());
+        }
         return c1.compareTo(c2);
       }
     });
   }
+
+  /**
+   * A driver can be selected right away when no other driver can cost less, whichever ordering {@link #select} ends
+   * up using once the pending estimates arrive. By natural ordering that is a query costing nothing, and by predicted
+   * execution time, which is used only if every driver predicts it, a query predicted to take no time. Among drivers
+   * of equal cost the first one is selected, so no driver before it should be pending.
+   *
+   * @param ctx            the context
+   * @param driver         the driver whose query cost is known
+   * @param pendingDrivers the drivers whose estimates are pending
+   * @param conf           the conf
+   * @return true if the query cost of the driver is the least by each ordering that may apply, and no driver before it
+   * is pending
+   */
+  @Override
+  public boolean canSelectEarly(final AbstractQueryContext ctx, final LensDriver driver,
+    final Collection<LensDriver> pendingDrivers, final Configuration conf) {
+    final QueryCost cost = ctx.getDriverContext().getDriverQueryCost(driver);
+    if (cost == null) {
+      return false;
+    }
+    try {
+      if (cost.getEstimatedResourceUsage() > 0) {
+        return false;
+      }
+    } catch (UnsupportedOperationException e) {
+      return false;
+    }
+    if (allPredictExecTime(ctx, ctx.getDriverContext().getDriversWithValidQueryCost())
+      && cost.getEstimatedExecTimeMillis() > 0) {
+      return false;
+    }
+    for (LensDriver other : ctx.getDriverContext().getDrivers()) {
+      if (other == driver) {
+        return true;
+      }
+      if (pendingDrivers.contains(other)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Whether query costs of all the drivers predict execution time.
+   *
+   * @param ctx     the context
+   * @param drivers drivers with a query cost
+   * @return true if every query cost predicts execution time
+   */
+  private static boolean allPredictExecTime(AbstractQueryContext ctx, Collection<LensDriver> drivers) {
+    for (LensDriver driver : drivers) {
+      try {
+        ctx.getDriverContext().getDriverQueryCost(driver).getEstimatedExecTimeMillis();
+      } catch (UnsupportedOperationException e) {
+        return false;
+      }
+    }
+    return true;
+  }
 }
@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.driver;
+
+import java.io.Closeable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.server.api.error.LensException;
+import org.apache.lens.server.api.util.HashedWheelTimer;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Polls queries of a driver for completion, on behalf of {@link QueryCompletionListener}s. All queries being watched
+ * share a timer wheel, which schedules the status checks, and a small pool of threads, which run them. A query being
+ * watched costs a slot in the wheel rather than a thread.
+ */
+@Slf4j
+public class QueryCompletionPoller implements Closeable {
+
+  /**
+   * Check of the status of a query on the driver.
+   */
+  public interface StatusCheck {
+
+    /**
+     * Checks whether the query has finished.
+     *
+     * @param handle the query handle
+     * @return true, if the query has finished
+     * @throws LensException if the status is not available yet, like when the query is not yet launched on the driver.
+     *                       The query is checked again after the poll interval.
+     */
+    boolean isFinished(QueryHandle handle) throws LensException;
+  }
+
+  /** Tick of the timer wheel in millis, status is checked at most this often. */
+  public static final long TICK_MILLIS = 10;
+
+  /** The number of slots in the timer wheel, a round of the wheel lasts about 5 seconds. */
+  private static final int WHEEL_SIZE = 512;
+
+  /** The threads checking status. */
+  private final ExecutorService pollers;
+
+  /** The timer scheduling the status checks. */
+  private final HashedWheelTimer timer;
+
+  /**
+   * Instantiates a new poller.
+   *
+   * @param name    name prefix of the poller threads
+   * @param threads number of threads checking status
+   */
+  public QueryCompletionPoller(final String name, int threads) {
+    this.pollers = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, name + "-poller-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    this.timer = new HashedWheelTimer(name + "-timer", pollers, TICK_MILLIS, TimeUnit.MILLISECONDS, WHEEL_SIZE);
+  }
+
+  /**
+   * Watches the query till it finishes or the timeout passes. Status is checked right away and then every poll
+   * interval. The listener is notified of completion or of the timeout, and the returned future completes along.
+   *
+   * @param handle             the query handle
+   * @param check              the status check
+   * @param pollIntervalMillis the poll interval
+   * @param timeoutMillis      the timeout
+   * @param listener           the listener, can be null
+   * @return the future, completing with true when the query finished and false when the timeout passed
+   */
+  public ListenableFuture<Boolean> watch(QueryHandle handle, StatusCheck check, long pollIntervalMillis,
+    long timeoutMillis, QueryCompletionListener listener) {
+    Watch watch = new Watch(handle, check, Math.max(pollIntervalMillis, TICK_MILLIS),
+      System.currentTimeMillis() + timeoutMillis, listener);
+    try {
+      pollers.execute(watch);
+    } catch (RejectedExecutionException e) {
+      watch.fail("poller closed", e);
+    }
+    return watch.future;
+  }
+
+  /**
+   * The number of queries being watched.
+   */
+  public int getWatchCount() {
+    return timer.pendingCount();
+  }
+
+  /**
+   * A query being watched. Runs a status check each time it is scheduled.
+   */
+  private class Watch implements Runnable {
+    private final QueryHandle handle;
+    private final StatusCheck check;
+    private final long pollIntervalMillis;
+    private final long deadline;
+    private final QueryCompletionListener listener;
+    private final SettableFuture<Boolean> future = SettableFuture.create();
+
+    Watch(QueryHandle handle, StatusCheck check, long pollIntervalMillis, long deadline,
+      QueryCompletionListener listener) {
+      this.handle = handle;
+      this.check = check;
+      this.pollIntervalMillis = pollIntervalMillis;
+      this.deadline = deadline;
+      this.listener = listener;
+    }
+
+    @Override
+    public void run() {
+      if (future.isDone()) {
+        // cancelled by the caller
+        return;
+      }
+      try {
+        try {
+          if (check.isFinished(handle)) {
+            if (listener != null) {
+              listener.onCompletion(handle);
+            }
+            future.set(true);
+            return;
+          }
+        } catch (LensException e) {
+          log.debug("query handle: {} Not yet launched on driver", handle);
+        }
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining < 0) {
+          if (listener != null) {
+            listener.onError(handle, "timedout");
+          }
+          future.set(false);
+          return;
+        }
+        timer.schedule(this, Math.min(pollIntervalMillis, remaining), TimeUnit.MILLISECONDS);
+      } catch (Exception e) {
+        log.warn("Error while polling for status", e);
+        fail("error polling", e);
+      }
+    }
+
+    private void fail(String error, Exception cause) {
+      if (listener != null) {
+        listener.onError(handle, error);
+      }
+      future.setException(cause);
+    }
+  }
+
+  /**
+   * Stops watching. Queries being watched are neither checked nor notified anymore.
+   */
+  @Override
+  public void close() {
+    timer.close();
+    pollers.shutdownNow();
+  }
+}
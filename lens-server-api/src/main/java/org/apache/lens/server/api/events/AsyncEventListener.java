@@ -67,12 +67,25 @@ public abstract class AsyncEventListener<T extends LensEvent> implements LensEve
    *                       to stop the thread pool
    */
   public AsyncEventListener(int poolSize, int maxQueueSize, long timeOutSeconds, final boolean isDaemon) {
-    if (maxQueueSize <= 0) {
-      eventQueue = new LinkedBlockingQueue<Runnable>();
-    } else {
-      eventQueue = new ArrayBlockingQueue<Runnable>(maxQueueSize);
-    }
+    this(poolSize, maxQueueSize <= 0 ? new LinkedBlockingQueue<Runnable>()
+      : new ArrayBlockingQueue<Runnable>(maxQueueSize), timeOutSeconds, isDaemon);
+  }
 
+  /**
+   * Create an asynchronous event listener which uses a thread pool to process events, taking them from the given
+   * queue. Listeners can pass a {@link PriorityBlockingQueue} to order the events, and override
+   * {@link #onEvent(LensEvent)} to queue comparable tasks.
+   *
+   * @param poolSize       size of the event processing pool
+   * @param eventQueue     the event queue
+   * @param timeOutSeconds time out in seconds when an idle thread is destroyed
+   * @param isDaemon       if the threads used to process should be daemon threads,
+   *                       if false, then implementation should call stop()
+   *                       to stop the thread pool
+   */
+  protected AsyncEventListener(int poolSize, BlockingQueue<Runnable> eventQueue, long timeOutSeconds,
+    final boolean isDaemon) {
+    this.eventQueue = eventQueue;
     processor = new ThreadPoolExecutor(poolSize, poolSize, timeOutSeconds, TimeUnit.SECONDS, eventQueue,
       new ThreadFactory() {
         @Override
@@ -0,0 +1,41 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.events;
+
+import java.util.List;
+
+import org.apache.lens.server.api.error.LensException;
+
+/**
+ * Event listeners should implement this interface if handling several events at once is cheaper than handling them
+ * one by one, like listeners writing events to a store. The event service then delivers all events queued for the
+ * listener, up to a batch size, in one call. Events are given in the order they were notified.
+ *
+ * @param <T> the generic type
+ */
+public interface BatchEventListener<T extends LensEvent> extends LensEventListener<T> {
+
+  /**
+   * On events.
+   *
+   * @param events the events, in the order they were notified
+   * @throws LensException the lens exception
+   */
+  void onEvents(List<T> events) throws LensException;
+}
@@ -39,4 +39,15 @@ public abstract class LensEvent {
   protected final long eventTime;
 
   public abstract String getEventId();
+
+  /**
+   * Key of the event for coalescing. When a listener's queue coalesces events, a queued event is replaced by a later
+   * event of the same class with an equal key, so that the listener only gets the latest. Events which should be
+   * delivered each time return null, which is the default.
+   *
+   * @return the coalescing key, null if the event should not be coalesced
+   */
+  public Object getCoalescingKey() {
+    return null;
+  }
 }
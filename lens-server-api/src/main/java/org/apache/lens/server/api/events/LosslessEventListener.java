@@ -0,0 +1,30 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.events;
+
+/**
+ * Event listeners should implement this interface if they must get every event they listen to, like listeners which
+ * drive the state of queries. The event service never drops events of such listeners when their queue is full,
+ * whatever overflow policy is configured: threads publishing events wait for space instead, and threads delivering
+ * events, which can't wait, queue events beyond the capacity of the queue.
+ *
+ * @param <T> the generic type
+ */
+public interface LosslessEventListener<T extends LensEvent> extends LensEventListener<T> {
+}
@@ -77,6 +77,19 @@ public interface MetricsService extends LensService {
    */
   void decrCounter(String counter);
 
+  /**
+   * Mark the occurrence of events in a meter with the name constructed using given class and meter name. Actual name
+   * of the meter will be
+   * <p></p>
+   * <pre>MetricRegistry.name(cls, meter)</pre>
+   * <p></p>
+   *
+   * @param cls   Class of the meter for namespacing of meters
+   * @param meter the meter
+   * @param n     number of events
+   */
+  void markMeter(Class<?> cls, String meter, long n);
+
   /**
    * Get current value of the counter.
    *
@@ -129,6 +142,16 @@ public interface MetricsService extends LensService {
    */
   String FINISHED_QUERIES = "finished-queries";
 
+  /**
+   * The Constant FINISHED_QUERY_PURGE_LAG.
+   */
+  String FINISHED_QUERY_PURGE_LAG = "finished-query-purge-lag";
+
+  /**
+   * The Constant RESULT_FORMATTING_QUEUE_SIZE.
+   */
+  String RESULT_FORMATTING_QUEUE_SIZE = "result-formatting-queue-size";
+
   String OPENED_SESSIONS = "opened-sessions";
 
   String CLOSED_SESSIONS = "closed-sessions";
@@ -147,6 +170,10 @@ public interface MetricsService extends LensService {
 
   long getFinishedQueries();
 
+  long getFinishedQueryPurgeLag();
+
+  long getResultFormattingQueueSize();
+
   long getTotalAcceptedQueries();
 
   long getTotalSuccessfulQueries();
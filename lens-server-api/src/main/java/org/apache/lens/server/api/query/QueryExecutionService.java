@@ -238,6 +238,26 @@ public interface QueryExecutionService {
   List<QueryHandle> getAllQueries(LensSessionHandle sessionHandle, String state, String user, String driver,
     String queryName, long fromDate, long toDate) throws LensException;
 
+  /**
+   * Returns a page of the queries in the specified state, for the given user and matching query name, in order of
+   * submission time. Pages are walked by passing the last query handle of a page to get the next page.
+   *
+   * @param sessionHandle the session handle
+   * @param state         return queries in this state. if null, all queries will be returned
+   * @param user          Get queries submitted by a specific user.
+   *                      If this set to "all", queries of all users are returned
+   * @param driver        Get queries submitted on a specific driver.
+   * @param queryName     return queries containing the query name. If null, all queries will be returned
+   * @param fromDate      start date of time range interval
+   * @param toDate        end date of the time range interval
+   * @param after         handle of the query after which queries are returned, null for the first page
+   * @param limit         maximum number of queries returned, non positive for no limit
+   * @return List of query handles
+   * @throws LensException the lens exception
+   */
+  List<QueryHandle> getAllQueries(LensSessionHandle sessionHandle, String state, String user, String driver,
+    String queryName, long fromDate, long toDate, String after, int limit) throws LensException;
+
   /**
    * Returns all the prepared queries for the specified user. If no user is passed, queries of all users will be
    * returned.
@@ -315,4 +335,18 @@ public interface QueryExecutionService {
    * @return finished queries count
    */
   long getFinishedQueriesCount();
+
+  /**
+   * Get the time since the oldest finished query, which is not yet purged, has finished
+   *
+   * @return purge lag of finished queries in milliseconds
+   */
+  long getFinishedQueryPurgeLag();
+
+  /**
+   * Get the number of queries waiting for their results to be formatted
+   *
+   * @return the number of queries
+   */
+  long getResultFormattingQueueSize();
 }
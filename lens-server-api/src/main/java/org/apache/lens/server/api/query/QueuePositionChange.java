@@ -36,4 +36,12 @@ public class QueuePositionChange extends QueryEvent<Integer> {
   public QueuePositionChange(long eventTime, Integer prev, Integer current, QueryHandle handle) {
     super(eventTime, prev, current, handle);
   }
+
+  /**
+   * Only the latest position of a query matters, so position changes of a query are coalesced.
+   */
+  @Override
+  public Object getCoalescingKey() {
+    return queryHandle;
+  }
 }
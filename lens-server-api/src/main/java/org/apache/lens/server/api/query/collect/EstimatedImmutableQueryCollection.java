@@ -40,9 +40,9 @@ public interface EstimatedImmutableQueryCollection extends ImmutableQueryCollect
    *
    * @param driver Driver for which queries have to be returned.
    *
-   * @return A set of queries for which given driver is the selected driver. A new set is created and returned.
-   * Elements in the set are not cloned or copied. Multiple iterations over returned set are guaranteed to be in same
-   * order. If there are no queries, then an empty set is returned. null is never returned.
+   * @return An immutable snapshot of queries for which given driver is the selected driver, which is not changed by
+   * later additions or removals. Elements in the set are not cloned or copied. Multiple iterations over returned set
+   * are guaranteed to be in same order. If there are no queries, then an empty set is returned. null is never returned.
    */
   Set<QueryContext> getQueries(final LensDriver driver);
 
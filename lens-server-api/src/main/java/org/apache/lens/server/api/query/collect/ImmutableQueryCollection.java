@@ -31,17 +31,17 @@ public interface ImmutableQueryCollection {
 
   /**
    *
-   * @return A new set copied from this collection of queries. Elements in the set are not cloned or copied.
-   * Multiple iterations over returned set are guaranteed to be in same order. If there are no queries, then an empty
-   * set is returned. null is never returned.
+   * @return An immutable snapshot of this collection of queries, which is not changed by later additions or removals.
+   * Elements in the set are not cloned or copied. Multiple iterations over returned set are guaranteed to be in same
+   * order. If there are no queries, then an empty set is returned. null is never returned.
    */
   Set<QueryContext> getQueries();
 
   /**
    * @param user User for whom queries have to be returned.
-   * @return A set of queries submitted by the given user. A new set is created and returned. Elements in the set
-   * are not cloned or copied. Multiple iterations over returned set are guaranteed to be in same order. If there are
-   * no queries, then an empty set is returned. null is never returned.
+   * @return An immutable snapshot of queries submitted by the given user, which is not changed by later additions or
+   * removals. Elements in the set are not cloned or copied. Multiple iterations over returned set are guaranteed to be
+   * in same order. If there are no queries, then an empty set is returned. null is never returned.
    */
   Set<QueryContext> getQueries(final String user);
 
@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.query.cost;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Fact partition based cost, which also carries execution time predicted by a {@link QueryExecTimeModel}, and the
+ * features the prediction was made from. Resource usage and ordering remain those of the partition cost, so that the
+ * cost ranges and ceilings configured for partition costs hold. When the query finishes, its execution time is fed
+ * back to the model through {@link #recordExecTime(long)}.
+ */
+@ToString(callSuper = true, exclude = "model")
+@EqualsAndHashCode(callSuper = true, exclude = "model")
+public class HistoryBasedQueryCost extends FactPartitionBasedQueryCost {
+
+  /** Features of the query. */
+  @Getter
+  private final double[] features;
+
+  /** The predicted execution time, -1 if the model could not predict. */
+  private final long estimatedExecTimeMillis;
+
+  /** The model which predicted, not available after the cost is restored from a persisted query. */
+  private final transient QueryExecTimeModel model;
+
+  /**
+   * Instantiates a new cost and predicts its execution time.
+   *
+   * @param partitionCost the partition cost
+   * @param features      features of the query
+   * @param model         the model predicting execution time
+   */
+  public HistoryBasedQueryCost(double partitionCost, double[] features, QueryExecTimeModel model) {
+    super(partitionCost);
+    this.features = features;
+    this.model = model;
+    this.estimatedExecTimeMillis = model.predict(features);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws UnsupportedOperationException if the model has not seen enough queries to predict
+   */
+  @Override
+  public long getEstimatedExecTimeMillis() throws UnsupportedOperationException {
+    if (estimatedExecTimeMillis < 0) {
+      throw new UnsupportedOperationException("Estimated time is not available till enough queries finish");
+    }
+    return estimatedExecTimeMillis;
+  }
+
+  /**
+   * Feeds the execution time of the finished query back to the model which predicted it.
+   *
+   * @param execTimeMillis the execution time on the driver
+   */
+  public void recordExecTime(long execTimeMillis) {
+    if (model != null) {
+      model.observe(features, execTimeMillis);
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.query.cost;
+
+import org.apache.lens.server.api.metrics.LensMetricsRegistry;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Preconditions;
+
+/**
+ * Online model predicting execution time of queries on a driver from features of the query, like the number of
+ * partitions it reads. The model is a linear regression of the log of execution time on the log of features, fitted
+ * by recursive least squares, so each finished query updates it in time quadratic in the number of features. Older
+ * observations are discounted by a forgetting factor, so that the model follows changes in the cluster and data.
+ * <p></p>
+ * Accuracy is reported in the metrics registry: <code>relative.error.percent</code> is a histogram of the error of the
+ * prediction made for each finished query, relative to its actual execution time, and <code>observations</code>
+ * counts the finished queries the model learnt from.
+ */
+public class QueryExecTimeModel {
+
+  /** Initial variance of the weights, large since nothing is known about them. */
+  private static final double INITIAL_VARIANCE = 1000;
+
+  /** Number of features, including the intercept. */
+  private final int numFeatures;
+
+  /** Weight of the previous observations relative to a new one. */
+  private final double forgettingFactor;
+
+  /** Number of observations before the model predicts. */
+  private final int minObservations;
+
+  /** The weights. */
+  private final double[] weights;
+
+  /** Inverse correlation matrix of the features. */
+  private final double[][] inverseCorrelation;
+
+  /** The number of observations. */
+  private long observations;
+
+  /** Error of predictions in percent, relative to actual execution time. */
+  private final Histogram relativeError;
+
+  /** Observations counted in the metrics registry. */
+  private final Counter observationCounter;
+
+  /**
+   * Instantiates a new model.
+   *
+   * @param name             name of the model in metrics, like the driver it predicts for
+   * @param numFeatures      number of features, excluding the intercept
+   * @param forgettingFactor weight of previous observations relative to a new one, between 0 exclusive and 1
+   * @param minObservations  number of observations before the model predicts
+   */
+  public QueryExecTimeModel(String name, int numFeatures, double forgettingFactor, int minObservations) {
+    Preconditions.checkArgument(numFeatures >= 0, "Number of features can't be negative");
+    Preconditions.checkArgument(forgettingFactor > 0 && forgettingFactor <= 1, "Forgetting factor should be in (0, 1]");
+    this.numFeatures = numFeatures + 1;
+    this.forgettingFactor = forgettingFactor;
+    this.minObservations = minObservations;
+    this.weights = new double[this.numFeatures];
+    this.inverseCorrelation = new double[this.numFeatures][this.numFeatures];
+    for (int i = 0; i < this.numFeatures; i++) {
+      inverseCorrelation[i][i] = INITIAL_VARIANCE;
+    }
+    MetricRegistry registry = LensMetricsRegistry.getStaticRegistry();
+    this.relativeError = registry.histogram(MetricRegistry.name(QueryExecTimeModel.class, name,
+      "relative.error.percent"));
+    this.observationCounter = registry.counter(MetricRegistry.name(QueryExecTimeModel.class, name, "observations"));
+  }
+
+  /**
+   * Predicts execution time of a query.
+   *
+   * @param features features of the query, which should be non negative
+   * @return the predicted execution time in millis, or -1 if the model has not seen enough queries yet
+   */
+  public synchronized long predict(double[] features) {
+    if (observations < minObservations) {
+      return -1;
+    }
+    return Math.max(0, Math.round(Math.expm1(dot(weights, toInput(features)))));
+  }
+
+  /**
+   * Updates the model with the execution time of a finished query.
+   *
+   * @param features      features of the query, as given for prediction
+   * @param execTimeMillis the actual execution time
+   */
+  public synchronized void observe(double[] features, long execTimeMillis) {
+    Preconditions.checkArgument(execTimeMillis >= 0, "Execution time can't be negative");
+    long predicted = predict(features);
+    if (predicted >= 0) {
+      relativeError.update(Math.round(100.0 * Math.abs(predicted - execTimeMillis) / Math.max(execTimeMillis, 1)));
+    }
+    double[] input = toInput(features);
+    double error = Math.log1p(execTimeMillis) - dot(weights, input);
+
+    // gain = P x / (lambda + x' P x)
+    double[] px = new double[numFeatures];
+    for (int i = 0; i < numFeatures; i++) {
+      px[i] = dot(inverseCorrelation[i], input);
+    }
+    double denominator = forgettingFactor + dot(input, px);
+    for (int i = 0; i < numFeatures; i++) {
+      weights[i] += px[i] / denominator * error;
+    }
+    // P = (P - gain x' P) / lambda, P is symmetric so x' P is px
+    double maxVariance = 0;
+    for (int i = 0; i < numFeatures; i++) {
+      for (int j = 0; j < numFeatures; j++) {
+        inverseCorrelation[i][j] -= px[i] * px[j] / denominator;
+      }
+      maxVariance = Math.max(maxVariance, inverseCorrelation[i][i]);
+    }
+    // forgetting is skipped while variance is large, else P grows without bound when queries are all alike
+    if (maxVariance / forgettingFactor <= INITIAL_VARIANCE) {
+      for (int i = 0; i < numFeatures; i++) {
+        for (int j = 0; j < numFeatures; j++) {
+          inverseCorrelation[i][j] /= forgettingFactor;
+        }
+      }
+    }
+    observations++;
+    observationCounter.inc();
+  }
+
+  public synchronized long getObservations() {
+    return observations;
+  }
+
+  private double[] toInput(double[] features) {
+    Preconditions.checkArgument(features.length == numFeatures - 1, "Expected %s features, got %s",
+      numFeatures - 1, features.length);
+    double[] input = new double[numFeatures];
+    input[0] = 1;
+    for (int i = 0; i < features.length; i++) {
+      input[i + 1] = Math.log1p(Math.max(0, features[i]));
+    }
+    return input;
+  }
+
+  private static double dot(double[] a, double[] b) {
+    double sum = 0;
+    for (int i = 0; i < a.length; i++) {
+      sum += a[i] * b[i];
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,210 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.util;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Timer scheduling a large number of tasks with a single thread. Tasks are hashed into the slots of a wheel by their
+ * deadline, the wheel advances a slot every tick, and the tasks of the slot whose deadline has passed are handed to
+ * an executor. A task runs up to a tick late, so tick duration trades precision for cost.
+ * <p></p>
+ * Scheduling and cancelling are constant time, which suits tasks like polling for completion of a large number of
+ * queries, that are scheduled again and again and mostly cancelled or rescheduled before their deadline.
+ */
+@Slf4j
+public class HashedWheelTimer implements Closeable {
+
+  /** A scheduled task, which can be cancelled till it is run. */
+  public static final class Timeout {
+    private final Runnable task;
+    private final long deadlineNanos;
+    private volatile boolean cancelled;
+    // rounds of the wheel left before the deadline, accessed only by the timer thread
+    private long remainingRounds;
+
+    private Timeout(Runnable task, long deadlineNanos) {
+      this.task = task;
+      this.deadlineNanos = deadlineNanos;
+    }
+
+    /** Cancels the task, if it is not yet handed for running. */
+    public void cancel() {
+      cancelled = true;
+    }
+
+    public boolean isCancelled() {
+      return cancelled;
+    }
+  }
+
+  /** The executor running the expired tasks. */
+  private final Executor executor;
+
+  /** The tick duration in nanos. */
+  private final long tickNanos;
+
+  /** The wheel, slots are accessed only by the timer thread. */
+  private final List<LinkedList<Timeout>> wheel;
+
+  /** The mask giving the slot of a tick, the wheel size is a power of two. */
+  private final int mask;
+
+  /** Tasks scheduled and not yet hashed into the wheel. */
+  private final ConcurrentLinkedQueue<Timeout> pending = new ConcurrentLinkedQueue<Timeout>();
+
+  /** The time the wheel started at. */
+  private final long startNanos;
+
+  /** The timer thread. */
+  private final Thread timerThread;
+
+  /** The stopped. */
+  private volatile boolean stopped;
+
+  /**
+   * Instantiates a new timer and starts its thread.
+   *
+   * @param name         name of the timer thread
+   * @param executor     the executor running expired tasks, which should not block the caller
+   * @param tickDuration the tick duration
+   * @param unit         the unit of tick duration
+   * @param wheelSize    the number of slots in the wheel, rounded up to a power of two
+   */
+  public HashedWheelTimer(String name, Executor executor, long tickDuration, TimeUnit unit, int wheelSize) {
+    this.executor = executor;
+    this.tickNanos = Math.max(unit.toNanos(tickDuration), TimeUnit.MILLISECONDS.toNanos(1));
+    int size = Integer.highestOneBit(Math.max(wheelSize, 1) - 1) << 1;
+    size = Math.max(size, 1);
+    this.mask = size - 1;
+    this.wheel = new ArrayList<LinkedList<Timeout>>(size);
+    for (int i = 0; i < size; i++) {
+      wheel.add(new LinkedList<Timeout>());
+    }
+    this.startNanos = System.nanoTime();
+    this.timerThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        runWheel();
+      }
+    }, name);
+    timerThread.setDaemon(true);
+    timerThread.start();
+  }
+
+  /**
+   * Schedules the task to be run after the delay.
+   *
+   * @param task  the task
+   * @param delay the delay
+   * @param unit  the unit of delay
+   * @return the timeout, by which the task can be cancelled
+   */
+  public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+    if (stopped) {
+      throw new RejectedExecutionException("Timer is stopped");
+    }
+    Timeout timeout = new Timeout(task, System.nanoTime() + Math.max(0, unit.toNanos(delay)));
+    pending.add(timeout);
+    return timeout;
+  }
+
+  private void runWheel() {
+    long tick = 0;
+    while (!stopped) {
+      long sleepNanos = startNanos + (tick + 1) * tickNanos - System.nanoTime();
+      if (sleepNanos > 0) {
+        try {
+          TimeUnit.NANOSECONDS.sleep(sleepNanos);
+        } catch (InterruptedException e) {
+          if (stopped) {
+            return;
+          }
+        }
+        continue;
+      }
+      hashPending(tick);
+      expire(wheel.get((int) (tick & mask)));
+      tick++;
+    }
+  }
+
+  private void hashPending(long tick) {
+    Timeout timeout;
+    while ((timeout = pending.poll()) != null) {
+      if (timeout.cancelled) {
+        continue;
+      }
+      long expiryTick = (timeout.deadlineNanos - startNanos + tickNanos - 1) / tickNanos;
+      timeout.remainingRounds = Math.max(0, (expiryTick - tick) / wheel.size());
+      // a deadline already passed is run in the current tick
+      wheel.get((int) (Math.max(expiryTick, tick) & mask)).add(timeout);
+    }
+  }
+
+  private void expire(LinkedList<Timeout> slot) {
+    Iterator<Timeout> iterator = slot.iterator();
+    while (iterator.hasNext()) {
+      Timeout timeout = iterator.next();
+      if (timeout.cancelled) {
+        iterator.remove();
+      } else if (timeout.remainingRounds <= 0) {
+        iterator.remove();
+        try {
+          executor.execute(timeout.task);
+        } catch (RejectedExecutionException e) {
+          log.warn("Executor rejected an expired task of timer {}", timerThread.getName(), e);
+        }
+      } else {
+        timeout.remainingRounds--;
+      }
+    }
+  }
+
+  /**
+   * The number of tasks scheduled and not yet expired or removed after being cancelled.
+   */
+  public int pendingCount() {
+    int count = pending.size();
+    // approximate, slots are read without synchronizing with the timer thread
+    for (LinkedList<Timeout> slot : wheel) {
+      count += slot.size();
+    }
+    return count;
+  }
+
+  /**
+   * Stops the timer. Tasks not yet expired are not run.
+   */
+  @Override
+  public void close() {
+    stopped = true;
+    timerThread.interrupt();
+  }
+}
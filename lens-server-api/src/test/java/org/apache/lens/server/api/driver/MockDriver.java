@@ -191,6 +191,11 @@ public class MockDriver implements LensDriver {
   public void registerDriverEventListener(LensEventListener<DriverEvent> driverEventListener) {
   }
 
+  @Override
+  public boolean isStatusPushSupported() {
+    return false;
+  }
+
 
   @Override
   public ImmutableSet<QueryLaunchingConstraint> getQueryConstraints() {
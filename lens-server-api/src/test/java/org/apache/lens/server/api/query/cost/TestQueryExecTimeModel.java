@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.query.cost;
+
+import static org.testng.Assert.*;
+
+import java.util.Random;
+
+import org.apache.lens.api.serialize.SerializationTest;
+import org.apache.lens.server.api.metrics.LensMetricsRegistry;
+
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class TestQueryExecTimeModel {
+
+  /** Execution time growing with partitions read, and more so with the number of tables joined. */
+  private static long execTime(double partitions, double tables) {
+    return Math.round(200 * Math.pow(1 + partitions, 0.8) * (1 + tables));
+  }
+
+  @Test
+  public void testLearnsExecTime() {
+    QueryExecTimeModel model = new QueryExecTimeModel("testLearnsExecTime", 2, 0.999, 10);
+    assertEquals(model.predict(new double[]{10, 1}), -1);
+
+    Random random = new Random(7);
+    for (int i = 0; i < 300; i++) {
+      double partitions = random.nextInt(500);
+      double tables = 1 + random.nextInt(3);
+      model.observe(new double[]{partitions, tables}, execTime(partitions, tables));
+    }
+    assertEquals(model.getObservations(), 300);
+    for (double[] features : new double[][]{{0, 1}, {24, 1}, {100, 2}, {400, 3}}) {
+      long expected = execTime(features[0], features[1]);
+      long predicted = model.predict(features);
+      assertTrue(Math.abs(predicted - expected) <= 0.1 * expected,
+        "Predicted " + predicted + " for " + expected);
+    }
+    MetricRegistry registry = LensMetricsRegistry.getStaticRegistry();
+    assertEquals(registry.counter(MetricRegistry.name(QueryExecTimeModel.class, "testLearnsExecTime",
+      "observations")).getCount(), 300);
+    // errors are recorded once the model predicts
+    assertEquals(registry.histogram(MetricRegistry.name(QueryExecTimeModel.class, "testLearnsExecTime",
+      "relative.error.percent")).getCount(), 290);
+  }
+
+  @Test
+  public void testHistoryBasedQueryCost() {
+    QueryExecTimeModel model = new QueryExecTimeModel("testHistoryBasedQueryCost", 1, 1, 1);
+    HistoryBasedQueryCost cost = new HistoryBasedQueryCost(2.0, new double[]{4}, model);
+    try {
+      cost.getEstimatedExecTimeMillis();
+      fail("Model has not seen any query");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    assertEquals(cost.getEstimatedResourceUsage(), 2.0);
+    assertEquals(cost.compareTo(new FactPartitionBasedQueryCost(3.0)), -1);
+
+    cost.recordExecTime(1000);
+    assertEquals(model.getObservations(), 1);
+    assertTrue(new HistoryBasedQueryCost(2.0, new double[]{4}, model).getEstimatedExecTimeMillis() >= 0);
+  }
+
+  @Test
+  public void testHistoryBasedQueryCostIsSerializable() {
+    QueryExecTimeModel model = new QueryExecTimeModel("testHistoryBasedQueryCostIsSerializable", 1, 1, 1);
+    new SerializationTest().verifySerializationAndDeserialization(
+      new HistoryBasedQueryCost(1.0, new double[]{3}, model));
+  }
+}
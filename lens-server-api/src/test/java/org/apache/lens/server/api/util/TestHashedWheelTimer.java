@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.util;
+
+import static org.testng.Assert.*;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.server.api.driver.QueryCompletionListener;
+import org.apache.lens.server.api.driver.QueryCompletionPoller;
+import org.apache.lens.server.api.error.LensException;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the timer wheel and the query completion poller built on it.
+ */
+public class TestHashedWheelTimer {
+
+  private ExecutorService executor;
+  private HashedWheelTimer timer;
+
+  @BeforeMethod
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(2);
+    // a small wheel, so that longer delays take more than a round
+    timer = new HashedWheelTimer("test-timer", executor, 10, TimeUnit.MILLISECONDS, 8);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    timer.close();
+    executor.shutdownNow();
+  }
+
+  private Runnable countDown(final CountDownLatch latch) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        latch.countDown();
+      }
+    };
+  }
+
+  @Test
+  public void testTasksRunAfterDelay() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(3);
+    long start = System.nanoTime();
+    timer.schedule(countDown(latch), 0, TimeUnit.MILLISECONDS);
+    timer.schedule(countDown(latch), 30, TimeUnit.MILLISECONDS);
+    // spans multiple rounds of the wheel
+    timer.schedule(countDown(latch), 250, TimeUnit.MILLISECONDS);
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 250);
+    assertEquals(timer.pendingCount(), 0);
+  }
+
+  @Test
+  public void testCancelledTaskDoesNotRun() throws InterruptedException {
+    CountDownLatch cancelled = new CountDownLatch(1);
+    CountDownLatch other = new CountDownLatch(1);
+    HashedWheelTimer.Timeout timeout = timer.schedule(countDown(cancelled), 50, TimeUnit.MILLISECONDS);
+    timer.schedule(countDown(other), 100, TimeUnit.MILLISECONDS);
+    timeout.cancel();
+    assertTrue(timeout.isCancelled());
+    assertTrue(other.await(5, TimeUnit.SECONDS));
+    assertEquals(cancelled.getCount(), 1);
+  }
+
+  /** Listener recording its notifications. */
+  private static class RecordingListener implements QueryCompletionListener {
+    private final CountDownLatch notified = new CountDownLatch(1);
+    private volatile boolean completed;
+    private volatile String error;
+
+    @Override
+    public void onCompletion(QueryHandle handle) {
+      completed = true;
+      notified.countDown();
+    }
+
+    @Override
+    public void onError(QueryHandle handle, String error) {
+      this.error = error;
+      notified.countDown();
+    }
+  }
+
+  @Test
+  public void testCompletionPoller() throws Exception {
+    QueryCompletionPoller poller = new QueryCompletionPoller("test", 2);
+    try {
+      final AtomicInteger checks = new AtomicInteger();
+      RecordingListener finishing = new RecordingListener();
+      // not launched on first check, running on the next two, finished after
+      QueryCompletionPoller.StatusCheck check = new QueryCompletionPoller.StatusCheck() {
+        @Override
+        public boolean isFinished(QueryHandle handle) throws LensException {
+          int count = checks.incrementAndGet();
+          if (count == 1) {
+            throw new LensException("Query not found " + handle);
+          }
+          return count > 3;
+        }
+      };
+      assertTrue(poller.watch(new QueryHandle(UUID.randomUUID()), check, 20, 10000, finishing)
+        .get(5, TimeUnit.SECONDS));
+      assertTrue(finishing.notified.await(5, TimeUnit.SECONDS));
+      assertTrue(finishing.completed);
+      assertEquals(checks.get(), 4);
+
+      RecordingListener timingOut = new RecordingListener();
+      QueryCompletionPoller.StatusCheck neverFinishes = new QueryCompletionPoller.StatusCheck() {
+        @Override
+        public boolean isFinished(QueryHandle handle) {
+          return false;
+        }
+      };
+      assertFalse(poller.watch(new QueryHandle(UUID.randomUUID()), neverFinishes, 20, 100, timingOut)
+        .get(5, TimeUnit.SECONDS));
+      assertTrue(timingOut.notified.await(5, TimeUnit.SECONDS));
+      assertFalse(timingOut.completed);
+      assertEquals(timingOut.error, "timedout");
+    } finally {
+      poller.close();
+    }
+  }
+}
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -78,6 +79,9 @@ public abstract class BaseLensService extends CompositeService implements Extern
   /** Utility to validate and get valid paths for input paths **/
   private PathValidator pathValidator;
 
+  /** Journal of state changes of the service, null if the state is not journaled. */
+  private volatile ServiceStateJournal stateJournal;
+
   // Static session map which is used by query submission thread to get the
   // lens session before submitting a query to hive server
   /** The session map. */
@@ -428,6 +432,43 @@ public abstract class BaseLensService extends CompositeService implements Extern
   public void writeExternal(ObjectOutput out) throws IOException {
   }
 
+  /**
+   * Whether the service journals its state changes, so that they are recovered on restart without being held in
+   * persisted snapshots. Journaled services get a {@link ServiceStateJournal} before they are recovered, unless
+   * journaling is disabled.
+   *
+   * @return true if the service journals its state changes
+   */
+  public boolean isStateJournaled() {
+    return false;
+  }
+
+  void setStateJournal(ServiceStateJournal stateJournal) {
+    this.stateJournal = stateJournal;
+  }
+
+  /**
+   * Gets the journal of state changes of the service.
+   *
+   * @return the journal, null if the state of the service is not journaled
+   */
+  protected ServiceStateJournal getStateJournal() {
+    return stateJournal;
+  }
+
+  /**
+   * Recover the journaled state changes. Called for journaled services being recovered, after
+   * {@link #readExternal(ObjectInput)} if there is a persisted snapshot, with the records of the journal in the order
+   * in which they were journaled, which may be none.
+   *
+   * @param records the journaled records
+   * @throws IOException            Signals that an I/O exception has occurred.
+   * @throws ClassNotFoundException the class not found exception
+   */
+  public void recoverJournaledState(List<ServiceStateJournal.Record> records)
+    throws IOException, ClassNotFoundException {
+  }
+
   /**
    * Returns the health status of the service.
    *
@@ -0,0 +1,285 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.lens.server.api.events.BatchEventListener;
+import org.apache.lens.server.api.events.LensEvent;
+import org.apache.lens.server.api.events.LensEventListener;
+import org.apache.lens.server.api.events.LosslessEventListener;
+import org.apache.lens.server.api.metrics.LensMetricsRegistry;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded queue of events for one listener. Events are delivered to the listener in the order they are queued, by at
+ * most one thread of the given executor at a time, so that a slow listener only delays its own events. Listeners
+ * implementing {@link BatchEventListener} get all queued events, up to the batch size, in one call.
+ * <p></p>
+ * Threads delivering events never wait for space in a queue, whatever its policy, since listeners publishing events
+ * could otherwise wait on each other's deliveries. The oldest queued event is dropped instead, except for listeners
+ * implementing {@link LosslessEventListener}, whose queue grows beyond its capacity instead.
+ * <p></p>
+ * Metrics are reported in the metrics registry, by listener class: <code>lag.millis</code> is a histogram of the time
+ * events wait in the queue, <code>dropped</code> and <code>coalesced</code> meter events discarded when the queue
+ * overflows.
+ */
+@Slf4j
+class EventListenerQueue {
+
+  /**
+   * What to do with a new event when the queue is full.
+   */
+  enum OverflowPolicy {
+    /**
+     * Wait till the listener takes an event. This delays the thread publishing the event, which can be holding locks,
+     * so it should be used only for listeners which must not lose events and keep up with them.
+     */
+    BLOCK,
+    /** Drop the oldest queued event. */
+    DROP_OLDEST,
+    /**
+     * Replace the queued event of the same class with the same {@link LensEvent#getCoalescingKey()}, which is done
+     * even when the queue is not full. Drop the oldest queued event if there is no such event.
+     */
+    COALESCE
+  }
+
+  /** A queued event. */
+  private static final class Entry {
+    /** The event, replaced by later events when coalesced. */
+    private LensEvent event;
+    /** Time the entry was queued. */
+    private final long queuedTime = System.currentTimeMillis();
+    /** Key of the entry in coalescing entries, null if the event is not coalesced. */
+    private final List<Object> coalescingKey;
+
+    Entry(LensEvent event, List<Object> coalescingKey) {
+      this.event = event;
+      this.coalescingKey = coalescingKey;
+    }
+  }
+
+  /** Whether the current thread is delivering events. */
+  private static final ThreadLocal<Boolean> DELIVERING_THREAD = new ThreadLocal<Boolean>();
+
+  /** The listener. */
+  @Getter
+  private final LensEventListener listener;
+
+  /** The executor delivering events. */
+  private final Executor executor;
+
+  /** The policy when full. */
+  @Getter
+  private final OverflowPolicy overflowPolicy;
+
+  /** Maximum number of events delivered at once. */
+  private final int batchSize;
+
+  /** Maximum number of queued events, exceeded only by events of lossless listeners queued by delivering threads. */
+  private final int capacity;
+
+  /** Whether events of the listener are never dropped. */
+  @Getter
+  private final boolean lossless;
+
+  /** The queued events. */
+  private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<Entry>();
+
+  /** Guards checks of space in the queue and additions, notified when events are taken from the queue. */
+  private final Object space = new Object();
+
+  /** Queued entries which can be coalesced, by event class and coalescing key. */
+  private final Map<List<Object>, Entry> coalescingEntries = new HashMap<List<Object>, Entry>();
+
+  /** Whether a delivery is submitted to the executor or running. */
+  private final AtomicBoolean delivering = new AtomicBoolean(false);
+
+  /** Time events wait in the queue. */
+  private final Histogram lag;
+
+  /** Events dropped on overflow. */
+  private final Meter dropped;
+
+  /** Events replaced by later ones. */
+  private final Meter coalesced;
+
+  /** Delivers queued events. */
+  private final Runnable delivery = new Runnable() {
+    @Override
+    public void run() {
+      deliver();
+    }
+  };
+
+  /**
+   * Instantiates a new event listener queue.
+   *
+   * @param listener       the listener
+   * @param executor       the executor delivering events
+   * @param capacity       maximum number of queued events
+   * @param overflowPolicy the policy when full
+   * @param batchSize      maximum number of events delivered at once
+   */
+  EventListenerQueue(LensEventListener listener, Executor executor, int capacity, OverflowPolicy overflowPolicy,
+    int batchSize) {
+    this.listener = listener;
+    this.executor = executor;
+    this.overflowPolicy = overflowPolicy;
+    this.batchSize = Math.max(1, batchSize);
+    this.capacity = Math.max(1, capacity);
+    this.lossless = listener instanceof LosslessEventListener;
+    MetricRegistry registry = LensMetricsRegistry.getStaticRegistry();
+    String name = listener.getClass().getName();
+    this.lag = registry.histogram(MetricRegistry.name(EventListenerQueue.class, name, "lag.millis"));
+    this.dropped = registry.meter(MetricRegistry.name(EventListenerQueue.class, name, "dropped"));
+    this.coalesced = registry.meter(MetricRegistry.name(EventListenerQueue.class, name, "coalesced"));
+  }
+
+  /**
+   * Queues the event and schedules its delivery.
+   *
+   * @param event the event
+   * @throws InterruptedException if interrupted while waiting for space in the queue, with the BLOCK policy
+   */
+  void add(LensEvent event) throws InterruptedException {
+    Entry entry;
+    if (overflowPolicy == OverflowPolicy.COALESCE && event.getCoalescingKey() != null) {
+      List<Object> key = Arrays.<Object>asList(event.getClass(), event.getCoalescingKey());
+      synchronized (coalescingEntries) {
+        Entry queued = coalescingEntries.get(key);
+        if (queued != null) {
+          queued.event = event;
+          coalesced.mark();
+          return;
+        }
+        entry = new Entry(event, key);
+        coalescingEntries.put(key, entry);
+      }
+    } else {
+      entry = new Entry(event, null);
+    }
+    boolean canWait = !Boolean.TRUE.equals(DELIVERING_THREAD.get());
+    synchronized (space) {
+      if (overflowPolicy == OverflowPolicy.BLOCK && canWait) {
+        while (queue.size() >= capacity) {
+          space.wait();
+        }
+      } else if (!lossless) {
+        while (queue.size() >= capacity) {
+          Entry oldest = queue.poll();
+          if (oldest != null) {
+            removeCoalescingEntry(oldest);
+            log.warn("Queue of listener {} is full, dropping event {}", listener, oldest.event.getEventId());
+            dropped.mark();
+          }
+        }
+      } else if (queue.size() >= capacity) {
+        log.debug("Queue of listener {} is full, queuing event {} beyond its capacity", listener,
+          event.getEventId());
+      }
+      queue.add(entry);
+    }
+    scheduleDelivery();
+  }
+
+  /**
+   * Removes the entry taken from the queue from coalescing entries, so that later events are not coalesced with it.
+   *
+   * @param entry the entry
+   */
+  private void removeCoalescingEntry(Entry entry) {
+    if (entry.coalescingKey != null) {
+      synchronized (coalescingEntries) {
+        if (coalescingEntries.get(entry.coalescingKey) == entry) {
+          coalescingEntries.remove(entry.coalescingKey);
+        }
+      }
+    }
+  }
+
+  /** Submits a delivery unless one is already submitted. */
+  private void scheduleDelivery() {
+    if (!queue.isEmpty() && delivering.compareAndSet(false, true)) {
+      try {
+        executor.execute(delivery);
+      } catch (RejectedExecutionException e) {
+        delivering.set(false);
+        log.warn("Could not deliver events to listener {}", listener, e);
+      }
+    }
+  }
+
+  /** Delivers a batch of queued events, and schedules delivery of the rest. */
+  @SuppressWarnings("unchecked")
+  private void deliver() {
+    DELIVERING_THREAD.set(true);
+    try {
+      List<LensEvent> events = new ArrayList<LensEvent>(Math.min(batchSize, queue.size()));
+      long now = System.currentTimeMillis();
+      Entry entry;
+      while (events.size() < batchSize && (entry = queue.poll()) != null) {
+        removeCoalescingEntry(entry);
+        lag.update(now - entry.queuedTime);
+        events.add(entry.event);
+      }
+      if (!events.isEmpty()) {
+        synchronized (space) {
+          space.notifyAll();
+        }
+      }
+      if (listener instanceof BatchEventListener && events.size() > 1) {
+        try {
+          ((BatchEventListener) listener).onEvents(events);
+        } catch (Exception exc) {
+          log.error("Error in handling {} events for listener {}", events.size(), listener, exc);
+        }
+      } else {
+        for (LensEvent event : events) {
+          try {
+            listener.onEvent(event);
+          } catch (Exception exc) {
+            log.error("Error in handling event {} for listener {}", event.getEventId(), listener, exc);
+          }
+        }
+      }
+    } finally {
+      DELIVERING_THREAD.remove();
+      delivering.set(false);
+      // events queued while delivering
+      scheduleDelivery();
+    }
+  }
+
+  /**
+   * @return number of events waiting for delivery
+   */
+  int size() {
+    return queue.size();
+  }
+}
@@ -19,14 +19,18 @@
 package org.apache.lens.server;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+import org.apache.lens.server.EventListenerQueue.OverflowPolicy;
 import org.apache.lens.server.api.LensConfConstants;
 import org.apache.lens.server.api.error.LensException;
 import org.apache.lens.server.api.events.LensEvent;
 import org.apache.lens.server.api.events.LensEventListener;
 import org.apache.lens.server.api.events.LensEventService;
+import org.apache.lens.server.api.events.LosslessEventListener;
 import org.apache.lens.server.api.health.HealthStatus;
 
 import org.apache.hadoop.hive.conf.HiveConf;
@@ -35,17 +39,50 @@ import org.apache.hive.service.AbstractService;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Implementation of LensEventService
+ * Implementation of LensEventService. Each listener has its own bounded {@link EventListenerQueue}, so that a slow
+ * listener does not delay others. Queues of the listeners of each event class are looked up once and kept in a
+ * dispatch table, which is replaced when listeners are added or removed.
  */
 @Slf4j
 public class EventServiceImpl extends AbstractService implements LensEventService {
 
-  /** The event listeners. */
+  /** The event listeners, by the event type they are added for. */
   private final Map<Class<? extends LensEvent>, List<LensEventListener>> eventListeners
     = new HashMap<Class<? extends LensEvent>, List<LensEventListener>>();
 
+  /** Queues of the listeners. */
+  private final Map<LensEventListener, EventListenerQueue> listenerQueues
+    = new HashMap<LensEventListener, EventListenerQueue>();
+
+  /**
+   * Queues of the listeners of each event class, including listeners of its super classes. Never modified once
+   * published, classes are added to a copy.
+   */
+  private volatile Map<Class<?>, List<EventListenerQueue>> dispatchTable = Collections.emptyMap();
+
   /** The event handler pool. */
-  private ExecutorService eventHandlerPool;
+  private volatile ExecutorService eventHandlerPool;
+
+  /** Delivers events of listener queues in the event handler pool, listeners can be added before it is created. */
+  private final Executor deliveryExecutor = new Executor() {
+    @Override
+    public void execute(Runnable delivery) {
+      eventHandlerPool.execute(delivery);
+    }
+  };
+
+  /** Maximum number of events queued for a listener. */
+  private int listenerQueueSize = LensConfConstants.DEFAULT_EVENT_LISTENER_QUEUE_SIZE;
+
+  /** What to do with an event when the queue of a listener is full, unless configured for the listener. */
+  private OverflowPolicy overflowPolicy =
+    OverflowPolicy.valueOf(LensConfConstants.DEFAULT_EVENT_LISTENER_OVERFLOW_POLICY);
+
+  /** Maximum number of events delivered to a listener at once. */
+  private int batchSize = LensConfConstants.DEFAULT_EVENT_LISTENER_BATCH_SIZE;
+
+  /** The configuration, null till the service is initialized. */
+  private HiveConf conf;
 
   /**
    * Instantiates a new event service impl.
@@ -66,9 +103,32 @@ public class EventServiceImpl extends AbstractService implements LensEventServic
     int numProcs = Runtime.getRuntime().availableProcessors();
     eventHandlerPool = Executors.newFixedThreadPool(hiveConf.getInt(LensConfConstants.EVENT_SERVICE_THREAD_POOL_SIZE,
       numProcs));
+    listenerQueueSize = hiveConf.getInt(LensConfConstants.EVENT_LISTENER_QUEUE_SIZE,
+      LensConfConstants.DEFAULT_EVENT_LISTENER_QUEUE_SIZE);
+    overflowPolicy = OverflowPolicy.valueOf(hiveConf.get(LensConfConstants.EVENT_LISTENER_OVERFLOW_POLICY,
+      LensConfConstants.DEFAULT_EVENT_LISTENER_OVERFLOW_POLICY).trim().toUpperCase());
+    conf = hiveConf;
+    batchSize = hiveConf.getInt(LensConfConstants.EVENT_LISTENER_BATCH_SIZE,
+      LensConfConstants.DEFAULT_EVENT_LISTENER_BATCH_SIZE);
     super.init(hiveConf);
   }
 
+  /**
+   * Get the overflow policy of the listener, configured by its class name, or the default policy. Lossless listeners
+   * always block.
+   *
+   * @param listener the listener
+   * @return the overflow policy
+   */
+  OverflowPolicy getOverflowPolicy(LensEventListener listener) {
+    if (listener instanceof LosslessEventListener) {
+      return OverflowPolicy.BLOCK;
+    }
+    String policy = conf == null ? null
+      : conf.get(LensConfConstants.EVENT_LISTENER_OVERFLOW_POLICY + "." + listener.getClass().getName());
+    return policy == null ? overflowPolicy : OverflowPolicy.valueOf(policy.trim().toUpperCase());
+  }
+
   /*
    * (non-Javadoc)
    *
@@ -84,64 +144,56 @@ public class EventServiceImpl extends AbstractService implements LensEventServic
           log.info("Removed listener {}", listener);
         }
       }
+      listenersChanged();
     }
   }
 
   /**
-   * Handle event.
-   *
-   * @param listeners the listeners
-   * @param evt       the evt
+   * Removes queues of listeners not listening to any event type, and invalidates the dispatch table. Should be called
+   * holding the lock on eventListeners. Events already queued for removed listeners are still delivered.
    */
-  @SuppressWarnings("unchecked")
-  private void handleEvent(List<LensEventListener> listeners, LensEvent evt) {
-    if (listeners != null && !listeners.isEmpty()) {
-      for (LensEventListener listener : listeners) {
-        try {
-          listener.onEvent(evt);
-        } catch (Exception exc) {
-          log.error("Error in handling event {} for listener {}", evt.getEventId(), listener, exc);
-        }
-      }
+  private void listenersChanged() {
+    Set<LensEventListener> registered = new HashSet<LensEventListener>();
+    for (List<LensEventListener> listeners : eventListeners.values()) {
+      registered.addAll(listeners);
     }
+    listenerQueues.keySet().retainAll(registered);
+    dispatchTable = Collections.emptyMap();
   }
 
   /**
-   * The Class EventHandler.
+   * Get queues of the listeners of the event class, from the dispatch table, adding them to the table if not already
+   * there.
+   *
+   * @param evtClass the event class
+   * @return the queues
    */
-  private final class EventHandler implements Runnable {
-
-    /** The event. */
-    final LensEvent event;
-
-    /**
-     * Instantiates a new event handler.
-     *
-     * @param event the event
-     */
-    EventHandler(LensEvent event) {
-      this.event = event;
-    }
-
-    /*
-     * (non-Javadoc)
-     *
-     * @see java.lang.Runnable#run()
-     */
-    public void run() {
-      Class<? extends LensEvent> evtClass = event.getClass();
-      // Call listeners directly listening for this event type
-      handleEvent(eventListeners.get(evtClass), event);
-      Class<?> superClass = evtClass.getSuperclass();
-
-      // Call listeners which listen of super types of this event type
-      while (LensEvent.class.isAssignableFrom(superClass)) {
-        if (eventListeners.containsKey(superClass)) {
-          handleEvent(eventListeners.get(superClass), event);
+  private List<EventListenerQueue> getListenerQueues(Class<? extends LensEvent> evtClass) {
+    List<EventListenerQueue> queues = dispatchTable.get(evtClass);
+    if (queues == null) {
+      synchronized (eventListeners) {
+        queues = dispatchTable.get(evtClass);
+        if (queues == null) {
+          queues = new ArrayList<EventListenerQueue>();
+          // listeners directly listening for this event type, then listeners of super types
+          Class<?> superClass = evtClass;
+          while (LensEvent.class.isAssignableFrom(superClass)) {
+            List<LensEventListener> listeners = eventListeners.get(superClass);
+            if (listeners != null) {
+              for (LensEventListener listener : listeners) {
+                queues.add(listenerQueues.get(listener));
+              }
+            }
+            superClass = superClass.getSuperclass();
+          }
+          Map<Class<?>, List<EventListenerQueue>> table =
+            new HashMap<Class<?>, List<EventListenerQueue>>(dispatchTable);
+          table.put(evtClass, Collections.unmodifiableList(queues));
+          dispatchTable = table;
         }
-        superClass = superClass.getSuperclass();
       }
     }
+    return queues;
   }
 
   /*
@@ -149,7 +201,6 @@ public class EventServiceImpl extends AbstractService implements LensEventServic
    *
    * @see org.apache.lens.server.api.events.LensEventService#notifyEvent(org.apache.lens.server.api.events.LensEvent)
    */
-  @SuppressWarnings("unchecked")
   @Override
   public void notifyEvent(final LensEvent evt) throws LensException {
     if (getServiceState() != STATE.STARTED) {
@@ -159,7 +210,14 @@ public class EventServiceImpl extends AbstractService implements LensEventServic
     if (evt == null) {
       return;
     }
-    eventHandlerPool.submit(new EventHandler(evt));
+    try {
+      for (EventListenerQueue queue : getListenerQueues(evt.getClass())) {
+        queue.add(evt);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new LensException("Interrupted while queuing event " + evt.getEventId(), e);
+    }
   }
 
   /*
@@ -169,7 +227,9 @@ public class EventServiceImpl extends AbstractService implements LensEventServic
    */
   @Override
   public <T extends LensEvent> Collection<LensEventListener> getListeners(Class<T> eventType) {
-    return Collections.unmodifiableList(eventListeners.get(eventType));
+    synchronized (eventListeners) {
+      return Collections.unmodifiableList(eventListeners.get(eventType));
+    }
   }
 
   @Override
@@ -199,16 +259,20 @@ public class EventServiceImpl extends AbstractService implements LensEventServic
   @Override
   public void stop() {
     if (eventHandlerPool != null) {
-      List<Runnable> pending = eventHandlerPool.shutdownNow();
-      if (pending != null && !pending.isEmpty()) {
+      eventHandlerPool.shutdownNow();
+      synchronized (eventListeners) {
         StringBuilder pendingMsg = new StringBuilder("Pending Events:");
-        for (Runnable handler : pending) {
-          if (handler instanceof EventHandler) {
-            pendingMsg.append(((EventHandler) handler).event.getEventId()).append(",");
+        int pending = 0;
+        for (EventListenerQueue queue : listenerQueues.values()) {
+          if (queue.size() > 0) {
+            pending += queue.size();
+            pendingMsg.append(queue.getListener()).append("=").append(queue.size()).append(",");
           }
         }
-        log.info("Event listener service stopped while {} events still pending", pending.size());
-        log.info(pendingMsg.toString());
+        if (pending > 0) {
+          log.info("Event listener service stopped while {} events still pending", pending);
+          log.info(pendingMsg.toString());
+        }
       }
     }
     log.info("Event service stopped");
@@ -230,10 +294,15 @@ public class EventServiceImpl extends AbstractService implements LensEventServic
     synchronized (eventListeners) {
       List<LensEventListener> listeners = eventListeners.get(eventType);
       if (listeners == null) {
-        listeners = new ArrayList<LensEventListener>();
+        listeners = new CopyOnWriteArrayList<LensEventListener>();
         eventListeners.put(eventType, listeners);
       }
       listeners.add(listener);
+      if (!listenerQueues.containsKey(listener)) {
+        listenerQueues.put(listener, new EventListenerQueue(listener, deliveryExecutor, listenerQueueSize,
+          getOverflowPolicy(listener), batchSize));
+      }
+      listenersChanged();
     }
     log.info("Added listener {} for type:{}", listener, eventType.getName());
   }
@@ -253,6 +322,7 @@ public class EventServiceImpl extends AbstractService implements LensEventServic
           log.info("Removed listener {}", listener);
         }
       }
+      listenersChanged();
     }
   }
 }
@@ -112,6 +112,10 @@ public class LensServices extends CompositeService implements ServiceProvider {
   /* Lock for synchronizing persistence of LensServices state */
   private final Object statePersistenceLock = new Object();
 
+  /** Journals read while journaling is disabled, deleted once a snapshot of their service is persisted */
+  private final Map<BaseLensService, ServiceStateJournal> staleJournals =
+    new HashMap<BaseLensService, ServiceStateJournal>();
+
   @Getter
   private ErrorCollection errorCollection;
 
@@ -291,25 +295,49 @@ public class LensServices extends CompositeService implements ServiceProvider {
    * @throws ClassNotFoundException the class not found exception
    */
   private void setupPersistedState() throws IOException, ClassNotFoundException {
-    if (conf.getBoolean(SERVER_RECOVER_ON_RESTART,
-      DEFAULT_SERVER_RECOVER_ON_RESTART)) {
+    boolean recover = conf.getBoolean(SERVER_RECOVER_ON_RESTART, DEFAULT_SERVER_RECOVER_ON_RESTART);
+    boolean journalEnabled = conf.getBoolean(SERVER_RESTART_ENABLED, DEFAULT_SERVER_RESTART_ENABLED)
+      && conf.getBoolean(SERVER_STATE_JOURNAL_ENABLED, DEFAULT_SERVER_STATE_JOURNAL_ENABLED);
+
+    for (BaseLensService service : lensServices) {
+      List<ServiceStateJournal.Record> journaled = null;
+      if (service.isStateJournaled()) {
+        ServiceStateJournal journal = new ServiceStateJournal(persistenceFS, persistDir, service.getName());
+        if (recover) {
+          // read even if journaling is disabled now, as snapshots taken with a journal do not hold journaled state
+          journaled = journal.readAll();
+        } else {
+          journal.clear();
+        }
+        if (journalEnabled) {
+          service.setStateJournal(journal);
+        } else if (recover) {
+          staleJournals.put(service, journal);
+        }
+      }
+      if (!recover) {
+        continue;
+      }
 
-      for (BaseLensService service : lensServices) {
-        ObjectInputStream in = null;
+      ObjectInputStream in = null;
+      try {
         try {
-          try {
-            in = new ObjectInputStream(persistenceFS.open(getServicePersistPath(service)));
-          } catch (FileNotFoundException fe) {
-            log.warn("No persist path available for service:{}", service.getName());
-            continue;
-          }
+          in = new ObjectInputStream(persistenceFS.open(getServicePersistPath(service)));
+        } catch (FileNotFoundException fe) {
+          log.warn("No persist path available for service:{}", service.getName());
+        }
+        if (in != null) {
           service.readExternal(in);
           log.info("Recovered service {} from persisted state", service.getName());
-        } finally {
-          if (in != null) {
-            in.close();
-          }
         }
+      } finally {
+        if (in != null) {
+          in.close();
+        }
+      }
+      if (journaled != null) {
+        service.recoverJournaledState(journaled);
+        log.info("Recovered {} journaled state changes of service {}", journaled.size(), service.getName());
       }
     }
   }
@@ -330,6 +358,9 @@ public class LensServices extends CompositeService implements ServiceProvider {
 
           for (BaseLensService service : lensServices) {
             log.info("Persisting state of service: {}", service.getName());
+            // journal files rolled now can be compacted, changes journaled from now on go to a new file
+            ServiceStateJournal journal = service.getStateJournal();
+            int rolledJournal = journal == null ? -1 : journal.roll();
             Path serviceWritePath = new Path(persistDir, service.getName() + ".out" + "." + now);
             ObjectOutputStream out = null;
             try {
@@ -352,6 +383,19 @@ public class LensServices extends CompositeService implements ServiceProvider {
               log.error("Failed to persist {} to [{}]", service.getName(), servicePath);
             } else {
               log.info("Persisted service {} to [{}]", service.getName(), servicePath);
+              ServiceStateJournal staleJournal = staleJournals.remove(service);
+              if (staleJournal != null) {
+                // the snapshot holds the whole state of the service, taken without a journal
+                staleJournal.clear();
+              }
+            }
+            if (journal != null) {
+              try {
+                journal.compact(rolledJournal);
+              } catch (IOException e) {
+                incrCounter(SERVER_STATE_PERSISTENCE_ERRORS);
+                log.error("Failed to compact journal of service {}", service.getName(), e);
+              }
             }
           }
         } else {
@@ -392,6 +436,11 @@ public class LensServices extends CompositeService implements ServiceProvider {
         // persist all the services
         persistLensServiceState();
 
+        for (BaseLensService service : lensServices) {
+          if (service.getStateJournal() != null) {
+            service.getStateJournal().close();
+          }
+        }
         persistenceFS.close();
         log.info("Persistence File system object close complete");
       } catch (IOException e) {
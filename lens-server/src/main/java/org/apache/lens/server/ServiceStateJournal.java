@@ -0,0 +1,532 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalFileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+
+import lombok.Data;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Write ahead journal of state changes of a lens service, kept next to the persisted snapshot of the service.
+ *
+ * Every record carries the latest state of one entity of the service, identified by a key, an update to apply over
+ * the latest state of the entity, or marks the entity as removed. Records are numbered by a sequence which grows
+ * across journal files. The journal is made of numbered files: {@link #roll()} closes the current file, and
+ * {@link #compact(int)} folds rolled files into a checkpoint, which keeps only the records needed to rebuild the
+ * entities still present. On recovery, the records of the checkpoint and of the journal files are read back with
+ * {@link #readAll()}.
+ *
+ * Records are flushed to the file system when they are appended, or in batches with {@link #flush()}. Every record
+ * carries a checksum, so that a record torn by a crash is detected and ignored on recovery.
+ */
+@Slf4j
+public class ServiceStateJournal {
+
+  private static final String JOURNAL_SFX = ".journal.";
+  private static final String CHECKPOINT_SFX = ".checkpoint";
+  private static final String CHECKPOINT_TMP_SFX = ".checkpoint.tmp";
+  private static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+  private static final long DEFAULT_MIN_COMPACTION_BYTES = 1024 * 1024;
+
+  private final FileSystem fs;
+  private final Path dir;
+  private final String prefix;
+  private final Path checkpointPath;
+  private final Path checkpointTmpPath;
+  private final long minCompactionBytes;
+  /** Held while compacting, so that appends are not held up by compactions */
+  private final Object compactionLock = new Object();
+
+  private FSDataOutputStream out;
+  private int currentIndex;
+  private long lastSeq;
+
+  /**
+   * Type of a record.
+   */
+  public enum RecordType {
+    /** The record carries the latest state of the entity */
+    STATE,
+    /** The record carries an update to apply over the latest state of the entity */
+    UPDATE,
+    /** The entity is removed */
+    REMOVED
+  }
+
+  /**
+   * A record of the journal.
+   */
+  @Data
+  public static class Record {
+    private final long seq;
+    private final String key;
+    private final RecordType type;
+    /** State or update carried by the record, null if the entity was removed */
+    private final byte[] data;
+
+    public Record(long seq, String key, RecordType type, byte[] data) {
+      this.seq = seq;
+      this.key = key;
+      this.type = type;
+      this.data = data;
+    }
+
+    /**
+     * A record carrying the latest state of the entity, or marking it as removed if the state is null.
+     */
+    public Record(long seq, String key, byte[] state) {
+      this(seq, key, state == null ? RecordType.REMOVED : RecordType.STATE, state);
+    }
+
+    public boolean isRemoved() {
+      return type == RecordType.REMOVED;
+    }
+  }
+
+  /**
+   * Records of a checkpoint, and the sequence up to which the checkpoint covers the journal.
+   */
+  @Data
+  private static class Checkpoint {
+    private final long coveredSeq;
+    private final List<Record> records;
+  }
+
+  public ServiceStateJournal(@NonNull FileSystem fs, @NonNull Path dir, @NonNull String serviceName) {
+    this(fs, dir, serviceName, DEFAULT_MIN_COMPACTION_BYTES);
+  }
+
+  ServiceStateJournal(@NonNull FileSystem fs, @NonNull Path dir, @NonNull String serviceName,
+    long minCompactionBytes) {
+    // records carry their own checksum, and the checksummed local file system does not flush partial chunks
+    this.fs = fs instanceof LocalFileSystem ? ((LocalFileSystem) fs).getRawFileSystem() : fs;
+    this.dir = dir;
+    this.prefix = serviceName + JOURNAL_SFX;
+    this.checkpointPath = new Path(dir, serviceName + CHECKPOINT_SFX);
+    this.checkpointTmpPath = new Path(dir, serviceName + CHECKPOINT_TMP_SFX);
+    this.minCompactionBytes = minCompactionBytes;
+  }
+
+  /**
+   * Append a record and flush it.
+   *
+   * @param key   key of the entity
+   * @param state latest state of the entity, null if the entity is removed
+   * @return the sequence of the record
+   * @throws IOException if the record could not be written
+   */
+  public synchronized long append(@NonNull String key, byte[] state) throws IOException {
+    return append(key, state, true);
+  }
+
+  /**
+   * Append a record carrying the latest state of an entity, or its removal.
+   *
+   * @param key   key of the entity
+   * @param state latest state of the entity, null if the entity is removed
+   * @param flush whether to flush the record, records appended without flush are flushed by the next {@link #flush()}
+   * @return the sequence of the record
+   * @throws IOException if the record could not be written
+   */
+  public synchronized long append(@NonNull String key, byte[] state, boolean flush) throws IOException {
+    return append(key, state == null ? RecordType.REMOVED : RecordType.STATE, state, flush);
+  }
+
+  /**
+   * Append a record.
+   *
+   * @param key   key of the entity
+   * @param type  type of the record
+   * @param data  state or update carried by the record, ignored for removed entities
+   * @param flush whether to flush the record, records appended without flush are flushed by the next {@link #flush()}
+   * @return the sequence of the record
+   * @throws IOException if the record could not be written
+   */
+  public synchronized long append(@NonNull String key, @NonNull RecordType type, byte[] data, boolean flush)
+    throws IOException {
+    if (type != RecordType.REMOVED && data == null) {
+      throw new IllegalArgumentException("No data in " + type + " record of " + key);
+    }
+    long seq = lastSeq + 1;
+    if (out == null) {
+      out = fs.create(getPath(currentIndex), true);
+    }
+    writeRecord(out, new Record(seq, key, type, type == RecordType.REMOVED ? null : data));
+    if (flush) {
+      out.hflush();
+    }
+    lastSeq = seq;
+    return seq;
+  }
+
+  /**
+   * Flush the records appended so far.
+   *
+   * @throws IOException if the records could not be flushed
+   */
+  public synchronized void flush() throws IOException {
+    if (out != null) {
+      out.hflush();
+    }
+  }
+
+  /**
+   * Close the current journal file, records appended from now on go to a new file.
+   *
+   * @return index of the closed file, files up to this index can be compacted
+   * @throws IOException if the current file could not be closed
+   */
+  public synchronized int roll() throws IOException {
+    int rolled = currentIndex;
+    closeCurrent();
+    currentIndex++;
+    return rolled;
+  }
+
+  /**
+   * Delete journal files up to the given index.
+   *
+   * @param index the index
+   * @throws IOException if the files could not be listed or deleted
+   */
+  public synchronized void deleteUpTo(int index) throws IOException {
+    for (Map.Entry<Integer, Path> file : listFiles().entrySet()) {
+      if (file.getKey() <= index && !(out != null && file.getKey() == currentIndex)) {
+        if (!fs.delete(file.getValue(), false)) {
+          log.warn("Could not delete journal file {}", file.getValue());
+        }
+      }
+    }
+  }
+
+  /**
+   * Fold rolled journal files up to the given index into the checkpoint, and delete them. The checkpoint keeps, for
+   * every entity not removed, its latest state and the updates appended after it.
+   *
+   * Compacting reads and rewrites the checkpoint, so files are compacted only once they are at least as large as the
+   * checkpoint, which keeps the amortized cost of compactions proportional to the volume of records appended, rather
+   * than to the number of entities. Appends are not held up by compactions.
+   *
+   * @param index index of the last rolled file to compact
+   * @return whether the files were compacted
+   * @throws IOException if the files or the checkpoint could not be read or written
+   */
+  public boolean compact(int index) throws IOException {
+    synchronized (compactionLock) {
+      List<Path> files = new ArrayList<Path>();
+      long journalBytes = 0;
+      synchronized (this) {
+        if (index >= currentIndex) {
+          throw new IllegalArgumentException("Journal file " + index + " of " + prefix + " is not rolled");
+        }
+        for (Map.Entry<Integer, Path> file : listFiles().entrySet()) {
+          if (file.getKey() <= index) {
+            files.add(file.getValue());
+            journalBytes += fs.getFileStatus(file.getValue()).getLen();
+          }
+        }
+      }
+      long checkpointBytes = fs.exists(checkpointPath) ? fs.getFileStatus(checkpointPath).getLen() : 0;
+      if (files.isEmpty() || journalBytes < Math.max(checkpointBytes, minCompactionBytes)) {
+        return false;
+      }
+
+      Checkpoint checkpoint = readCheckpoint();
+      List<Record> records = new ArrayList<Record>(checkpoint.getRecords());
+      long coveredSeq = checkpoint.getCoveredSeq();
+      for (Path file : files) {
+        List<Record> fileRecords = new ArrayList<Record>();
+        readFile(file, fileRecords);
+        for (Record record : fileRecords) {
+          if (record.getSeq() > checkpoint.getCoveredSeq()) {
+            records.add(record);
+            coveredSeq = Math.max(coveredSeq, record.getSeq());
+          }
+        }
+      }
+      List<Record> kept = new ArrayList<Record>();
+      for (List<Record> entityRecords : latestByKey(records).values()) {
+        if (!entityRecords.get(0).isRemoved()) {
+          kept.addAll(entityRecords);
+        }
+      }
+      writeCheckpoint(coveredSeq, kept);
+      deleteUpTo(index);
+      log.info("Compacted {} journal files of {} into a checkpoint of {} records, covering sequence {}", files.size(),
+        prefix, kept.size(), coveredSeq);
+      return true;
+    }
+  }
+
+  /**
+   * Read all the records of the checkpoint, and of all journal files, in the order in which they were appended.
+   * Appends done after this call go to a new file, and continue the sequence of the records read.
+   *
+   * @return the records
+   * @throws IOException if the checkpoint or the journal files could not be read
+   */
+  public synchronized List<Record> readAll() throws IOException {
+    closeCurrent();
+    Checkpoint checkpoint = readCheckpoint();
+    List<Record> records = new ArrayList<Record>(checkpoint.getRecords());
+    lastSeq = Math.max(lastSeq, checkpoint.getCoveredSeq());
+    for (Map.Entry<Integer, Path> file : listFiles().entrySet()) {
+      List<Record> fileRecords = new ArrayList<Record>();
+      readFile(file.getValue(), fileRecords);
+      for (Record record : fileRecords) {
+        // files compacted into the checkpoint, but not deleted yet
+        if (record.getSeq() > checkpoint.getCoveredSeq()) {
+          records.add(record);
+        }
+      }
+      currentIndex = Math.max(currentIndex, file.getKey() + 1);
+    }
+    for (Record record : records) {
+      lastSeq = Math.max(lastSeq, record.getSeq());
+    }
+    log.info("Read {} records from journal {} in {}", records.size(), prefix, dir);
+    return records;
+  }
+
+  /**
+   * Delete the checkpoint and all journal files.
+   *
+   * @throws IOException if the files could not be deleted
+   */
+  public synchronized void clear() throws IOException {
+    closeCurrent();
+    deleteUpTo(Integer.MAX_VALUE);
+    for (Path path : new Path[]{checkpointPath, checkpointTmpPath}) {
+      if (fs.exists(path) && !fs.delete(path, false)) {
+        log.warn("Could not delete checkpoint {}", path);
+      }
+    }
+  }
+
+  public synchronized void close() throws IOException {
+    closeCurrent();
+    // records appended after closing go to a new file, instead of overwriting the closed one
+    currentIndex++;
+  }
+
+  /**
+   * Group records by the key of their entity, keeping only the records needed to rebuild the entity: its latest state
+   * and the updates appended after it, or its removal. Updates of an entity with no state in the records, whose state
+   * is kept outside the journal, are all kept.
+   *
+   * @param records records in the order in which they were appended
+   * @return the records of each entity, in the order in which the entities were first appended
+   */
+  public static Map<String, List<Record>> latestByKey(List<Record> records) {
+    Map<String, List<Record>> latest = new LinkedHashMap<String, List<Record>>();
+    for (Record record : records) {
+      List<Record> entityRecords = latest.get(record.getKey());
+      if (entityRecords == null) {
+        entityRecords = new ArrayList<Record>();
+        latest.put(record.getKey(), entityRecords);
+      }
+      if (record.getType() != RecordType.UPDATE || (!entityRecords.isEmpty() && entityRecords.get(0).isRemoved())) {
+        entityRecords.clear();
+      }
+      entityRecords.add(record);
+    }
+    return latest;
+  }
+
+  private void closeCurrent() throws IOException {
+    if (out != null) {
+      try {
+        out.close();
+      } finally {
+        out = null;
+      }
+    }
+  }
+
+  private Path getPath(int index) {
+    return new Path(dir, prefix + index);
+  }
+
+  private SortedMap<Integer, Path> listFiles() throws IOException {
+    SortedMap<Integer, Path> files = new TreeMap<Integer, Path>();
+    if (!fs.exists(dir)) {
+      return files;
+    }
+    FileStatus[] statuses = fs.listStatus(dir, new PathFilter() {
+      @Override
+      public boolean accept(Path path) {
+        return path.getName().startsWith(prefix);
+      }
+    });
+    for (FileStatus status : statuses) {
+      try {
+        files.put(Integer.parseInt(status.getPath().getName().substring(prefix.length())), status.getPath());
+      } catch (NumberFormatException e) {
+        log.warn("Ignoring unknown file {} in journal {}", status.getPath(), prefix);
+      }
+    }
+    return files;
+  }
+
+  /**
+   * Write the checkpoint to a temporary file first, so that a checkpoint torn by a crash never replaces a complete
+   * one. The temporary file is only read if the crash happened between deleting the old checkpoint and renaming.
+   */
+  private void writeCheckpoint(long coveredSeq, List<Record> records) throws IOException {
+    FSDataOutputStream checkpointOut = fs.create(checkpointTmpPath, true);
+    try {
+      checkpointOut.writeLong(coveredSeq);
+      checkpointOut.writeInt(records.size());
+      for (Record record : records) {
+        writeRecord(checkpointOut, record);
+      }
+      checkpointOut.hflush();
+    } finally {
+      checkpointOut.close();
+    }
+    // delete the destination first, because rename is no-op in HDFS, if destination exists
+    if (fs.exists(checkpointPath) && !fs.delete(checkpointPath, false)) {
+      throw new IOException("Could not delete checkpoint " + checkpointPath);
+    }
+    if (!fs.rename(checkpointTmpPath, checkpointPath)) {
+      throw new IOException("Could not rename " + checkpointTmpPath + " to " + checkpointPath);
+    }
+  }
+
+  private Checkpoint readCheckpoint() throws IOException {
+    Checkpoint checkpoint = readCheckpoint(checkpointPath);
+    if (checkpoint == null) {
+      checkpoint = readCheckpoint(checkpointTmpPath);
+    }
+    return checkpoint == null ? new Checkpoint(0, Collections.<Record>emptyList()) : checkpoint;
+  }
+
+  /**
+   * Read a checkpoint, null if it does not exist or is incomplete.
+   */
+  private Checkpoint readCheckpoint(Path path) throws IOException {
+    if (!fs.exists(path)) {
+      return null;
+    }
+    DataInputStream in = new DataInputStream(new BufferedInputStream(fs.open(path)));
+    try {
+      long coveredSeq;
+      int numRecords;
+      try {
+        coveredSeq = in.readLong();
+        numRecords = in.readInt();
+      } catch (EOFException e) {
+        log.warn("Ignoring incomplete checkpoint {}", path);
+        return null;
+      }
+      List<Record> records = new ArrayList<Record>(numRecords);
+      readRecords(in, path, records);
+      if (records.size() != numRecords) {
+        log.warn("Ignoring incomplete checkpoint {}, with {} of {} records", path, records.size(), numRecords);
+        return null;
+      }
+      return new Checkpoint(coveredSeq, records);
+    } finally {
+      in.close();
+    }
+  }
+
+  private void readFile(Path path, List<Record> records) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(fs.open(path)));
+    try {
+      readRecords(in, path, records);
+    } finally {
+      in.close();
+    }
+  }
+
+  private static void writeRecord(DataOutputStream out, Record record) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream recordOut = new DataOutputStream(bytes);
+    recordOut.writeLong(record.getSeq());
+    recordOut.writeUTF(record.getKey());
+    recordOut.writeByte(record.getType().ordinal());
+    if (record.getData() == null) {
+      recordOut.writeInt(-1);
+    } else {
+      recordOut.writeInt(record.getData().length);
+      recordOut.write(record.getData());
+    }
+    recordOut.close();
+    byte[] recordBytes = bytes.toByteArray();
+    CRC32 crc = new CRC32();
+    crc.update(recordBytes);
+
+    out.writeInt(recordBytes.length);
+    out.write(recordBytes);
+    out.writeLong(crc.getValue());
+  }
+
+  private static void readRecords(DataInputStream in, Path path, List<Record> records) throws IOException {
+    while (true) {
+      int length;
+      try {
+        length = in.readInt();
+      } catch (EOFException e) {
+        return;
+      }
+      if (length < 0 || length > MAX_RECORD_LENGTH) {
+        log.warn("Ignoring corrupt record and rest of journal file {}", path);
+        return;
+      }
+      byte[] recordBytes = new byte[length];
+      long checksum;
+      try {
+        in.readFully(recordBytes);
+        checksum = in.readLong();
+      } catch (EOFException e) {
+        log.warn("Ignoring torn record at the end of journal file {}", path);
+        return;
+      }
+      CRC32 crc = new CRC32();
+      crc.update(recordBytes);
+      if (crc.getValue() != checksum) {
+        log.warn("Ignoring corrupt record and rest of journal file {}", path);
+        return;
+      }
+      DataInputStream record = new DataInputStream(new ByteArrayInputStream(recordBytes));
+      long seq = record.readLong();
+      String key = record.readUTF();
+      RecordType type = RecordType.values()[record.readByte()];
+      int dataLength = record.readInt();
+      byte[] data = null;
+      if (dataLength >= 0) {
+        data = new byte[dataLength];
+        record.readFully(data);
+      }
+      records.add(new Record(seq, key, type, data));
+    }
+  }
+}
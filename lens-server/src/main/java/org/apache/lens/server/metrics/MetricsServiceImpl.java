@@ -141,6 +141,12 @@ public class MetricsServiceImpl extends AbstractService implements MetricsServic
   /** The finished queries. */
   private Gauge<Long> finishedQueries;
 
+  /** The purge lag of finished queries. */
+  private Gauge<Long> finishedQueryPurgeLag;
+
+  /** The result formatting queue size. */
+  private Gauge<Long> resultFormattingQueueSize;
+
   /** All method meters. Factory for creation + caching */
   @Getter
   private MethodMetricsFactory methodMetricsFactory;
@@ -364,6 +370,22 @@ public class MetricsServiceImpl extends AbstractService implements MetricsServic
         }
       });
 
+    finishedQueryPurgeLag = metricRegistry.register(MetricRegistry.name(QueryExecutionService.class,
+      FINISHED_QUERY_PURGE_LAG), new Gauge<Long>() {
+        @Override
+        public Long getValue() {
+          return getQuerySvc().getFinishedQueryPurgeLag();
+        }
+      });
+
+    resultFormattingQueueSize = metricRegistry.register(MetricRegistry.name(QueryExecutionService.class,
+      RESULT_FORMATTING_QUEUE_SIZE), new Gauge<Long>() {
+        @Override
+        public Long getValue() {
+          return getQuerySvc().getResultFormattingQueueSize();
+        }
+      });
+
     totalDatabaseResourceLoadErrors = metricRegistry.counter(MetricRegistry.name(DatabaseResourceService.class,
         DatabaseResourceService.LOAD_RESOURCES_ERRORS));
 
@@ -498,6 +520,16 @@ public class MetricsServiceImpl extends AbstractService implements MetricsServic
     metricRegistry.counter(MetricRegistry.name(cls, counter)).dec();
   }
 
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.server.api.metrics.MetricsService#markMeter(java.lang.Class, java.lang.String, long)
+   */
+  @Override
+  public void markMeter(Class<?> cls, String meter, long n) {
+    metricRegistry.meter(MetricRegistry.name(cls, meter)).mark(n);
+  }
+
   /*
    * (non-Javadoc)
    *
@@ -543,6 +575,16 @@ public class MetricsServiceImpl extends AbstractService implements MetricsServic
     return finishedQueries.getValue();
   }
 
+  @Override
+  public long getFinishedQueryPurgeLag() {
+    return finishedQueryPurgeLag.getValue();
+  }
+
+  @Override
+  public long getResultFormattingQueueSize() {
+    return resultFormattingQueueSize.getValue();
+  }
+
   @Override
   public long getTotalAcceptedQueries() {
     return totalAcceptedQueries.getCount();
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.BadRequestException;
+
+import org.apache.lens.api.query.InMemoryQueryResult;
+import org.apache.lens.api.query.ResultRow;
+import org.apache.lens.server.api.driver.InMemoryResultSet;
+import org.apache.lens.server.api.error.LensException;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Row cursor over an {@link InMemoryResultSet}, used to serve results one page at a time.
+ *
+ * The cursor remembers the offset of the next row the underlying result set will return, so consecutive pages are
+ * read without going back to the start. A request for an offset behind the cursor rewinds the result set. A page
+ * asked with a fetch size holds no more than <code>maxPageRows</code> rows. Without a fetch size, all rows from the
+ * start index are returned, as clients not paging through results expect the whole result.
+ */
+@Slf4j
+public class InMemoryResultSetCursor {
+
+  /**
+   * The underlying result set.
+   */
+  @Getter
+  private final InMemoryResultSet resultSet;
+
+  /**
+   * Maximum number of rows returned in a single page.
+   */
+  @Getter
+  private final int maxPageRows;
+
+  /**
+   * Offset of the next row to be read from the result set.
+   */
+  @Getter
+  private long position = 0;
+
+  /**
+   * Whether the result set has been read till the end.
+   */
+  @Getter
+  private boolean exhausted = false;
+
+  public InMemoryResultSetCursor(@NonNull final InMemoryResultSet resultSet, final int maxPageRows) {
+    if (maxPageRows <= 0) {
+      throw new IllegalArgumentException("Max page rows should be positive, found:" + maxPageRows);
+    }
+    this.resultSet = resultSet;
+    this.maxPageRows = maxPageRows;
+  }
+
+  /**
+   * Fetch a page of rows.
+   *
+   * @param startIndex offset of the first row of the page
+   * @param fetchSize  number of rows requested. A non positive value asks for all rows from the start index.
+   * @return the page
+   * @throws LensException if the result set can not be read or rewound
+   */
+  public synchronized InMemoryQueryResult fetch(long startIndex, int fetchSize) throws LensException {
+    if (startIndex < 0) {
+      throw new BadRequestException("Invalid start index:" + startIndex);
+    }
+    if (startIndex < position) {
+      if (!seekToStart()) {
+        throw new LensException("Result set can not be rewound to index " + startIndex
+          + ", current index is " + position);
+      }
+    }
+    while (position < startIndex && !exhausted) {
+      if (resultSet.hasNext()) {
+        resultSet.next();
+        position++;
+      } else {
+        markExhausted();
+      }
+    }
+
+    int pageSize = fetchSize <= 0 ? Integer.MAX_VALUE : Math.min(fetchSize, maxPageRows);
+    if (fetchSize > maxPageRows) {
+      log.info("Requested fetch size {} is more than max page size {}, returning {} rows", fetchSize, maxPageRows,
+        maxPageRows);
+    }
+    List<ResultRow> rows = new ArrayList<ResultRow>(Math.min(pageSize, 1024));
+    // size check comes first since hasNext() advances some result sets
+    while (rows.size() < pageSize && !exhausted) {
+      if (resultSet.hasNext()) {
+        rows.add(resultSet.next());
+        position++;
+      } else {
+        markExhausted();
+      }
+    }
+    return new InMemoryQueryResult(rows);
+  }
+
+  /**
+   * Rewind the cursor to the first row.
+   *
+   * @return true if the underlying result set could be rewound
+   * @throws LensException the lens exception
+   */
+  public synchronized boolean seekToStart() throws LensException {
+    if (resultSet.seekToStart()) {
+      position = 0;
+      exhausted = false;
+      return true;
+    }
+    return false;
+  }
+
+  private void markExhausted() {
+    exhausted = true;
+    resultSet.setFullyAccessed(true);
+  }
+}
@@ -19,10 +19,14 @@
 package org.apache.lens.server.query;
 
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.sql.DataSource;
 
@@ -35,6 +39,7 @@ import org.apache.commons.dbutils.DbUtils;
 import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.dbutils.ResultSetHandler;
 import org.apache.commons.dbutils.handlers.BeanHandler;
+import org.apache.commons.dbutils.handlers.BeanListHandler;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 
@@ -46,6 +51,12 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class LensServerDAO {
 
+  /** The insert statement for finished queries. */
+  private static final String INSERT_FINISHED_QUERY_SQL = "insert into finished_queries (handle, userquery,submitter,"
+    + "starttime,endtime,result,status,metadata,rows,filesize,"
+    + "errormessage,driverstarttime,driverendtime, driverclass, queryname, submissiontime)"
+    + " values (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+
   /** The ds. */
   private DataSource ds;
 
@@ -94,6 +105,40 @@ public class LensServerDAO {
     } catch (SQLException e) {
       log.warn("Unable to create finished queries table", e);
     }
+    createIndex("finished_queries_submitter_idx", "submitter, submissiontime");
+    createIndex("finished_queries_status_idx", "status, submissiontime");
+  }
+
+  /**
+   * Create an index on finished queries table, if it does not exist.
+   *
+   * @param name    name of the index
+   * @param columns indexed columns
+   */
+  private void createIndex(String name, String columns) {
+    Connection conn = null;
+    try {
+      conn = getConnection();
+      DatabaseMetaData metaData = conn.getMetaData();
+      String table = metaData.storesUpperCaseIdentifiers() ? "FINISHED_QUERIES" : "finished_queries";
+      ResultSet indexes = metaData.getIndexInfo(null, null, table, false, false);
+      try {
+        while (indexes.next()) {
+          if (name.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+            return;
+          }
+        }
+      } finally {
+        indexes.close();
+      }
+      new QueryRunner().update(conn, "CREATE INDEX " + name + " ON finished_queries (" + columns + ")");
+      conn.commit();
+      log.info("Created index {} on finished queries table", name);
+    } catch (SQLException e) {
+      log.warn("Unable to create index {} on finished queries table", name, e);
+    } finally {
+      DbUtils.closeQuietly(conn);
+    }
   }
 
   /**
@@ -107,17 +152,10 @@ public class LensServerDAO {
     if (alreadyExisting == null) {
       // The expected case
       Connection conn = null;
-      String sql = "insert into finished_queries (handle, userquery,submitter,"
-        + "starttime,endtime,result,status,metadata,rows,filesize,"
-        + "errormessage,driverstarttime,driverendtime, driverclass, queryname, submissiontime)"
-        + " values (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
       try {
         conn = getConnection();
         QueryRunner runner = new QueryRunner();
-        runner.update(conn, sql, query.getHandle(), query.getUserQuery(), query.getSubmitter(), query.getStartTime(),
-          query.getEndTime(), query.getResult(), query.getStatus(), query.getMetadata(), query.getRows(),
-          query.getFileSize(), query.getErrorMessage(), query.getDriverStartTime(), query.getDriverEndTime(),
-          query.getDriverClass(), query.getQueryName(), query.getSubmissionTime());
+        runner.update(conn, INSERT_FINISHED_QUERY_SQL, getInsertParams(query));
         conn.commit();
       } finally {
         DbUtils.closeQuietly(conn);
@@ -135,6 +173,66 @@ public class LensServerDAO {
     }
   }
 
+  /**
+   * DAO method to insert finished queries into table, as a single batch in a single transaction. Queries already
+   * present in the table with same values are skipped.
+   *
+   * @param queries to be inserted
+   * @throws SQLException if the batch could not be inserted, or a different query with the same handle is already
+   *                      present. None of the queries are inserted in that case.
+   */
+  public void insertFinishedQueries(List<FinishedLensQuery> queries) throws SQLException {
+    if (queries.isEmpty()) {
+      return;
+    }
+    Map<String, FinishedLensQuery> toInsert = new LinkedHashMap<String, FinishedLensQuery>();
+    for (FinishedLensQuery query : queries) {
+      toInsert.put(query.getHandle(), query);
+    }
+    Connection conn = null;
+    try {
+      conn = getConnection();
+      QueryRunner runner = new QueryRunner();
+      String existingSql = "select * from finished_queries where handle in ("
+        + StringUtils.repeat("?", ",", toInsert.size()) + ")";
+      List<FinishedLensQuery> existing = runner.query(conn, existingSql,
+        new BeanListHandler<FinishedLensQuery>(FinishedLensQuery.class), toInsert.keySet().toArray());
+      for (FinishedLensQuery alreadyExisting : existing) {
+        FinishedLensQuery query = toInsert.remove(alreadyExisting.getHandle());
+        if (alreadyExisting.equals(query)) {
+          log.warn("Skipping Re-insert. Finished Query found in DB while trying to insert, handle={}",
+            query.getHandle());
+        } else {
+          throw new SQLException("Found different value pre-existing in DB while trying to insert finished query. "
+            + "Old = " + alreadyExisting + "\nNew = " + query);
+        }
+      }
+      if (!toInsert.isEmpty()) {
+        Object[][] params = new Object[toInsert.size()][];
+        int i = 0;
+        for (FinishedLensQuery query : toInsert.values()) {
+          params[i++] = getInsertParams(query);
+        }
+        runner.batch(conn, INSERT_FINISHED_QUERY_SQL, params);
+      }
+      conn.commit();
+    } catch (SQLException e) {
+      DbUtils.rollbackAndCloseQuietly(conn);
+      conn = null;
+      throw e;
+    } finally {
+      DbUtils.closeQuietly(conn);
+    }
+  }
+
+  private static Object[] getInsertParams(FinishedLensQuery query) {
+    return new Object[]{query.getHandle(), query.getUserQuery(), query.getSubmitter(), query.getStartTime(),
+      query.getEndTime(), query.getResult(), query.getStatus(), query.getMetadata(), query.getRows(),
+      query.getFileSize(), query.getErrorMessage(), query.getDriverStartTime(), query.getDriverEndTime(),
+      query.getDriverClass(), query.getQueryName(), query.getSubmissionTime(),
+    };
+  }
+
   /**
    * Fetch Finished query from Database.
    *
@@ -167,65 +265,96 @@ public class LensServerDAO {
    */
   public List<QueryHandle> findFinishedQueries(String state, String user, String driverName, String queryName,
     long fromDate, long toDate) throws LensException {
-    boolean addFilter = StringUtils.isNotBlank(state) || StringUtils.isNotBlank(user)
-      || StringUtils.isNotBlank(queryName);
-    StringBuilder builder = new StringBuilder("SELECT handle FROM finished_queries");
-    List<Object> params = null;
-    if (addFilter) {
-      builder.append(" WHERE ");
-      List<String> filters = new ArrayList<String>(3);
-      params = new ArrayList<Object>(3);
-
-      if (StringUtils.isNotBlank(state)) {
-        filters.add("status=?");
-        params.add(state);
-      }
+    List<QuerySubmissionKey> keys = findFinishedQueries(state, user, driverName, queryName, fromDate, toDate, null, -1);
+    List<QueryHandle> queryHandleList = new ArrayList<QueryHandle>(keys.size());
+    for (QuerySubmissionKey key : keys) {
+      queryHandleList.add(key.getQueryHandle());
+    }
+    return queryHandleList;
+  }
 
-      if (StringUtils.isNotBlank(user)) {
-        filters.add("submitter=?");
-        params.add(user);
-      }
+  /**
+   * Find a page of finished queries, in order of submission.
+   *
+   * @param state      the state
+   * @param user       the user
+   * @param driverName the driverClass
+   * @param queryName  the query name
+   * @param fromDate   the from date
+   * @param toDate     the to date
+   * @param after      only queries after this position are returned, null for the first page
+   * @param limit      maximum number of queries returned, non positive for no limit
+   * @return positions of the queries
+   * @throws LensException the lens exception
+   */
+  public List<QuerySubmissionKey> findFinishedQueries(String state, String user, String driverName, String queryName,
+    long fromDate, long toDate, QuerySubmissionKey after, final int limit) throws LensException {
+    StringBuilder builder = new StringBuilder("SELECT handle, submissiontime FROM finished_queries WHERE ");
+    List<String> filters = new ArrayList<String>();
+    List<Object> params = new ArrayList<Object>();
 
-      if (StringUtils.isNotBlank(queryName)) {
-        filters.add("queryname like ?");
-        params.add("%" + queryName + "%");
-      }
+    if (StringUtils.isNotBlank(state)) {
+      filters.add("status=?");
+      params.add(state);
+    }
 
-      if (StringUtils.isNotBlank(driverName)) {
-        filters.add("lower(driverclass)=?");
-        params.add(driverName.toLowerCase());
-      }
+    if (StringUtils.isNotBlank(user)) {
+      filters.add("submitter=?");
+      params.add(user);
+    }
+
+    if (StringUtils.isNotBlank(queryName)) {
+      filters.add("queryname like ?");
+      params.add("%" + queryName + "%");
+    }
+
+    if (StringUtils.isNotBlank(driverName)) {
+      filters.add("lower(driverclass)=?");
+      params.add(driverName.toLowerCase());
+    }
+
+    filters.add("submissiontime BETWEEN ? AND ?");
+    params.add(fromDate);
+    params.add(toDate);
 
-      filters.add("submissiontime BETWEEN ? AND ?");
-      params.add(fromDate);
-      params.add(toDate);
-      builder.append(StringUtils.join(filters, " AND "));
+    if (after != null) {
+      filters.add("(submissiontime > ? OR (submissiontime = ? AND handle > ?))");
+      params.add(after.getSubmissionTime());
+      params.add(after.getSubmissionTime());
+      params.add(after.getHandle());
     }
+    builder.append(StringUtils.join(filters, " AND "));
+    builder.append(" ORDER BY submissiontime, handle");
 
-    ResultSetHandler<List<QueryHandle>> resultSetHandler = new ResultSetHandler<List<QueryHandle>>() {
+    ResultSetHandler<List<QuerySubmissionKey>> resultSetHandler = new ResultSetHandler<List<QuerySubmissionKey>>() {
       @Override
-      public List<QueryHandle> handle(ResultSet resultSet) throws SQLException {
-        List<QueryHandle> queryHandleList = new ArrayList<QueryHandle>();
+      public List<QuerySubmissionKey> handle(ResultSet resultSet) throws SQLException {
+        List<QuerySubmissionKey> keys = new ArrayList<QuerySubmissionKey>();
         while (resultSet.next()) {
           String handle = resultSet.getString(1);
           try {
-            queryHandleList.add(QueryHandle.fromString(handle));
+            QueryHandle.fromString(handle);
+            keys.add(new QuerySubmissionKey(resultSet.getLong(2), handle));
           } catch (IllegalArgumentException exc) {
             log.warn("Warning invalid query handle found in DB " + handle);
           }
         }
-        return queryHandleList;
+        return keys;
       }
     };
 
-    QueryRunner runner = new QueryRunner(ds);
-    String query = builder.toString();
-    try {
-      if (addFilter) {
-        return runner.query(query, resultSetHandler, params.toArray());
-      } else {
-        return runner.query(query, resultSetHandler);
+    QueryRunner runner = new QueryRunner(ds) {
+      @Override
+      protected PreparedStatement prepareStatement(Connection conn, String sql) throws SQLException {
+        PreparedStatement statement = super.prepareStatement(conn, sql);
+        if (limit > 0) {
+          statement.setMaxRows(limit);
+        }
+        return statement;
       }
+    };
+    try {
+      return runner.query(builder.toString(), resultSetHandler, params.toArray());
     } catch (SQLException e) {
       throw new LensException(e);
     }
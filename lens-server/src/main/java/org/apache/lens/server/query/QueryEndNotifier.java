@@ -160,7 +160,8 @@ public class QueryEndNotifier extends AsyncEventListener<QueryEnded> {
 
   private String getResultMessage(QueryContext queryContext) {
     try {
-      return queryService.getResultset(queryContext.getQueryHandle()).toQueryResult().toPrettyString();
+      // read through the result cursor of the query, so that the client's reads are rewound after this one
+      return queryService.fetchResult(queryContext.getQueryHandle(), 0, 0).toPrettyString();
     } catch (LensException e) {
       log.error("Error retrieving result of query handle {} for sending e-mail", queryContext.getQueryHandle(), e);
       return "Error retrieving result.";
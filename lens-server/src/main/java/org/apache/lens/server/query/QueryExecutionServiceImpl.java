@@ -26,6 +26,7 @@ import static org.apache.lens.server.session.LensSessionImpl.ResourceEntry;
 import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -47,10 +48,12 @@ import org.apache.lens.driver.hive.HiveDriver;
 import org.apache.lens.server.BaseLensService;
 import org.apache.lens.server.LensServerConf;
 import org.apache.lens.server.LensServices;
+import org.apache.lens.server.ServiceStateJournal;
 import org.apache.lens.server.api.driver.*;
 import org.apache.lens.server.api.error.LensException;
 import org.apache.lens.server.api.error.LensMultiCauseException;
 import org.apache.lens.server.api.events.LensEventListener;
+import org.apache.lens.server.api.events.LosslessEventListener;
 import org.apache.lens.server.api.health.HealthStatus;
 import org.apache.lens.server.api.metrics.MethodMetricsContext;
 import org.apache.lens.server.api.metrics.MethodMetricsFactory;
@@ -58,12 +61,14 @@ import org.apache.lens.server.api.metrics.MetricsService;
 import org.apache.lens.server.api.query.*;
 import org.apache.lens.server.api.query.collect.WaitingQueriesSelectionPolicy;
 import org.apache.lens.server.api.query.constraint.QueryLaunchingConstraint;
+import org.apache.lens.server.api.query.cost.HistoryBasedQueryCost;
 import org.apache.lens.server.api.query.cost.QueryCost;
 import org.apache.lens.server.model.LogSegregationContext;
 import org.apache.lens.server.model.MappedDiagnosticLogSegregationContext;
 import org.apache.lens.server.query.collect.*;
 import org.apache.lens.server.query.constraint.DefaultQueryLaunchingConstraintsChecker;
 import org.apache.lens.server.query.constraint.QueryLaunchingConstraintsChecker;
+import org.apache.lens.server.rewrite.CubeQueryRewriteCache;
 import org.apache.lens.server.rewrite.RewriteUtil;
 import org.apache.lens.server.rewrite.UserQueryToCubeQueryRewriter;
 import org.apache.lens.server.session.LensSessionImpl;
@@ -86,6 +91,7 @@ import org.slf4j.LoggerFactory;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.SettableFuture;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.ToString;
@@ -168,6 +174,11 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
    */
   protected ConcurrentMap<QueryHandle, QueryContext> allQueries = new ConcurrentHashMap<QueryHandle, QueryContext>();
 
+  /**
+   * Index of all queries by submitting user and submission time.
+   */
+  private final SubmittedQueryIndex submittedQueries = new SubmittedQueryIndex();
+
   /**
    * The conf.
    */
@@ -184,6 +195,11 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
    */
   protected Thread querySubmitter;
 
+  /**
+   * The launch lanes of drivers.
+   */
+  private final Map<LensDriver, QueryLaunchLane> launchLanes = new HashMap<LensDriver, QueryLaunchLane>();
+
   /**
    * The status poller.
    */
@@ -199,11 +215,21 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
    */
   private final Thread prepareQueryPurger = new Thread(new PreparedQueryPurger(), "PrepareQueryPurger");
 
+  /**
+   * The query journaler.
+   */
+  private final Thread queryJournaler = new Thread(new QueryJournaler(), "QueryJournaler");
+
   /**
    * The query result purger
    */
   private QueryResultPurger queryResultPurger;
 
+  /**
+   * The result formatter
+   */
+  private ResultFormatter resultFormatter;
+
   /**
    * The query acceptors.
    */
@@ -224,6 +250,17 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
    */
   private Map<QueryHandle, LensResultSet> resultSets = new HashMap<QueryHandle, LensResultSet>();
 
+  /**
+   * The cursors over in memory result sets, used to serve results page by page.
+   */
+  private final Map<QueryHandle, InMemoryResultSetCursor> resultSetCursors =
+    new ConcurrentHashMap<QueryHandle, InMemoryResultSetCursor>();
+
+  /**
+   * Maximum number of rows served in a single page of an in memory result set.
+   */
+  private int maxResultPageRows;
+
   /**
    * The metrics service.
    */
@@ -239,15 +276,25 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
    */
   int purgeInterval;
 
+  /**
+   * Maximum number of finished queries archived in one batch.
+   */
+  private int purgeBatchSize;
+
+  /**
+   * Maximum interval the purger backs off to on archival failures.
+   */
+  private long purgeMaxBackoffInterval;
+
   /**
    * The lens server dao.
    */
   LensServerDAO lensServerDao;
 
   /**
-   * Thread pool used for running query estimates in parallel
+   * Thread pools of drivers, used for running query estimates in parallel
    */
-  private ExecutorService estimatePool;
+  private final Map<LensDriver, ThreadPoolExecutor> estimatePools = new HashMap<LensDriver, ThreadPoolExecutor>();
 
   private final LogSegregationContext logSegregationContext;
 
@@ -280,9 +327,53 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       if (event instanceof DriverSessionStarted) {
         log.info("New driver event by driver {}", event.getDriver());
         handleDriverSessionStart(event);
+      } else if (event instanceof DriverQueryStatusChanged) {
+        handleDriverQueryStatusChange((DriverQueryStatusChanged) event);
       }
     }
   };
+
+  /**
+   * The poll schedule of launched queries.
+   */
+  private QueryStatusPollSchedule statusPollSchedule;
+
+  /**
+   * Cache of rewritten cube queries, null if caching is disabled.
+   */
+  private CubeQueryRewriteCache rewriteCache;
+
+  /**
+   * Queries whose latest changes are yet to be journaled, mapped to null if the query is removed.
+   */
+  private final Map<QueryHandle, QueryContext> pendingJournal = new LinkedHashMap<QueryHandle, QueryContext>();
+
+  /**
+   * Queries in {@link #pendingJournal} whose whole state is to be journaled, only the driver status of the others is.
+   */
+  private final Set<QueryHandle> pendingJournalStates = new HashSet<QueryHandle>();
+
+  /**
+   * Held while journaling pending changes, so that changes of a query are journaled in order.
+   */
+  private final Object journalLock = new Object();
+
+  /**
+   * Futures of queries being executed with a timeout, completing when the query leaves the queue.
+   */
+  private final ConcurrentMap<QueryHandle, SettableFuture<Boolean>> dequeueWaiters
+    = new ConcurrentHashMap<QueryHandle, SettableFuture<Boolean>>();
+
+  /**
+   * Interval at which a query waiting in queue is checked, in case it left the queue without a status change event.
+   */
+  private static final long QUEUE_RECHECK_INTERVAL_MILLIS = 1000;
+
+  /**
+   * Per driver pools polling status of launched queries, so that a slow driver does not delay status of queries on
+   * other drivers.
+   */
+  private final Map<LensDriver, ExecutorService> statusUpdatePools = new HashMap<LensDriver, ExecutorService>();
   private UserQueryToCubeQueryRewriter userQueryToCubeQueryRewriter;
 
 
@@ -323,8 +414,12 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       getEventService().addListenerForType(new QueryStatusLogger(), StatusChange.class);
       log.info("Registered query state logger");
     }
+    getEventService().addListenerForType(new QueryCostModelUpdater(), QuerySuccess.class);
     // Add result formatter
-    getEventService().addListenerForType(new ResultFormatter(this, this.logSegregationContext), QueryExecuted.class);
+    resultFormatter = new ResultFormatter(this, this.logSegregationContext,
+      conf.getInt(RESULT_FORMATTER_POOL_SIZE, DEFAULT_RESULT_FORMATTER_POOL_SIZE),
+      conf.getInt(RESULT_FORMATTER_QUEUE_SIZE, DEFAULT_RESULT_FORMATTER_QUEUE_SIZE));
+    getEventService().addListenerForType(resultFormatter, QueryExecuted.class);
     getEventService().addListenerForType(new QueryExecutionStatisticsGenerator(getEventService()),
       QueryEnded.class);
     getEventService().addListenerForType(
@@ -344,9 +439,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
         try {
           LensDriver driver = (LensDriver) driverClass.newInstance();
           driver.configure(LensServerConf.getConfForDrivers());
-          if (driver instanceof HiveDriver) {
-            driver.registerDriverEventListener(driverEventListener);
-          }
+          driver.registerDriverEventListener(driverEventListener);
           drivers.put(driverClass.getName(), driver);
           log.info("Driver for {} is loaded", driverClass);
         } catch (Exception e) {
@@ -429,6 +522,26 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     }
   }
 
+  /**
+   * Feeds execution time of successful queries back to the model which predicted it, for costs predicting execution
+   * time from history. None of its events are dropped, so that every execution is recorded.
+   */
+  public static class QueryCostModelUpdater implements LosslessEventListener<QuerySuccess> {
+
+    @Override
+    public void onEvent(QuerySuccess event) throws LensException {
+      QueryContext ctx = event.getQueryContext();
+      if (ctx == null || !(ctx.getSelectedDriverQueryCost() instanceof HistoryBasedQueryCost)) {
+        return;
+      }
+      long startTime = ctx.getDriverStatus().getDriverStartTime();
+      long finishTime = ctx.getDriverStatus().getDriverFinishTime();
+      if (startTime > 0 && finishTime >= startTime) {
+        ((HistoryBasedQueryCost) ctx.getSelectedDriverQueryCost()).recordExecTime(finishTime - startTime);
+      }
+    }
+  }
+
   /**
    * The Class FinishedQuery.
    */
@@ -534,63 +647,12 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       while (!pausedForTest && !stopped && !querySubmitter.isInterrupted()) {
         try {
           QueryContext query = queuedQueries.take();
-          synchronized (query) {
-
-            /* Setting log segregation id */
-            logSegregationContext.setLogSegragationAndQueryId(query.getQueryHandleString());
-
-            if (!query.queued()) {
-              log.info("Probably the query got cancelled. Skipping it. Query Status:{}", query.getStatus());
-              continue;
-            }
-
-            log.info("Processing query:{}", query.getUserQuery());
-            try {
-              // acquire session before any query operation.
-              acquire(query.getLensSessionIdentifier());
-
-              /* Check javadoc of QueryExecutionServiceImpl#removalFromLaunchedQueriesLock for reason for existence
-              of this lock. */
-              log.debug("Acquiring lock in QuerySubmitter");
-              removalFromLaunchedQueriesLock.lock();
-              try {
-
-                boolean isQueryAllowedToLaunch = this.constraintsChecker.canLaunch(query, launchedQueries);
-
-                log.debug("isQueryAllowedToLaunch:{}", isQueryAllowedToLaunch);
-                if (isQueryAllowedToLaunch) {
-
-                  /* Query is not going to be added to waiting queries. No need to keep the lock.
-                  First release lock, then launch query */
-                  removalFromLaunchedQueriesLock.unlock();
-                  launchQuery(query);
-                } else {
-
-                  /* Query is going to be added to waiting queries. Keep holding the lock to avoid any removal from
-                  launched queries. First add to waiting queries, then release lock */
-                  addToWaitingQueries(query);
-                  removalFromLaunchedQueriesLock.unlock();
-                }
-              } finally {
-                if (removalFromLaunchedQueriesLock.isHeldByCurrentThread()) {
-                  removalFromLaunchedQueriesLock.unlock();
-                }
-              }
-            } catch (LensException e) {
-
-              log.error("Error launching query: {}", query.getQueryHandle(), e);
-              String reason = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
-              setFailedStatus(query, "Launching query failed", reason, e.buildLensErrorTO(this.errorCollection));
-              continue;
-
-            } catch (Exception e) {
-              log.error("Error launching query: {}", query.getQueryHandle(), e);
-              String reason = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
-              setFailedStatus(query, "Launching query failed", reason, null);
-              continue;
-            } finally {
-              release(query.getLensSessionIdentifier());
-            }
+          QueryLaunchLane lane = query.getSelectedDriver() == null ? null : launchLanes.get(query.getSelectedDriver());
+          if (lane != null) {
+            lane.add(query);
+          } else {
+            // no lane to hand over to, process here so that the query fails with the right reason
+            processQuery(query);
           }
         } catch (InterruptedException e) {
           log.info("Query Submitter has been interrupted, exiting");
@@ -603,9 +665,77 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       log.info("QuerySubmitter exited");
     }
 
+    /**
+     * Launch the query if launching constraints allow it, otherwise move it to waiting queries.
+     *
+     * @param query the query
+     * @throws LensException the lens exception
+     */
+    void processQuery(final QueryContext query) throws LensException {
+      synchronized (query) {
+
+        /* Setting log segregation id */
+        logSegregationContext.setLogSegragationAndQueryId(query.getQueryHandleString());
+
+        if (!query.queued()) {
+          log.info("Probably the query got cancelled. Skipping it. Query Status:{}", query.getStatus());
+          return;
+        }
+
+        log.info("Processing query:{}", query.getUserQuery());
+        boolean slotReserved = false;
+        try {
+          // acquire session before any query operation.
+          acquire(query.getLensSessionIdentifier());
+          checkEstimatedQueriesState(query);
+
+          /* Check javadoc of QueryExecutionServiceImpl#removalFromLaunchedQueriesLock for reason for existence
+          of this lock. The lock is held only to evaluate constraints and to record the decision, never while the
+          driver launches the query. */
+          log.debug("Acquiring lock in QuerySubmitter");
+          removalFromLaunchedQueriesLock.lock();
+          try {
+
+            boolean isQueryAllowedToLaunch = this.constraintsChecker.canLaunch(query, launchedQueries);
+
+            log.debug("isQueryAllowedToLaunch:{}", isQueryAllowedToLaunch);
+            if (isQueryAllowedToLaunch) {
+              /* Reserve the slot in launched queries, so that constraints checked by other launch lanes see this
+              query while it is being launched on the driver */
+              launchedQueries.add(query);
+              slotReserved = true;
+            } else {
+
+              /* Query is going to be added to waiting queries. Keep holding the lock to avoid any removal from
+              launched queries. First add to waiting queries, then release lock */
+              addToWaitingQueries(query);
+            }
+          } finally {
+            removalFromLaunchedQueriesLock.unlock();
+          }
+          if (slotReserved) {
+            launchQuery(query);
+          }
+        } catch (LensException e) {
+
+          log.error("Error launching query: {}", query.getQueryHandle(), e);
+          releaseReservedSlot(query, slotReserved);
+          String reason = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+          setFailedStatus(query, "Launching query failed", reason, e.buildLensErrorTO(this.errorCollection));
+
+        } catch (Exception e) {
+          log.error("Error launching query: {}", query.getQueryHandle(), e);
+          releaseReservedSlot(query, slotReserved);
+          String reason = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+          setFailedStatus(query, "Launching query failed", reason, null);
+        } finally {
+          release(query.getLensSessionIdentifier());
+        }
+      }
+    }
+
     private void launchQuery(final QueryContext query) throws LensException {
 
-      checkEstimatedQueriesState(query);
       QueryStatus oldStatus = query.getStatus();
       QueryStatus newStatus = new QueryStatus(query.getStatus().getProgress(), null,
         QueryStatus.Status.LAUNCHED, "Query is launched on driver", false, null, null, null);
@@ -618,14 +748,24 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       query.setLaunchTime(System.currentTimeMillis());
       query.clearTransientStateAfterLaunch();
 
-      launchedQueries.add(query);
       log.info("Added to launched queries. QueryId:{}", query.getQueryHandleString());
       fireStatusChangeEvent(query, newStatus, oldStatus);
     }
 
+    /**
+     * Give back the slot reserved in launched queries for a query which could not be launched.
+     *
+     * @param query        the query
+     * @param slotReserved whether a slot was reserved
+     */
+    private void releaseReservedSlot(final QueryContext query, final boolean slotReserved) {
+      if (slotReserved && removeFromLaunchedQueries(query)) {
+        processWaitingQueriesAsync(query);
+      }
+    }
+
     private void addToWaitingQueries(final QueryContext query) throws LensException {
 
-      checkEstimatedQueriesState(query);
       this.waitingQueries.add(query);
       log.info("Added to waiting queries. QueryId:{}", query.getQueryHandleString());
     }
@@ -648,14 +788,93 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
   }
 
   /**
-   * The Class StatusPoller.
+   * Launch lane of a driver. Queries handed over by the {@link QuerySubmitter} are launched by the threads of the lane
+   * of their selected driver, in priority order, so that a driver which is slow to accept queries delays launches on
+   * that driver only.
    */
-  private class StatusPoller implements Runnable {
+  private class QueryLaunchLane {
 
-    /**
-     * The poll interval.
-     */
-    long pollInterval = 1000;
+    private final FairPriorityBlockingQueue<QueryContext> queue
+      = new FairPriorityBlockingQueue<QueryContext>(new QueryContextPriorityComparator());
+
+    private final List<Thread> launchers = new ArrayList<Thread>();
+
+    QueryLaunchLane(final String name, final int numThreads) {
+      for (int i = 1; i <= numThreads; i++) {
+        launchers.add(new Thread(new Runnable() {
+          @Override
+          public void run() {
+            launch();
+          }
+        }, "QueryLauncher-" + name + "-" + i));
+      }
+    }
+
+    private void launch() {
+      log.info("Starting {} thread", Thread.currentThread().getName());
+      while (!stopped && !Thread.currentThread().isInterrupted()) {
+        try {
+          querySubmitterRunnable.processQuery(queue.take());
+        } catch (InterruptedException e) {
+          log.info("{} has been interrupted, exiting", Thread.currentThread().getName());
+          return;
+        } catch (Exception e) {
+          incrCounter(QUERY_SUBMITTER_COUNTER);
+          log.error("Error in query launcher", e);
+        }
+      }
+      log.info("{} exited", Thread.currentThread().getName());
+    }
+
+    void add(final QueryContext query) {
+      queue.add(query);
+    }
+
+    boolean remove(final QueryContext query) {
+      return queue.remove(query);
+    }
+
+    int size() {
+      return queue.size();
+    }
+
+    void start() {
+      for (Thread launcher : launchers) {
+        launcher.start();
+      }
+    }
+
+    void interrupt() {
+      for (Thread launcher : launchers) {
+        launcher.interrupt();
+      }
+    }
+
+    void join() {
+      for (Thread launcher : launchers) {
+        try {
+          launcher.join();
+        } catch (InterruptedException e) {
+          log.error("Error waiting for thread: {}", launcher.getName(), e);
+        }
+      }
+    }
+
+    boolean isAlive() {
+      for (Thread launcher : launchers) {
+        if (!launcher.isAlive()) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * The Class StatusPoller. Hands out launched queries whose poll is due as per {@link QueryStatusPollSchedule} to
+   * the status update pool of their driver.
+   */
+  private class StatusPoller implements Runnable {
 
     /*
      * (non-Javadoc)
@@ -668,23 +887,24 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       while (!stopped && !statusPoller.isInterrupted()) {
         try {
           Set<QueryContext> launched = launchedQueries.getQueries();
+          Set<QueryHandle> launchedHandles = new HashSet<QueryHandle>();
+          long now = System.currentTimeMillis();
 
           for (QueryContext ctx : launched) {
             if (stopped || statusPoller.isInterrupted()) {
               return;
             }
-
-            logSegregationContext.setLogSegragationAndQueryId(ctx.getQueryHandleString());
-            log.debug("Polling status for {}", ctx.getQueryHandle());
-            try {
-              // session is not required to update status of the query
-              // don't need to wrap this with acquire/release
-              updateStatus(ctx.getQueryHandle());
-            } catch (LensException e) {
-              log.error("Error updating status ", e);
+            launchedHandles.add(ctx.getQueryHandle());
+            if (ctx.queued()) {
+              // slot is reserved, query is still being launched on the driver
+              continue;
+            }
+            if (statusPollSchedule.tryStartPoll(ctx.getQueryHandle(), now)) {
+              submitStatusUpdate(ctx, true);
             }
           }
-          Thread.sleep(pollInterval);
+          statusPollSchedule.retainAll(launchedHandles);
+          Thread.sleep(statusPollSchedule.getMinIntervalMillis());
         } catch (InterruptedException e) {
           log.info("Status poller has been interrupted, exiting");
           return;
@@ -697,6 +917,81 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     }
   }
 
+  /**
+   * Runnable updating status of a launched query.
+   */
+  private class StatusUpdateRunnable implements Runnable {
+
+    private final QueryContext ctx;
+
+    /**
+     * Whether the update was handed out by the poll schedule, which has to be told when it completes.
+     */
+    private final boolean scheduled;
+
+    StatusUpdateRunnable(QueryContext ctx, boolean scheduled) {
+      this.ctx = ctx;
+      this.scheduled = scheduled;
+    }
+
+    @Override
+    public void run() {
+      QueryHandle handle = ctx.getQueryHandle();
+      logSegregationContext.setLogSegragationAndQueryId(ctx.getQueryHandleString());
+      log.debug("Polling status for {}", handle);
+      Status before = ctx.getStatus().getStatus();
+      try {
+        // session is not required to update status of the query
+        // don't need to wrap this with acquire/release
+        updateStatus(handle);
+      } catch (Exception e) {
+        incrCounter(STATUS_UPDATE_COUNTER);
+        log.error("Error updating status ", e);
+      } finally {
+        if (scheduled) {
+          boolean pushSupported = ctx.getSelectedDriver() != null && ctx.getSelectedDriver().isStatusPushSupported();
+          statusPollSchedule.pollCompleted(handle, System.currentTimeMillis(), before != ctx.getStatus().getStatus(),
+            pushSupported);
+        }
+      }
+    }
+  }
+
+  /**
+   * Submit status update of the query to the status update pool of its driver.
+   *
+   * @param ctx       the query context
+   * @param scheduled whether the update is a poll handed out by the poll schedule
+   */
+  private void submitStatusUpdate(QueryContext ctx, boolean scheduled) {
+    StatusUpdateRunnable update = new StatusUpdateRunnable(ctx, scheduled);
+    ExecutorService pool = ctx.getSelectedDriver() == null ? null : statusUpdatePools.get(ctx.getSelectedDriver());
+    if (pool == null) {
+      update.run();
+      return;
+    }
+    try {
+      pool.execute(update);
+    } catch (RejectedExecutionException e) {
+      log.warn("Status update rejected for {}, updating inline", ctx.getQueryHandle());
+      update.run();
+    }
+  }
+
+  /**
+   * Update status of the query whose status change was pushed by its driver.
+   *
+   * @param event the driver event
+   */
+  private void handleDriverQueryStatusChange(DriverQueryStatusChanged event) {
+    QueryContext ctx = allQueries.get(event.getQueryHandle());
+    if (ctx == null || ctx.getSelectedDriver() != event.getDriver()) {
+      log.debug("Ignoring status change of {} from driver {}", event.getQueryHandle(), event.getDriver());
+      return;
+    }
+    submitStatusUpdate(ctx, false);
+  }
+
   /**
    * Sets the failed status.
    *
@@ -744,6 +1039,10 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
         * hide and seek. Then QuerySubmitter thread will come to rescue, as it always checks that a query should be in
         * queued state before processing it after deque. If it is in cancelled state, then it will skip it. */
         queuedQueries.remove(ctx);
+        QueryLaunchLane lane = ctx.getSelectedDriver() == null ? null : launchLanes.get(ctx.getSelectedDriver());
+        if (lane != null) {
+          lane.remove(ctx);
+        }
         waitingQueries.remove(ctx);
       } else {
         if (removeFromLaunchedQueries(ctx)) {
@@ -803,13 +1102,34 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
           // Query index could be null when the query status is queued but
           // query is present in priorityblocking queue for processing
           if (queryIndex != null) {
-            ctx.getStatus().setQueueNumber(queryIndex);
+            Integer prevIndex = ctx.getStatus().getQueueNumber();
+            if (!queryIndex.equals(prevIndex)) {
+              ctx.getStatus().setQueueNumber(queryIndex);
+              fireQueuePositionChangeEvent(ctx, prevIndex, queryIndex);
+            }
           }
         }
       }
     }
   }
 
+  /**
+   * Fire queue position change event.
+   *
+   * @param ctx       the ctx
+   * @param prevIndex previous position of the query in waiting queue, null if it was not known
+   * @param currIndex current position of the query in waiting queue
+   */
+  private void fireQueuePositionChangeEvent(QueryContext ctx, Integer prevIndex, Integer currIndex) {
+    QueuePositionChange event = new QueuePositionChange(System.currentTimeMillis(), prevIndex, currIndex,
+      ctx.getQueryHandle());
+    try {
+      getEventService().notifyEvent(event);
+    } catch (LensException e) {
+      log.warn("LensEventService encountered error while handling event: {}", event.getEventId(), e);
+    }
+  }
+
   /**
    * New status change event.
    *
@@ -869,6 +1189,20 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       // No need to fire event since the state hasn't changed
       return;
     }
+    if (prevState == QUEUED) {
+      SettableFuture<Boolean> dequeued = dequeueWaiters.remove(ctx.getQueryHandle());
+      if (dequeued != null) {
+        dequeued.set(true);
+      }
+    }
+    if (currentStatus == CLOSED) {
+      journalQuery(ctx, ServiceStateJournal.RecordType.REMOVED);
+    } else if (currentStatus == RUNNING || currentStatus == EXECUTED) {
+      // running and executed statuses are set from the driver status alone
+      journalQuery(ctx, ServiceStateJournal.RecordType.UPDATE);
+    } else {
+      journalQuery(ctx, ServiceStateJournal.RecordType.STATE);
+    }
 
     StatusChange event = newStatusChangeEvent(ctx, prevState, currentStatus);
     if (event != null) {
@@ -880,8 +1214,130 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     }
   }
 
+  private void addQuery(QueryContext ctx) {
+    allQueries.put(ctx.getQueryHandle(), ctx);
+    submittedQueries.add(ctx);
+  }
+
+  private void removeQuery(QueryHandle handle) {
+    QueryContext ctx = allQueries.remove(handle);
+    if (ctx != null) {
+      submittedQueries.remove(ctx);
+    }
+  }
+
+  /**
+   * Queue a change of the query to be journaled by the query journaler, if the state of the service is journaled.
+   *
+   * @param ctx  the query context
+   * @param type {@link ServiceStateJournal.RecordType#STATE} to journal the whole state of the query,
+   *             {@link ServiceStateJournal.RecordType#UPDATE} to journal only its driver status, or
+   *             {@link ServiceStateJournal.RecordType#REMOVED} if the query is removed
+   */
+  private void journalQuery(QueryContext ctx, ServiceStateJournal.RecordType type) {
+    if (getStateJournal() == null) {
+      return;
+    }
+    QueryHandle handle = ctx.getQueryHandle();
+    synchronized (pendingJournal) {
+      // a query changing again before it is journaled is journaled once, with its latest state
+      if (type == ServiceStateJournal.RecordType.REMOVED) {
+        pendingJournal.put(handle, null);
+        pendingJournalStates.remove(handle);
+      } else {
+        pendingJournal.put(handle, ctx);
+        if (type == ServiceStateJournal.RecordType.STATE) {
+          pendingJournalStates.add(handle);
+        }
+      }
+      pendingJournal.notifyAll();
+    }
+  }
+
   /**
-   * The Class QueryPurger.
+   * Journal the queued query changes in one batch, flushed once. A query whose whole state changed is journaled as a
+   * serialized query, a query whose status changed with its driver status is journaled as a compact driver status
+   * record.
+   */
+  private void journalPending() {
+    synchronized (journalLock) {
+      Map<QueryHandle, QueryContext> batch;
+      Set<QueryHandle> states;
+      synchronized (pendingJournal) {
+        if (pendingJournal.isEmpty()) {
+          return;
+        }
+        batch = new LinkedHashMap<QueryHandle, QueryContext>(pendingJournal);
+        states = new HashSet<QueryHandle>(pendingJournalStates);
+        pendingJournal.clear();
+        pendingJournalStates.clear();
+      }
+      ServiceStateJournal journal = getStateJournal();
+      for (Map.Entry<QueryHandle, QueryContext> entry : batch.entrySet()) {
+        QueryHandle handle = entry.getKey();
+        QueryContext ctx = entry.getValue();
+        try {
+          if (ctx == null) {
+            journal.append(handle.toString(), ServiceStateJournal.RecordType.REMOVED, null, false);
+          } else if (states.contains(handle)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            synchronized (ctx) {
+              writeQuery(ctx, out);
+            }
+            out.close();
+            journal.append(handle.toString(), ServiceStateJournal.RecordType.STATE, bytes.toByteArray(), false);
+          } else {
+            byte[] driverStatus;
+            synchronized (ctx) {
+              driverStatus = writeDriverStatus(ctx.getDriverStatus());
+            }
+            journal.append(handle.toString(), ServiceStateJournal.RecordType.UPDATE, driverStatus, false);
+          }
+        } catch (IOException e) {
+          log.error("Could not journal state of query {}", handle, e);
+        }
+      }
+      try {
+        journal.flush();
+      } catch (IOException e) {
+        log.error("Could not flush journal of {} queries", batch.size(), e);
+      }
+    }
+  }
+
+  /**
+   * The Class QueryJournaler. Journals queued query changes in batches, so that threads changing the state of queries
+   * do not wait for serializing queries or flushing the journal, and a single flush covers all changes queued
+   * meanwhile. Changes not yet journaled when the server stops are journaled when the snapshot is persisted on stop.
+   */
+  private class QueryJournaler implements Runnable {
+
+    @Override
+    public void run() {
+      log.info("Starting Query journaler thread");
+      while (!stopped && !queryJournaler.isInterrupted()) {
+        try {
+          synchronized (pendingJournal) {
+            while (pendingJournal.isEmpty()) {
+              pendingJournal.wait();
+            }
+          }
+          journalPending();
+        } catch (InterruptedException e) {
+          log.info("Query journaler interrupted");
+          break;
+        } catch (Throwable e) {
+          log.error("Query journaler giving error", e);
+        }
+      }
+      log.info("QueryJournaler exited");
+    }
+  }
+
+  /**
+   * The Class QueryPurger. Archives purgeable finished queries to the server DB in batches, and purges them from
+   * memory once archived. When archival fails, the purger backs off exponentially up to a configured interval.
    */
   private class QueryPurger implements Runnable {
 
@@ -893,62 +1349,27 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     @Override
     public void run() {
       log.info("Starting Query purger thread");
+      int consecutiveFailures = 0;
       while (!stopped && !queryPurger.isInterrupted()) {
         try {
+          boolean archived = true;
+          List<FinishedQuery> batch = new ArrayList<FinishedQuery>(purgeBatchSize);
           Iterator<FinishedQuery> iter = finishedQueries.iterator();
-          FinishedQuery finished;
-          while (iter.hasNext()) {
-            finished = iter.next();
+          while (archived && iter.hasNext()) {
+            FinishedQuery finished = iter.next();
             if (finished.canBePurged()) {
-              try {
-                FinishedLensQuery finishedQuery = new FinishedLensQuery(finished.getCtx());
-                if (finished.ctx.getStatus().getStatus() == SUCCESSFUL) {
-                  if (finished.ctx.getStatus().isResultSetAvailable()) {
-                    try {
-                      LensResultSet set = finished.getResultset();
-                      if (set != null && PersistentResultSet.class.isAssignableFrom(set.getClass())) {
-                        LensResultSetMetadata metadata = set.getMetadata();
-                        String outputPath = set.getOutputPath();
-                        Long fileSize = ((PersistentResultSet) set).getFileSize();
-                        Integer rows = set.size();
-                        finishedQuery.setResult(outputPath);
-                        finishedQuery.setMetadata(metadata.toJson());
-                        finishedQuery.setRows(rows);
-                        finishedQuery.setFileSize(fileSize);
-                      }
-                    } catch (Exception e) {
-                      log.error("Couldn't obtain result set info for the query: {}. Going ahead with purge",
-                        finished.getQueryHandle(), e);
-                    }
-                  }
-                }
-                lensServerDao.insertFinishedQuery(finishedQuery);
-                log.info("Saved query {} to DB", finishedQuery.getHandle());
-                iter.remove();
-              } catch (Exception e) {
-                log.warn("Exception while purging query {}", finished.getQueryHandle(), e);
-                continue;
-              }
-              synchronized (finished.ctx) {
-                finished.ctx.setFinishedQueryPersisted(true);
-                try {
-                  if (finished.getCtx().getSelectedDriver() != null) {
-                    finished.getCtx().getSelectedDriver().closeQuery(finished.getQueryHandle());
-                  }
-                } catch (Exception e) {
-                  log.warn("Exception while closing query with selected driver.", e);
-                }
-                log.info("Purging: {}", finished.getQueryHandle());
-                allQueries.remove(finished.getQueryHandle());
-                resultSets.remove(finished.getQueryHandle());
+              batch.add(finished);
+              if (batch.size() >= purgeBatchSize) {
+                archived = archiveAndPurge(batch);
+                batch.clear();
               }
-              fireStatusChangeEvent(finished.getCtx(),
-                new QueryStatus(1f, null, CLOSED, "Query purged", false, null, null, null), finished.getCtx()
-                  .getStatus());
-              log.info("Query purged: {}", finished.getQueryHandle());
             }
           }
-          Thread.sleep(purgeInterval);
+          if (archived) {
+            archived = archiveAndPurge(batch);
+          }
+          consecutiveFailures = archived ? 0 : consecutiveFailures + 1;
+          Thread.sleep(getPurgerSleepInterval(consecutiveFailures));
         } catch (InterruptedException e) {
           log.error("purger interrupted", e);
         } catch (Throwable e) {
@@ -958,6 +1379,103 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       }
       log.info("QueryPurger exited");
     }
+
+    /**
+     * Archive the finished queries in a single batch, and purge them. If the batch fails, queries are archived one by
+     * one, so that a query which can not be archived does not hold back the others.
+     *
+     * @param batch the finished queries
+     * @return false if none of the queries could be archived, true otherwise
+     */
+    private boolean archiveAndPurge(List<FinishedQuery> batch) {
+      if (batch.isEmpty()) {
+        return true;
+      }
+      Map<FinishedQuery, FinishedLensQuery> toArchive = new LinkedHashMap<FinishedQuery, FinishedLensQuery>();
+      for (FinishedQuery finished : batch) {
+        try {
+          toArchive.put(finished, toFinishedLensQuery(finished));
+        } catch (Exception e) {
+          log.warn("Exception while purging query {}", finished.getQueryHandle(), e);
+        }
+      }
+      List<FinishedQuery> archived = new ArrayList<FinishedQuery>(toArchive.size());
+      try {
+        lensServerDao.insertFinishedQueries(new ArrayList<FinishedLensQuery>(toArchive.values()));
+        archived.addAll(toArchive.keySet());
+        log.info("Saved {} queries to DB", archived.size());
+      } catch (SQLException e) {
+        log.warn("Exception while saving batch of {} queries to DB, saving them one by one", toArchive.size(), e);
+        for (Map.Entry<FinishedQuery, FinishedLensQuery> entry : toArchive.entrySet()) {
+          try {
+            lensServerDao.insertFinishedQuery(entry.getValue());
+            log.info("Saved query {} to DB", entry.getValue().getHandle());
+            archived.add(entry.getKey());
+          } catch (Exception ex) {
+            log.warn("Exception while purging query {}", entry.getKey().getQueryHandle(), ex);
+          }
+        }
+      }
+      finishedQueries.removeAll(new HashSet<FinishedQuery>(archived));
+      for (FinishedQuery finished : archived) {
+        purge(finished);
+      }
+      return !archived.isEmpty();
+    }
+
+    private FinishedLensQuery toFinishedLensQuery(FinishedQuery finished) {
+      FinishedLensQuery finishedQuery = new FinishedLensQuery(finished.getCtx());
+      if (finished.ctx.getStatus().getStatus() == SUCCESSFUL) {
+        if (finished.ctx.getStatus().isResultSetAvailable()) {
+          try {
+            LensResultSet set = finished.getResultset();
+            if (set != null && PersistentResultSet.class.isAssignableFrom(set.getClass())) {
+              LensResultSetMetadata metadata = set.getMetadata();
+              String outputPath = set.getOutputPath();
+              Long fileSize = ((PersistentResultSet) set).getFileSize();
+              Integer rows = set.size();
+              finishedQuery.setResult(outputPath);
+              finishedQuery.setMetadata(metadata.toJson());
+              finishedQuery.setRows(rows);
+              finishedQuery.setFileSize(fileSize);
+            }
+          } catch (Exception e) {
+            log.error("Couldn't obtain result set info for the query: {}. Going ahead with purge",
+              finished.getQueryHandle(), e);
+          }
+        }
+      }
+      return finishedQuery;
+    }
+
+    private void purge(FinishedQuery finished) {
+      synchronized (finished.ctx) {
+        finished.ctx.setFinishedQueryPersisted(true);
+        try {
+          if (finished.getCtx().getSelectedDriver() != null) {
+            finished.getCtx().getSelectedDriver().closeQuery(finished.getQueryHandle());
+          }
+        } catch (Exception e) {
+          log.warn("Exception while closing query with selected driver.", e);
+        }
+        log.info("Purging: {}", finished.getQueryHandle());
+        removeQuery(finished.getQueryHandle());
+        resultSets.remove(finished.getQueryHandle());
+        resultSetCursors.remove(finished.getQueryHandle());
+      }
+      fireStatusChangeEvent(finished.getCtx(),
+        new QueryStatus(1f, null, CLOSED, "Query purged", false, null, null, null), finished.getCtx()
+          .getStatus());
+      log.info("Query purged: {}", finished.getQueryHandle());
+    }
+
+    private long getPurgerSleepInterval(int consecutiveFailures) {
+      if (consecutiveFailures == 0) {
+        return purgeInterval;
+      }
+      long interval = (long) purgeInterval << Math.min(consecutiveFailures, 20);
+      return Math.max(purgeInterval, Math.min(interval, purgeMaxBackoffInterval));
+    }
   }
 
   /**
@@ -1020,7 +1538,9 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     ImmutableSet<WaitingQueriesSelectionPolicy> selectionPolicies = getImplementations(
       WAITING_QUERIES_SELECTION_POLICY_FACTORIES_KEY, hiveConf);
 
-    this.waitingQueriesSelector = new UnioningWaitingQueriesSelector(selectionPolicies);
+    this.waitingQueriesSelector = new ConstraintAwareWaitingQueriesSelector(
+      new UnioningWaitingQueriesSelector(selectionPolicies), queryConstraintsChecker, launchedQueries,
+      new QueryContextPriorityComparator());
 
     try {
       this.userQueryToCubeQueryRewriter = new UserQueryToCubeQueryRewriter(conf);
@@ -1040,6 +1560,22 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       throw new IllegalStateException("Could not load drivers", e);
     }
     purgeInterval = conf.getInt(PURGE_INTERVAL, DEFAULT_PURGE_INTERVAL);
+    purgeBatchSize = Math.max(1, conf.getInt(PURGE_BATCH_SIZE, DEFAULT_PURGE_BATCH_SIZE));
+    purgeMaxBackoffInterval = conf.getLong(PURGE_MAX_BACKOFF_INTERVAL, DEFAULT_PURGE_MAX_BACKOFF_INTERVAL);
+    statusPollSchedule = new QueryStatusPollSchedule(
+      conf.getLong(STATUS_POLL_MIN_INTERVAL_MILLIS, DEFAULT_STATUS_POLL_MIN_INTERVAL_MILLIS),
+      conf.getLong(STATUS_POLL_MAX_INTERVAL_MILLIS, DEFAULT_STATUS_POLL_MAX_INTERVAL_MILLIS),
+      conf.getFloat(STATUS_POLL_BACKOFF_FACTOR, DEFAULT_STATUS_POLL_BACKOFF_FACTOR));
+    maxResultPageRows = conf.getInt(RESULTSET_PAGE_MAX_ROWS, DEFAULT_RESULTSET_PAGE_MAX_ROWS);
+    long rewriteCacheEntries = conf.getLong(QUERY_REWRITE_CACHE_MAX_ENTRIES, DEFAULT_QUERY_REWRITE_CACHE_MAX_ENTRIES);
+    if (rewriteCacheEntries > 0) {
+      rewriteCache = new CubeQueryRewriteCache(rewriteCacheEntries,
+        conf.getLong(QUERY_REWRITE_CACHE_EXPIRY_MILLIS, DEFAULT_QUERY_REWRITE_CACHE_EXPIRY_MILLIS));
+    }
+    int launcherThreads = conf.getInt(QUERY_LAUNCHER_THREADS_PER_DRIVER, DEFAULT_QUERY_LAUNCHER_THREADS_PER_DRIVER);
+    for (LensDriver driver : drivers.values()) {
+      launchLanes.put(driver, new QueryLaunchLane(driver.getClass().getSimpleName(), launcherThreads));
+    }
     initalizeFinishedQueryStore(conf);
     log.info("Query execution service initialized");
   }
@@ -1067,9 +1603,13 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
   public void prepareStopping() {
     super.prepareStopping();
     querySubmitter.interrupt();
+    for (QueryLaunchLane lane : launchLanes.values()) {
+      lane.interrupt();
+    }
     statusPoller.interrupt();
     queryPurger.interrupt();
     prepareQueryPurger.interrupt();
+    queryJournaler.interrupt();
   }
 
   /*
@@ -1082,7 +1622,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
 
     waitingQueriesSelectionSvc.shutdown();
 
-    for (Thread th : new Thread[]{querySubmitter, statusPoller, queryPurger, prepareQueryPurger}) {
+    for (Thread th : new Thread[]{querySubmitter, statusPoller, queryPurger, prepareQueryPurger, queryJournaler}) {
       try {
         log.debug("Waiting for {}", th.getName());
         th.join();
@@ -1090,8 +1630,20 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
         log.error("Error waiting for thread: {}", th.getName(), e);
       }
     }
+    for (QueryLaunchLane lane : launchLanes.values()) {
+      lane.join();
+    }
 
-    estimatePool.shutdownNow();
+    synchronized (estimatePools) {
+      for (ExecutorService pool : estimatePools.values()) {
+        pool.shutdownNow();
+      }
+      estimatePools.clear();
+    }
+    for (ExecutorService pool : statusUpdatePools.values()) {
+      pool.shutdownNow();
+    }
+    statusUpdatePools.clear();
 
     if (null != queryResultPurger) {
       queryResultPurger.stop();
@@ -1127,12 +1679,17 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       }
     }
     super.start();
+    startStatusUpdatePools();
+    for (QueryLaunchLane lane : launchLanes.values()) {
+      lane.start();
+    }
     querySubmitter.start();
     statusPoller.start();
     queryPurger.start();
     prepareQueryPurger.start();
+    queryJournaler.start();
 
-    startEstimatePool();
+    startEstimatePools();
 
     if (conf.getBoolean(RESULTSET_PURGE_ENABLED, DEFAULT_RESULTSET_PURGE_ENABLED)) {
       queryResultPurger = new QueryResultPurger();
@@ -1142,32 +1699,73 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     }
   }
 
-  private void startEstimatePool() {
-    int minPoolSize = conf.getInt(ESTIMATE_POOL_MIN_THREADS,
-      DEFAULT_ESTIMATE_POOL_MIN_THREADS);
-    int maxPoolSize = conf.getInt(ESTIMATE_POOL_MAX_THREADS,
-      DEFAULT_ESTIMATE_POOL_MAX_THREADS);
-    int keepAlive = conf.getInt(ESTIMATE_POOL_KEEP_ALIVE_MILLIS,
-      DEFAULT_ESTIMATE_POOL_KEEP_ALIVE_MILLIS);
+  private void startStatusUpdatePools() {
+    int poolSize = conf.getInt(STATUS_UPDATE_THREADS_PER_DRIVER, DEFAULT_STATUS_UPDATE_THREADS_PER_DRIVER);
+    for (final LensDriver driver : drivers.values()) {
+      final String namePrefix = "StatusUpdate-" + driver.getClass().getSimpleName() + "-";
+      final AtomicInteger thId = new AtomicInteger();
+      ThreadFactory threadFactory = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread th = new Thread(r, namePrefix + thId.incrementAndGet());
+          th.setDaemon(true);
+          return th;
+        }
+      };
+      statusUpdatePools.put(driver, Executors.newFixedThreadPool(poolSize, threadFactory));
+    }
+    log.info("Started status update pools with {} threads per driver", poolSize);
+  }
+
+  private void startEstimatePools() {
+    for (LensDriver driver : drivers.values()) {
+      getEstimatePool(driver);
+    }
+  }
 
-    final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
-    final AtomicInteger thId = new AtomicInteger();
-    // We are creating our own thread factory, just so that we can override thread name for easy debugging
-    ThreadFactory threadFactory = new ThreadFactory() {
-      @Override
-      public Thread newThread(Runnable r) {
-        Thread th = defaultFactory.newThread(r);
-        th.setName("estimate-" + thId.incrementAndGet());
-        return th;
+  /**
+   * Get the pool running rewrites and estimates for the driver, creating it if it does not exist. Every driver has its
+   * own pool, so that a driver slow to estimate does not hold up estimates of other drivers. A pool grows up to its
+   * maximum threads before queuing tasks, and its threads are released when idle.
+   *
+   * @param driver the driver
+   * @return the estimate pool of the driver
+   */
+  private ThreadPoolExecutor getEstimatePool(LensDriver driver) {
+    synchronized (estimatePools) {
+      ThreadPoolExecutor estimatePool = estimatePools.get(driver);
+      if (estimatePool != null) {
+        return estimatePool;
       }
-    };
+      int minPoolSize = conf.getInt(ESTIMATE_POOL_MIN_THREADS, DEFAULT_ESTIMATE_POOL_MIN_THREADS);
+      int maxPoolSize = conf.getInt(ESTIMATE_POOL_MAX_THREADS, DEFAULT_ESTIMATE_POOL_MAX_THREADS);
+      int keepAlive = conf.getInt(ESTIMATE_POOL_KEEP_ALIVE_MILLIS, DEFAULT_ESTIMATE_POOL_KEEP_ALIVE_MILLIS);
+      int maxQueueSize = conf.getInt(ESTIMATE_POOL_MAX_QUEUE_SIZE, DEFAULT_ESTIMATE_POOL_MAX_QUEUE_SIZE);
+
+      final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+      final AtomicInteger thId = new AtomicInteger();
+      final String namePrefix = "estimate-" + driver.getClass().getSimpleName() + "-";
+      // We are creating our own thread factory, just so that we can override thread name for easy debugging
+      ThreadFactory threadFactory = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread th = defaultFactory.newThread(r);
+          th.setName(namePrefix + thId.incrementAndGet());
+          return th;
+        }
+      };
 
-    log.debug("starting estimate pool");
-    ThreadPoolExecutor estimatePool = new ThreadPoolExecutor(minPoolSize, maxPoolSize, keepAlive, TimeUnit.MILLISECONDS,
-      new LinkedBlockingQueue<Runnable>(), threadFactory);
-    estimatePool.allowCoreThreadTimeOut(true);
-    estimatePool.prestartCoreThread();
-    this.estimatePool = estimatePool;
+      log.debug("starting estimate pool for {}", driver);
+      // core threads time out, so the pool starts threads up to the max before queuing, and shrinks when idle
+      estimatePool = new ThreadPoolExecutor(maxPoolSize, maxPoolSize, keepAlive, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(maxQueueSize), threadFactory);
+      estimatePool.allowCoreThreadTimeOut(true);
+      for (int i = 0; i < minPoolSize && i < maxPoolSize; i++) {
+        estimatePool.prestartCoreThread();
+      }
+      estimatePools.put(driver, estimatePool);
+      return estimatePool;
+    }
   }
 
   private static final String REWRITE_GAUGE = "CUBE_REWRITE";
@@ -1190,11 +1788,13 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       // Initially we obtain individual runnables for rewrite and estimate calls
       // These are mapped against the driver, so that later it becomes easy to chain them
       // for each driver.
-      Map<LensDriver, RewriteUtil.DriverRewriterRunnable> rewriteRunnables = RewriteUtil.rewriteQuery(ctx);
+      Map<LensDriver, RewriteUtil.DriverRewriterRunnable> rewriteRunnables =
+        RewriteUtil.rewriteQuery(ctx, rewriteCache);
       Map<LensDriver, AbstractQueryContext.DriverEstimateRunnable> estimateRunnables = ctx.getDriverEstimateRunnables();
 
       int numDrivers = ctx.getDriverContext().getDrivers().size();
-      final CountDownLatch estimateCompletionLatch = new CountDownLatch(numDrivers);
+      final BlockingQueue<RewriteEstimateRunnable> completedRunnables =
+        new LinkedBlockingQueue<RewriteEstimateRunnable>();
       List<RewriteEstimateRunnable> runnables = new ArrayList<RewriteEstimateRunnable>(numDrivers);
       List<Future> estimateFutures = new ArrayList<Future>();
 
@@ -1202,37 +1802,61 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
         RewriteEstimateRunnable r = new RewriteEstimateRunnable(driver,
           rewriteRunnables.get(driver),
           estimateRunnables.get(driver),
-          ctx, estimateCompletionLatch);
+          ctx, completedRunnables);
 
-        // Submit composite rewrite + estimate operation to background pool
-        estimateFutures.add(estimatePool.submit(r));
+        // Submit composite rewrite + estimate operation to background pool of the driver
+        try {
+          estimateFutures.add(getEstimatePool(driver).submit(r));
+        } catch (RejectedExecutionException e) {
+          log.warn("Estimate pool of driver {} is full", driver);
+          r.rejected("Too many estimates pending for driver " + driver);
+          estimateFutures.add(null);
+        }
         runnables.add(r);
       }
 
-      // Wait for all rewrite and estimates to finish
+      // Wait for all rewrite and estimates to finish, or till the driver selector can select a driver
       try {
         long estimateLatchTimeout = ctx.getConf().getLong(ESTIMATE_TIMEOUT_MILLIS,
           DEFAULT_ESTIMATE_TIMEOUT_MILLIS);
-        boolean completed = estimateCompletionLatch.await(estimateLatchTimeout, TimeUnit.MILLISECONDS);
-
-        // log operations yet to complete and  check if we can proceed with at least one driver
-        if (!completed) {
-          int inCompleteDrivers = 0;
-
-          for (int i = 0; i < runnables.size(); i++) {
-            RewriteEstimateRunnable r = runnables.get(i);
-            if (!r.isCompleted()) {
-              ++inCompleteDrivers;
-              // Cancel the corresponding task
-              estimateFutures.get(i).cancel(true);
-              log.warn("Timeout reached for estimate task for driver {}" + r.getDriver());
-            }
+        long deadline = System.currentTimeMillis() + estimateLatchTimeout;
+        List<LensDriver> pendingDrivers = new ArrayList<LensDriver>(ctx.getDriverContext().getDrivers());
+        List<LensDriver> succeededDrivers = new ArrayList<LensDriver>(numDrivers);
+        boolean completed = true;
+        while (!pendingDrivers.isEmpty()) {
+          RewriteEstimateRunnable done = completedRunnables.poll(deadline - System.currentTimeMillis(),
+            TimeUnit.MILLISECONDS);
+          if (done == null) {
+            completed = false;
+            break;
+          }
+          pendingDrivers.remove(done.getDriver());
+          if (done.isSucceeded()) {
+            succeededDrivers.add(done.getDriver());
           }
+          if (!pendingDrivers.isEmpty() && canSelectEarly(ctx, succeededDrivers, pendingDrivers)) {
+            log.info("Selecting driver without waiting for estimates of {} drivers", pendingDrivers.size());
+            break;
+          }
+        }
 
-          if (inCompleteDrivers == ctx.getDriverContext().getDrivers().size()) {
-            throw new LensException("None of the drivers could complete within timeout: " + estimateLatchTimeout);
+        // cancel operations yet to complete and check if we can proceed with at least one driver
+        int inCompleteDrivers = 0;
+        for (int i = 0; i < runnables.size(); i++) {
+          RewriteEstimateRunnable r = runnables.get(i);
+          if (!r.isCompleted()) {
+            ++inCompleteDrivers;
+            // Cancel the corresponding task
+            estimateFutures.get(i).cancel(true);
+            if (!completed) {
+              log.warn("Timeout reached for estimate task for driver {}", r.getDriver());
+            }
           }
         }
+
+        if (inCompleteDrivers == ctx.getDriverContext().getDrivers().size()) {
+          throw new LensException("None of the drivers could complete within timeout: " + estimateLatchTimeout);
+        }
       } catch (InterruptedException exc) {
         throw new LensException("At least one of the estimate operation failed to complete in time", exc);
       }
@@ -1282,6 +1906,21 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     }
   }
 
+  /**
+   * Whether the driver selector can select one of the succeeded drivers without waiting for the pending ones.
+   */
+  private boolean canSelectEarly(AbstractQueryContext ctx, List<LensDriver> succeededDrivers,
+    List<LensDriver> pendingDrivers) {
+    if (driverSelector instanceof EarlyDriverSelector) {
+      for (LensDriver driver : succeededDrivers) {
+        if (((EarlyDriverSelector) driverSelector).canSelectEarly(ctx, driver, pendingDrivers, conf)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
   /**
    * Chains driver specific rewrite and estimate of the query in a single runnable, which can be processed in a
    * background thread
@@ -1292,7 +1931,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     private final RewriteUtil.DriverRewriterRunnable rewriterRunnable;
     private final AbstractQueryContext.DriverEstimateRunnable estimateRunnable;
     private final AbstractQueryContext ctx;
-    private final CountDownLatch estimateCompletionLatch;
+    private final BlockingQueue<RewriteEstimateRunnable> completedRunnables;
 
     @Getter
     private boolean succeeded;
@@ -1310,12 +1949,24 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       RewriteUtil.DriverRewriterRunnable rewriterRunnable,
       AbstractQueryContext.DriverEstimateRunnable estimateRunnable,
       AbstractQueryContext ctx,
-      CountDownLatch estimateCompletionLatch) {
+      BlockingQueue<RewriteEstimateRunnable> completedRunnables) {
       this.driver = driver;
       this.rewriterRunnable = rewriterRunnable;
       this.estimateRunnable = estimateRunnable;
       this.ctx = ctx;
-      this.estimateCompletionLatch = estimateCompletionLatch;
+      this.completedRunnables = completedRunnables;
+    }
+
+    /**
+     * Mark the rewrite and estimate as failed without running, as it could not be submitted.
+     *
+     * @param failureCause the failure cause
+     */
+    void rejected(String failureCause) {
+      this.succeeded = false;
+      this.failureCause = failureCause;
+      this.completed = true;
+      completedRunnables.offer(this);
     }
 
     @Override
@@ -1362,7 +2013,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
         } catch (LensException e) {
           log.error("Could not release session: {}", ctx.getLensSessionIdentifier(), e);
         } finally {
-          estimateCompletionLatch.countDown();
+          completedRunnables.offer(this);
         }
       }
     }
@@ -1440,13 +2091,46 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
           }
         }
       }
-      if (resultSets.get(queryHandle) instanceof InMemoryResultSet) {
-        ((InMemoryResultSet) resultSets.get(queryHandle)).seekToStart();
-      }
       return resultSets.get(queryHandle);
     }
   }
 
+  /**
+   * Gets the cursor over the in memory result set of the query, creating it on first access.
+   *
+   * @param queryHandle the query handle
+   * @param resultSet   the in memory result set of the query
+   * @return the cursor
+   */
+  private InMemoryResultSetCursor getResultSetCursor(QueryHandle queryHandle, InMemoryResultSet resultSet) {
+    synchronized (resultSetCursors) {
+      InMemoryResultSetCursor cursor = resultSetCursors.get(queryHandle);
+      if (cursor == null || cursor.getResultSet() != resultSet) {
+        cursor = new InMemoryResultSetCursor(resultSet, maxResultPageRows);
+        resultSetCursors.put(queryHandle, cursor);
+      }
+      return cursor;
+    }
+  }
+
+  /**
+   * Fetch a page of the query result. In memory results are read through a per query cursor, so only the
+   * requested rows are materialized. Persistent results are returned as their location.
+   *
+   * @param queryHandle the query handle
+   * @param startIndex  the index of the first row
+   * @param fetchSize   the number of rows to fetch, non positive for all rows from the start index
+   * @return the query result
+   * @throws LensException the lens exception
+   */
+  QueryResult fetchResult(QueryHandle queryHandle, long startIndex, int fetchSize) throws LensException {
+    LensResultSet resultSet = getResultset(queryHandle);
+    if (resultSet instanceof InMemoryResultSet) {
+      return getResultSetCursor(queryHandle, (InMemoryResultSet) resultSet).fetch(startIndex, fetchSize);
+    }
+    return resultSet.toQueryResult();
+  }
+
   /**
    * Gets the driver resultset.
    *
@@ -1676,7 +2360,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     ctx.setStatus(new QueryStatus(0.0, null, QUEUED, "Query is queued", false, null, null, null));
     queuedQueries.add(ctx);
     log.debug("Added to Queued Queries:{}", ctx.getQueryHandleString());
-    allQueries.put(ctx.getQueryHandle(), ctx);
+    addQuery(ctx);
     fireStatusChangeEvent(ctx, ctx.getStatus(), before);
     log.info("Returning handle {}", ctx.getQueryHandle().getHandleId());
     return ctx.getQueryHandle();
@@ -1851,39 +2535,57 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
    */
   private QueryHandleWithResultSet executeTimeoutInternal(LensSessionHandle sessionHandle, QueryContext ctx,
     long timeoutMillis, Configuration conf) throws LensException {
-    QueryHandle handle = submitQuery(ctx);
-    QueryHandleWithResultSet result = new QueryHandleWithResultSet(handle);
-    // getQueryContext calls updateStatus, which fires query events if there's a change in status
-
-    while (isQueued(sessionHandle, handle)) {
-      try {
-        Thread.sleep(10);
-      } catch (InterruptedException e) {
-        log.error("Encountered Interrupted exception.", e);
+    // registered before submission, so that leaving the queue is not missed
+    SettableFuture<Boolean> dequeued = SettableFuture.create();
+    dequeueWaiters.put(ctx.getQueryHandle(), dequeued);
+    QueryHandle handle;
+    try {
+      handle = submitQuery(ctx);
+      // getQueryContext calls updateStatus, which fires query events if there's a change in status
+      while (isQueued(sessionHandle, handle)) {
+        try {
+          dequeued.get(QUEUE_RECHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+          log.debug("Query {} still queued", handle);
+        } catch (InterruptedException e) {
+          log.error("Encountered Interrupted exception.", e);
+        } catch (ExecutionException e) {
+          log.warn("Error waiting for query {} to leave the queue", handle, e);
+        }
       }
+    } finally {
+      dequeueWaiters.remove(ctx.getQueryHandle());
     }
-    QueryCompletionListener listener = new QueryCompletionListenerImpl(handle);
+    QueryHandleWithResultSet result = new QueryHandleWithResultSet(handle);
+    QueryCompletionListenerImpl listener = new QueryCompletionListenerImpl(handle);
     if (getQueryContext(sessionHandle, handle).getSelectedDriver() == null) {
       result.setStatus(getQueryContext(sessionHandle, handle).getStatus());
       return result;
     }
+    boolean registered = false;
     synchronized (ctx) {
       if (!ctx.getStatus().finished()) {
         getQueryContext(sessionHandle, handle).getSelectedDriver()
           .registerForCompletionNotification(handle, timeoutMillis, listener);
-        try {
-          synchronized (listener) {
-            listener.wait(timeoutMillis);
-          }
-        } catch (InterruptedException e) {
-          log.info("Waiting thread interrupted");
-        }
+        registered = true;
+      }
+    }
+    // wait outside the lock on ctx, so that status updates of the query are not blocked
+    if (registered) {
+      try {
+        listener.getCompletion().get(timeoutMillis, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        log.info("Query {} did not finish in {} millis", handle, timeoutMillis);
+      } catch (InterruptedException e) {
+        log.info("Waiting thread interrupted");
+      } catch (ExecutionException e) {
+        log.warn("Error waiting for completion of query {}", handle, e);
       }
     }
 
     if (getQueryContext(sessionHandle, handle).getStatus().finished()) {
       if (getQueryContext(sessionHandle, handle).getStatus().isResultSetAvailable()) {
-        result.setResult(getResultset(handle).toQueryResult());
+        result.setResult(fetchResult(handle, 0, 0));
       }
     }
 
@@ -1916,6 +2618,12 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
      */
     QueryHandle handle;
 
+    /**
+     * Completes when the driver notifies completion or error, with whether the query succeeded.
+     */
+    @Getter
+    private final SettableFuture<Boolean> completion = SettableFuture.create();
+
     /**
      * Instantiates a new query completion listener impl.
      *
@@ -1936,7 +2644,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       synchronized (this) {
         succeeded = true;
         log.info("Query {} with time out succeeded", handle);
-        this.notify();
+        completion.set(true);
       }
     }
 
@@ -1951,7 +2659,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       synchronized (this) {
         succeeded = false;
         log.info("Query {} with time out failed", handle);
-        this.notify();
+        completion.set(false);
       }
     }
 
@@ -1992,9 +2700,10 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
   public QueryResult fetchResultSet(LensSessionHandle sessionHandle, QueryHandle queryHandle, long startIndex,
     int fetchSize) throws LensException {
     try {
-      log.info("FetchResultSet: session:{} query:{}", sessionHandle, queryHandle);
+      log.info("FetchResultSet: session:{} query:{} startIndex:{} fetchSize:{}", sessionHandle, queryHandle,
+        startIndex, fetchSize);
       acquire(sessionHandle);
-      return getResultset(queryHandle).toQueryResult();
+      return fetchResult(queryHandle, startIndex, fetchSize);
     } finally {
       release(sessionHandle);
     }
@@ -2012,6 +2721,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       log.info("CloseResultSet:session:{} query:{}", sessionHandle, queryHandle);
       acquire(sessionHandle);
       resultSets.remove(queryHandle);
+      resultSetCursors.remove(queryHandle);
       // Ask driver to close result set
       getQueryContext(queryHandle).getSelectedDriver().closeResultSet(queryHandle);
     } finally {
@@ -2062,6 +2772,18 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
   @Override
   public List<QueryHandle> getAllQueries(LensSessionHandle sessionHandle, String state, String userName, String driver,
     String queryName, long fromDate, long toDate) throws LensException {
+    return getAllQueries(sessionHandle, state, userName, driver, queryName, fromDate, toDate, null, -1);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.server.api.query.QueryExecutionService#getAllQueries(org.apache.lens.api.LensSessionHandle,
+   * java.lang.String, java.lang.String, java.lang.String, java.lang.String, long, long, java.lang.String, int)
+   */
+  @Override
+  public List<QueryHandle> getAllQueries(LensSessionHandle sessionHandle, String state, String userName, String driver,
+    String queryName, long fromDate, long toDate, String after, int limit) throws LensException {
     validateTimeRange(fromDate, toDate);
     userName = UtilityMethods.removeDomain(userName);
     try {
@@ -2080,41 +2802,71 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
         userName = getSession(sessionHandle).getLoggedInUser();
       }
       boolean filterByDriver = StringUtils.isNotBlank(driver);
+      QuerySubmissionKey afterKey = StringUtils.isBlank(after) ? null : getSubmissionKey(after);
 
-      List<QueryHandle> all = new ArrayList<QueryHandle>(allQueries.keySet());
-      Iterator<QueryHandle> itr = all.iterator();
-      while (itr.hasNext()) {
-        QueryHandle q = itr.next();
-        QueryContext context = allQueries.get(q);
-        long querySubmitTime = context.getSubmissionTime();
+      // queries in memory are looked up in the index of the user, in order of submission
+      SortedSet<QuerySubmissionKey> all = new TreeSet<QuerySubmissionKey>();
+      String indexUser = "all".equalsIgnoreCase(userName) ? null : userName;
+      for (QueryContext context : submittedQueries.getQueries(indexUser, fromDate, toDate, afterKey)) {
+        if (limit > 0 && all.size() >= limit) {
+          break;
+        }
         if ((filterByStatus && status != context.getStatus().getStatus())
           || (filterByQueryName && !context.getQueryName().toLowerCase().contains(queryName))
-          || (filterByDriver && !context.getSelectedDriver().getClass().getName().equalsIgnoreCase(driver))
-          || (!"all".equalsIgnoreCase(userName) && !userName.equalsIgnoreCase(context.getSubmittedUser()))
-          || (!(fromDate <= querySubmitTime && querySubmitTime <= toDate))) {
-          itr.remove();
+          || (filterByDriver && (context.getSelectedDriver() == null
+          || !context.getSelectedDriver().getClass().getName().equalsIgnoreCase(driver)))) {
+          continue;
         }
+        all.add(new QuerySubmissionKey(context));
       }
 
       // Unless user wants to get queries in 'non finished' state, get finished queries from DB as well
       if (status == null || status == CANCELED || status == SUCCESSFUL || status == FAILED) {
-        if ("all".equalsIgnoreCase(userName)) {
-          userName = null;
-        }
-        List<QueryHandle> persistedQueries = lensServerDao.findFinishedQueries(state, userName, driver, queryName,
-          fromDate, toDate);
+        List<QuerySubmissionKey> persistedQueries = lensServerDao.findFinishedQueries(state, indexUser, driver,
+          queryName, fromDate, toDate, afterKey, limit);
         if (persistedQueries != null && !persistedQueries.isEmpty()) {
           log.info("Adding persisted queries {}", persistedQueries.size());
           all.addAll(persistedQueries);
         }
       }
 
-      return all;
+      List<QueryHandle> handles = new ArrayList<QueryHandle>(all.size());
+      for (QuerySubmissionKey key : all) {
+        if (limit > 0 && handles.size() >= limit) {
+          break;
+        }
+        handles.add(key.getQueryHandle());
+      }
+      return handles;
     } finally {
       release(sessionHandle);
     }
   }
 
+  /**
+   * Get the position of a query, in memory or in the server DB, in the order of submission.
+   *
+   * @param handle the query handle
+   * @return the position
+   */
+  private QuerySubmissionKey getSubmissionKey(String handle) {
+    QueryHandle queryHandle;
+    try {
+      queryHandle = QueryHandle.fromString(handle);
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException("Invalid query handle " + handle, e);
+    }
+    QueryContext ctx = allQueries.get(queryHandle);
+    if (ctx != null) {
+      return new QuerySubmissionKey(ctx);
+    }
+    FinishedLensQuery finished = lensServerDao.getQuery(queryHandle.toString());
+    if (finished == null) {
+      throw new BadRequestException("Query not found " + handle);
+    }
+    return new QuerySubmissionKey(finished.getSubmissionTime(), finished.getHandle());
+  }
+
   /*
    * (non-Javadoc)
    *
@@ -2331,26 +3083,156 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       int numQueries = in.readInt();
 
       for (int i = 0; i < numQueries; i++) {
-        QueryContext ctx = (QueryContext) in.readObject();
-        ctx.initTransientState();
-
-        //Create DriverSelectorQueryContext by passing all the drivers and the user query
-        //Driver conf gets reset in start
-        DriverSelectorQueryContext driverCtx = new DriverSelectorQueryContext(ctx.getUserQuery(), new Configuration(),
-          drivers.values());
-        ctx.setDriverContext(driverCtx);
-        boolean driverAvailable = in.readBoolean();
-        // set the selected driver if available, if not available for the cases of queued queries,
-        // query service will do the selection from existing drivers and update
-        if (driverAvailable) {
-          String clsName = in.readUTF();
-          ctx.getDriverContext().setSelectedDriver(drivers.get(clsName));
-          ctx.setDriverQuery(ctx.getSelectedDriver(), ctx.getSelectedDriverQuery());
-        }
-        allQueries.put(ctx.getQueryHandle(), ctx);
-      }
-
-      // populate the query queues
+        QueryContext ctx = readQuery(in);
+        addQuery(ctx);
+      }
+    }
+    // query queues are populated once the journal is replayed, by recoverJournaledState
+  }
+
+  /**
+   * Replay the journaled query changes over the queries of the persisted snapshot, and populate the query queues.
+   * Records are grouped by query, and only the records needed to rebuild the latest state of every query are
+   * replayed, queries being deserialized in parallel. Queries restored from a snapshot holding queries, which are
+   * not in the journal, are journaled, since snapshots of a journaled service do not hold queries.
+   */
+  @Override
+  public void recoverJournaledState(List<ServiceStateJournal.Record> records)
+    throws IOException, ClassNotFoundException {
+    Map<String, List<ServiceStateJournal.Record>> latest = ServiceStateJournal.latestByKey(records);
+    if (!latest.isEmpty()) {
+      int numThreads = Math.min(Runtime.getRuntime().availableProcessors(), latest.size());
+      final AtomicInteger thId = new AtomicInteger();
+      ExecutorService replayPool = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread th = new Thread(r, "QueryJournalReplay-" + thId.incrementAndGet());
+          th.setDaemon(true);
+          return th;
+        }
+      });
+      Map<QueryHandle, Future<QueryContext>> replayed = new LinkedHashMap<QueryHandle, Future<QueryContext>>();
+      try {
+        for (final Map.Entry<String, List<ServiceStateJournal.Record>> entry : latest.entrySet()) {
+          final QueryHandle handle = QueryHandle.fromString(entry.getKey());
+          replayed.put(handle, replayPool.submit(new Callable<QueryContext>() {
+            @Override
+            public QueryContext call() throws Exception {
+              return replayQuery(handle, entry.getValue());
+            }
+          }));
+        }
+        synchronized (allQueries) {
+          for (Map.Entry<QueryHandle, Future<QueryContext>> entry : replayed.entrySet()) {
+            QueryContext ctx = getReplayedQuery(entry.getValue());
+            removeQuery(entry.getKey());
+            if (ctx != null) {
+              addQuery(ctx);
+            }
+          }
+        }
+      } finally {
+        replayPool.shutdownNow();
+      }
+      log.info("Replayed journaled changes of {} queries over persisted state with {} threads", latest.size(),
+        numThreads);
+    }
+    restoreQueryQueues();
+
+    for (QueryContext ctx : allQueries.values()) {
+      List<ServiceStateJournal.Record> queryRecords = latest.get(ctx.getQueryHandle().toString());
+      if (queryRecords == null || queryRecords.get(0).getType() != ServiceStateJournal.RecordType.STATE) {
+        journalQuery(ctx, ServiceStateJournal.RecordType.STATE);
+      }
+    }
+  }
+
+  /**
+   * Rebuild the latest state of a query from its journal records.
+   *
+   * @param handle  the query handle
+   * @param records the records of the query, as grouped by {@link ServiceStateJournal#latestByKey(List)}
+   * @return the query context, null if the query is removed
+   * @throws IOException            Signals that an I/O exception has occurred.
+   * @throws ClassNotFoundException the class not found exception
+   */
+  private QueryContext replayQuery(QueryHandle handle, List<ServiceStateJournal.Record> records)
+    throws IOException, ClassNotFoundException {
+    // the query restored from the snapshot, updates journaled without a state are applied over it
+    QueryContext ctx = allQueries.get(handle);
+    for (ServiceStateJournal.Record record : records) {
+      switch (record.getType()) {
+      case REMOVED:
+        return null;
+      case STATE:
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(record.getData()));
+        try {
+          ctx = readQuery(in);
+        } finally {
+          in.close();
+        }
+        break;
+      case UPDATE:
+        if (ctx == null) {
+          log.warn("Ignoring journaled driver status of unknown query {}", handle);
+        } else {
+          readDriverStatus(ctx, record.getData());
+        }
+        break;
+      }
+    }
+    return ctx;
+  }
+
+  private QueryContext getReplayedQuery(Future<QueryContext> replayed) throws IOException, ClassNotFoundException {
+    try {
+      return replayed.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while replaying query journal");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      } else if (e.getCause() instanceof ClassNotFoundException) {
+        throw (ClassNotFoundException) e.getCause();
+      }
+      throw new IOException("Could not replay query journal", e.getCause());
+    }
+  }
+
+  /**
+   * Read a query persisted by {@link #writeQuery(QueryContext, ObjectOutput)}.
+   *
+   * @param in the input
+   * @return the query context
+   * @throws IOException            Signals that an I/O exception has occurred.
+   * @throws ClassNotFoundException the class not found exception
+   */
+  private QueryContext readQuery(ObjectInput in) throws IOException, ClassNotFoundException {
+    QueryContext ctx = (QueryContext) in.readObject();
+    ctx.initTransientState();
+
+    //Create DriverSelectorQueryContext by passing all the drivers and the user query
+    //Driver conf gets reset in start
+    DriverSelectorQueryContext driverCtx = new DriverSelectorQueryContext(ctx.getUserQuery(), new Configuration(),
+      drivers.values());
+    ctx.setDriverContext(driverCtx);
+    boolean driverAvailable = in.readBoolean();
+    // set the selected driver if available, if not available for the cases of queued queries,
+    // query service will do the selection from existing drivers and update
+    if (driverAvailable) {
+      String clsName = in.readUTF();
+      ctx.getDriverContext().setSelectedDriver(drivers.get(clsName));
+      ctx.setDriverQuery(ctx.getSelectedDriver(), ctx.getSelectedDriverQuery());
+    }
+    return ctx;
+  }
+
+  /**
+   * Populate the query queues from the recovered queries.
+   */
+  private void restoreQueryQueues() {
+    synchronized (allQueries) {
       final List<QueryContext> allRestoredQueuedQueries = new LinkedList<QueryContext>();
       for (QueryContext ctx : allQueries.values()) {
         switch (ctx.getStatus().getStatus()) {
@@ -2373,7 +3255,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
           updateFinishedQuery(ctx, null);
           break;
         case CLOSED:
-          allQueries.remove(ctx.getQueryHandle());
+          removeQuery(ctx.getQueryHandle());
         }
       }
       queuedQueries.addAll(allRestoredQueuedQueries);
@@ -2399,23 +3281,126 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
         }
       }
     }
-    // persist allQueries
+    if (getStateJournal() != null) {
+      // queries are recovered from the journal, so that the snapshot does not grow with the number of queries
+      journalPending();
+      out.writeInt(0);
+      return;
+    }
+    // persist allQueries, locking every query only while it is written
+    List<QueryContext> queries;
     synchronized (allQueries) {
-      out.writeInt(allQueries.size());
-      for (QueryContext ctx : allQueries.values()) {
-        synchronized (ctx) {
-          out.writeObject(ctx);
-          boolean isDriverAvailable = (ctx.getSelectedDriver() != null);
-          out.writeBoolean(isDriverAvailable);
-          if (isDriverAvailable) {
-            out.writeUTF(ctx.getSelectedDriver().getClass().getName());
-          }
-        }
+      queries = new ArrayList<QueryContext>(allQueries.values());
+    }
+    out.writeInt(queries.size());
+    for (QueryContext ctx : queries) {
+      synchronized (ctx) {
+        writeQuery(ctx, out);
       }
-      log.info("Persisted {} queries", allQueries.size());
+    }
+    log.info("Persisted {} queries", queries.size());
+  }
+
+  /**
+   * Persist a query. Caller should hold the lock of the query context.
+   *
+   * @param ctx the query context
+   * @param out the output
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void writeQuery(QueryContext ctx, ObjectOutput out) throws IOException {
+    out.writeObject(ctx);
+    boolean isDriverAvailable = (ctx.getSelectedDriver() != null);
+    out.writeBoolean(isDriverAvailable);
+    if (isDriverAvailable) {
+      out.writeUTF(ctx.getSelectedDriver().getClass().getName());
     }
   }
 
+  /**
+   * Serialize the driver status of a query, which is all a running or executed status is set from.
+   *
+   * @param status the driver status
+   * @return the serialized driver status
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static byte[] writeDriverStatus(DriverQueryStatus status) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(status.getState().ordinal());
+    out.writeDouble(status.getProgress());
+    out.writeBoolean(status.isResultSetAvailable());
+    writeNullableString(out, status.getStatusMessage());
+    writeNullableString(out, status.getProgressMessage());
+    writeNullableString(out, status.getErrorMessage());
+    writeNullableLong(out, status.getDriverStartTime());
+    writeNullableLong(out, status.getDriverFinishTime());
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Apply a driver status serialized by {@link #writeDriverStatus(DriverQueryStatus)} to a query, and set the status
+   * of the query from it.
+   *
+   * @param ctx   the query context
+   * @param bytes the serialized driver status
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void readDriverStatus(QueryContext ctx, byte[] bytes) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+    DriverQueryStatus status = ctx.getDriverStatus();
+    status.setState(DriverQueryStatus.DriverQueryState.values()[in.readByte()]);
+    status.setProgress(in.readDouble());
+    status.setResultSetAvailable(in.readBoolean());
+    status.setStatusMessage(readNullableString(in));
+    status.setProgressMessage(readNullableString(in));
+    status.setErrorMessage(readNullableString(in));
+    status.setDriverStartTime(readNullableLong(in));
+    status.setDriverFinishTime(readNullableLong(in));
+    ctx.setStatusSkippingTransitionTest(status.toQueryStatus());
+  }
+
+  private static void writeNullableString(DataOutput out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+    } else {
+      // not writeUTF, which is limited to 64K bytes
+      byte[] bytes = value.getBytes("UTF-8");
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private static String readNullableString(DataInput in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+
+  private static void writeNullableLong(DataOutput out, Long value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeLong(value);
+    }
+  }
+
+  private static Long readNullableLong(DataInput in) throws IOException {
+    return in.readBoolean() ? in.readLong() : null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isStateJournaled() {
+    return true;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -2449,9 +3434,22 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       details.append("Query submitter thread is dead.");
     }
 
-    if (this.estimatePool.isShutdown() || this.estimatePool.isTerminated()) {
-      isHealthy = false;
-      details.append("Estimate Pool is dead.");
+    for (QueryLaunchLane lane : launchLanes.values()) {
+      if (!lane.isAlive()) {
+        isHealthy = false;
+        details.append("Query launcher thread is dead.");
+        break;
+      }
+    }
+
+    synchronized (estimatePools) {
+      for (Map.Entry<LensDriver, ThreadPoolExecutor> estimatePool : estimatePools.entrySet()) {
+        if (estimatePool.getValue().isShutdown() || estimatePool.getValue().isTerminated()) {
+          isHealthy = false;
+          details.append("Estimate Pool of ").append(estimatePool.getKey()).append(" is dead.");
+          break;
+        }
+      }
     }
 
     if (querySubmitterRunnable.pausedForTest) {
@@ -2551,7 +3549,11 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
 
   @Override
   public long getQueuedQueriesCount() {
-    return queuedQueries.size();
+    long count = queuedQueries.size();
+    for (QueryLaunchLane lane : launchLanes.values()) {
+      count += lane.size();
+    }
+    return count;
   }
 
   @Override
@@ -2569,6 +3571,17 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     return finishedQueries.size();
   }
 
+  @Override
+  public long getResultFormattingQueueSize() {
+    return resultFormatter == null ? 0 : resultFormatter.getQueueSize();
+  }
+
+  @Override
+  public long getFinishedQueryPurgeLag() {
+    FinishedQuery oldest = finishedQueries.peek();
+    return oldest == null ? 0 : Math.max(0, System.currentTimeMillis() - oldest.getFinishTime().getTime());
+  }
+
   /**
    * Handle driver session start.
    *
@@ -2772,14 +3785,12 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       .selectQueries(finishedQuery, this.waitingQueries);
 
     if (eligibleWaitingQueries.isEmpty()) {
-      log.debug("No queries eligible to move out of waiting state.");
+      log.debug("No waiting queries allowed to launch.");
       return;
     }
 
     waitingQueries.removeAll(eligibleWaitingQueries);
     queuedQueries.addAll(eligibleWaitingQueries);
-    if (log.isDebugEnabled()) {
-      log.debug("Added {} queries to queued queries", eligibleWaitingQueries.size());
-    }
+    log.debug("Added {} queries to queued queries", eligibleWaitingQueries.size());
   }
 }
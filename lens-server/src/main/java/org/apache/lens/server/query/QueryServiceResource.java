@@ -21,11 +21,14 @@ package org.apache.lens.server.query;
 import static org.apache.lens.server.error.LensServerErrorCode.NULL_OR_EMPTY_OR_BLANK_QUERY;
 import static org.apache.lens.server.error.LensServerErrorCode.SESSION_ID_NOT_PROVIDED;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.lens.api.APIResult;
 import org.apache.lens.api.APIResult.Status;
@@ -148,6 +151,9 @@ public class QueryServiceResource {
    * @param driver    Get queries submitted on a specific driver.
    * @param fromDate  from date to search queries in a time range, the range is inclusive(submitTime &gt;= fromDate)
    * @param toDate    to date to search queries in a time range, the range is inclusive(toDate &gt;= submitTime)
+   * @param after     If a query handle is passed, only queries submitted after it are returned. Queries are returned
+   *                  in order of submission time, so the last handle of a page gets the next page.
+   * @param limit     Maximum number of queries to return. By default, all the queries are returned.
    * @return List of {@link QueryHandle} objects
    */
   @GET
@@ -156,13 +162,14 @@ public class QueryServiceResource {
   public List<QueryHandle> getAllQueries(@QueryParam("sessionid") LensSessionHandle sessionid,
     @DefaultValue("") @QueryParam("state") String state, @DefaultValue("") @QueryParam("queryName") String queryName,
     @DefaultValue("") @QueryParam("user") String user, @DefaultValue("") @QueryParam("driver") String driver,
-    @DefaultValue("-1") @QueryParam("fromDate") long fromDate, @DefaultValue("-1") @QueryParam("toDate") long toDate) {
+    @DefaultValue("-1") @QueryParam("fromDate") long fromDate, @DefaultValue("-1") @QueryParam("toDate") long toDate,
+    @DefaultValue("") @QueryParam("after") String after, @DefaultValue("-1") @QueryParam("limit") int limit) {
     checkSessionId(sessionid);
     try {
       if (toDate == -1L) {
         toDate = Long.MAX_VALUE;
       }
-      return queryServer.getAllQueries(sessionid, state, user, driver, queryName, fromDate, toDate);
+      return queryServer.getAllQueries(sessionid, state, user, driver, queryName, fromDate, toDate, after, limit);
     } catch (LensException e) {
       throw new WebApplicationException(e);
     }
@@ -277,7 +284,7 @@ public class QueryServiceResource {
     boolean failed = false;
     try {
       handles = getAllQueries(sessionid, state, queryName, user, driver, fromDate,
-        toDate == -1L ? Long.MAX_VALUE : toDate);
+        toDate == -1L ? Long.MAX_VALUE : toDate, "", -1);
       for (QueryHandle handle : handles) {
         if (cancelQuery(sessionid, handle)) {
           numCancelled++;
@@ -729,6 +736,44 @@ public class QueryServiceResource {
     }
   }
 
+  /**
+   * Fetch the result set in compact binary columnar encoding, for clients accepting
+   * {@link ColumnarResultFormat#MEDIA_TYPE}. Only in memory results can be fetched this way, persistent results are
+   * refused as not acceptable, so that clients fall back to the other media types.
+   *
+   * @param sessionid   The user session handle
+   * @param queryHandle The query handle
+   * @param startIndex  start index of the result
+   * @param fetchSize   fetch size
+   * @return Response with rows streamed in row groups
+   */
+  @GET
+  @Path("queries/{queryHandle}/resultset")
+  // low server side quality, so that clients not asking for it explicitly keep getting the other media types
+  @Produces({ColumnarResultFormat.MEDIA_TYPE + ";qs=0.1"})
+  public Response getColumnarResultSet(@QueryParam("sessionid") LensSessionHandle sessionid,
+    @PathParam("queryHandle") String queryHandle, @QueryParam("fromindex") long startIndex,
+    @QueryParam("fetchsize") int fetchSize) {
+    checkSessionId(sessionid);
+    final QueryResult result;
+    try {
+      result = queryServer.fetchResultSet(sessionid, getQueryHandle(queryHandle), startIndex, fetchSize);
+    } catch (LensException e) {
+      throw new WebApplicationException(e);
+    }
+    if (!(result instanceof InMemoryQueryResult)) {
+      throw new NotAcceptableException("Result of " + queryHandle + " is not available in memory");
+    }
+    StreamingOutput output = new StreamingOutput() {
+      @Override
+      public void write(OutputStream out) throws IOException {
+        ColumnarResultFormat.write(((InMemoryQueryResult) result).getRows(), out,
+          ColumnarResultFormat.DEFAULT_ROW_GROUP_SIZE);
+      }
+    };
+    return Response.ok(output, ColumnarResultFormat.MEDIA_TYPE).build();
+  }
+
   /**
    * Get the http endpoint for result set.
    *
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.lens.api.query.QueryHandle;
+
+import lombok.Getter;
+
+/**
+ * Poll schedule of launched queries.
+ *
+ * A query is polled as soon as it is seen for the first time. Every poll which does not change the status of the
+ * query stretches the interval till the next poll by the backoff factor, up to the max interval, so that long running
+ * queries are polled less often. A status change brings the interval back to the min interval. Queries of drivers
+ * which push status changes are always polled at the max interval, as a safety net for lost notifications.
+ *
+ * A query is never handed out again while its previous poll is in progress.
+ */
+public class QueryStatusPollSchedule {
+
+  /**
+   * Interval between polls of a query whose status has just changed.
+   */
+  @Getter
+  private final long minIntervalMillis;
+
+  /**
+   * Upper bound of the interval between polls of a query.
+   */
+  @Getter
+  private final long maxIntervalMillis;
+
+  /**
+   * Factor by which the poll interval grows when a poll does not change the status.
+   */
+  @Getter
+  private final double backoffFactor;
+
+  private final ConcurrentMap<QueryHandle, Entry> entries = new ConcurrentHashMap<QueryHandle, Entry>();
+
+  /**
+   * Schedule of a single query.
+   */
+  private static class Entry {
+    private long nextPollTime;
+    private long interval;
+    private boolean polling;
+  }
+
+  public QueryStatusPollSchedule(long minIntervalMillis, long maxIntervalMillis, double backoffFactor) {
+    if (minIntervalMillis <= 0 || maxIntervalMillis < minIntervalMillis || backoffFactor < 1) {
+      throw new IllegalArgumentException("Invalid poll schedule. min interval:" + minIntervalMillis
+        + " max interval:" + maxIntervalMillis + " backoff factor:" + backoffFactor);
+    }
+    this.minIntervalMillis = minIntervalMillis;
+    this.maxIntervalMillis = maxIntervalMillis;
+    this.backoffFactor = backoffFactor;
+  }
+
+  /**
+   * Mark the query as being polled, if its poll is due.
+   *
+   * @param handle the query handle
+   * @param now    current time in millis
+   * @return true if the caller should poll the query now, false otherwise
+   */
+  public boolean tryStartPoll(QueryHandle handle, long now) {
+    Entry entry = entries.get(handle);
+    if (entry == null) {
+      Entry newEntry = new Entry();
+      newEntry.nextPollTime = now;
+      newEntry.interval = minIntervalMillis;
+      entry = entries.putIfAbsent(handle, newEntry);
+      if (entry == null) {
+        entry = newEntry;
+      }
+    }
+    synchronized (entry) {
+      if (entry.polling || entry.nextPollTime > now) {
+        return false;
+      }
+      entry.polling = true;
+      return true;
+    }
+  }
+
+  /**
+   * Record completion of a poll started with {@link #tryStartPoll(QueryHandle, long)} and schedule the next one.
+   *
+   * @param handle        the query handle
+   * @param now           current time in millis
+   * @param statusChanged whether the poll changed the status of the query
+   * @param pushSupported whether the driver of the query pushes status changes
+   */
+  public void pollCompleted(QueryHandle handle, long now, boolean statusChanged, boolean pushSupported) {
+    Entry entry = entries.get(handle);
+    if (entry == null) {
+      return;
+    }
+    synchronized (entry) {
+      if (pushSupported) {
+        entry.interval = maxIntervalMillis;
+      } else if (statusChanged) {
+        entry.interval = minIntervalMillis;
+      } else {
+        entry.interval = Math.min(maxIntervalMillis, (long) Math.ceil(entry.interval * backoffFactor));
+      }
+      entry.nextPollTime = now + entry.interval;
+      entry.polling = false;
+    }
+  }
+
+  /**
+   * Current poll interval of the query.
+   *
+   * @param handle the query handle
+   * @return the interval in millis, null if the query is not scheduled
+   */
+  public Long getInterval(QueryHandle handle) {
+    Entry entry = entries.get(handle);
+    if (entry == null) {
+      return null;
+    }
+    synchronized (entry) {
+      return entry.interval;
+    }
+  }
+
+  /**
+   * Drop the schedule of queries which are not in the given collection any more.
+   *
+   * @param handles handles of queries to be retained
+   */
+  public void retainAll(Collection<QueryHandle> handles) {
+    entries.keySet().retainAll(handles);
+  }
+
+  /**
+   * @return number of scheduled queries
+   */
+  public int size() {
+    return entries.size();
+  }
+}
@@ -0,0 +1,57 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.server.api.query.QueryContext;
+
+import lombok.Data;
+import lombok.NonNull;
+
+/**
+ * Position of a query in the order of submission, used to page through queries. Queries submitted at the same time
+ * are ordered by their handles.
+ */
+@Data
+public class QuerySubmissionKey implements Comparable<QuerySubmissionKey> {
+  private final long submissionTime;
+  @NonNull
+  private final String handle;
+
+  public QuerySubmissionKey(QueryContext ctx) {
+    this(ctx.getSubmissionTime(), ctx.getQueryHandleString());
+  }
+
+  public QuerySubmissionKey(long submissionTime, @NonNull String handle) {
+    this.submissionTime = submissionTime;
+    this.handle = handle;
+  }
+
+  public QueryHandle getQueryHandle() {
+    return QueryHandle.fromString(handle);
+  }
+
+  @Override
+  public int compareTo(QuerySubmissionKey other) {
+    if (submissionTime != other.submissionTime) {
+      return submissionTime < other.submissionTime ? -1 : 1;
+    }
+    return handle.compareTo(other.handle);
+  }
+}
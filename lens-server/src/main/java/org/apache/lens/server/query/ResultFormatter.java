@@ -18,6 +18,16 @@
  */
 package org.apache.lens.server.query;
 
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lens.api.Priority;
 import org.apache.lens.api.query.QueryHandle;
 import org.apache.lens.server.LensServices;
 import org.apache.lens.server.api.LensConfConstants;
@@ -26,6 +36,7 @@ import org.apache.lens.server.api.driver.LensResultSet;
 import org.apache.lens.server.api.driver.PersistentResultSet;
 import org.apache.lens.server.api.error.LensException;
 import org.apache.lens.server.api.events.AsyncEventListener;
+import org.apache.lens.server.api.events.LosslessEventListener;
 import org.apache.lens.server.api.metrics.MetricsService;
 import org.apache.lens.server.api.query.*;
 import org.apache.lens.server.model.LogSegregationContext;
@@ -39,23 +50,187 @@ import lombok.extern.slf4j.Slf4j;
 
 /**
  * The Class ResultFormatter.
+ * <p></p>
+ * Results are formatted by a pool of threads. Queries waiting to be formatted are taken in order of their priority,
+ * then in turns across the users submitting them, then smaller persisted results first, so that a large result does
+ * not hold up small ones. Sizes of persisted results are measured by the pool too, before the results are formatted,
+ * so that the thread delivering events does not wait for the file system. When too many queries are waiting, the
+ * thread delivering the event waits for one to be taken, which holds up later events of the formatter only, as the
+ * formatter has its own event queue and none of its events are dropped.
  */
 @Slf4j
-public class ResultFormatter extends AsyncEventListener<QueryExecuted> {
+public class ResultFormatter extends AsyncEventListener<QueryExecuted>
+  implements LosslessEventListener<QueryExecuted> {
 
   /** The query service. */
   QueryExecutionServiceImpl queryService;
 
   private final LogSegregationContext logSegregationContext;
 
+  /** Maximum number of queries waiting to be formatted */
+  private final int maxQueueSize;
+
+  /** Number of queries of each user, which are waiting to be formatted */
+  private final ConcurrentMap<String, AtomicInteger> waitingByUser = new ConcurrentHashMap<String, AtomicInteger>();
+
+  /** Sequence of formatting requests, to keep them in order of arrival otherwise */
+  private final AtomicLong sequence = new AtomicLong();
+
+  /** Permits for queries to wait to be formatted */
+  private final Semaphore queuePermits;
+
   /**
    * Instantiates a new result formatter.
    *
    * @param queryService the query service
    */
   public ResultFormatter(QueryExecutionServiceImpl queryService, @NonNull LogSegregationContext logSegregationContext) {
+    this(queryService, logSegregationContext, LensConfConstants.DEFAULT_RESULT_FORMATTER_POOL_SIZE,
+      LensConfConstants.DEFAULT_RESULT_FORMATTER_QUEUE_SIZE);
+  }
+
+  /**
+   * Instantiates a new result formatter.
+   *
+   * @param queryService          the query service
+   * @param logSegregationContext the log segregation context
+   * @param poolSize              number of threads formatting results
+   * @param maxQueueSize          maximum number of queries waiting to be formatted
+   */
+  public ResultFormatter(QueryExecutionServiceImpl queryService, @NonNull LogSegregationContext logSegregationContext,
+    int poolSize, int maxQueueSize) {
+    super(poolSize, new PriorityBlockingQueue<Runnable>(), 10, true);
     this.queryService = queryService;
     this.logSegregationContext = logSegregationContext;
+    this.maxQueueSize = maxQueueSize;
+    this.queuePermits = new Semaphore(Math.max(1, maxQueueSize));
+  }
+
+  /**
+   * Formatting of the result of a query, ordered by priority, fairness across users and result size. A task with a
+   * persisted result is run twice: first to measure the size of the result, after which it is queued again, then to
+   * format it.
+   */
+  private class FormatTask implements Runnable, Comparable<FormatTask> {
+    private final QueryExecuted event;
+    private final QueryContext ctx;
+    private final String user;
+    private final int priority;
+    /** Number of queries of the same user waiting, when this was queued */
+    private final int userTurn;
+    private final long seq;
+    /** Whether the size of the persisted result is measured, or there is nothing to measure */
+    private volatile boolean measured;
+    /** Size of the persisted result, null if not known */
+    private volatile Long resultSize;
+
+    FormatTask(QueryExecuted event, QueryContext ctx) {
+      this.event = event;
+      this.ctx = ctx;
+      this.user = ctx.getSubmittedUser();
+      this.priority = (ctx.getPriority() == null ? Priority.NORMAL : ctx.getPriority()).ordinal();
+      this.userTurn = getWaitingCount(user).incrementAndGet();
+      this.seq = sequence.incrementAndGet();
+      this.measured = !ctx.isResultAvailableInDriver() || ctx.getDriverResultPath() == null;
+    }
+
+    @Override
+    public void run() {
+      if (!measured) {
+        measured = true;
+        try {
+          resultSize = getPersistedResultSize(ctx);
+        } catch (IOException | IllegalArgumentException e) {
+          log.debug("Could not get size of result of {}", ctx.getQueryHandle(), e);
+        }
+        try {
+          // taken again once results waiting are measured, smaller first
+          processor.execute(this);
+          return;
+        } catch (RejectedExecutionException rejected) {
+          log.warn("Could not queue {} again, formatting it now", ctx.getQueryHandle(), rejected);
+        }
+      }
+      getWaitingCount(user).decrementAndGet();
+      queuePermits.release();
+      format(event, resultSize);
+    }
+
+    @Override
+    public int compareTo(FormatTask other) {
+      if (priority != other.priority) {
+        return priority < other.priority ? -1 : 1;
+      }
+      if (userTurn != other.userTurn) {
+        return userTurn < other.userTurn ? -1 : 1;
+      }
+      // measuring is quick, so that sizes of waiting results are known when picking one to format
+      if (measured != other.measured) {
+        return measured ? 1 : -1;
+      }
+      long size = resultSize == null ? 0 : resultSize;
+      long otherSize = other.resultSize == null ? 0 : other.resultSize;
+      if (size != otherSize) {
+        return size < otherSize ? -1 : 1;
+      }
+      return seq < other.seq ? -1 : (seq == other.seq ? 0 : 1);
+    }
+  }
+
+  private AtomicInteger getWaitingCount(String user) {
+    AtomicInteger count = waitingByUser.get(user);
+    if (count == null) {
+      waitingByUser.putIfAbsent(user, new AtomicInteger());
+      count = waitingByUser.get(user);
+    }
+    return count;
+  }
+
+  /**
+   * Get the size of the result persisted by the driver, which is the size of the result to be formatted.
+   *
+   * @param ctx the query context
+   * @return size of the persisted result
+   * @throws IOException if the size could not be had from the file system
+   */
+  private long getPersistedResultSize(QueryContext ctx) throws IOException {
+    Path persistedDirectory = new Path(ctx.getDriverResultPath());
+    FileSystem fs = persistedDirectory.getFileSystem(ctx.getConf());
+    return fs.getContentSummary(persistedDirectory).getLength();
+  }
+
+  /**
+   * Queues the formatting of the result. If too many are waiting, waits for one to be taken for formatting first.
+   *
+   * @param event the event
+   * @throws LensException the lens exception
+   */
+  @Override
+  public void onEvent(QueryExecuted event) throws LensException {
+    QueryContext ctx = queryService.getQueryContext(event.getQueryHandle());
+    if (ctx == null || !ctx.isPersistent()) {
+      process(event);
+      return;
+    }
+    if (!queuePermits.tryAcquire()) {
+      log.warn("{} queries are waiting for result formatting, waiting to queue {}", maxQueueSize,
+        event.getQueryHandle());
+      try {
+        queuePermits.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new LensException("Interrupted while waiting to queue result formatting of " + event.getQueryHandle(),
+          e);
+      }
+    }
+    FormatTask task = new FormatTask(event, ctx);
+    try {
+      processor.execute(task);
+    } catch (RejectedExecutionException rejected) {
+      getWaitingCount(task.user).decrementAndGet();
+      queuePermits.release();
+      throw new LensException(rejected);
+    }
   }
 
   /*
@@ -65,15 +240,33 @@ public class ResultFormatter extends AsyncEventListener<QueryExecuted> {
    */
   @Override
   public void process(QueryExecuted event) {
-    formatOutput(queryService.getQueryContext(event.getQueryHandle()));
+    format(event, null);
+  }
+
+  /**
+   * Formats the result of the query.
+   *
+   * @param event      the event
+   * @param resultSize size of the result persisted by the driver, null if it is to be measured
+   */
+  void format(QueryExecuted event, Long resultSize) {
+    formatOutput(queryService.getQueryContext(event.getQueryHandle()), resultSize);
+  }
+
+  /**
+   * @return number of queries waiting for their results to be formatted
+   */
+  public int getQueueSize() {
+    return eventQueue.size();
   }
 
   /**
    * Format output.
    *
-   * @param ctx the query context
+   * @param ctx                 the query context
+   * @param persistedResultSize size of the result persisted by the driver, null if it is to be measured
    */
-  private void formatOutput(QueryContext ctx) {
+  private void formatOutput(QueryContext ctx, Long persistedResultSize) {
     QueryHandle queryHandle = ctx.getQueryHandle();
     this.logSegregationContext.setLogSegragationAndQueryId(ctx.getQueryHandleString());
     try {
@@ -86,9 +279,7 @@ public class ResultFormatter extends AsyncEventListener<QueryExecuted> {
         LensResultSet resultSet = queryService.getDriverResultset(queryHandle);
         boolean isPersistedInDriver = resultSet instanceof PersistentResultSet;
         if (isPersistedInDriver) {          // skip result formatting if persisted size is huge
-          Path persistedDirectory = new Path(ctx.getDriverResultPath());
-          FileSystem fs = persistedDirectory.getFileSystem(ctx.getConf());
-          long size = fs.getContentSummary(persistedDirectory).getLength();
+          long size = persistedResultSize != null ? persistedResultSize : getPersistedResultSize(ctx);
           long threshold = ctx.getConf().getLong(LensConfConstants.RESULT_FORMAT_SIZE_THRESHOLD,
             LensConfConstants.DEFAULT_RESULT_FORMAT_SIZE_THRESHOLD);
           log.info(" size :{} threshold:{}", size, threshold);
@@ -129,6 +320,7 @@ public class ResultFormatter extends AsyncEventListener<QueryExecuted> {
         } finally {
           formatter.close();
         }
+        markFormatted(formatter);
         queryService.setSuccessState(ctx);
         log.info("Result formatter has completed. Final path:{}", formatter.getFinalOutputPath());
       }
@@ -144,6 +336,19 @@ public class ResultFormatter extends AsyncEventListener<QueryExecuted> {
     }
   }
 
+  private void markFormatted(QueryOutputFormatter formatter) {
+    MetricsService metricsService = LensServices.get().getService(MetricsService.NAME);
+    if (metricsService == null) {
+      return;
+    }
+    if (formatter.getNumRows() != null) {
+      metricsService.markMeter(ResultFormatter.class, "formatted-rows", formatter.getNumRows());
+    }
+    if (formatter.getFileSize() != null) {
+      metricsService.markMeter(ResultFormatter.class, "formatted-bytes", formatter.getFileSize());
+    }
+  }
+
   /**
    * Creates the and set formatter.
    *
@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.apache.lens.server.api.query.QueryContext;
+
+import lombok.NonNull;
+
+/**
+ * Index of the queries held in memory, by submitting user and in order of submission, so that the queries of a user
+ * in a time range are listed without going through all the queries.
+ */
+class SubmittedQueryIndex {
+
+  private final ConcurrentSkipListMap<QuerySubmissionKey, QueryContext> allUsers =
+    new ConcurrentSkipListMap<QuerySubmissionKey, QueryContext>();
+  private final ConcurrentMap<String, ConcurrentSkipListMap<QuerySubmissionKey, QueryContext>> byUser =
+    new ConcurrentHashMap<String, ConcurrentSkipListMap<QuerySubmissionKey, QueryContext>>();
+
+  void add(@NonNull QueryContext ctx) {
+    QuerySubmissionKey key = new QuerySubmissionKey(ctx);
+    allUsers.put(key, ctx);
+    String user = ctx.getSubmittedUser().toLowerCase();
+    ConcurrentSkipListMap<QuerySubmissionKey, QueryContext> userQueries = byUser.get(user);
+    if (userQueries == null) {
+      byUser.putIfAbsent(user, new ConcurrentSkipListMap<QuerySubmissionKey, QueryContext>());
+      userQueries = byUser.get(user);
+    }
+    userQueries.put(key, ctx);
+  }
+
+  void remove(@NonNull QueryContext ctx) {
+    QuerySubmissionKey key = new QuerySubmissionKey(ctx);
+    allUsers.remove(key);
+    ConcurrentSkipListMap<QuerySubmissionKey, QueryContext> userQueries =
+      byUser.get(ctx.getSubmittedUser().toLowerCase());
+    if (userQueries != null) {
+      userQueries.remove(key);
+    }
+  }
+
+  void clear() {
+    allUsers.clear();
+    byUser.clear();
+  }
+
+  /**
+   * Get the queries submitted in a time range, in order of submission. The returned view reflects queries added or
+   * removed while it is iterated.
+   *
+   * @param user     the submitting user, null for queries of all users
+   * @param fromDate start of the time range, inclusive
+   * @param toDate   end of the time range, inclusive
+   * @param after    only queries after this position are returned, null to return all queries in the time range
+   * @return the queries
+   */
+  Collection<QueryContext> getQueries(String user, long fromDate, long toDate, QuerySubmissionKey after) {
+    NavigableMap<QuerySubmissionKey, QueryContext> queries = user == null ? allUsers : byUser.get(user.toLowerCase());
+    if (queries == null || fromDate > toDate) {
+      return Collections.emptyList();
+    }
+    QuerySubmissionKey from = new QuerySubmissionKey(fromDate, "");
+    boolean fromInclusive = true;
+    if (after != null && after.compareTo(from) >= 0) {
+      from = after;
+      fromInclusive = false;
+    }
+    if (toDate == Long.MAX_VALUE) {
+      return queries.tailMap(from, fromInclusive).values();
+    }
+    QuerySubmissionKey to = new QuerySubmissionKey(toDate + 1, "");
+    if (from.compareTo(to) >= 0) {
+      return Collections.emptyList();
+    }
+    return queries.subMap(from, fromInclusive, to, false).values();
+  }
+}
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.collect;
+
+import java.util.*;
+
+import org.apache.lens.server.api.driver.LensDriver;
+import org.apache.lens.server.api.query.FinishedLensQuery;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.collect.EstimatedImmutableQueryCollection;
+import org.apache.lens.server.api.query.cost.QueryCost;
+import org.apache.lens.server.query.constraint.QueryLaunchingConstraintsChecker;
+
+import com.google.common.collect.Sets;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Selects, among the waiting queries eligible by a {@link WaitingQueriesSelector}, only the queries which launching
+ * constraints would allow to launch.
+ *
+ * Eligible queries are checked in priority order against the launched queries, and every query allowed to launch is
+ * counted as launched while checking the queries after it. So a finished query releases as many waiting queries as
+ * the capacity it frees, instead of all the eligible queries, most of which would fail launching constraints and go
+ * back to waiting.
+ */
+@Slf4j
+public class ConstraintAwareWaitingQueriesSelector implements WaitingQueriesSelector {
+
+  private final WaitingQueriesSelector eligibleQueriesSelector;
+  private final QueryLaunchingConstraintsChecker constraintsChecker;
+  private final EstimatedImmutableQueryCollection launchedQueries;
+  private final Comparator<QueryContext> priorityComparator;
+
+  public ConstraintAwareWaitingQueriesSelector(@NonNull final WaitingQueriesSelector eligibleQueriesSelector,
+    @NonNull final QueryLaunchingConstraintsChecker constraintsChecker,
+    @NonNull final EstimatedImmutableQueryCollection launchedQueries,
+    @NonNull final Comparator<QueryContext> priorityComparator) {
+    this.eligibleQueriesSelector = eligibleQueriesSelector;
+    this.constraintsChecker = constraintsChecker;
+    this.launchedQueries = launchedQueries;
+    this.priorityComparator = priorityComparator;
+  }
+
+  /**
+   * @param finishedQuery
+   * @param waitingQueries
+   * @return Eligible waiting queries allowed to launch, in priority order
+   */
+  @Override
+  public Set<QueryContext> selectQueries(final FinishedLensQuery finishedQuery,
+    final EstimatedImmutableQueryCollection waitingQueries) {
+    List<QueryContext> candidates = new ArrayList<QueryContext>(
+      eligibleQueriesSelector.selectQueries(finishedQuery, waitingQueries));
+    Collections.sort(candidates, priorityComparator);
+
+    LaunchedAndSelectedQueries launchedAndSelected = new LaunchedAndSelectedQueries(launchedQueries);
+    for (QueryContext candidate : candidates) {
+      if (constraintsChecker.canLaunch(candidate, launchedAndSelected)) {
+        launchedAndSelected.select(candidate);
+      }
+    }
+    log.debug("Selected {} of {} eligible waiting queries", launchedAndSelected.selected.size(), candidates.size());
+    return launchedAndSelected.selected;
+  }
+
+  /**
+   * Launched queries, together with the waiting queries selected so far. Query counts of drivers and query costs of
+   * users are read from launched queries once, and the counts and costs of selected queries are added to them.
+   */
+  private static class LaunchedAndSelectedQueries implements EstimatedImmutableQueryCollection {
+    private final EstimatedImmutableQueryCollection launchedQueries;
+    private final Set<QueryContext> selected = new LinkedHashSet<QueryContext>();
+    private final Map<LensDriver, Integer> launchedCount = new HashMap<LensDriver, Integer>();
+    private final Map<LensDriver, Integer> selectedCount = new HashMap<LensDriver, Integer>();
+    private final Map<String, QueryCost> launchedCost = new HashMap<String, QueryCost>();
+    private final Map<String, QueryCost> selectedCost = new HashMap<String, QueryCost>();
+
+    LaunchedAndSelectedQueries(final EstimatedImmutableQueryCollection launchedQueries) {
+      this.launchedQueries = launchedQueries;
+    }
+
+    void select(final QueryContext query) {
+      selected.add(query);
+      LensDriver driver = query.getSelectedDriver();
+      Integer count = selectedCount.get(driver);
+      selectedCount.put(driver, count == null ? 1 : count + 1);
+      String user = query.getSubmittedUser();
+      QueryCost cost = selectedCost.get(user);
+      selectedCost.put(user, cost == null ? query.getSelectedDriverQueryCost()
+        : cost.add(query.getSelectedDriverQueryCost()));
+    }
+
+    @Override
+    public Set<QueryContext> getQueries(final LensDriver driver) {
+      Set<QueryContext> queries = Sets.newLinkedHashSet(launchedQueries.getQueries(driver));
+      for (QueryContext query : selected) {
+        if (driver.equals(query.getSelectedDriver())) {
+          queries.add(query);
+        }
+      }
+      return queries;
+    }
+
+    @Override
+    public int getQueriesCount(final LensDriver driver) {
+      Integer count = launchedCount.get(driver);
+      if (count == null) {
+        count = launchedQueries.getQueriesCount(driver);
+        launchedCount.put(driver, count);
+      }
+      Integer selectedDriverCount = selectedCount.get(driver);
+      return selectedDriverCount == null ? count : count + selectedDriverCount;
+    }
+
+    @Override
+    public QueryCost getTotalQueryCost(final String user) {
+      QueryCost cost = launchedCost.get(user);
+      if (cost == null) {
+        cost = launchedQueries.getTotalQueryCost(user);
+        launchedCost.put(user, cost);
+      }
+      QueryCost selectedUserCost = selectedCost.get(user);
+      return selectedUserCost == null ? cost : cost.add(selectedUserCost);
+    }
+
+    @Override
+    public Set<QueryContext> getQueries() {
+      return Sets.newLinkedHashSet(Sets.union(launchedQueries.getQueries(), selected));
+    }
+
+    @Override
+    public Set<QueryContext> getQueries(final String user) {
+      Set<QueryContext> queries = Sets.newLinkedHashSet(launchedQueries.getQueries(user));
+      for (QueryContext query : selected) {
+        if (user.equals(query.getSubmittedUser())) {
+          queries.add(query);
+        }
+      }
+      return queries;
+    }
+
+    @Override
+    public int getQueriesCount() {
+      return launchedQueries.getQueriesCount() + selected.size();
+    }
+
+    @Override
+    public Integer getQueryIndex(final QueryContext query) {
+      return launchedQueries.getQueryIndex(query);
+    }
+  }
+}
@@ -19,23 +19,16 @@
 
 package org.apache.lens.server.query.collect;
 
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.*;
 
 import org.apache.lens.server.api.driver.LensDriver;
 import org.apache.lens.server.api.query.QueryContext;
 import org.apache.lens.server.api.query.cost.FactPartitionBasedQueryCost;
 import org.apache.lens.server.api.query.cost.QueryCost;
 
-import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.collections.map.MultiValueMap;
-
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Sets;
+import com.google.common.collect.ImmutableSet;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
@@ -44,6 +37,11 @@ import lombok.extern.slf4j.Slf4j;
  * Implementation which creates multiple in memory views of queries existing in lens system and owns responsibility of
  * keeping all the views consistent with each other.
  *
+ * Query counts of drivers and total query costs of users are kept up to date as queries are added and removed, so
+ * that launching constraints can read them without iterating over queries. As {@link QueryCost} can only be added,
+ * total query cost of a user is dropped when one of the user's queries is removed, and summed again from the user's
+ * queries on the next read.
+ *
  * @see EstimatedQueryCollection
  *
  */
@@ -51,7 +49,10 @@ import lombok.extern.slf4j.Slf4j;
 public class DefaultEstimatedQueryCollection implements EstimatedQueryCollection {
 
   private final QueryCollection queries;
-  private final MultiValueMap queriesByDriver = MultiValueMap.decorate(new HashMap(), LinkedHashSet.class);
+  private final Map<LensDriver, Set<QueryContext>> queriesByDriver = new HashMap<LensDriver, Set<QueryContext>>();
+  private final Map<LensDriver, ImmutableSet<QueryContext>> driverQueriesSnapshots
+    = new HashMap<LensDriver, ImmutableSet<QueryContext>>();
+  private final Map<String, QueryCost> totalQueryCostByUser = new HashMap<String, QueryCost>();
 
   public DefaultEstimatedQueryCollection(@NonNull final QueryCollection queries) {
     this.queries = queries;
@@ -59,19 +60,37 @@ public class DefaultEstimatedQueryCollection implements EstimatedQueryCollection
 
   @Override
   public Set<QueryContext> getQueries(final LensDriver driver) {
-    final Collection<QueryContext> driverQueries = getQueriesCollectionForDriver(driver);
-    return Sets.newLinkedHashSet(driverQueries);
+    ImmutableSet<QueryContext> driverQueries = driverQueriesSnapshots.get(driver);
+    if (driverQueries == null) {
+      final Set<QueryContext> driverQueriesSet = queriesByDriver.get(driver);
+      if (driverQueriesSet == null) {
+        return ImmutableSet.of();
+      }
+      driverQueries = ImmutableSet.copyOf(driverQueriesSet);
+      driverQueriesSnapshots.put(driver, driverQueries);
+    }
+    return driverQueries;
   }
 
   @Override
   public int getQueriesCount(final LensDriver driver) {
-    return getQueriesCollectionForDriver(driver).size();
+    final Set<QueryContext> driverQueries = queriesByDriver.get(driver);
+    return driverQueries != null ? driverQueries.size() : 0;
   }
 
   @Override
   public QueryCost getTotalQueryCost(final String user) {
 
-    return getTotalQueryCost(this.queries.getQueries(user));
+    QueryCost totalQueryCost = totalQueryCostByUser.get(user);
+    if (totalQueryCost == null) {
+      final Set<QueryContext> userQueries = this.queries.getQueries(user);
+      totalQueryCost = getTotalQueryCost(userQueries);
+      if (!userQueries.isEmpty()) {
+        totalQueryCostByUser.put(user, totalQueryCost);
+      }
+    }
+    log.debug("Total Query Cost:{}", totalQueryCost);
+    return totalQueryCost;
   }
 
   /**
@@ -83,7 +102,19 @@ public class DefaultEstimatedQueryCollection implements EstimatedQueryCollection
   @Override
   public boolean add(QueryContext query) {
     checkState(query);
-    this.queriesByDriver.put(query.getSelectedDriver(), query);
+    final LensDriver driver = query.getSelectedDriver();
+    Set<QueryContext> driverQueries = queriesByDriver.get(driver);
+    if (driverQueries == null) {
+      driverQueries = new LinkedHashSet<QueryContext>();
+      queriesByDriver.put(driver, driverQueries);
+    }
+    if (driverQueries.add(query)) {
+      driverQueriesSnapshots.remove(driver);
+      final QueryCost totalQueryCost = totalQueryCostByUser.get(query.getSubmittedUser());
+      if (totalQueryCost != null) {
+        totalQueryCostByUser.put(query.getSubmittedUser(), totalQueryCost.add(query.getSelectedDriverQueryCost()));
+      }
+    }
     return this.queries.add(query);
   }
 
@@ -109,7 +140,15 @@ public class DefaultEstimatedQueryCollection implements EstimatedQueryCollection
    */
   @Override
   public boolean remove(QueryContext query) {
-    this.queriesByDriver.remove(query.getSelectedDriver());
+    final LensDriver driver = query.getSelectedDriver();
+    final Set<QueryContext> driverQueries = queriesByDriver.get(driver);
+    if (driverQueries != null && driverQueries.remove(query)) {
+      if (driverQueries.isEmpty()) {
+        queriesByDriver.remove(driver);
+      }
+      driverQueriesSnapshots.remove(driver);
+      totalQueryCostByUser.remove(query.getSubmittedUser());
+    }
     return this.queries.remove(query);
   }
 
@@ -149,26 +188,17 @@ public class DefaultEstimatedQueryCollection implements EstimatedQueryCollection
     Preconditions.checkState(query.getSelectedDriverQueryCost() != null);
   }
 
-  private Collection<QueryContext> getQueriesCollectionForDriver(final LensDriver driver) {
-
-    final Collection<QueryContext> driverQueries = queriesByDriver.getCollection(driver);
-    return driverQueries != null ? driverQueries : CollectionUtils.EMPTY_COLLECTION;
-  }
-
   private QueryCost getTotalQueryCost(final Collection<QueryContext> queries) {
 
-    if (queries.isEmpty()) {
+    final Iterator<QueryContext> iterator = queries.iterator();
+    if (!iterator.hasNext()) {
       return new FactPartitionBasedQueryCost(0);
     }
 
-    QueryContext query0 = Iterables.get(queries, 0);
-    QueryCost totalQueryCost = query0.getSelectedDriverQueryCost();
-
-    for (QueryContext query : queries) {
-      QueryCost queryCost = query.getSelectedDriverQueryCost();
-      totalQueryCost = totalQueryCost.add(queryCost);
+    QueryCost totalQueryCost = iterator.next().getSelectedDriverQueryCost();
+    while (iterator.hasNext()) {
+      totalQueryCost = totalQueryCost.add(iterator.next().getSelectedDriverQueryCost());
     }
-    log.debug("Total Query Cost:{}", totalQueryCost);
     return totalQueryCost;
   }
 }
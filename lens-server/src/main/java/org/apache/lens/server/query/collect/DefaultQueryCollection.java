@@ -21,10 +21,12 @@ package org.apache.lens.server.query.collect;
 import java.util.*;
 
 import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.util.OrderStatisticTree;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.map.MultiValueMap;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
@@ -41,8 +43,35 @@ public class DefaultQueryCollection implements QueryCollection {
   private final Set<QueryContext> queries;
   private final MultiValueMap queriesByUser = MultiValueMap.decorate(new HashMap(), LinkedHashSet.class);
 
+  /**
+   * Index over queries in the iteration order of {@link #queries}, answering the position of a query in O(log n).
+   */
+  private final OrderStatisticTree<QueryContext> queryIndex;
+
+  /**
+   * Insertion sequence of queries, which defines the order of {@link #queryIndex} when queries are kept in insertion
+   * order. null when queries are kept sorted by a comparator.
+   */
+  private final Map<QueryContext, Long> insertionSequence;
+  private long nextSequence;
+
+  /**
+   * Immutable snapshots handed out by {@link #getQueries()} and {@link #getQueries(String)}. A snapshot is built on the
+   * first read after a change and shared by all reads until the next change, so reads do not copy the queries.
+   */
+  private ImmutableSet<QueryContext> queriesSnapshot;
+  private final Map<String, ImmutableSet<QueryContext>> userQueriesSnapshots
+    = new HashMap<String, ImmutableSet<QueryContext>>();
+
   public DefaultQueryCollection() {
     this.queries = Sets.newLinkedHashSet();
+    this.insertionSequence = new HashMap<QueryContext, Long>();
+    this.queryIndex = new OrderStatisticTree<QueryContext>(new Comparator<QueryContext>() {
+      @Override
+      public int compare(QueryContext o1, QueryContext o2) {
+        return insertionSequence.get(o1).compareTo(insertionSequence.get(o2));
+      }
+    });
   }
 
   public DefaultQueryCollection(@NonNull final Set<QueryContext> queries) {
@@ -52,8 +81,11 @@ public class DefaultQueryCollection implements QueryCollection {
 
   public DefaultQueryCollection(final TreeSet<QueryContext> treeSet) {
     this.queries = treeSet;
+    this.insertionSequence = null;
+    this.queryIndex = new OrderStatisticTree<QueryContext>(treeSet.comparator());
     for (QueryContext query : treeSet) {
       queriesByUser.put(query.getSubmittedUser(), query);
+      queryIndex.add(query);
     }
   }
 
@@ -61,7 +93,15 @@ public class DefaultQueryCollection implements QueryCollection {
   public boolean add(final QueryContext query) {
 
     queriesByUser.put(query.getSubmittedUser(), query);
-    return queries.add(query);
+    boolean added = queries.add(query);
+    if (added) {
+      if (insertionSequence != null) {
+        insertionSequence.put(query, nextSequence++);
+      }
+      queryIndex.add(query);
+      invalidateSnapshots(query);
+    }
+    return added;
   }
 
   @Override
@@ -77,7 +117,15 @@ public class DefaultQueryCollection implements QueryCollection {
   @Override
   public boolean remove(final QueryContext query) {
     queriesByUser.remove(query.getSubmittedUser(), query);
-    return queries.remove(query);
+    boolean removed = queries.remove(query);
+    if (removed) {
+      queryIndex.remove(query);
+      if (insertionSequence != null) {
+        insertionSequence.remove(query);
+      }
+      invalidateSnapshots(query);
+    }
+    return removed;
   }
 
   @Override
@@ -92,13 +140,24 @@ public class DefaultQueryCollection implements QueryCollection {
 
   @Override
   public Set<QueryContext> getQueries() {
-    return Sets.newHashSet(queries);
+    if (queriesSnapshot == null) {
+      queriesSnapshot = ImmutableSet.copyOf(queries);
+    }
+    return queriesSnapshot;
   }
 
   @Override
   public Set<QueryContext> getQueries(final String user) {
-    final Collection<QueryContext> userQueries = getQueriesCollectionForUser(user);
-    return Sets.newLinkedHashSet(userQueries);
+    ImmutableSet<QueryContext> userQueries = userQueriesSnapshots.get(user);
+    if (userQueries == null) {
+      final Collection<QueryContext> userQueriesCollection = getQueriesCollectionForUser(user);
+      if (userQueriesCollection.isEmpty()) {
+        return ImmutableSet.of();
+      }
+      userQueries = ImmutableSet.copyOf(userQueriesCollection);
+      userQueriesSnapshots.put(user, userQueries);
+    }
+    return userQueries;
   }
 
   @Override
@@ -108,22 +167,22 @@ public class DefaultQueryCollection implements QueryCollection {
 
 
   /**
-   *  Since the collection is a linkedHashSet, the order of queries is always maintained.
-   * @param query
-   * @return
+   * Position of the query in the iteration order of the collection, looked up from the index in O(log n).
+   *
+   * @param query the query
+   * @return one based position of the query, null if the query is not in the collection
    */
   @Override
   public Integer getQueryIndex(QueryContext query) {
-    Iterator iterator = queries.iterator();
-    int index = 1;
-    while (iterator.hasNext()) {
-      QueryContext queuedQuery = (QueryContext) iterator.next();
-      if (queuedQuery.getQueryHandle().equals(query.getQueryHandle())) {
-        return index;
-      }
-      index += 1;
+    if (insertionSequence != null && !insertionSequence.containsKey(query)) {
+      return null;
     }
-    return null;
+    return queryIndex.rank(query);
+  }
+
+  private void invalidateSnapshots(final QueryContext query) {
+    queriesSnapshot = null;
+    userQueriesSnapshots.remove(query.getSubmittedUser());
   }
 
   private Collection<QueryContext> getQueriesCollectionForUser(final String user) {
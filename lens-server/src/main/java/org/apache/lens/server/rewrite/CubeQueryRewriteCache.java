@@ -0,0 +1,235 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.rewrite;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.lens.cube.metadata.*;
+import org.apache.lens.cube.parse.CandidateTable;
+import org.apache.lens.cube.parse.CubeQueryContext;
+import org.apache.lens.cube.parse.DateUtil;
+import org.apache.lens.driver.cube.RewriterPlan;
+import org.apache.lens.server.api.error.LensException;
+
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Data;
+import lombok.NonNull;
+
+/**
+ * Bounded cache of rewritten cube queries.
+ *
+ * A rewrite is cached with the tables it depends on: the cube, all its facts, the dimensions queried, all their
+ * dimension tables, and the storage tables of all of them. The rewrite is treated as stale once any of these tables,
+ * or their partitions, are changed through the cube metastore client of the database it was done in. Entries also
+ * expire after a configured time, which bounds the staleness caused by changes done outside the lens server.
+ *
+ * Dates relative to now in time ranges are resolved before the query is looked up, so queries over relative time
+ * ranges share a rewrite till the resolved range moves.
+ */
+public class CubeQueryRewriteCache {
+
+  /** Time range functions and their arguments. */
+  private static final Pattern TIME_RANGE = Pattern.compile(CubeQueryContext.TIME_RANGE_FUNC + "\\s*\\(([^)]*)\\)",
+    Pattern.CASE_INSENSITIVE);
+
+  /** Quoted arguments of time range functions. */
+  private static final Pattern QUOTED = Pattern.compile("'([^']*)'|\"([^\"]*)\"");
+
+  private final Cache<Key, CachedRewrite> cache;
+
+  /**
+   * Key of a cached rewrite.
+   */
+  @Data
+  static class Key {
+    private final String database;
+    private final Map<String, String> rewriteConf;
+    private final String cubeQuery;
+  }
+
+  /**
+   * Result of rewriting a cube query.
+   */
+  @Data
+  public static class CachedRewrite {
+    private final String hql;
+    /** Plan of the cube query, to be combined into the plan of the user query and never modified. */
+    private final RewriterPlan plan;
+    /** Names of the tables the rewrite depends on. */
+    private final Set<String> tables;
+    /** Metastore version read before the rewrite started. */
+    private final long metastoreVersion;
+  }
+
+  public CubeQueryRewriteCache(long maxEntries, long expiryMillis) {
+    this.cache = CacheBuilder.newBuilder().maximumSize(maxEntries)
+      .expireAfterWrite(expiryMillis, TimeUnit.MILLISECONDS).build();
+  }
+
+  /**
+   * Gets the form of the cube query under which its rewrite is cached, which has dates relative to now in time ranges
+   * resolved. The query should be rewritten in this form, so that the rewrite matches the key it is cached with.
+   *
+   * @param cubeQuery the cube query
+   * @param now       the time to resolve relative dates with
+   * @return the query with absolute time ranges, null if its rewrite can not be cached, which is when a time range
+   * ends now or is relative to now without a granularity
+   */
+  public static String getCacheableQuery(@NonNull String cubeQuery, @NonNull Date now) {
+    StringBuffer resolved = new StringBuffer();
+    Matcher timeRange = TIME_RANGE.matcher(cubeQuery);
+    while (timeRange.find()) {
+      StringBuffer resolvedArgs = new StringBuffer();
+      Matcher quoted = QUOTED.matcher(timeRange.group(1));
+      int dates = 0;
+      while (quoted.find()) {
+        dates++;
+        String date = quoted.group(1) != null ? quoted.group(1) : quoted.group(2);
+        if (DateUtil.RELDATE_VALIDATOR.matcher(date).matches()) {
+          Matcher relative = DateUtil.P_RELATIVE.matcher(date);
+          if (relative.find() && relative.group(2) == null) {
+            // resolves to a different date every millisecond
+            return null;
+          }
+          try {
+            date = DateUtil.formatDate(DateUtil.resolveDate(date, now));
+          } catch (LensException e) {
+            // left to the rewrite to report
+            return null;
+          }
+          quoted.appendReplacement(resolvedArgs, Matcher.quoteReplacement("'" + date + "'"));
+        }
+      }
+      if (dates < 2) {
+        // time range till now
+        return null;
+      }
+      quoted.appendTail(resolvedArgs);
+      String function = timeRange.group().substring(0, timeRange.start(1) - timeRange.start());
+      timeRange.appendReplacement(resolved, Matcher.quoteReplacement(function + resolvedArgs + ")"));
+    }
+    timeRange.appendTail(resolved);
+    return resolved.toString();
+  }
+
+  /**
+   * Gets names of the tables the rewrite of the cube query depends on.
+   *
+   * @param cubeQueryContext context of the rewritten cube query
+   * @return the table names
+   * @throws HiveException if the tables could not be read from the metastore
+   */
+  public static Set<String> getTablesUsed(CubeQueryContext cubeQueryContext) throws HiveException {
+    CubeMetastoreClient client = cubeQueryContext.getMetastoreClient();
+    Set<String> tables = new HashSet<String>();
+    CubeInterface cube = cubeQueryContext.getCube();
+    if (cube != null) {
+      tables.add(cube.getName().toLowerCase());
+      if (cube instanceof DerivedCube) {
+        tables.add(((DerivedCube) cube).getParent().getName().toLowerCase());
+      }
+      // facts which are not picked can become candidates after a change
+      for (CubeFactTable fact : client.getAllFacts(cube)) {
+        addTablesUsed(tables, fact);
+      }
+    }
+    Set<Dimension> dimensions = new HashSet<Dimension>(cubeQueryContext.getDimensions());
+    if (cubeQueryContext.getPickedDimTables() != null) {
+      for (CandidateTable dimTable : cubeQueryContext.getPickedDimTables()) {
+        dimensions.add((Dimension) dimTable.getBaseTable());
+      }
+    }
+    for (Dimension dimension : dimensions) {
+      tables.add(dimension.getName().toLowerCase());
+      for (CubeDimensionTable dimTable : client.getAllDimensionTables(dimension)) {
+        addTablesUsed(tables, dimTable);
+      }
+    }
+    return tables;
+  }
+
+  private static void addTablesUsed(Set<String> tables, AbstractCubeTable table) {
+    tables.add(table.getName().toLowerCase());
+    for (String storage : table.getStorages()) {
+      tables.add(MetastoreUtil.getFactOrDimtableStorageTableName(table.getName(), storage).toLowerCase());
+    }
+  }
+
+  private static boolean isStale(CachedRewrite rewrite, CubeMetastoreClient metastoreClient) {
+    for (String table : rewrite.getTables()) {
+      if (metastoreClient.getVersion(table) > rewrite.getMetastoreVersion()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets the cached rewrite of the cube query, unless any table it depends on changed since it was cached.
+   *
+   * @param database        the database in which query is rewritten
+   * @param rewriteConf     the cube rewrite configuration
+   * @param cubeQuery       the cube query, as returned by {@link #getCacheableQuery(String, Date)}
+   * @param metastoreClient the cube metastore client of the database
+   * @return the cached rewrite, null if there is none
+   */
+  public CachedRewrite get(String database, Map<String, String> rewriteConf, String cubeQuery,
+    CubeMetastoreClient metastoreClient) {
+    Key key = new Key(database, rewriteConf, cubeQuery);
+    CachedRewrite rewrite = cache.getIfPresent(key);
+    if (rewrite != null && isStale(rewrite, metastoreClient)) {
+      cache.invalidate(key);
+      return null;
+    }
+    return rewrite;
+  }
+
+  /**
+   * Caches the rewrite of the cube query, unless any table it depends on changed while it was rewritten.
+   *
+   * @param database        the database in which query is rewritten
+   * @param rewriteConf     the cube rewrite configuration
+   * @param cubeQuery       the cube query, as returned by {@link #getCacheableQuery(String, Date)}
+   * @param rewrite         the rewrite
+   * @param metastoreClient the cube metastore client of the database
+   */
+  public void put(String database, Map<String, String> rewriteConf, String cubeQuery, CachedRewrite rewrite,
+    CubeMetastoreClient metastoreClient) {
+    if (!isStale(rewrite, metastoreClient)) {
+      cache.put(new Key(database, rewriteConf, cubeQuery), rewrite);
+    }
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  public void clear() {
+    cache.invalidateAll();
+  }
+}
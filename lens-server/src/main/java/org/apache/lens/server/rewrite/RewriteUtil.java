@@ -19,12 +19,16 @@
 package org.apache.lens.server.rewrite;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.lens.cube.metadata.CubeMetastoreClient;
 import org.apache.lens.cube.parse.CubeQueryContext;
 import org.apache.lens.cube.parse.CubeQueryRewriter;
 import org.apache.lens.cube.parse.HQLParser;
@@ -38,8 +42,10 @@ import org.apache.lens.server.api.query.AbstractQueryContext;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.parse.ASTNode;
 import org.apache.hadoop.hive.ql.parse.HiveParser;
+import org.apache.hadoop.hive.ql.session.SessionState;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -213,22 +219,51 @@ public final class RewriteUtil {
   private static final String REWRITE_QUERY_GAUGE = RewriteUtil.class.getSimpleName() + "-rewriteQuery";
   private static final String TOHQL_GAUGE = RewriteUtil.class.getSimpleName() + "-rewriteQuery-toHQL";
 
+  /** Prefix of configuration keys which drive the cube rewrite. */
+  private static final String CUBE_REWRITE_CONF_REGEX = "^lens\\.cube\\..*";
+
   /**
    * Rewrite query.
    *
+   * Drivers with identical cube rewrite configuration share a single rewrite of the query, since the rewritten query
+   * and the rewriter plan would be the same for each of them.
+   *
    * @param ctx the query context
    * @return the map
    * @throws LensException the lens exception
    */
   public static Map<LensDriver, DriverRewriterRunnable> rewriteQuery(AbstractQueryContext ctx) throws LensException {
+    return rewriteQuery(ctx, null);
+  }
+
+  /**
+   * Rewrite query, reusing rewrites of cube queries from the cache when possible.
+   *
+   * @param ctx   the query context
+   * @param cache the cube query rewrite cache, null if rewrites should not be cached
+   * @return the map
+   * @throws LensException the lens exception
+   */
+  public static Map<LensDriver, DriverRewriterRunnable> rewriteQuery(AbstractQueryContext ctx,
+    CubeQueryRewriteCache cache) throws LensException {
     try {
 
       String replacedQuery = getReplacedQuery(ctx.getPhase1RewrittenQuery());
       Map<LensDriver, DriverRewriterRunnable> runnables = new LinkedHashMap<LensDriver, DriverRewriterRunnable>();
       List<RewriteUtil.CubeQueryInfo> cubeQueries = findCubePositions(replacedQuery, ctx.getHiveConf());
+      Map<Map<String, String>, CubeRewrite> rewrites = new HashMap<Map<String, String>, CubeRewrite>();
 
       for (LensDriver driver : ctx.getDriverContext().getDrivers()) {
-        runnables.put(driver, new DriverRewriterRunnable(driver, ctx, cubeQueries, replacedQuery));
+        Configuration driverConf = ctx.getDriverContext().getDriverConf(driver);
+        Map<String, String> rewriteConf = getCubeRewriteConf(driverConf);
+        CubeRewrite rewrite = rewrites.get(rewriteConf);
+        if (rewrite == null) {
+          rewrite = new CubeRewrite(ctx, driverConf, rewriteConf, cubeQueries, replacedQuery, cache);
+          rewrites.put(rewriteConf, rewrite);
+        } else {
+          log.debug("Sharing cube rewrite of query {} with driver {}", ctx.getLogHandle(), driver);
+        }
+        runnables.put(driver, new DriverRewriterRunnable(driver, ctx, replacedQuery, rewrite));
       }
 
       return runnables;
@@ -245,66 +280,80 @@ public final class RewriteUtil {
     }
   }
 
+  /**
+   * Gets the part of configuration which can change the result of cube rewrite.
+   *
+   * @param conf the driver conf
+   * @return the cube rewrite configuration
+   */
+  static Map<String, String> getCubeRewriteConf(Configuration conf) {
+    return conf == null ? new HashMap<String, String>() : conf.getValByRegex(CUBE_REWRITE_CONF_REGEX);
+  }
+
   public static DriverQueryPlan getRewriterPlan(DriverRewriterRunnable rewriter) {
-    RewriterPlan plan = new RewriterPlan(rewriter.cubeQueryCtx);
-    return plan;
+    return rewriter.rewrite.plan;
   }
 
-  public static class DriverRewriterRunnable implements Runnable {
-    @Getter
-    private final LensDriver driver;
+  /**
+   * Rewrite of the cube queries of a user query, shared by all drivers with the same cube rewrite configuration. The
+   * rewrite is done by whichever driver gets to it first, the others wait for it and reuse the result.
+   */
+  static class CubeRewrite {
     private final AbstractQueryContext ctx;
+    private final Configuration conf;
+    private final Map<String, String> rewriteConf;
     private final List<CubeQueryInfo> cubeQueries;
     private final String replacedQuery;
-    /** Cube query context - set after rewriting */
-    private List<CubeQueryContext> cubeQueryCtx;
+    private final CubeQueryRewriteCache cache;
 
-    @Getter
-    /** Indicate if rewrite operation succeeded */
-    private boolean succeeded;
-
-    @Getter
-    /** Get cause of rewrite failure if rewrite operation failed */
-    private String failureCause = null;
-
-    @Getter
-    private LensException cause;
-
-    @Getter
-    /** Get eventual rewritten query */
+    private boolean done;
+    /** Rewriter plan of the cube query contexts - set after rewriting */
+    private DriverQueryPlan plan;
     private String rewrittenQuery;
+    private Exception failure;
 
-    public DriverRewriterRunnable(LensDriver driver,
-                                  AbstractQueryContext ctx,
-                                  List<CubeQueryInfo> cubeQueries,
-                                  String replacedQuery) {
-      this.driver = driver;
+    CubeRewrite(AbstractQueryContext ctx, Configuration conf, Map<String, String> rewriteConf,
+      List<CubeQueryInfo> cubeQueries, String replacedQuery, CubeQueryRewriteCache cache) {
       this.ctx = ctx;
+      this.conf = conf;
+      this.rewriteConf = rewriteConf;
       this.cubeQueries = cubeQueries;
       this.replacedQuery = replacedQuery;
-      if (cubeQueries != null) {
-        cubeQueryCtx = new ArrayList<CubeQueryContext>(cubeQueries.size());
-      }
+      this.cache = cache;
     }
 
-    @Override
-    public void run() {
-      String lowerCaseQuery = replacedQuery.toLowerCase();
-      if (lowerCaseQuery.startsWith("add") || lowerCaseQuery.startsWith("set")) {
-        rewrittenQuery = replacedQuery;
+    synchronized void rewrite() {
+      if (done) {
         return;
       }
+      try {
+        doRewrite();
+      } catch (Exception e) {
+        failure = e;
+      } finally {
+        done = true;
+      }
+    }
 
-      MethodMetricsContext rewriteGauge = MethodMetricsFactory
-          .createMethodGauge(ctx.getDriverConf(driver), true, REWRITE_QUERY_GAUGE);
+    private void doRewrite() throws LensException, HiveException {
       StringBuilder builder = new StringBuilder();
       int start = 0;
       CubeQueryRewriter rewriter = null;
+      List<RewriterPlan> plans = new ArrayList<RewriterPlan>(cubeQueries.size());
+      String database = null;
+      CubeMetastoreClient metastoreClient = null;
+      long metastoreVersion = 0;
+      Date now = null;
       try {
         if (cubeQueries.size() > 0) {
-          // avoid creating rewriter if there are no cube queries
-          rewriter = getCubeRewriter(ctx.getDriverContext().getDriverConf(driver), ctx.getHiveConf());
           ctx.setOlapQuery(true);
+          if (cache != null && SessionState.get() != null) {
+            database = SessionState.get().getCurrentDatabase();
+            metastoreClient = CubeMetastoreClient.getInstance(ctx.getHiveConf());
+            // version has to be read before rewriting, so that changes made during rewrite are not missed
+            metastoreVersion = metastoreClient.getVersion();
+            now = new Date();
+          }
         }
 
         // We have to rewrite each sub cube query which might be present in the original
@@ -317,14 +366,45 @@ public final class RewriteUtil {
             builder.append(replacedQuery.substring(start, cqi.startPos));
           }
 
-          // Parse and rewrite individual cube query
-          CubeQueryContext cqc = rewriter.rewrite(cqi.query);
-          MethodMetricsContext toHQLGauge = MethodMetricsFactory
-              .createMethodGauge(ctx.getDriverConf(driver), true, qIndex + "-" + TOHQL_GAUGE);
-          // toHQL actually generates the rewritten query
-          String hqlQuery = cqc.toHQL();
-          cubeQueryCtx.add(cqc);
-          toHQLGauge.markSuccess();
+          String cubeQuery = cqi.query;
+          String cacheableQuery = null;
+          CubeQueryRewriteCache.CachedRewrite cached = null;
+          if (database != null) {
+            cacheableQuery = CubeQueryRewriteCache.getCacheableQuery(cqi.query, now);
+            if (cacheableQuery != null) {
+              // rewrite with resolved time ranges, so that the rewrite matches the query it is cached with
+              cubeQuery = cacheableQuery;
+              cached = cache.get(database, rewriteConf, cacheableQuery, metastoreClient);
+            }
+          }
+          String hqlQuery;
+          if (cached != null) {
+            log.debug("Using cached rewrite of cube query: {}", cqi.query);
+            hqlQuery = cached.getHql();
+            plans.add(cached.getPlan());
+          } else {
+            if (rewriter == null) {
+              // avoid creating rewriter if all cube queries are cached
+              rewriter = getCubeRewriter(conf, ctx.getHiveConf());
+            }
+            // Parse and rewrite individual cube query
+            CubeQueryContext cqc = rewriter.rewrite(cubeQuery);
+            MethodMetricsContext toHQLGauge = MethodMetricsFactory
+                .createMethodGauge(conf, true, qIndex + "-" + TOHQL_GAUGE);
+            // toHQL actually generates the rewritten query
+            hqlQuery = cqc.toHQL();
+            RewriterPlan cubeQueryPlan = new RewriterPlan(Collections.singleton(cqc));
+            plans.add(cubeQueryPlan);
+            toHQLGauge.markSuccess();
+            if (cacheableQuery != null) {
+              try {
+                cache.put(database, rewriteConf, cacheableQuery, new CubeQueryRewriteCache.CachedRewrite(hqlQuery,
+                  cubeQueryPlan, CubeQueryRewriteCache.getTablesUsed(cqc), metastoreVersion), metastoreClient);
+              } catch (HiveException e) {
+                log.warn("Not caching rewrite of cube query: {}", cqi.query, e);
+              }
+            }
+          }
           qIndex++;
 
           log.debug("Rewritten query:{}", hqlQuery);
@@ -335,25 +415,87 @@ public final class RewriteUtil {
 
         builder.append(replacedQuery.substring(start));
 
+        plan = RewriterPlan.combine(plans);
         rewrittenQuery = builder.toString();
+      } finally {
+        if (rewriter != null) {
+          rewriter.clear();
+        }
+      }
+    }
+  }
+
+  public static class DriverRewriterRunnable implements Runnable {
+    @Getter
+    private final LensDriver driver;
+    private final AbstractQueryContext ctx;
+    private final String replacedQuery;
+    private final CubeRewrite rewrite;
+
+    @Getter
+    /** Indicate if rewrite operation succeeded */
+    private boolean succeeded;
+
+    @Getter
+    /** Get cause of rewrite failure if rewrite operation failed */
+    private String failureCause = null;
+
+    @Getter
+    private LensException cause;
+
+    @Getter
+    /** Get eventual rewritten query */
+    private String rewrittenQuery;
+
+    public DriverRewriterRunnable(LensDriver driver,
+                                  AbstractQueryContext ctx,
+                                  List<CubeQueryInfo> cubeQueries,
+                                  String replacedQuery) {
+      this(driver, ctx, replacedQuery,
+        new CubeRewrite(ctx, ctx.getDriverContext().getDriverConf(driver),
+          getCubeRewriteConf(ctx.getDriverContext().getDriverConf(driver)), cubeQueries, replacedQuery, null));
+    }
+
+    DriverRewriterRunnable(LensDriver driver,
+                           AbstractQueryContext ctx,
+                           String replacedQuery,
+                           CubeRewrite rewrite) {
+      this.driver = driver;
+      this.ctx = ctx;
+      this.replacedQuery = replacedQuery;
+      this.rewrite = rewrite;
+    }
+
+    @Override
+    public void run() {
+      String lowerCaseQuery = replacedQuery.toLowerCase();
+      if (lowerCaseQuery.startsWith("add") || lowerCaseQuery.startsWith("set")) {
+        rewrittenQuery = replacedQuery;
+        return;
+      }
+
+      MethodMetricsContext rewriteGauge = MethodMetricsFactory
+          .createMethodGauge(ctx.getDriverConf(driver), true, REWRITE_QUERY_GAUGE);
+      try {
+        rewrite.rewrite();
+        if (rewrite.failure != null) {
+          if (rewrite.failure instanceof LensException) {
+            this.cause = (LensException) rewrite.failure;
+          }
+          captureExceptionInformation(rewrite.failure);
+          return;
+        }
+        rewrittenQuery = rewrite.rewrittenQuery;
         // set rewriter plan
         ctx.getDriverContext().setDriverRewriterPlan(driver, getRewriterPlan(this));
         succeeded = true;
         ctx.setDriverQuery(driver, rewrittenQuery);
         log.info("Final rewritten query for driver: {} is: {}", driver, rewrittenQuery);
-
-      } catch (final LensException e) {
-
-        this.cause = e;
-        captureExceptionInformation(e);
       } catch (Exception e) {
 
         // we are catching all exceptions sothat other drivers can be picked in case of driver bugs
         captureExceptionInformation(e);
       } finally {
-        if (rewriter != null) {
-          rewriter.clear();
-        }
         rewriteGauge.markSuccess();
       }
     }
@@ -0,0 +1,201 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.util;
+
+import java.util.Comparator;
+import java.util.Random;
+
+import lombok.NonNull;
+
+/**
+ * A sorted set which answers the rank of an element in O(log n).
+ *
+ * Implemented as a treap whose nodes carry the size of their subtree. Like {@link java.util.TreeSet}, elements which
+ * compare equal are considered the same element, so the ordering should be consistent with the identity of elements
+ * for the set to behave as expected. Ordering of an element must not change while it is in the set.
+ *
+ * This implementation is not thread-safe.
+ *
+ * @param <E> type of elements
+ */
+public class OrderStatisticTree<E> {
+
+  private final Comparator<? super E> comparator;
+  private final Random random = new Random();
+  private Node<E> root;
+
+  private static final class Node<E> {
+    private final E element;
+    private final int priority;
+    private Node<E> left;
+    private Node<E> right;
+    private int size = 1;
+
+    private Node(E element, int priority) {
+      this.element = element;
+      this.priority = priority;
+    }
+  }
+
+  public OrderStatisticTree(@NonNull final Comparator<? super E> comparator) {
+    this.comparator = comparator;
+  }
+
+  /**
+   * Add an element.
+   *
+   * @param element the element
+   * @return true if the element was added, false if an equal element was already present
+   */
+  public boolean add(@NonNull final E element) {
+    if (contains(element)) {
+      return false;
+    }
+    root = insert(root, new Node<E>(element, random.nextInt()));
+    return true;
+  }
+
+  /**
+   * Remove an element.
+   *
+   * @param element the element
+   * @return true if the element was present
+   */
+  public boolean remove(@NonNull final E element) {
+    if (!contains(element)) {
+      return false;
+    }
+    root = delete(root, element);
+    return true;
+  }
+
+  public boolean contains(@NonNull final E element) {
+    Node<E> node = root;
+    while (node != null) {
+      int cmp = comparator.compare(element, node.element);
+      if (cmp == 0) {
+        return true;
+      }
+      node = cmp < 0 ? node.left : node.right;
+    }
+    return false;
+  }
+
+  /**
+   * One based position of the element in the sorted order.
+   *
+   * @param element the element
+   * @return the rank, null if the element is not present
+   */
+  public Integer rank(@NonNull final E element) {
+    int smaller = 0;
+    Node<E> node = root;
+    while (node != null) {
+      int cmp = comparator.compare(element, node.element);
+      if (cmp == 0) {
+        return smaller + size(node.left) + 1;
+      }
+      if (cmp < 0) {
+        node = node.left;
+      } else {
+        smaller += size(node.left) + 1;
+        node = node.right;
+      }
+    }
+    return null;
+  }
+
+  public int size() {
+    return size(root);
+  }
+
+  public void clear() {
+    root = null;
+  }
+
+  private Node<E> insert(Node<E> node, Node<E> newNode) {
+    if (node == null) {
+      return newNode;
+    }
+    if (comparator.compare(newNode.element, node.element) < 0) {
+      node.left = insert(node.left, newNode);
+      if (node.left.priority > node.priority) {
+        node = rotateRight(node);
+      }
+    } else {
+      node.right = insert(node.right, newNode);
+      if (node.right.priority > node.priority) {
+        node = rotateLeft(node);
+      }
+    }
+    update(node);
+    return node;
+  }
+
+  private Node<E> delete(Node<E> node, E element) {
+    int cmp = comparator.compare(element, node.element);
+    if (cmp < 0) {
+      node.left = delete(node.left, element);
+    } else if (cmp > 0) {
+      node.right = delete(node.right, element);
+    } else {
+      if (node.left == null) {
+        return node.right;
+      }
+      if (node.right == null) {
+        return node.left;
+      }
+      if (node.left.priority > node.right.priority) {
+        node = rotateRight(node);
+        node.right = delete(node.right, element);
+      } else {
+        node = rotateLeft(node);
+        node.left = delete(node.left, element);
+      }
+    }
+    update(node);
+    return node;
+  }
+
+  private Node<E> rotateRight(Node<E> node) {
+    Node<E> left = node.left;
+    node.left = left.right;
+    left.right = node;
+    update(node);
+    update(left);
+    return left;
+  }
+
+  private Node<E> rotateLeft(Node<E> node) {
+    Node<E> right = node.right;
+    node.right = right.left;
+    right.left = node;
+    update(node);
+    update(right);
+    return right;
+  }
+
+  private static <E> int size(Node<E> node) {
+    return node == null ? 0 : node.size;
+  }
+
+  private static <E> void update(Node<E> node) {
+    node.size = size(node.left) + size(node.right) + 1;
+  }
+}
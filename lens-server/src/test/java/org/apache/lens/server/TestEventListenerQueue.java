@@ -0,0 +1,285 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server;
+
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.api.query.QueryStatus;
+import org.apache.lens.server.EventListenerQueue.OverflowPolicy;
+import org.apache.lens.server.api.LensConfConstants;
+import org.apache.lens.server.api.error.LensException;
+import org.apache.lens.server.api.events.BatchEventListener;
+import org.apache.lens.server.api.events.LensEvent;
+import org.apache.lens.server.api.events.LensEventListener;
+import org.apache.lens.server.api.events.LensEventService;
+import org.apache.lens.server.api.query.QueryExecuted;
+import org.apache.lens.server.api.query.QueuePositionChange;
+import org.apache.lens.server.model.MappedDiagnosticLogSegregationContext;
+import org.apache.lens.server.query.ResultFormatter;
+
+import org.apache.hadoop.hive.conf.HiveConf;
+
+import org.testng.annotations.Test;
+
+@Test(groups = "unit-test")
+public class TestEventListenerQueue {
+
+  /** Runs deliveries only when asked, so that events pile up in the queue. */
+  private static class ManualExecutor implements Executor {
+    private final LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+
+    @Override
+    public void execute(Runnable task) {
+      tasks.add(task);
+    }
+
+    void runAll() {
+      while (!tasks.isEmpty()) {
+        tasks.removeFirst().run();
+      }
+    }
+  }
+
+  private static class RecordingListener implements LensEventListener<LensEvent> {
+    final List<LensEvent> events = new ArrayList<LensEvent>();
+
+    @Override
+    public void onEvent(LensEvent event) {
+      events.add(event);
+    }
+  }
+
+  private static class RecordingBatchListener extends RecordingListener implements BatchEventListener<LensEvent> {
+    final List<Integer> batchSizes = new ArrayList<Integer>();
+
+    @Override
+    public void onEvents(List<LensEvent> batch) throws LensException {
+      batchSizes.add(batch.size());
+      events.addAll(batch);
+    }
+  }
+
+  /** Formatter recording the events it gets, instead of formatting results. */
+  private static class RecordingFormatter extends ResultFormatter {
+    final List<QueryExecuted> events = new ArrayList<QueryExecuted>();
+
+    RecordingFormatter() {
+      super(null, new MappedDiagnosticLogSegregationContext(), 1, 1);
+    }
+
+    @Override
+    public void onEvent(QueryExecuted event) {
+      events.add(event);
+    }
+  }
+
+  private static LensEvent event(final String id) {
+    return new LensEvent(System.currentTimeMillis()) {
+      @Override
+      public String getEventId() {
+        return id;
+      }
+    };
+  }
+
+  @Test
+  public void testDeliversInOrder() throws Exception {
+    ManualExecutor executor = new ManualExecutor();
+    RecordingListener listener = new RecordingListener();
+    EventListenerQueue queue = new EventListenerQueue(listener, executor, 10, OverflowPolicy.BLOCK, 2);
+    for (int i = 0; i < 5; i++) {
+      queue.add(event("e" + i));
+    }
+    // one delivery is scheduled at a time
+    assertEquals(executor.tasks.size(), 1);
+    executor.runAll();
+    assertEquals(queue.size(), 0);
+    assertEquals(listener.events.size(), 5);
+    for (int i = 0; i < 5; i++) {
+      assertEquals(listener.events.get(i).getEventId(), "e" + i);
+    }
+  }
+
+  @Test
+  public void testBatchDelivery() throws Exception {
+    ManualExecutor executor = new ManualExecutor();
+    RecordingBatchListener listener = new RecordingBatchListener();
+    EventListenerQueue queue = new EventListenerQueue(listener, executor, 10, OverflowPolicy.BLOCK, 3);
+    for (int i = 0; i < 7; i++) {
+      queue.add(event("e" + i));
+    }
+    executor.runAll();
+    assertEquals(listener.events.size(), 7);
+    // the last event is delivered through onEvent
+    assertEquals(listener.batchSizes.size(), 2);
+    assertEquals(listener.batchSizes.get(0).intValue(), 3);
+    assertEquals(listener.batchSizes.get(1).intValue(), 3);
+  }
+
+  @Test
+  public void testDropOldest() throws Exception {
+    ManualExecutor executor = new ManualExecutor();
+    RecordingListener listener = new RecordingListener();
+    EventListenerQueue queue = new EventListenerQueue(listener, executor, 3, OverflowPolicy.DROP_OLDEST, 10);
+    for (int i = 0; i < 5; i++) {
+      queue.add(event("e" + i));
+    }
+    assertEquals(queue.size(), 3);
+    executor.runAll();
+    assertEquals(listener.events.size(), 3);
+    assertEquals(listener.events.get(0).getEventId(), "e2");
+    assertEquals(listener.events.get(2).getEventId(), "e4");
+  }
+
+  @Test
+  public void testCoalesce() throws Exception {
+    ManualExecutor executor = new ManualExecutor();
+    RecordingListener listener = new RecordingListener();
+    EventListenerQueue queue = new EventListenerQueue(listener, executor, 10, OverflowPolicy.COALESCE, 10);
+    QueryHandle query1 = new QueryHandle(UUID.randomUUID());
+    QueryHandle query2 = new QueryHandle(UUID.randomUUID());
+    queue.add(new QueuePositionChange(1, 3, 2, query1));
+    queue.add(event("other"));
+    queue.add(new QueuePositionChange(2, 5, 4, query2));
+    queue.add(new QueuePositionChange(3, 2, 1, query1));
+    queue.add(event("other"));
+    assertEquals(queue.size(), 4);
+    executor.runAll();
+
+    assertEquals(listener.events.size(), 4);
+    QueuePositionChange first = (QueuePositionChange) listener.events.get(0);
+    assertEquals(first.getQueryHandle(), query1);
+    assertEquals(first.getCurrentValue().intValue(), 1);
+    assertEquals(((QueuePositionChange) listener.events.get(2)).getQueryHandle(), query2);
+
+    // delivered events are not coalesced with later ones
+    queue.add(new QueuePositionChange(4, 1, 0, query1));
+    executor.runAll();
+    assertEquals(listener.events.size(), 5);
+  }
+
+  @Test
+  public void testCoalesceDropsOldestWhenFull() throws Exception {
+    ManualExecutor executor = new ManualExecutor();
+    RecordingListener listener = new RecordingListener();
+    EventListenerQueue queue = new EventListenerQueue(listener, executor, 2, OverflowPolicy.COALESCE, 10);
+    QueryHandle query1 = new QueryHandle(UUID.randomUUID());
+    QueryHandle query2 = new QueryHandle(UUID.randomUUID());
+    queue.add(new QueuePositionChange(1, 3, 2, query1));
+    queue.add(event("e1"));
+    // does not wait for space
+    queue.add(event("e2"));
+    assertEquals(queue.size(), 2);
+    // the dropped event is not coalesced with
+    queue.add(new QueuePositionChange(2, 2, 1, query1));
+    queue.add(new QueuePositionChange(3, 5, 4, query2));
+    executor.runAll();
+    assertEquals(listener.events.size(), 2);
+    assertEquals(((QueuePositionChange) listener.events.get(0)).getQueryHandle(), query1);
+    assertEquals(((QueuePositionChange) listener.events.get(1)).getQueryHandle(), query2);
+  }
+
+  @Test
+  public void testDeliveringThreadDoesNotBlock() throws Exception {
+    ManualExecutor executor = new ManualExecutor();
+    RecordingListener blockingListener = new RecordingListener();
+    final EventListenerQueue blockingQueue = new EventListenerQueue(blockingListener, executor, 1,
+      OverflowPolicy.BLOCK, 10);
+    LensEventListener<LensEvent> republisher = new LensEventListener<LensEvent>() {
+      @Override
+      public void onEvent(LensEvent event) throws LensException {
+        try {
+          blockingQueue.add(event(event.getEventId() + "-1"));
+          blockingQueue.add(event(event.getEventId() + "-2"));
+        } catch (InterruptedException e) {
+          throw new LensException(e);
+        }
+      }
+    };
+    EventListenerQueue queue = new EventListenerQueue(republisher, executor, 10, OverflowPolicy.BLOCK, 10);
+    queue.add(event("e"));
+    executor.runAll();
+    assertEquals(blockingListener.events.size(), 1);
+    assertEquals(blockingListener.events.get(0).getEventId(), "e-2");
+  }
+
+  @Test
+  public void testFullQueueOfFormatterDropsNothing() throws Exception {
+    ManualExecutor executor = new ManualExecutor();
+    RecordingFormatter formatter = new RecordingFormatter();
+    EventServiceImpl service = new EventServiceImpl(LensEventService.NAME);
+    service.init(new HiveConf());
+    try {
+      // whatever the policy configured
+      assertEquals(service.getOverflowPolicy(formatter), OverflowPolicy.BLOCK);
+    } finally {
+      service.stop();
+    }
+    final EventListenerQueue formatterQueue = new EventListenerQueue(formatter, executor, 2,
+      OverflowPolicy.DROP_OLDEST, 10);
+    assertTrue(formatterQueue.isLossless());
+    final List<QueryHandle> queries = new ArrayList<QueryHandle>();
+    for (int i = 0; i < 5; i++) {
+      queries.add(new QueryHandle(UUID.randomUUID()));
+    }
+    // published by a delivering thread, which can't wait for space
+    LensEventListener<LensEvent> publisher = new LensEventListener<LensEvent>() {
+      @Override
+      public void onEvent(LensEvent event) throws LensException {
+        try {
+          for (QueryHandle query : queries) {
+            formatterQueue.add(new QueryExecuted(System.currentTimeMillis(), QueryStatus.Status.RUNNING,
+              QueryStatus.Status.EXECUTED, query));
+          }
+        } catch (InterruptedException e) {
+          throw new LensException(e);
+        }
+      }
+    };
+    EventListenerQueue queue = new EventListenerQueue(publisher, executor, 10, OverflowPolicy.DROP_OLDEST, 10);
+    queue.add(event("e"));
+    executor.runAll();
+    assertEquals(formatter.events.size(), queries.size());
+    for (int i = 0; i < queries.size(); i++) {
+      assertEquals(formatter.events.get(i).getQueryHandle(), queries.get(i));
+    }
+  }
+
+  @Test
+  public void testOverflowPolicyOfListener() throws Exception {
+    RecordingListener listener = new RecordingListener();
+    EventServiceImpl service = new EventServiceImpl(LensEventService.NAME);
+    HiveConf conf = new HiveConf();
+    conf.set(LensConfConstants.EVENT_LISTENER_OVERFLOW_POLICY + "." + RecordingListener.class.getName(), "coalesce");
+    service.init(conf);
+    try {
+      assertEquals(service.getOverflowPolicy(listener), OverflowPolicy.COALESCE);
+      assertEquals(service.getOverflowPolicy(new RecordingBatchListener()), OverflowPolicy.DROP_OLDEST);
+    } finally {
+      service.stop();
+    }
+  }
+}
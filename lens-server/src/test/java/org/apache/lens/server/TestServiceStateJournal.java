@@ -0,0 +1,235 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server;
+
+import static org.testng.Assert.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Lists;
+
+@Test(groups = "unit-test")
+public class TestServiceStateJournal {
+
+  private final Path dir = new Path("target/test-state-journal");
+  private FileSystem fs;
+
+  @BeforeMethod
+  public void setup() throws IOException {
+    fs = FileSystem.getLocal(new Configuration());
+    fs.delete(dir, true);
+    fs.mkdirs(dir);
+  }
+
+  public void testRecordsReadBackInOrder() throws IOException {
+    ServiceStateJournal journal = new ServiceStateJournal(fs, dir, "service");
+    assertEquals(journal.append("a", new byte[]{1}), 1);
+    assertEquals(journal.append("b", new byte[]{2, 3}), 2);
+    journal.roll();
+    assertEquals(journal.append("a", null), 3);
+    journal.close();
+
+    ServiceStateJournal recovered = new ServiceStateJournal(fs, dir, "service");
+    List<ServiceStateJournal.Record> records = recovered.readAll();
+    assertEquals(records.size(), 3);
+    assertEquals(records.get(0), new ServiceStateJournal.Record(1, "a", new byte[]{1}));
+    assertEquals(records.get(1), new ServiceStateJournal.Record(2, "b", new byte[]{2, 3}));
+    assertTrue(records.get(2).isRemoved());
+    assertEquals(records.get(2).getKey(), "a");
+
+    // sequence continues after recovery, in a new file
+    assertEquals(recovered.append("c", new byte[0]), 4);
+    recovered.close();
+    assertEquals(new ServiceStateJournal(fs, dir, "service").readAll().size(), 4);
+  }
+
+  public void testBatchFlushed() throws IOException {
+    ServiceStateJournal journal = new ServiceStateJournal(fs, dir, "service");
+    assertEquals(journal.append("a", new byte[]{1}, false), 1);
+    assertEquals(journal.append("b", null, false), 2);
+    journal.flush();
+    assertEquals(new ServiceStateJournal(fs, dir, "service").readAll().size(), 2);
+
+    // appends after closing do not overwrite the closed file
+    journal.close();
+    journal.append("c", new byte[]{3});
+    journal.close();
+    assertEquals(new ServiceStateJournal(fs, dir, "service").readAll().size(), 3);
+  }
+
+  public void testRolledFilesDeleted() throws IOException {
+    ServiceStateJournal journal = new ServiceStateJournal(fs, dir, "service");
+    journal.append("a", new byte[]{1});
+    int rolled = journal.roll();
+    journal.append("b", new byte[]{2});
+    journal.deleteUpTo(rolled);
+
+    List<ServiceStateJournal.Record> records = new ServiceStateJournal(fs, dir, "service").readAll();
+    assertEquals(records.size(), 1);
+    assertEquals(records.get(0).getKey(), "b");
+
+    journal.clear();
+    assertTrue(new ServiceStateJournal(fs, dir, "service").readAll().isEmpty());
+  }
+
+  public void testTornRecordIgnored() throws IOException {
+    ServiceStateJournal journal = new ServiceStateJournal(fs, dir, "service");
+    journal.append("a", new byte[]{1});
+    journal.close();
+    // a record torn by a crash, in a later file
+    FSDataOutputStream out = fs.create(new Path(dir, "service.journal.1"));
+    out.writeInt(100);
+    out.write(new byte[10]);
+    out.close();
+
+    List<ServiceStateJournal.Record> records = new ServiceStateJournal(fs, dir, "service").readAll();
+    assertEquals(records.size(), 1);
+    assertEquals(records.get(0).getKey(), "a");
+  }
+
+  public void testJournalsOfServicesSeparate() throws IOException {
+    ServiceStateJournal journal = new ServiceStateJournal(fs, dir, "service");
+    journal.append("a", new byte[]{1});
+    journal.close();
+    assertTrue(new ServiceStateJournal(fs, dir, "other").readAll().isEmpty());
+  }
+
+  public void testUpdatesReadBack() throws IOException {
+    ServiceStateJournal journal = new ServiceStateJournal(fs, dir, "service");
+    journal.append("a", ServiceStateJournal.RecordType.STATE, new byte[]{1}, false);
+    journal.append("a", ServiceStateJournal.RecordType.UPDATE, new byte[]{2}, true);
+    journal.close();
+
+    List<ServiceStateJournal.Record> records = new ServiceStateJournal(fs, dir, "service").readAll();
+    assertEquals(records.get(0), new ServiceStateJournal.Record(1, "a", ServiceStateJournal.RecordType.STATE,
+      new byte[]{1}));
+    assertEquals(records.get(1), new ServiceStateJournal.Record(2, "a", ServiceStateJournal.RecordType.UPDATE,
+      new byte[]{2}));
+  }
+
+  public void testLatestByKey() {
+    ServiceStateJournal.Record a1 = new ServiceStateJournal.Record(1, "a", new byte[]{1});
+    ServiceStateJournal.Record a2 = new ServiceStateJournal.Record(2, "a", ServiceStateJournal.RecordType.UPDATE,
+      new byte[]{2});
+    ServiceStateJournal.Record a3 = new ServiceStateJournal.Record(3, "a", new byte[]{3});
+    ServiceStateJournal.Record a4 = new ServiceStateJournal.Record(4, "a", ServiceStateJournal.RecordType.UPDATE,
+      new byte[]{4});
+    ServiceStateJournal.Record b5 = new ServiceStateJournal.Record(5, "b", ServiceStateJournal.RecordType.UPDATE,
+      new byte[]{5});
+    ServiceStateJournal.Record c6 = new ServiceStateJournal.Record(6, "c", new byte[]{6});
+    ServiceStateJournal.Record c7 = new ServiceStateJournal.Record(7, "c", null);
+
+    Map<String, List<ServiceStateJournal.Record>> latest =
+      ServiceStateJournal.latestByKey(Lists.newArrayList(a1, a2, b5, a3, c6, a4, c7));
+    assertEquals(Lists.newArrayList(latest.keySet()), Lists.newArrayList("a", "b", "c"));
+    assertEquals(latest.get("a"), Lists.newArrayList(a3, a4));
+    // updates of an entity whose state is not journaled are all kept
+    assertEquals(latest.get("b"), Lists.newArrayList(b5));
+    assertEquals(latest.get("c"), Lists.newArrayList(c7));
+  }
+
+  public void testCompactedIntoCheckpoint() throws IOException {
+    ServiceStateJournal journal = new ServiceStateJournal(fs, dir, "service", 0);
+    journal.append("a", new byte[]{1});
+    journal.append("b", new byte[]{2});
+    journal.append("a", ServiceStateJournal.RecordType.UPDATE, new byte[]{3}, true);
+    journal.append("b", null);
+    int rolled = journal.roll();
+    journal.append("c", new byte[50]);
+    assertTrue(journal.compact(rolled));
+    assertFalse(fs.exists(new Path(dir, "service.journal.0")));
+    journal.close();
+
+    ServiceStateJournal recovered = new ServiceStateJournal(fs, dir, "service", 0);
+    List<ServiceStateJournal.Record> records = recovered.readAll();
+    assertEquals(records.size(), 3);
+    assertEquals(records.get(0), new ServiceStateJournal.Record(1, "a", new byte[]{1}));
+    assertEquals(records.get(1), new ServiceStateJournal.Record(3, "a", ServiceStateJournal.RecordType.UPDATE,
+      new byte[]{3}));
+    assertEquals(records.get(2), new ServiceStateJournal.Record(5, "c", new byte[50]));
+
+    // sequence continues after recovery, and the checkpoint is folded again with files recovered
+    assertEquals(recovered.append("a", null), 6);
+    assertTrue(recovered.compact(recovered.roll()));
+    records = new ServiceStateJournal(fs, dir, "service").readAll();
+    assertEquals(records.size(), 1);
+    assertEquals(records.get(0).getKey(), "c");
+
+    recovered.clear();
+    assertTrue(new ServiceStateJournal(fs, dir, "service").readAll().isEmpty());
+  }
+
+  public void testCompactedOnceJournalOutgrowsCheckpoint() throws IOException {
+    ServiceStateJournal journal = new ServiceStateJournal(fs, dir, "service", 0);
+    journal.append("a", new byte[100]);
+    assertTrue(journal.compact(journal.roll()));
+
+    // a journal smaller than the checkpoint is kept as it is
+    journal.append("a", ServiceStateJournal.RecordType.UPDATE, new byte[]{1}, true);
+    assertFalse(journal.compact(journal.roll()));
+    journal.append("a", new byte[200]);
+    assertTrue(journal.compact(journal.roll()));
+    assertEquals(new ServiceStateJournal(fs, dir, "service").readAll().size(), 1);
+
+    // nor is a journal smaller than the minimum
+    ServiceStateJournal other = new ServiceStateJournal(fs, dir, "other");
+    other.append("a", new byte[100]);
+    assertFalse(other.compact(other.roll()));
+    assertEquals(new ServiceStateJournal(fs, dir, "other").readAll().size(), 1);
+  }
+
+  public void testIncompleteCheckpointIgnored() throws IOException {
+    ServiceStateJournal journal = new ServiceStateJournal(fs, dir, "service", 0);
+    journal.append("a", new byte[]{1});
+    assertTrue(journal.compact(journal.roll()));
+    journal.append("b", new byte[]{2});
+    journal.close();
+
+    // a checkpoint torn by a crash does not replace the complete one
+    FSDataOutputStream out = fs.create(new Path(dir, "service.checkpoint.tmp"));
+    out.writeLong(10);
+    out.writeInt(5);
+    out.close();
+    assertEquals(new ServiceStateJournal(fs, dir, "service").readAll().size(), 2);
+
+    // a complete checkpoint not renamed before a crash is read
+    fs.delete(new Path(dir, "service.checkpoint.tmp"), false);
+    assertTrue(fs.rename(new Path(dir, "service.checkpoint"), new Path(dir, "service.checkpoint.tmp")));
+    assertEquals(new ServiceStateJournal(fs, dir, "service").readAll().size(), 2);
+
+    // a torn checkpoint alone is ignored
+    out = fs.create(new Path(dir, "service.checkpoint.tmp"));
+    out.writeLong(10);
+    out.writeInt(5);
+    out.close();
+    List<ServiceStateJournal.Record> records = new ServiceStateJournal(fs, dir, "service").readAll();
+    assertEquals(records.size(), 1);
+    assertEquals(records.get(0).getKey(), "b");
+  }
+}
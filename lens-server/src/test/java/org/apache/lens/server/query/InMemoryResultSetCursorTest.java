@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.lens.server.query;
+
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.ws.rs.BadRequestException;
+
+import org.apache.lens.api.query.InMemoryQueryResult;
+import org.apache.lens.api.query.ResultRow;
+import org.apache.lens.server.api.driver.InMemoryResultSet;
+import org.apache.lens.server.api.driver.LensResultSetMetadata;
+import org.apache.lens.server.api.error.LensException;
+
+import org.testng.annotations.Test;
+
+public class InMemoryResultSetCursorTest {
+
+  /**
+   * List backed result set which counts the rows read from it.
+   */
+  private static class ListResultSet extends InMemoryResultSet {
+    private final int numRows;
+    private final boolean seekable;
+    private int index = 0;
+    private int rowsRead = 0;
+
+    ListResultSet(int numRows, boolean seekable) {
+      this.numRows = numRows;
+      this.seekable = seekable;
+    }
+
+    @Override
+    public boolean seekToStart() {
+      if (seekable) {
+        index = 0;
+      }
+      return seekable;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return index < numRows;
+    }
+
+    @Override
+    public ResultRow next() {
+      rowsRead++;
+      List<Object> row = new ArrayList<Object>();
+      row.add(index++);
+      return new ResultRow(row);
+    }
+
+    @Override
+    public void setFetchSize(int size) {
+    }
+
+    @Override
+    public Integer size() {
+      return numRows;
+    }
+
+    @Override
+    public LensResultSetMetadata getMetadata() {
+      return null;
+    }
+  }
+
+  private List<Object> values(InMemoryQueryResult result) {
+    List<Object> values = new ArrayList<Object>();
+    for (ResultRow row : result.getRows()) {
+      values.add(row.getValues().get(0));
+    }
+    return values;
+  }
+
+  private List<Object> range(int start, int end) {
+    List<Object> values = new ArrayList<Object>();
+    for (int i = start; i < end; i++) {
+      values.add(i);
+    }
+    return values;
+  }
+
+  @Test
+  public void testSequentialPages() throws LensException {
+    ListResultSet rs = new ListResultSet(25, true);
+    InMemoryResultSetCursor cursor = new InMemoryResultSetCursor(rs, 100);
+
+    assertEquals(values(cursor.fetch(0, 10)), range(0, 10));
+    assertEquals(values(cursor.fetch(10, 10)), range(10, 20));
+    assertFalse(rs.canBePurged());
+    assertEquals(values(cursor.fetch(20, 10)), range(20, 25));
+    assertTrue(cursor.isExhausted());
+    assertTrue(rs.canBePurged());
+    assertEquals(values(cursor.fetch(25, 10)), Collections.emptyList());
+    // sequential pages read every row exactly once
+    assertEquals(rs.rowsRead, 25);
+  }
+
+  @Test
+  public void testSkipAndRewind() throws LensException {
+    ListResultSet rs = new ListResultSet(25, true);
+    InMemoryResultSetCursor cursor = new InMemoryResultSetCursor(rs, 100);
+
+    assertEquals(values(cursor.fetch(15, 5)), range(15, 20));
+    assertEquals(cursor.getPosition(), 20);
+    assertEquals(values(cursor.fetch(5, 5)), range(5, 10));
+    assertEquals(cursor.getPosition(), 10);
+  }
+
+  @Test
+  public void testPageSizeCappedByMaxRows() throws LensException {
+    InMemoryResultSetCursor cursor = new InMemoryResultSetCursor(new ListResultSet(25, true), 8);
+
+    assertEquals(values(cursor.fetch(0, 5)), range(0, 5));
+    assertEquals(values(cursor.fetch(5, 100)), range(5, 13));
+  }
+
+  @Test
+  public void testNoFetchSizeReturnsAllRows() throws LensException {
+    InMemoryResultSetCursor cursor = new InMemoryResultSetCursor(new ListResultSet(25, true), 8);
+
+    assertEquals(values(cursor.fetch(3, 0)), range(3, 25));
+    assertTrue(cursor.isExhausted());
+    // a later full read rewinds, like a client fetching after the result was read for notification
+    assertEquals(values(cursor.fetch(0, -1)), range(0, 25));
+  }
+
+  @Test(expectedExceptions = LensException.class)
+  public void testRewindOnNonSeekableResultSet() throws LensException {
+    InMemoryResultSetCursor cursor = new InMemoryResultSetCursor(new ListResultSet(25, false), 100);
+    cursor.fetch(10, 5);
+    cursor.fetch(0, 5);
+  }
+
+  @Test(expectedExceptions = BadRequestException.class)
+  public void testNegativeStartIndex() throws LensException {
+    new InMemoryResultSetCursor(new ListResultSet(25, true), 100).fetch(-1, 5);
+  }
+}
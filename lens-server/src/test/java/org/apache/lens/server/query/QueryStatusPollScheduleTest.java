@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.lens.server.query;
+
+import static org.testng.Assert.*;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import org.apache.lens.api.query.QueryHandle;
+
+import org.testng.annotations.Test;
+
+public class QueryStatusPollScheduleTest {
+
+  private final QueryHandle handle = new QueryHandle(UUID.randomUUID());
+
+  @Test
+  public void testBackoffWhenStatusDoesNotChange() {
+    QueryStatusPollSchedule schedule = new QueryStatusPollSchedule(1000, 5000, 2);
+
+    assertTrue(schedule.tryStartPoll(handle, 0));
+    schedule.pollCompleted(handle, 0, false, false);
+    assertEquals(schedule.getInterval(handle).longValue(), 2000);
+    assertFalse(schedule.tryStartPoll(handle, 1999));
+    assertTrue(schedule.tryStartPoll(handle, 2000));
+    schedule.pollCompleted(handle, 2000, false, false);
+    assertEquals(schedule.getInterval(handle).longValue(), 4000);
+    assertTrue(schedule.tryStartPoll(handle, 6000));
+    schedule.pollCompleted(handle, 6000, false, false);
+    // capped at max interval
+    assertEquals(schedule.getInterval(handle).longValue(), 5000);
+
+    assertTrue(schedule.tryStartPoll(handle, 11000));
+    schedule.pollCompleted(handle, 11000, true, false);
+    assertEquals(schedule.getInterval(handle).longValue(), 1000);
+  }
+
+  @Test
+  public void testNoConcurrentPollOfSameQuery() {
+    QueryStatusPollSchedule schedule = new QueryStatusPollSchedule(1000, 5000, 2);
+
+    assertTrue(schedule.tryStartPoll(handle, 0));
+    assertFalse(schedule.tryStartPoll(handle, 10000));
+    schedule.pollCompleted(handle, 10000, false, false);
+    assertTrue(schedule.tryStartPoll(handle, 12000));
+  }
+
+  @Test
+  public void testPushingDriverPolledAtMaxInterval() {
+    QueryStatusPollSchedule schedule = new QueryStatusPollSchedule(1000, 5000, 2);
+
+    assertTrue(schedule.tryStartPoll(handle, 0));
+    schedule.pollCompleted(handle, 0, true, true);
+    assertEquals(schedule.getInterval(handle).longValue(), 5000);
+    assertFalse(schedule.tryStartPoll(handle, 4999));
+  }
+
+  @Test
+  public void testRetainAll() {
+    QueryStatusPollSchedule schedule = new QueryStatusPollSchedule(1000, 5000, 2);
+
+    schedule.tryStartPoll(handle, 0);
+    schedule.tryStartPoll(new QueryHandle(UUID.randomUUID()), 0);
+    assertEquals(schedule.size(), 2);
+    schedule.retainAll(Collections.singleton(handle));
+    assertEquals(schedule.size(), 1);
+    assertNotNull(schedule.getInterval(handle));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testInvalidSchedule() {
+    new QueryStatusPollSchedule(1000, 500, 2);
+  }
+}
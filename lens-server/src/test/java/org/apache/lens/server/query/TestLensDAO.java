@@ -22,8 +22,11 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 import javax.ws.rs.core.Application;
 
@@ -147,6 +150,93 @@ public class TestLensDAO extends LensJerseyTest {
     Assert.assertEquals(daoTestQueryHandles.get(0).getHandleId().toString(), finishedHandle);
   }
 
+  /**
+   * Test batch insert of finished queries.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testInsertFinishedQueriesBatch() throws Exception {
+    QueryExecutionServiceImpl service = LensServices.get().getService(QueryExecutionService.NAME);
+    List<FinishedLensQuery> batch = new ArrayList<FinishedLensQuery>();
+    for (int i = 0; i < 3; i++) {
+      QueryContext queryContext = service.createContext("SELECT ID FROM testTable", "foo@localhost", new LensConf(),
+        new Configuration());
+      queryContext.setQueryName("daoBatchTestQuery" + i);
+      queryContext.getDriverContext().setSelectedDriver(new MockDriver());
+      FinishedLensQuery finishedLensQuery = new FinishedLensQuery(queryContext);
+      finishedLensQuery.setStatus(QueryStatus.Status.SUCCESSFUL.name());
+      batch.add(finishedLensQuery);
+    }
+
+    service.lensServerDao.insertFinishedQuery(batch.get(0));
+    // already inserted query is skipped
+    service.lensServerDao.insertFinishedQueries(batch);
+    for (FinishedLensQuery query : batch) {
+      Assert.assertEquals(service.lensServerDao.getQuery(query.getHandle()), query);
+    }
+    // re-insert should be a no-op on the db
+    service.lensServerDao.insertFinishedQueries(batch);
+
+    // a conflicting query fails the whole batch
+    QueryContext queryContext = service.createContext("SELECT ID FROM testTable", "foo@localhost", new LensConf(),
+      new Configuration());
+    queryContext.getDriverContext().setSelectedDriver(new MockDriver());
+    FinishedLensQuery newQuery = new FinishedLensQuery(queryContext);
+    newQuery.setStatus(QueryStatus.Status.SUCCESSFUL.name());
+    FinishedLensQuery conflicting = service.lensServerDao.getQuery(batch.get(1).getHandle());
+    conflicting.setStatus(QueryStatus.Status.FAILED.name());
+    try {
+      service.lensServerDao.insertFinishedQueries(Arrays.asList(newQuery, conflicting));
+      Assert.fail("Batch with conflicting query should fail");
+    } catch (SQLException e) {
+      // expected
+    }
+    Assert.assertNull(service.lensServerDao.getQuery(newQuery.getHandle()));
+  }
+
+  /**
+   * Test paging through finished queries.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testFindFinishedQueriesPaged() throws Exception {
+    QueryExecutionServiceImpl service = LensServices.get().getService(QueryExecutionService.NAME);
+    String user = "pageuser" + UUID.randomUUID().toString().replace("-", "");
+    List<FinishedLensQuery> batch = new ArrayList<FinishedLensQuery>();
+    for (int i = 0; i < 5; i++) {
+      QueryContext queryContext = service.createContext("SELECT ID FROM testTable", user + "@localhost",
+        new LensConf(), new Configuration());
+      queryContext.getDriverContext().setSelectedDriver(new MockDriver());
+      FinishedLensQuery finishedLensQuery = new FinishedLensQuery(queryContext);
+      finishedLensQuery.setSubmitter(user);
+      finishedLensQuery.setStatus(QueryStatus.Status.SUCCESSFUL.name());
+      finishedLensQuery.setSubmissionTime(1000 + i / 2);
+      batch.add(finishedLensQuery);
+    }
+    service.lensServerDao.insertFinishedQueries(batch);
+
+    List<QuerySubmissionKey> all = service.lensServerDao.findFinishedQueries(null, user, null, null, 0,
+      Long.MAX_VALUE, null, -1);
+    Assert.assertEquals(all.size(), 5);
+    List<QuerySubmissionKey> paged = new ArrayList<QuerySubmissionKey>();
+    QuerySubmissionKey after = null;
+    List<QuerySubmissionKey> page;
+    do {
+      page = service.lensServerDao.findFinishedQueries(null, user, null, null, 0, Long.MAX_VALUE, after, 2);
+      Assert.assertTrue(page.size() <= 2);
+      paged.addAll(page);
+      after = page.isEmpty() ? null : page.get(page.size() - 1);
+    } while (!page.isEmpty());
+    Assert.assertEquals(paged, all);
+    for (int i = 1; i < paged.size(); i++) {
+      Assert.assertTrue(paged.get(i - 1).compareTo(paged.get(i)) < 0);
+    }
+    Assert.assertEquals(service.lensServerDao.findFinishedQueries(null, user, null, null, 1001, 1001, null, -1)
+      .size(), 2);
+  }
+
   /*
    * (non-Javadoc)
    *
@@ -0,0 +1,209 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lens.api.Priority;
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.api.query.QueryStatus;
+import org.apache.lens.server.api.error.LensException;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.QueryExecuted;
+import org.apache.lens.server.model.LogSegregationContext;
+
+import org.apache.hadoop.conf.Configuration;
+
+import org.testng.annotations.Test;
+
+@Test(groups = "unit-test")
+public class TestResultFormatterQueue {
+
+  /**
+   * Records the order in which results are formatted, holding the first query till released.
+   */
+  private static class RecordingFormatter extends ResultFormatter {
+    private final List<QueryHandle> formatted = Collections.synchronizedList(new ArrayList<QueryHandle>());
+    private final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+    private final Map<QueryHandle, Long> resultSizes = new ConcurrentHashMap<QueryHandle, Long>();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch done;
+
+    RecordingFormatter(QueryExecutionServiceImpl queryService, int maxQueueSize, int queries) {
+      super(queryService, mock(LogSegregationContext.class), 1, maxQueueSize);
+      done = new CountDownLatch(queries);
+    }
+
+    @Override
+    void format(QueryExecuted event, Long resultSize) {
+      if (resultSize != null) {
+        resultSizes.put(event.getQueryHandle(), resultSize);
+      }
+      if (started.getCount() > 0) {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      formatted.add(event.getQueryHandle());
+      threads.add(Thread.currentThread().getName());
+      done.countDown();
+    }
+  }
+
+  private final QueryExecutionServiceImpl queryService = mock(QueryExecutionServiceImpl.class);
+
+  private QueryExecuted newQuery(String user, Priority priority) {
+    QueryHandle handle = new QueryHandle(UUID.randomUUID());
+    QueryContext ctx = mock(QueryContext.class);
+    when(ctx.getQueryHandle()).thenReturn(handle);
+    when(ctx.getSubmittedUser()).thenReturn(user);
+    when(ctx.getPriority()).thenReturn(priority);
+    when(ctx.isPersistent()).thenReturn(true);
+    when(queryService.getQueryContext(handle)).thenReturn(ctx);
+    return new QueryExecuted(System.currentTimeMillis(), QueryStatus.Status.RUNNING, QueryStatus.Status.EXECUTED,
+      handle);
+  }
+
+  /** A query with a result of the given size persisted by the driver. */
+  private QueryExecuted newQuery(String user, int resultSize) throws IOException {
+    QueryExecuted event = newQuery(user, Priority.NORMAL);
+    File resultDir = Files.createTempDirectory("result").toFile();
+    resultDir.deleteOnExit();
+    File part = new File(resultDir, "part-00000");
+    part.deleteOnExit();
+    try (FileOutputStream out = new FileOutputStream(part)) {
+      out.write(new byte[resultSize]);
+    }
+    QueryContext ctx = queryService.getQueryContext(event.getQueryHandle());
+    when(ctx.isResultAvailableInDriver()).thenReturn(true);
+    when(ctx.getDriverResultPath()).thenReturn(resultDir.toURI().toString());
+    when(ctx.getConf()).thenReturn(new Configuration());
+    return event;
+  }
+
+  public void testFormattingOrder() throws LensException, InterruptedException {
+    RecordingFormatter formatter = new RecordingFormatter(queryService, 100, 6);
+    QueryExecuted blocker = newQuery("x", Priority.NORMAL);
+    formatter.onEvent(blocker);
+    assertTrue(formatter.started.await(10, TimeUnit.SECONDS));
+
+    QueryExecuted a1 = newQuery("a", Priority.NORMAL);
+    QueryExecuted a2 = newQuery("a", Priority.NORMAL);
+    QueryExecuted b1 = newQuery("b", Priority.NORMAL);
+    QueryExecuted a3 = newQuery("a", Priority.HIGH);
+    QueryExecuted a4 = newQuery("a", Priority.LOW);
+    for (QueryExecuted event : Arrays.asList(a1, a2, b1, a3, a4)) {
+      formatter.onEvent(event);
+    }
+    assertEquals(formatter.getQueueSize(), 5);
+    formatter.release.countDown();
+    assertTrue(formatter.done.await(10, TimeUnit.SECONDS));
+
+    List<QueryHandle> expected = new ArrayList<QueryHandle>();
+    for (QueryExecuted event : Arrays.asList(blocker, a3, a1, b1, a2, a4)) {
+      expected.add(event.getQueryHandle());
+    }
+    assertEquals(formatter.formatted, expected);
+    assertEquals(formatter.getQueueSize(), 0);
+    formatter.stop();
+  }
+
+  public void testSmallerResultsFirst() throws Exception {
+    RecordingFormatter formatter = new RecordingFormatter(queryService, 100, 4);
+    QueryExecuted blocker = newQuery("x", Priority.NORMAL);
+    formatter.onEvent(blocker);
+    assertTrue(formatter.started.await(10, TimeUnit.SECONDS));
+
+    QueryExecuted large = newQuery("a", 300);
+    QueryExecuted small = newQuery("b", 100);
+    QueryExecuted medium = newQuery("c", 200);
+    for (QueryExecuted event : Arrays.asList(large, small, medium)) {
+      formatter.onEvent(event);
+    }
+    // sizes are measured by the pool, not by the thread delivering events
+    assertTrue(formatter.resultSizes.isEmpty());
+    formatter.release.countDown();
+    assertTrue(formatter.done.await(10, TimeUnit.SECONDS));
+
+    List<QueryHandle> expected = new ArrayList<QueryHandle>();
+    for (QueryExecuted event : Arrays.asList(blocker, small, medium, large)) {
+      expected.add(event.getQueryHandle());
+    }
+    assertEquals(formatter.formatted, expected);
+    // and carried to formatting
+    assertEquals(formatter.resultSizes.get(small.getQueryHandle()).longValue(), 100);
+    assertEquals(formatter.resultSizes.get(large.getQueryHandle()).longValue(), 300);
+    formatter.stop();
+  }
+
+  public void testWaitsWhenQueueFull() throws Exception {
+    final RecordingFormatter formatter = new RecordingFormatter(queryService, 1, 3);
+    QueryExecuted blocker = newQuery("x", Priority.NORMAL);
+    formatter.onEvent(blocker);
+    assertTrue(formatter.started.await(10, TimeUnit.SECONDS));
+
+    QueryExecuted queued = newQuery("a", Priority.NORMAL);
+    formatter.onEvent(queued);
+    final QueryExecuted overflow = newQuery("a", Priority.NORMAL);
+    final CountDownLatch overflowQueued = new CountDownLatch(1);
+    Thread delivering = new Thread() {
+      @Override
+      public void run() {
+        try {
+          formatter.onEvent(overflow);
+          overflowQueued.countDown();
+        } catch (LensException e) {
+          fail("Could not queue " + overflow.getQueryHandle(), e);
+        }
+      }
+    };
+    delivering.start();
+    // waits for space instead of formatting in the delivering thread
+    assertFalse(overflowQueued.await(500, TimeUnit.MILLISECONDS));
+    assertTrue(formatter.formatted.isEmpty());
+
+    formatter.release.countDown();
+    assertTrue(overflowQueued.await(10, TimeUnit.SECONDS));
+    assertTrue(formatter.done.await(10, TimeUnit.SECONDS));
+    assertEquals(formatter.formatted, Arrays.asList(blocker.getQueryHandle(), queued.getQueryHandle(),
+      overflow.getQueryHandle()));
+    assertFalse(formatter.threads.contains(delivering.getName()));
+    formatter.stop();
+  }
+}
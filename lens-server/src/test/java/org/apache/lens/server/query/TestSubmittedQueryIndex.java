@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.server.api.query.QueryContext;
+
+import org.testng.annotations.Test;
+
+@Test(groups = "unit-test")
+public class TestSubmittedQueryIndex {
+
+  private QueryContext newQuery(String user, long submissionTime) {
+    QueryHandle handle = new QueryHandle(UUID.randomUUID());
+    QueryContext ctx = mock(QueryContext.class);
+    when(ctx.getQueryHandle()).thenReturn(handle);
+    when(ctx.getQueryHandleString()).thenReturn(handle.getHandleIdString());
+    when(ctx.getSubmittedUser()).thenReturn(user);
+    when(ctx.getSubmissionTime()).thenReturn(submissionTime);
+    return ctx;
+  }
+
+  private List<QueryContext> list(Iterable<QueryContext> queries) {
+    List<QueryContext> list = new ArrayList<QueryContext>();
+    for (QueryContext ctx : queries) {
+      list.add(ctx);
+    }
+    return list;
+  }
+
+  public void testQueriesOfUserInOrder() {
+    SubmittedQueryIndex index = new SubmittedQueryIndex();
+    QueryContext q1 = newQuery("foo", 30);
+    QueryContext q2 = newQuery("bar", 20);
+    QueryContext q3 = newQuery("Foo", 10);
+    QueryContext q4 = newQuery("foo", 40);
+    for (QueryContext ctx : Arrays.asList(q1, q2, q3, q4)) {
+      index.add(ctx);
+    }
+
+    assertEquals(list(index.getQueries(null, 0, Long.MAX_VALUE, null)), Arrays.asList(q3, q2, q1, q4));
+    assertEquals(list(index.getQueries("foo", 0, Long.MAX_VALUE, null)), Arrays.asList(q3, q1, q4));
+    assertEquals(list(index.getQueries("FOO", 10, 30, null)), Arrays.asList(q3, q1));
+    assertTrue(list(index.getQueries("baz", 0, Long.MAX_VALUE, null)).isEmpty());
+
+    index.remove(q1);
+    assertEquals(list(index.getQueries("foo", 0, Long.MAX_VALUE, null)), Arrays.asList(q3, q4));
+    assertEquals(list(index.getQueries(null, 0, Long.MAX_VALUE, null)), Arrays.asList(q3, q2, q4));
+  }
+
+  public void testPagination() {
+    SubmittedQueryIndex index = new SubmittedQueryIndex();
+    List<QueryContext> queries = new ArrayList<QueryContext>();
+    for (int i = 0; i < 5; i++) {
+      QueryContext ctx = newQuery("foo", 100 + i / 2);
+      queries.add(ctx);
+      index.add(ctx);
+    }
+
+    List<QueryContext> paged = new ArrayList<QueryContext>();
+    QuerySubmissionKey after = null;
+    while (true) {
+      List<QueryContext> page = list(index.getQueries("foo", 0, Long.MAX_VALUE, after));
+      if (page.isEmpty()) {
+        break;
+      }
+      paged.add(page.get(0));
+      after = new QuerySubmissionKey(page.get(0));
+    }
+    assertEquals(paged.size(), 5);
+    assertTrue(paged.containsAll(queries));
+    for (int i = 1; i < paged.size(); i++) {
+      assertTrue(new QuerySubmissionKey(paged.get(i - 1)).compareTo(new QuerySubmissionKey(paged.get(i))) < 0);
+    }
+
+    // position after the time range
+    assertTrue(list(index.getQueries("foo", 0, 101, new QuerySubmissionKey(queries.get(4)))).isEmpty());
+  }
+}
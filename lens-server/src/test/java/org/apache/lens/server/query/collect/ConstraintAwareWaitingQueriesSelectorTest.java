@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.collect;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import org.apache.lens.server.api.driver.LensDriver;
+import org.apache.lens.server.api.query.FinishedLensQuery;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.collect.EstimatedImmutableQueryCollection;
+import org.apache.lens.server.api.query.constraint.MaxConcurrentDriverQueriesConstraint;
+import org.apache.lens.server.api.query.constraint.QueryLaunchingConstraint;
+import org.apache.lens.server.api.query.cost.FactPartitionBasedQueryCost;
+import org.apache.lens.server.api.query.cost.QueryCost;
+import org.apache.lens.server.query.QueryContextPriorityComparator;
+import org.apache.lens.server.query.constraint.DefaultQueryLaunchingConstraintsChecker;
+import org.apache.lens.server.query.constraint.TotalQueryCostCeilingConstraint;
+
+import org.testng.annotations.Test;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+public class ConstraintAwareWaitingQueriesSelectorTest {
+
+  private final LensDriver driver = mock(LensDriver.class);
+  private final FinishedLensQuery finishedQuery = mock(FinishedLensQuery.class);
+  private final EstimatedImmutableQueryCollection waitingQueries = mock(EstimatedImmutableQueryCollection.class);
+
+  private QueryContext mockQuery(String user, double cost, long submissionTime) {
+    QueryContext query = mock(QueryContext.class);
+    when(query.getSelectedDriver()).thenReturn(driver);
+    when(query.getSubmittedUser()).thenReturn(user);
+    when(query.getSelectedDriverQueryCost()).thenReturn((QueryCost) new FactPartitionBasedQueryCost(cost));
+    when(query.getSubmissionTime()).thenReturn(submissionTime);
+    when(query.getSelectedDriverQueryConstraints()).thenReturn(ImmutableSet.<QueryLaunchingConstraint>of());
+    return query;
+  }
+
+  private WaitingQueriesSelector selector(Set<QueryContext> eligibleQueries,
+    EstimatedImmutableQueryCollection launchedQueries, QueryLaunchingConstraint... constraints) {
+    WaitingQueriesSelector eligibleQueriesSelector = mock(WaitingQueriesSelector.class);
+    when(eligibleQueriesSelector.selectQueries(finishedQuery, waitingQueries)).thenReturn(eligibleQueries);
+    return new ConstraintAwareWaitingQueriesSelector(eligibleQueriesSelector,
+      new DefaultQueryLaunchingConstraintsChecker(ImmutableSet.copyOf(constraints)), launchedQueries,
+      new QueryContextPriorityComparator());
+  }
+
+  @Test
+  public void testSelectQueriesUptoFreeDriverSlots() {
+    QueryContext q1 = mockQuery("user1", 10, 1);
+    QueryContext q2 = mockQuery("user2", 5, 2);
+    QueryContext q3 = mockQuery("user1", 5, 3);
+    QueryContext q4 = mockQuery("user2", 20, 0);
+    EstimatedImmutableQueryCollection launchedQueries = mock(EstimatedImmutableQueryCollection.class);
+    when(launchedQueries.getQueriesCount(driver)).thenReturn(3);
+
+    Set<QueryContext> selected = selector(Sets.newHashSet(q1, q2, q3, q4), launchedQueries,
+      new MaxConcurrentDriverQueriesConstraint(5)).selectQueries(finishedQuery, waitingQueries);
+
+    /* two free slots, taken by the cheapest queries, the earliest submitted first among queries of same cost */
+    assertEquals(Arrays.asList(selected.toArray()), Arrays.<Object>asList(q2, q3));
+  }
+
+  @Test
+  public void testSelectQueriesUptoUserCostCeiling() {
+    QueryContext q1 = mockQuery("user1", 5, 1);
+    QueryContext q2 = mockQuery("user1", 5, 2);
+    QueryContext q3 = mockQuery("user2", 50, 3);
+    QueryContext q4 = mockQuery("user1", 5, 4);
+    EstimatedImmutableQueryCollection launchedQueries = mock(EstimatedImmutableQueryCollection.class);
+    when(launchedQueries.getTotalQueryCost("user1")).thenReturn((QueryCost) new FactPartitionBasedQueryCost(2));
+    when(launchedQueries.getTotalQueryCost("user2")).thenReturn((QueryCost) new FactPartitionBasedQueryCost(0));
+
+    Set<QueryContext> selected = selector(Sets.newHashSet(q1, q2, q3, q4), launchedQueries,
+      new TotalQueryCostCeilingConstraint(Optional.<QueryCost>of(new FactPartitionBasedQueryCost(10))))
+      .selectQueries(finishedQuery, waitingQueries);
+
+    /* user1 is allowed to launch while its cost is within the ceiling: 2, then 7, then 12 */
+    assertEquals(selected, Sets.newHashSet(q1, q2, q3));
+  }
+
+  @Test
+  public void testSelectNoQueriesWhenNoneEligible() {
+    EstimatedImmutableQueryCollection launchedQueries = mock(EstimatedImmutableQueryCollection.class);
+    Set<QueryContext> selected = selector(Sets.<QueryContext>newHashSet(), launchedQueries,
+      new MaxConcurrentDriverQueriesConstraint(5)).selectQueries(finishedQuery, waitingQueries);
+    assertTrue(selected.isEmpty());
+  }
+}
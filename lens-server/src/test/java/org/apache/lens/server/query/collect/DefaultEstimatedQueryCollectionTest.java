@@ -36,6 +36,7 @@ import org.apache.lens.server.api.query.cost.QueryCost;
 import org.testng.annotations.Test;
 
 import com.beust.jcommander.internal.Sets;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 
 public class DefaultEstimatedQueryCollectionTest {
@@ -65,17 +66,56 @@ public class DefaultEstimatedQueryCollectionTest {
 
     final QueryCost mockCost0 = mock(QueryCost.class);
     final QueryCost mockCost1 = mock(QueryCost.class);
-    final QueryCost mockCost0Plus0 = mock(QueryCost.class);
-    final QueryCost mockCost0Plus0Plus1 = mock(QueryCost.class);
+    final QueryCost mockCost0Plus1 = mock(QueryCost.class);
 
     when(query0.getSelectedDriverQueryCost()).thenReturn(mockCost0);
     when(query1.getSelectedDriverQueryCost()).thenReturn(mockCost1);
 
-    when(mockCost0.add(mockCost0)).thenReturn(mockCost0Plus0);
-    when(mockCost0Plus0.add(mockCost1)).thenReturn(mockCost0Plus0Plus1);
+    when(mockCost0.add(mockCost1)).thenReturn(mockCost0Plus1);
 
     QueryCost actualQueryCost = new DefaultEstimatedQueryCollection(mockQueries).getTotalQueryCost(MOCK_USER);
-    assertEquals(actualQueryCost, mockCost0Plus0Plus1);
+    assertEquals(actualQueryCost, mockCost0Plus1);
+  }
+
+  @Test
+  public void testGetTotalQueryCostMustBeUpdatedOnAddAndRemove() throws LensException {
+
+    QueryCollection mockQueries = mock(QueryCollection.class);
+    Set<QueryContext> mockQueriesSet = createQueriesSetWithUserStubbing(2, MOCK_USER);
+    when(mockQueries.getQueries(MOCK_USER)).thenReturn(mockQueriesSet);
+
+    final QueryContext query0 = Iterables.get(mockQueriesSet, 0);
+    final QueryContext query1 = Iterables.get(mockQueriesSet, 1);
+
+    final QueryCost mockCost0 = mock(QueryCost.class);
+    final QueryCost mockCost1 = mock(QueryCost.class);
+    final QueryCost mockCost0Plus1 = mock(QueryCost.class);
+
+    when(query0.getSelectedDriver()).thenReturn(mock(LensDriver.class));
+    when(query1.getSelectedDriver()).thenReturn(mock(LensDriver.class));
+    when(query0.getSelectedDriverQueryCost()).thenReturn(mockCost0);
+    when(query1.getSelectedDriverQueryCost()).thenReturn(mockCost1);
+    when(mockCost0.add(mockCost1)).thenReturn(mockCost0Plus1);
+
+    EstimatedQueryCollection queries = new DefaultEstimatedQueryCollection(mockQueries);
+    queries.add(query0);
+    assertEquals(queries.getTotalQueryCost(MOCK_USER), mockCost0Plus1);
+
+    /* Cost of an added query must be added to the running total, without summing the user's queries again */
+    final QueryCost mockCost0Plus1Plus0 = mock(QueryCost.class);
+    when(mockCost0Plus1.add(mockCost0)).thenReturn(mockCost0Plus1Plus0);
+    QueryContext query2 = mock(QueryContext.class);
+    when(query2.getSubmittedUser()).thenReturn(MOCK_USER);
+    when(query2.getSelectedDriver()).thenReturn(mock(LensDriver.class));
+    when(query2.getSelectedDriverQueryCost()).thenReturn(mockCost0);
+    queries.add(query2);
+    assertEquals(queries.getTotalQueryCost(MOCK_USER), mockCost0Plus1Plus0);
+    verify(mockQueries, times(1)).getQueries(MOCK_USER);
+
+    /* Removal of a query must sum the user's remaining queries again */
+    queries.remove(query2);
+    assertEquals(queries.getTotalQueryCost(MOCK_USER), mockCost0Plus1);
+    verify(mockQueries, times(2)).getQueries(MOCK_USER);
   }
 
   @Test
@@ -99,6 +139,28 @@ public class DefaultEstimatedQueryCollectionTest {
     verify(mockQueries, times(1)).remove(mockQuery);
   }
 
+  @Test
+  public void testRemoveMustKeepOtherQueriesOfDriver() throws LensException {
+
+    LensDriver mockSelectedDriver = mock(LensDriver.class);
+    QueryContext mockQuery0 = mock(QueryContext.class);
+    QueryContext mockQuery1 = mock(QueryContext.class);
+    for (QueryContext mockQuery : new QueryContext[]{mockQuery0, mockQuery1}) {
+      when(mockQuery.getSelectedDriver()).thenReturn(mockSelectedDriver);
+      when(mockQuery.getSelectedDriverQueryCost()).thenReturn(mock(QueryCost.class));
+    }
+
+    EstimatedQueryCollection queries = new DefaultEstimatedQueryCollection(mock(QueryCollection.class));
+    queries.add(mockQuery0);
+    queries.add(mockQuery1);
+    Set<QueryContext> snapshot = queries.getQueries(mockSelectedDriver);
+
+    queries.remove(mockQuery0);
+    assertEquals(queries.getQueriesCount(mockSelectedDriver), 1);
+    assertEquals(queries.getQueries(mockSelectedDriver), ImmutableSet.of(mockQuery1));
+    assertEquals(snapshot.size(), 2);
+  }
+
   @Test(expectedExceptions = IllegalStateException.class)
   public void testCheckStateMustRecognizeIllegalStateWhenSelectedDriverIsNotSet() throws LensException {
 
@@ -108,32 +108,48 @@ public class DefaultQueryCollectionTest {
   }
 
   @Test
-  public void testGetQueriesMustReturnCopyOfUnderlyingCollection() {
+  public void testGetQueriesMustReturnSnapshotOfUnderlyingCollection() {
 
     /* Initialization */
     final int noOfQueriesUsedInTest = 2;
     QueryCollection queries = createQueriesInstanceWithMockedQueries(noOfQueriesUsedInTest);
 
-    /* Execution: Get queries and empty returned collection */
-    Set<QueryContext> copiedSet = queries.getQueries();
-    copiedSet.clear();
+    /* Execution: Get queries and add one more query to the collection */
+    Set<QueryContext> snapshot = queries.getQueries();
+    queries.add(mock(QueryContext.class));
 
-    /* System under set (queries) should still have the added queries, which can be verified by checking count */
-    assertEquals(queries.getQueriesCount(), noOfQueriesUsedInTest);
+    /* Snapshot should not see the added query, while a new snapshot should */
+    assertEquals(snapshot.size(), noOfQueriesUsedInTest);
+    assertEquals(queries.getQueries().size(), noOfQueriesUsedInTest + 1);
+  }
+
+  @Test(expectedExceptions = UnsupportedOperationException.class)
+  public void testGetQueriesMustReturnImmutableSet() {
+
+    QueryCollection queries = createQueriesInstanceWithMockedQueries(2);
+    queries.getQueries().clear();
   }
 
   @Test
-  public void testGetQueriesPerUserMustReturnCopyOfUnderlyingCollection() {
+  public void testGetQueriesPerUserMustReturnSnapshotOfUnderlyingCollection() {
 
     /* Initialization */
     final int noOfQueriesUsedInTest = 2;
     QueryCollection queries = createQueriesInstanceWithUserStubbing(noOfQueriesUsedInTest, MOCK_USER);
 
-    /* Execution: Get queries for user and empty returned collection */
-    Set<QueryContext> copiedSet = queries.getQueries(MOCK_USER);
-    copiedSet.clear();
+    /* Execution: Get queries for user and remove one of them from the collection */
+    Set<QueryContext> snapshot = queries.getQueries(MOCK_USER);
+    queries.remove(snapshot.iterator().next());
 
-    /* System under set (queries) should still have the added queries, which can be verified by checking count */
-    assertEquals(queries.getQueries(MOCK_USER).size(), noOfQueriesUsedInTest);
+    /* Snapshot should still have the removed query, while a new snapshot should not */
+    assertEquals(snapshot.size(), noOfQueriesUsedInTest);
+    assertEquals(queries.getQueries(MOCK_USER).size(), noOfQueriesUsedInTest - 1);
+  }
+
+  @Test(expectedExceptions = UnsupportedOperationException.class)
+  public void testGetQueriesPerUserMustReturnImmutableSet() {
+
+    QueryCollection queries = createQueriesInstanceWithUserStubbing(2, MOCK_USER);
+    queries.getQueries(MOCK_USER).clear();
   }
 }
@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.rewrite;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+import java.util.*;
+
+import org.apache.lens.cube.metadata.CubeMetastoreClient;
+import org.apache.lens.cube.parse.CubeQueryConfUtil;
+import org.apache.lens.driver.cube.RewriterPlan;
+
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestCubeQueryRewriteCache {
+
+  private static final String QUERY = "cube select msr1 from testcube where time_range_in(dt, '2015-01-01',"
+    + " '2015-01-02')";
+
+  private final Map<String, String> rewriteConf = new HashMap<String, String>();
+
+  private final Map<String, Long> tableVersions = new HashMap<String, Long>();
+
+  private CubeMetastoreClient metastoreClient;
+
+  @BeforeMethod
+  public void setUp() {
+    tableVersions.clear();
+    metastoreClient = Mockito.mock(CubeMetastoreClient.class);
+    when(metastoreClient.getVersion(anyString())).thenAnswer(new Answer<Long>() {
+      @Override
+      public Long answer(InvocationOnMock invocation) {
+        Long version = tableVersions.get((String) invocation.getArguments()[0]);
+        return version == null ? 0L : version;
+      }
+    });
+  }
+
+  private CubeQueryRewriteCache.CachedRewrite newRewrite(long metastoreVersion) {
+    return new CubeQueryRewriteCache.CachedRewrite("select sum(msr1) from c1_testfact",
+      RewriterPlan.combine(Collections.<RewriterPlan>emptyList()),
+      new HashSet<String>(Arrays.asList("testcube", "testfact", "c1_testfact")), metastoreVersion);
+  }
+
+  @Test
+  public void testCachedRewriteIsReturned() {
+    CubeQueryRewriteCache cache = new CubeQueryRewriteCache(10, 60000);
+    CubeQueryRewriteCache.CachedRewrite rewrite = newRewrite(1);
+    assertNull(cache.get("default", rewriteConf, QUERY, metastoreClient));
+    cache.put("default", rewriteConf, QUERY, rewrite, metastoreClient);
+    assertSame(cache.get("default", rewriteConf, QUERY, metastoreClient), rewrite);
+    assertSame(cache.get("default", new HashMap<String, String>(rewriteConf), QUERY, metastoreClient), rewrite);
+  }
+
+  @Test
+  public void testRewriteNotReturnedOnChange() {
+    CubeQueryRewriteCache cache = new CubeQueryRewriteCache(10, 60000);
+    cache.put("default", rewriteConf, QUERY, newRewrite(1), metastoreClient);
+
+    // different database
+    assertNull(cache.get("otherdb", rewriteConf, QUERY, metastoreClient));
+    // different rewrite conf
+    Map<String, String> otherConf = new HashMap<String, String>(rewriteConf);
+    otherConf.put(CubeQueryConfUtil.DRIVER_SUPPORTED_STORAGES, "C2");
+    assertNull(cache.get("default", otherConf, QUERY, metastoreClient));
+    // different query
+    assertNull(cache.get("default", rewriteConf, QUERY.replace("2015-01-02", "2015-01-03"), metastoreClient));
+
+    // table not used by the rewrite changed
+    tableVersions.put("c2_testfact", 2L);
+    assertNotNull(cache.get("default", rewriteConf, QUERY, metastoreClient));
+    // partitions added to a table used by the rewrite
+    tableVersions.put("c1_testfact", 3L);
+    assertNull(cache.get("default", rewriteConf, QUERY, metastoreClient));
+    assertEquals(cache.size(), 0);
+  }
+
+  @Test
+  public void testNotCachedWhenChangedDuringRewrite() {
+    CubeQueryRewriteCache cache = new CubeQueryRewriteCache(10, 60000);
+    tableVersions.put("testfact", 2L);
+    cache.put("default", rewriteConf, QUERY, newRewrite(1), metastoreClient);
+    assertNull(cache.get("default", rewriteConf, QUERY, metastoreClient));
+    assertEquals(cache.size(), 0);
+  }
+
+  @Test
+  public void testRelativeTimeRangeResolved() throws Exception {
+    String query = "cube select msr1 from testcube where time_range_in(dt, 'now.day - 2 days', \"now.day\")";
+    Calendar calendar = Calendar.getInstance();
+    calendar.set(2015, Calendar.JUNE, 10, 10, 20, 30);
+    Date morning = calendar.getTime();
+    calendar.set(Calendar.HOUR_OF_DAY, 22);
+    Date night = calendar.getTime();
+    calendar.add(Calendar.DAY_OF_MONTH, 1);
+    Date nextDay = calendar.getTime();
+
+    String resolved = CubeQueryRewriteCache.getCacheableQuery(query, morning);
+    assertEquals(resolved, "cube select msr1 from testcube where time_range_in(dt, '2015-06-08-00:00:00,000',"
+      + " '2015-06-10-00:00:00,000')");
+    assertEquals(CubeQueryRewriteCache.getCacheableQuery(query, night), resolved);
+    assertNotEquals(CubeQueryRewriteCache.getCacheableQuery(query, nextDay), resolved);
+
+    // absolute time ranges are kept as they are
+    assertEquals(CubeQueryRewriteCache.getCacheableQuery(QUERY, morning), QUERY);
+    String snowflake = "cube select known, msr1 from snowflake where time_range_in(dt, '2015-01-01', '2015-01-02')";
+    assertEquals(CubeQueryRewriteCache.getCacheableQuery(snowflake, morning), snowflake);
+
+    // time ranges which move every millisecond or end now
+    assertNull(CubeQueryRewriteCache.getCacheableQuery(
+      "cube select msr1 from testcube where time_range_in(dt, 'now - 2 days', 'now')", morning));
+    assertNull(CubeQueryRewriteCache.getCacheableQuery(
+      "cube select msr1 from testcube where time_range_in(dt, '2015-01-01')", morning));
+  }
+
+  @Test
+  public void testBounded() {
+    CubeQueryRewriteCache cache = new CubeQueryRewriteCache(2, 60000);
+    for (int i = 0; i < 5; i++) {
+      cache.put("default", rewriteConf, QUERY.replace("2015-01-02", "2015-01-0" + (i + 2)), newRewrite(i),
+        metastoreClient);
+    }
+    assertTrue(cache.size() <= 2);
+    cache.clear();
+    assertEquals(cache.size(), 0);
+  }
+}
@@ -21,6 +21,7 @@ package org.apache.lens.server.rewrite;
 import java.util.*;
 
 import org.apache.lens.api.LensConf;
+import org.apache.lens.cube.parse.CubeQueryConfUtil;
 import org.apache.lens.cube.parse.CubeQueryContext;
 import org.apache.lens.cube.parse.CubeQueryRewriter;
 import org.apache.lens.cube.parse.HQLParser;
@@ -416,9 +417,11 @@ public class TestRewriting {
     Assert.assertEquals(cubeQueries.get(0).query,
       "cube select name from table where time_range_in('dt', '2014-06-24-23', '2014-06-25-00')");
 
-    // failing query for second driver
+    // failing query for second driver, which has different cube rewrite configuration
     MockDriver driver2 = new MockDriver();
-    driver2.configure(conf);
+    Configuration driver2Conf = new Configuration(conf);
+    driver2Conf.set(CubeQueryConfUtil.DRIVER_SUPPORTED_STORAGES, "C2");
+    driver2.configure(driver2Conf);
     drivers.add(driver2);
 
     Assert.assertEquals(drivers.size(), 2);
@@ -459,4 +462,40 @@ public class TestRewriting {
     Assert.assertNull(runnables.get(driver2).getRewrittenQuery());
     Assert.assertNotNull(ctx.getDriverRewriteError(driver2));
   }
+
+  @Test
+  public void testRewriteSharedByDriversWithSameRewriteConf() throws Exception {
+    Configuration conf = new Configuration();
+    MockDriver driver1 = new MockDriver();
+    driver1.configure(conf);
+    MockDriver driver2 = new MockDriver();
+    driver2.configure(conf);
+    MockDriver driver3 = new MockDriver();
+    Configuration driver3Conf = new Configuration(conf);
+    driver3Conf.set(CubeQueryConfUtil.DRIVER_SUPPORTED_STORAGES, "C2");
+    driver3.configure(driver3Conf);
+    List<LensDriver> drivers = Arrays.<LensDriver>asList(driver1, driver2, driver3);
+
+    CubeQueryRewriter mockWriter = Mockito.mock(CubeQueryRewriter.class);
+    Mockito.when(mockWriter.rewrite(Matchers.any(String.class))).thenAnswer(new Answer<CubeQueryContext>() {
+      @Override
+      public CubeQueryContext answer(InvocationOnMock invocation) throws Throwable {
+        return getMockedCubeContext((String) invocation.getArguments()[0]);
+      }
+    });
+    PowerMockito.stub(PowerMockito.method(RewriteUtil.class, "getCubeRewriter")).toReturn(mockWriter);
+
+    QueryContext ctx = new QueryContext("cube select name from table", null, new LensConf(), conf, drivers);
+    Map<LensDriver, RewriteUtil.DriverRewriterRunnable> runnables = RewriteUtil.rewriteQuery(ctx);
+    runRewrites(runnables);
+
+    for (LensDriver driver : drivers) {
+      Assert.assertTrue(runnables.get(driver).isSucceeded(), driver + " rewrite should have succeeded");
+      Assert.assertEquals(runnables.get(driver).getRewrittenQuery().trim(), "select name from table");
+    }
+    // driver1 and driver2 share the rewrite, driver3 has its own
+    Mockito.verify(mockWriter, Mockito.times(2)).rewrite(Matchers.any(String.class));
+    Assert.assertSame(ctx.getDriverRewriterPlan(driver1), ctx.getDriverRewriterPlan(driver2));
+    Assert.assertNotSame(ctx.getDriverRewriterPlan(driver1), ctx.getDriverRewriterPlan(driver3));
+  }
 }
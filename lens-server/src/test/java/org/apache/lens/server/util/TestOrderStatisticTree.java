@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.lens.server.util;
+
+import static org.testng.Assert.*;
+
+import java.util.*;
+
+import org.testng.annotations.Test;
+
+@Test(groups = "unit-test")
+public class TestOrderStatisticTree {
+
+  private static final Comparator<Integer> NATURAL = new Comparator<Integer>() {
+    @Override
+    public int compare(Integer o1, Integer o2) {
+      return o1.compareTo(o2);
+    }
+  };
+
+  public void testRank() {
+    OrderStatisticTree<Integer> tree = new OrderStatisticTree<Integer>(NATURAL);
+    assertTrue(tree.add(30));
+    assertTrue(tree.add(10));
+    assertTrue(tree.add(20));
+    assertFalse(tree.add(20));
+
+    assertEquals(tree.size(), 3);
+    assertEquals(tree.rank(10).intValue(), 1);
+    assertEquals(tree.rank(20).intValue(), 2);
+    assertEquals(tree.rank(30).intValue(), 3);
+    assertNull(tree.rank(40));
+
+    assertTrue(tree.remove(10));
+    assertFalse(tree.remove(10));
+    assertEquals(tree.size(), 2);
+    assertEquals(tree.rank(20).intValue(), 1);
+    assertEquals(tree.rank(30).intValue(), 2);
+  }
+
+  public void testRankMatchesTreeSet() {
+    OrderStatisticTree<Integer> tree = new OrderStatisticTree<Integer>(NATURAL);
+    TreeSet<Integer> expected = new TreeSet<Integer>();
+    Random random = new Random(7);
+
+    for (int i = 0; i < 5000; i++) {
+      Integer value = random.nextInt(500);
+      if (random.nextBoolean()) {
+        assertEquals(tree.add(value), expected.add(value));
+      } else {
+        assertEquals(tree.remove(value), expected.remove(value));
+      }
+    }
+
+    assertEquals(tree.size(), expected.size());
+    int rank = 1;
+    for (Integer value : expected) {
+      assertEquals(tree.rank(value).intValue(), rank++);
+    }
+  }
+}